@@ -16,6 +16,7 @@ module aion.zero.impl {
     requires aion.fastvm;
     requires slf4j.api;
     requires com.google.common;
+    requires com.github.benmanes.caffeine;
     requires info.picocli;
     requires commons.lang3;
     requires commons.collections4;
@@ -40,7 +40,10 @@ import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 import org.aion.zero.impl.sync.DatabaseType;
+import org.aion.zero.impl.sync.EncodedBlockCache;
+import org.aion.zero.impl.sync.FastSyncProgress;
 import org.aion.zero.impl.types.AionGenesis;
 import org.aion.zero.impl.types.GenesisStakingBlock;
 
@@ -102,7 +105,10 @@ import org.aion.zero.impl.vm.common.BulkExecutor;
 import org.aion.zero.impl.config.CfgAion;
 import org.aion.zero.impl.core.energy.AbstractEnergyStrategyLimit;
 import org.aion.zero.impl.core.energy.EnergyStrategies;
+import org.aion.zero.impl.db.AionRepositoryCache;
 import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.db.LogIndexStore;
+import org.aion.zero.impl.db.StatePrefetcher;
 import org.aion.zero.impl.sync.SyncMgr;
 import org.aion.zero.impl.types.AionBlock;
 import org.aion.zero.impl.types.AionBlockSummary;
@@ -189,6 +195,8 @@ public class AionBlockchainImpl implements IAionBlockchain {
     private IEventMgr evtMgr;
     private AbstractEnergyStrategyLimit energyLimitStrategy;
     private AtomicLong bestBlockNumber = new AtomicLong(0L);
+    // the number of the block whose state is downloaded by the fast sync, negative when inactive
+    private volatile long fastSyncPivotNumber = -1L;
 
     // fields used to manage AVM caching
     // TODO: if refactoring the add(Block) method, these should be used as parameters
@@ -198,6 +206,10 @@ public class AionBlockchainImpl implements IAionBlockchain {
     private long forkLevel = NO_FORK_LEVEL;
 
     private final boolean storeInternalTransactions;
+    private boolean speculativeExecution = false;
+    private StatePrefetcher statePrefetcher = null;
+    private final EncodedBlockCache encodedBlockCache =
+            new EncodedBlockCache(EncodedBlockCache.DEFAULT_SIZE);
     //TODO : [unity] find the proper number for chaching the template.
     final Map<ByteArrayWrapper, StakingBlock> stakingBlockTemplate = Collections.synchronizedMap(new LRUMap<>(64));
     final Map<ByteArrayWrapper, AionBlock> miningBlockTemplate = Collections.synchronizedMap(new LRUMap<>(64));
@@ -260,6 +272,37 @@ public class AionBlockchainImpl implements IAionBlockchain {
                     }
                 } : new ChainConfiguration(),
             eventMgr);
+        this.speculativeExecution = cfgAion.getTx().isSpeculativeExecutionEnabled();
+        setStatePrefetchThreads(cfgAion.getDb().getStatePrefetchThreads());
+    }
+
+    /**
+     * Enables or disables the speculative parallel execution of consecutive FVM transactions during
+     * block import and block template creation. The results are the same in both modes.
+     */
+    public void setSpeculativeExecution(boolean enabled) {
+        this.speculativeExecution = enabled;
+    }
+
+    /**
+     * Sets the number of threads used to load the accounts used by the transactions of a block
+     * before executing them during import. Prefetching is disabled when the number is zero.
+     */
+    public void setStatePrefetchThreads(int threads) {
+        if (statePrefetcher != null) {
+            statePrefetcher.shutdown();
+        }
+        statePrefetcher = threads > 0 ? new StatePrefetcher(threads) : null;
+    }
+
+    /** @return the state prefetcher used during block import or {@code null} when disabled */
+    public StatePrefetcher getStatePrefetcher() {
+        return statePrefetcher;
+    }
+
+    /** @return the encodings of the recently imported blocks used to answer sync requests */
+    public EncodedBlockCache getEncodedBlockCache() {
+        return encodedBlockCache;
     }
 
     /**
@@ -433,6 +476,16 @@ public class AionBlockchainImpl implements IAionBlockchain {
         return repository.getBlockStore().getChainBlockByNumber(blockNr);
     }
 
+    @Override
+    public BlockHeader getBlockHeaderByNumber(long blockNr) {
+        return repository.getBlockStore().getChainHeaderByNumber(blockNr);
+    }
+
+    @Override
+    public BlockHeader getBlockHeaderByHash(byte[] hash) {
+        return repository.getBlockStore().getHeaderByHash(hash);
+    }
+
     @Override
     public List<Block> getBlocksByNumber(long blockNr) {
         return repository.getBlockStore().getBlocksByNumber(blockNr);
@@ -608,6 +661,8 @@ public class AionBlockchainImpl implements IAionBlockchain {
 
         } catch (Exception e) {
             LOG.error("Unexpected error: ", e);
+            // the block may not have been stored, so the chain must not branch to it
+            summary = null;
         } finally {
             this.fork = false;
         }
@@ -624,10 +679,12 @@ public class AionBlockchainImpl implements IAionBlockchain {
 
             // main branch become this branch cause we proved that total difficulty is greater
             forkLevel = repository.getBlockStore().reBranch(block);
+            encodedBlockCache.onReBranch(forkLevel, block);
 
             // The main repository rebranch
             this.repository = savedState.savedRepo;
             this.repository.syncToRoot(block.getStateRoot());
+            truncateLogIndex(block.getNumber());
 
             // flushing
             flush();
@@ -653,7 +710,7 @@ public class AionBlockchainImpl implements IAionBlockchain {
             flush();
 
             if (forkUtility.isNonceForkBlock(block.getNumber())) {
-                BigInteger newDiff = calculateFirstPoSDifficultyAtBlock(block);
+                BigInteger newDiff = calculateFirstPoSDifficultyAtBlock(block.getHeader());
                 forkUtility.setNonceForkResetDiff(newDiff);
             }
         }
@@ -879,13 +936,38 @@ public class AionBlockchainImpl implements IAionBlockchain {
      * </ol>
      */
     public Triple<Long, Set<ByteArrayWrapper>, ImportResult> tryToConnect(final List<Block> blockRange, String peerDisplayId) {
+        return tryToConnect(blockRange, peerDisplayId, null);
+    }
+
+    /**
+     * Imports a batch of blocks for which the stateless validations were started ahead of time by
+     * the caller (see {@link #isValidStateless(Block)}).
+     *
+     * @param blockRange the block range to be imported
+     * @param peerDisplayId the display identifier for the peer who provided the batch
+     * @param statelessChecks returns the outcome of the stateless validations of a block, waiting
+     *     for them to complete if needed; when {@code null} all the validations are performed
+     *     during the import
+     * @return the same information as {@link #tryToConnect(List, String)}
+     */
+    public Triple<Long, Set<ByteArrayWrapper>, ImportResult> tryToConnect(final List<Block> blockRange, String peerDisplayId, Predicate<Block> statelessChecks) {
 
         lock.lock();
         try {
             ImportResult importResult = null;
             Set<ByteArrayWrapper> imported = new HashSet<>();
             for (Block block : blockRange) {
-                Pair<ImportResult, Long> result = tryToConnectWithTimedExecution(new BlockWrapper(block));
+                BlockWrapper blockWrapper;
+                if (statelessChecks == null) {
+                    blockWrapper = new BlockWrapper(block);
+                } else if (statelessChecks.test(block)) {
+                    blockWrapper = new BlockWrapper(block, false, false, false, false, true);
+                } else {
+                    LOG.warn("Block {} from node = {} failed the stateless validations.", block.getShortDescr(), peerDisplayId);
+                    return Triple.of(bestBlock.getNumber(), imported, ImportResult.INVALID_BLOCK);
+                }
+
+                Pair<ImportResult, Long> result = tryToConnectWithTimedExecution(blockWrapper);
                 importResult = result.getLeft();
                 long importTime = result.getRight();
 
@@ -968,11 +1050,29 @@ public class AionBlockchainImpl implements IAionBlockchain {
             surveyLongImportTimeCount,
             surveySuperLongImportTimeCount,
             TimeUnit.NANOSECONDS.toMillis(surveyLongestImportTime));
+
+        StatePrefetcher prefetcher = statePrefetcher;
+        if (prefetcher != null) {
+            SURVEY_LOG.info("State prefetch: accounts#[{}], warmHitRatio[{}], timeSaved[{}]ms",
+                prefetcher.getPrefetchedCount(),
+                String.format("%.2f", prefetcher.getHitRatio()),
+                TimeUnit.NANOSECONDS.toMillis(prefetcher.getTimeSavedNanos()));
+        }
+
+        SURVEY_LOG.info("Encoded block cache: blocks#[{}], size[{}]KB, hitRatio[{}]",
+            encodedBlockCache.getEntryCount(),
+            encodedBlockCache.getSize() / 1024,
+            String.format("%.2f", encodedBlockCache.getHitRatio()));
     }
 
     Pair<ImportResult, AionBlockSummary> tryToConnectAndFetchSummary(BlockWrapper blockWrapper) {
 
         Block block = blockWrapper.block;
+        if (fastSyncPivotNumber >= 0) {
+            // the blocks above the pivot are imported once its state is downloaded
+            return Pair.of(block.getNumber() <= fastSyncPivotNumber ? storeWithoutExecution(blockWrapper) : NO_PARENT, null);
+        }
+
         // Check block exists before processing more rules
         if (!blockWrapper.skipExistCheck // skipped when redoing imports
                 && repository.getBlockStore().getMaxNumber() >= block.getNumber()
@@ -1059,7 +1159,7 @@ public class AionBlockchainImpl implements IAionBlockchain {
 
         // update best block reference
         if (ret == IMPORTED_BEST) {
-            pubBestBlock = bestBlock;
+            resetPubBestBlock(bestBlock);
 
             if (callback != null) {
                 callback.updateBlockStatus(block.getNumber(), block.getHash().clone(), block.getTotalDifficulty());
@@ -1251,11 +1351,11 @@ public class AionBlockchainImpl implements IAionBlockchain {
         return new BlockContext(block, baseBlockReward, totalTransactionFee);
     }
     
-    private BigInteger calculateFirstPoSDifficultyAtBlock(Block block) {
-        if (!forkUtility.isUnityForkBlock(block.getNumber()) && !forkUtility.isNonceForkBlock(block.getNumber())) {
+    private BigInteger calculateFirstPoSDifficultyAtBlock(BlockHeader header) {
+        if (!forkUtility.isUnityForkBlock(header.getNumber()) && !forkUtility.isNonceForkBlock(header.getNumber())) {
             throw new IllegalArgumentException("This cannot be the parent of the first PoS block");
         } else {
-            byte[] stateRoot = block.getStateRoot();
+            byte[] stateRoot = header.getStateRoot();
             AccountState accountState = (AccountState) repository.getSnapshotTo(stateRoot).getAccountState(getStakingContractHelper().getStakingContractAddress());
             return accountState.getBalance().multiply(TEN);
         }
@@ -1282,11 +1382,11 @@ public class AionBlockchainImpl implements IAionBlockchain {
             if (forkUtility.isUnityForkBlock(parentHdr.getNumber())) {
                 // this is the first PoS block, use all zeroes as seed, and totalStake / 10 as difficulty
                 parentSeed = GENESIS_SEED;
-                newDiff = calculateFirstPoSDifficultyAtBlock(parent);
+                newDiff = calculateFirstPoSDifficultyAtBlock(parentHdr);
             } else if (forkUtility.isNonceForkBlock(parentHdr.getNumber())) {
                 BlockHeader parentStakingBlock = getParent(parentHdr).getHeader();
                 parentSeed = ((StakingBlockHeader) parentStakingBlock).getSeed();
-                newDiff = calculateFirstPoSDifficultyAtBlock(parent);
+                newDiff = calculateFirstPoSDifficultyAtBlock(parentHdr);
                 forkUtility.setNonceForkResetDiff(newDiff);
             } else {
                 Block[] blockFamily = repository.getBlockStore().getTwoGenerationBlocksByHashWithInfo(parentHdr.getParentHash());
@@ -1454,7 +1554,7 @@ public class AionBlockchainImpl implements IAionBlockchain {
         repository.clearCachedVMs();
 
         Block block = blockWrapper.block;
-        if (!blockWrapper.validatedHeader && !isValid(block)) {
+        if (!blockWrapper.validatedHeader && !isValid(block, blockWrapper.statelessValidated)) {
             LOG.error("Attempting to add {} block.", (block == null ? "NULL" : "INVALID"));
             return Pair.of(null, null);
         }
@@ -1474,7 +1574,15 @@ public class AionBlockchainImpl implements IAionBlockchain {
             cachedBlockNumberForAVM = 0;
         }
 
+        StatePrefetcher prefetcher = statePrefetcher;
+        if (prefetcher != null) {
+            prefetcher.prefetch((AionRepositoryCache) track, block.getTransactionsList());
+        }
+
         AionBlockSummary summary = processBlock(block);
+        if (prefetcher != null) {
+            prefetcher.recordUsage((AionRepositoryCache) track);
+        }
         List<AionTxExecSummary> transactionSummaries = summary.getSummaries();
         List<AionTxReceipt> receipts = summary.getReceipts();
 
@@ -1508,6 +1616,7 @@ public class AionBlockchainImpl implements IAionBlockchain {
                 }
             }
             transactionStore.flushBatch();
+            indexLogs(block, receipts);
 
             repository.commitBlock(block.getHashWrapper(), block.getNumber(), block.getStateRoot());
 
@@ -1553,33 +1662,42 @@ public class AionBlockchainImpl implements IAionBlockchain {
     }
 
     public boolean isValid(BlockHeader header) {
+        return isValid(header, false);
+    }
+
+    /**
+     * @param statelessValidated {@code true} when the header rules that do not depend on the chain
+     *     were already checked by {@link #isValidStateless(Block)}
+     */
+    private boolean isValid(BlockHeader header, boolean statelessValidated) {
         /*
          * The block header should already be validated at this point by P2P or mining,
          * but we are including the validation in case future import paths forget to add it.
          */
-        if (!this.headerValidator.validate(header, LOG)) {
+        if (!statelessValidated && !this.headerValidator.validate(header, LOG)) {
             return false;
         }
 
-        Block[] threeGenParents = repository.getBlockStore().getThreeGenerationBlocksByHashWithInfo(header.getParentHash());
-        Block parentBlock = threeGenParents[0];
-        if (parentBlock == null) {
+        // only the headers are needed for validation, so the block bodies are not read
+        BlockHeader[] threeGenParents = repository.getBlockStore().getThreeGenerationHeadersByHash(header.getParentHash());
+        BlockHeader parentHeader = threeGenParents[0];
+        if (parentHeader == null) {
             return false;
         }
-        Block grandparentBlock = threeGenParents[1];
-        Block greatGrandparentBlock = threeGenParents[2];
+        BlockHeader grandparentHeader = threeGenParents[1];
+        BlockHeader greatGrandparentHeader = threeGenParents[2];
 
         if (header.getSealType() == BlockSealType.SEAL_POW_BLOCK) {
             if (forkUtility.isUnityForkActive(header.getNumber())) {
-                if (grandparentBlock == null || greatGrandparentBlock == null) {
+                if (grandparentHeader == null || greatGrandparentHeader == null) {
                     return false;
                 }
 
-                return unityParentBlockHeaderValidator.validate(header, parentBlock.getHeader(), LOG, null) &&
-                        unityGreatGrandParentBlockHeaderValidator.validate(grandparentBlock.getHeader(), greatGrandparentBlock.getHeader(), header, LOG);
+                return unityParentBlockHeaderValidator.validate(header, parentHeader, LOG, null) &&
+                        unityGreatGrandParentBlockHeaderValidator.validate(grandparentHeader, greatGrandparentHeader, header, LOG);
             } else {
-                return preUnityParentBlockHeaderValidator.validate(header, parentBlock.getHeader(), LOG, null) &&
-                        preUnityGrandParentBlockHeaderValidator.validate(parentBlock.getHeader(), grandparentBlock == null ? null : grandparentBlock.getHeader(), header, LOG);
+                return preUnityParentBlockHeaderValidator.validate(header, parentHeader, LOG, null) &&
+                        preUnityGrandParentBlockHeaderValidator.validate(parentHeader, grandparentHeader, header, LOG);
             }
         } else  if (header.getSealType() == BlockSealType.SEAL_POS_BLOCK) {
             if (!forkUtility.isUnityForkActive(header.getNumber())) {
@@ -1587,24 +1705,30 @@ public class AionBlockchainImpl implements IAionBlockchain {
                 return false;
             }
 
-            if (grandparentBlock == null) {
+            if (grandparentHeader == null) {
                 LOG.warn("Staking block {} cannot find its grandparent", header.getNumber());
                 return false;
             }
 
-            if (forkUtility.isUnityForkBlock(parentBlock.getNumber())) {
-                BigInteger expectedDiff = calculateFirstPoSDifficultyAtBlock(parentBlock);
+            if (forkUtility.isUnityForkBlock(parentHeader.getNumber())) {
+                BigInteger expectedDiff = calculateFirstPoSDifficultyAtBlock(parentHeader);
                 if (!expectedDiff.equals(header.getDifficultyBI())) {
                     return false;
                 }
-                grandparentBlock = new GenesisStakingBlock(expectedDiff);
-            } else if (forkUtility.isNonceForkBlock(parentBlock.getNumber())) {
-                BigInteger expectedDiff = calculateFirstPoSDifficultyAtBlock(parentBlock);
+                grandparentHeader = new GenesisStakingBlock(expectedDiff).getHeader();
+            } else if (forkUtility.isNonceForkBlock(parentHeader.getNumber())) {
+                BigInteger expectedDiff = calculateFirstPoSDifficultyAtBlock(parentHeader);
                 if (!expectedDiff.equals(header.getDifficultyBI())) {
                     return false;
                 }
             }
 
+            // the effective stake is computed by executing a call in the context of the parent block
+            Block parentBlock = repository.getBlockStore().getBlockByHash(header.getParentHash());
+            if (parentBlock == null) {
+                return false;
+            }
+
             BigInteger stake = null;
 
             try {
@@ -1614,13 +1738,13 @@ public class AionBlockchainImpl implements IAionBlockchain {
                 System.exit(SystemExitCodes.FATAL_VM_ERROR);
             }
 
-            return unityParentBlockHeaderValidator.validate(header, parentBlock.getHeader(), LOG, stake)
+            return unityParentBlockHeaderValidator.validate(header, parentHeader, LOG, stake)
                     && (forkUtility.isNonceForkActive(header.getNumber())
-                            ? (nonceSeedValidator.validate(grandparentBlock.getHeader(), parentBlock.getHeader(), header, LOG)
+                            ? (nonceSeedValidator.validate(grandparentHeader, parentHeader, header, LOG)
                                     && (forkUtility.isNonceForkBlock(header.getNumber() - 1)
                                             ? header.getDifficultyBI().equals(forkUtility.getNonceForkResetDiff())
-                                            : nonceSeedDifficultyValidator.validate(grandparentBlock.getHeader(), greatGrandparentBlock.getHeader(), header, LOG)))
-                            : unityGreatGrandParentBlockHeaderValidator.validate(grandparentBlock.getHeader(), greatGrandparentBlock.getHeader(), header, LOG));
+                                            : nonceSeedDifficultyValidator.validate(grandparentHeader, greatGrandparentHeader, header, LOG)))
+                            : unityGreatGrandParentBlockHeaderValidator.validate(grandparentHeader, greatGrandparentHeader, header, LOG));
         } else {
             LOG.debug("Invalid header seal type!");
             return false;
@@ -1628,26 +1752,68 @@ public class AionBlockchainImpl implements IAionBlockchain {
         }
     }
 
+    /**
+     * Validates a header below the fast sync pivot, where the state of the parent block is not
+     * available. The rules that depend on the state, i.e. the stake of the block producer and the
+     * difficulty of the first staking blocks, are skipped.
+     */
+    private boolean isValidWithoutState(BlockHeader header) {
+        if (header.getSealType() == BlockSealType.SEAL_POW_BLOCK) {
+            // the mining rules do not use the state
+            return isValid(header, true);
+        } else if (header.getSealType() != BlockSealType.SEAL_POS_BLOCK || !forkUtility.isUnityForkActive(header.getNumber())) {
+            return false;
+        }
+
+        BlockHeader[] threeGenParents = repository.getBlockStore().getThreeGenerationHeadersByHash(header.getParentHash());
+        BlockHeader parentHeader = threeGenParents[0];
+        BlockHeader grandparentHeader = threeGenParents[1];
+        BlockHeader greatGrandparentHeader = threeGenParents[2];
+        if (parentHeader == null || grandparentHeader == null) {
+            return false;
+        }
+        if (header.getNumber() != parentHeader.getNumber() + 1 || header.getTimestamp() <= parentHeader.getTimestamp()) {
+            return false;
+        }
+        if (forkUtility.isUnityForkBlock(parentHeader.getNumber())) {
+            grandparentHeader = new GenesisStakingBlock(header.getDifficultyBI()).getHeader();
+        }
+
+        if (forkUtility.isNonceForkActive(header.getNumber())) {
+            if (!nonceSeedValidator.validate(grandparentHeader, parentHeader, header, LOG)) {
+                return false;
+            }
+            if (forkUtility.isNonceForkBlock(parentHeader.getNumber())) {
+                // the reset difficulty is computed from the state, so it is taken from this block
+                forkUtility.setNonceForkResetDiff(header.getDifficultyBI());
+                return true;
+            }
+            return nonceSeedDifficultyValidator.validate(grandparentHeader, greatGrandparentHeader, header, LOG);
+        } else {
+            return unityGreatGrandParentBlockHeaderValidator.validate(grandparentHeader, greatGrandparentHeader, header, LOG);
+        }
+    }
+
     /**
      * This mechanism enforces a homeostasis in terms of the time between blocks; a smaller period
      * between the last two blocks results in an increase in the difficulty level and thus
      * additional computation required, lengthening the likely next period. Conversely, if the
      * period is too large, the difficulty, and expected time to the next block, is reduced.
      */
-    private boolean isValid(Block block) {
+    private boolean isValid(Block block, boolean statelessValidated) {
 
         if (block == null) {
             return false;
         }
 
         if (!block.isGenesis()) {
-            if (!isValid(block.getHeader())) {
+            if (!isValid(block.getHeader(), statelessValidated)) {
                 LOG.warn("Block {} has an invalid block header", block.getNumber());
                 return false;
             }
 
             List<AionTransaction> txs = block.getTransactionsList();
-            if (!isValidTxTrieRoot(block.getTxTrieRoot(), txs, block.getNumber(), LOG)) {
+            if (!statelessValidated && !isValidTxTrieRoot(block.getTxTrieRoot(), txs, block.getNumber(), LOG)) {
                 return false;
             }
 
@@ -1713,6 +1879,44 @@ public class AionBlockchainImpl implements IAionBlockchain {
         return true;
     }
 
+    /**
+     * Performs the validations of the block that do not depend on the state of the chain: the
+     * header rules (including the Equihash solution or the staking block signature), the
+     * transaction trie root and the transaction signatures and limits. These checks do not use the
+     * blockchain lock and can be run in parallel for different blocks ahead of their import.
+     *
+     * @return {@code true} if the block passed all the stateless validations, {@code false}
+     *     otherwise
+     */
+    public boolean isValidStateless(Block block) {
+        if (block == null) {
+            return false;
+        }
+        if (block.isGenesis()) {
+            return true;
+        }
+
+        if (!headerValidator.validate(block.getHeader(), LOG)) {
+            LOG.warn("Block {} has an invalid block header", block.getNumber());
+            return false;
+        }
+
+        List<AionTransaction> txs = block.getTransactionsList();
+        if (!isValidTxTrieRoot(block.getTxTrieRoot(), txs, block.getNumber(), LOG)) {
+            return false;
+        }
+
+        // the results are cached by the validator and reused during the import
+        boolean unityForkEnabled = forkUtility.isUnityForkActive(block.getNumber());
+        for (AionTransaction tx : txs) {
+            if (TXValidator.validateTx(tx, unityForkEnabled).isFail() || !TransactionTypeValidator.isValid(tx)) {
+                LOG.error("Some transactions in the block {} are invalid", block.getNumber());
+                return false;
+            }
+        }
+        return true;
+    }
+
     private AionBlockSummary processBlock(Block block) {
 
         if (!block.isGenesis()) {
@@ -1768,7 +1972,8 @@ public class AionBlockchainImpl implements IAionBlockchain {
                                 BlockCachingContext.PENDING,
                                 bestBlock.getNumber(),
                                 forkUtility.isUnityForkActive(block.getNumber()),
-                                forkUtility.isSignatureSwapForkActive(block.getNumber()));
+                                forkUtility.isSignatureSwapForkActive(block.getNumber()),
+                                speculativeExecution);
 
                 for (AionTxExecSummary summary : executionSummaries) {
                     if (!summary.isRejected()) {
@@ -1825,7 +2030,8 @@ public class AionBlockchainImpl implements IAionBlockchain {
                                 executionTypeForAVM,
                                 cachedBlockNumberForAVM,
                                 forkUtility.isUnityForkActive(block.getNumber()),
-                                forkUtility.isSignatureSwapForkActive(block.getNumber()));
+                                forkUtility.isSignatureSwapForkActive(block.getNumber()),
+                                speculativeExecution);
 
                 // Check for rejected transaction already included in the chain.
                 if (isException(block.getNumber())) {
@@ -1884,10 +2090,123 @@ public class AionBlockchainImpl implements IAionBlockchain {
         return chainConfiguration;
     }
 
+    /**
+     * Stores a block below the fast sync pivot without executing its transactions, since the state
+     * is downloaded at the pivot instead. Consequently, the receipts of these blocks are not stored.
+     */
+    private ImportResult storeWithoutExecution(BlockWrapper blockWrapper) {
+        Block block = blockWrapper.block;
+        if (isBlockStored(block.getHash(), block.getNumber())) {
+            return EXIST;
+        }
+        if (!isBlockStored(block.getParentHash(), block.getNumber() - 1)) {
+            return NO_PARENT;
+        }
+        if (!(blockWrapper.statelessValidated || isValidStateless(block)) || !isValidWithoutState(block.getHeader())) {
+            LOG.warn("Invalid block below the fast sync pivot with number: {}, hash: {}.", block.getNumber(), block.getShortHash());
+            return INVALID_BLOCK;
+        }
+
+        BigInteger td = getTotalDifficultyForHash(block.getParentHash()).add(block.getDifficultyBI());
+        block.setTotalDifficulty(td);
+
+        ImportResult result;
+        if (bestBlock.isParentOf(block)) {
+            repository.getBlockStore().saveBlock(block, td, true);
+            result = IMPORTED_BEST;
+        } else if (isMoreThan(td, getInternalTD())) {
+            repository.getBlockStore().saveBlock(block, td, false);
+            repository.getBlockStore().reBranch(block);
+            truncateLogIndex(block.getNumber());
+            result = IMPORTED_BEST;
+        } else {
+            repository.getBlockStore().saveBlock(block, td, false);
+            result = IMPORTED_NOT_BEST;
+        }
+
+        if (result == IMPORTED_BEST) {
+            setTotalDifficulty(td);
+            setBestBlock(block);
+            pubBestBlock = bestBlock;
+            if (callback != null) {
+                callback.updateBlockStatus(block.getNumber(), block.getHash().clone(), td);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts storing the blocks up to the given pivot without executing them. The blocks above the
+     * pivot are rejected until {@link #completeFastSync(Block)} is called.
+     */
+    public void startFastSync(long pivotNumber) {
+        lock.lock();
+        try {
+            fastSyncPivotNumber = pivotNumber;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the number of the fast sync pivot block or {@code -1} when fast sync is inactive */
+    public long getFastSyncPivotNumber() {
+        return fastSyncPivotNumber;
+    }
+
+    /**
+     * Switches to the regular import after the state of the pivot block was downloaded.
+     *
+     * @return {@code false} if the pivot is not the best block or its state is incomplete
+     */
+    public boolean completeFastSync(Block pivot) {
+        lock.lock();
+        try {
+            if (!bestBlock.getHashWrapper().equals(pivot.getHashWrapper()) || !repository.isValidRoot(pivot.getStateRoot())) {
+                return false;
+            }
+
+            repository.syncToRoot(pivot.getStateRoot());
+            repository.flush();
+            if (repository.isFlatStateEnabled()) {
+                repository.rebuildFlatState(pivot.getStateRoot(), LOG);
+            }
+            fastSyncPivotNumber = -1L;
+            resetPubBestBlock(bestBlock);
+            setNonceForkResetDiff(pivot.getNumber());
+            LOG.info("Fast sync completed at block number: {}, hash: {}.", pivot.getNumber(), pivot.getShortHash());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private void storeBlock(Block block, List<AionTxReceipt> receipts, List<AionTxExecSummary> summaries) {
 
         BigInteger td = totalDifficulty.get();
 
+        // the block, its receipts and its state are written together when supported
+        repository.startAtomicWrite();
+        try {
+            storeBlockData(block, td, receipts, summaries);
+        } catch (RuntimeException e) {
+            repository.abortAtomicWrite();
+            throw e;
+        }
+        // a failed write is thrown to the importer, before the block becomes the best block
+        repository.commitAtomicWrite();
+        encodedBlockCache.add(block);
+
+        LOG.debug(
+                "Block saved: number: {}, hash: {}, {}",
+                block.getNumber(),
+                block.getShortHash(),
+                td.toString());
+        LOG.debug("block added to the blockChain: index: [{}]", block.getNumber());
+
+        setBestBlock(block);
+    }
+
+    private void storeBlockData(Block block, BigInteger td, List<AionTxReceipt> receipts, List<AionTxExecSummary> summaries) {
         repository.getBlockStore().saveBlock(block, td, !fork);
 
         for (int i = 0; i < receipts.size(); i++) {
@@ -1905,17 +2224,25 @@ public class AionBlockchainImpl implements IAionBlockchain {
             }
         }
         transactionStore.flushBatch();
+        indexLogs(block, receipts);
 
         repository.commitBlock(block.getHashWrapper(), block.getNumber(), block.getStateRoot());
+    }
 
-        LOG.debug(
-                "Block saved: number: {}, hash: {}, {}",
-                block.getNumber(),
-                block.getShortHash(),
-                td.toString());
-        LOG.debug("block added to the blockChain: index: [{}]", block.getNumber());
+    private void indexLogs(Block block, List<AionTxReceipt> receipts) {
+        // snapshots used for side chain blocks share the index of the main repository
+        LogIndexStore logIndex = repository.getLogIndex();
+        if (logIndex != null) {
+            logIndex.index(block.getNumber(), receipts);
+        }
+    }
 
-        setBestBlock(block);
+    /** Aligns the log index with a main chain that may have become shorter. */
+    private void truncateLogIndex(long bestNumber) {
+        LogIndexStore logIndex = repository.getLogIndex();
+        if (logIndex != null) {
+            logIndex.truncate(bestNumber);
+        }
     }
 
     /**
@@ -2003,6 +2330,11 @@ public class AionBlockchainImpl implements IAionBlockchain {
 
             updateBestKnownBlock(bestBlock.getHeader().getHash(), bestBlock.getHeader().getNumber());
             bestBlockNumber.set(bestBlock.getNumber());
+
+            // the blocks stored while trying a fork are indexed only if the fork becomes the main chain
+            if (!fork) {
+                encodedBlockCache.onBestBlock(bestBlock);
+            }
         } finally{
             lock.unlock();
         }
@@ -2020,6 +2352,10 @@ public class AionBlockchainImpl implements IAionBlockchain {
 
             // We do not flush before closing the database because under normal circumstances the repository was already flushed.
             // If close was called due to an error (like a VM issue) then flushing may store corrupt data, so it shouldn't be done.
+            if (statePrefetcher != null) {
+                statePrefetcher.shutdown();
+            }
+
             GEN_LOG.info("shutting down DB...");
             repository.close();
             GEN_LOG.info("shutdown DB... Done!");
@@ -2083,10 +2419,10 @@ public class AionBlockchainImpl implements IAionBlockchain {
         }
 
         // identifying block we'll move from
-        Block startBlock = getBlockByNumber(blockNumber);
+        BlockHeader startHeader = getBlockHeaderByNumber(blockNumber);
 
         // if nothing found on main chain, return empty array
-        if (startBlock == null) {
+        if (startHeader == null) {
             return emptyList();
         }
 
@@ -2136,13 +2472,7 @@ public class AionBlockchainImpl implements IAionBlockchain {
 
         startNumber = blockNumber + qty - 1;
 
-        Block block = getBlockByNumber(startNumber);
-
-        if (block == null) {
-            return null;
-        }
-
-        return block.getHash();
+        return repository.getBlockStore().getBlockHashByNumber(startNumber);
     }
 
     private void updateBestKnownBlock(byte[] hash, long number) {
@@ -2310,10 +2640,13 @@ public class AionBlockchainImpl implements IAionBlockchain {
     }
 
     /**
-     * @implNote this method only can be called by the aionhub for data recovery purpose.
-     * @param blk the best block after database recovered or revered.
+     * Publishes the best block and its state to external readers.
+     *
+     * @param blk the new best block, or the best block after database recovered or revered.
      */
     void resetPubBestBlock(Block blk) {
+        // the state is published first so that readers of the new best block can also read its state
+        repository.publishCommittedState(blk.getStateRoot());
         pubBestBlock = blk;
     }
 
@@ -2454,12 +2787,20 @@ public class AionBlockchainImpl implements IAionBlockchain {
         // Note: if block DB corruption, the bestBlock may not match with the indexDB.
         Block bestBlock = repository.getBestBlock();
 
+        // the state is missing below the pivot while the fast sync is in progress
+        fastSyncPivotNumber = new FastSyncProgress(repository.getFastSyncDatabase()).getPivotNumber();
+        if (fastSyncPivotNumber >= 0) {
+            genLOG.info("Resuming the fast sync with the pivot at block {}.", fastSyncPivotNumber);
+        }
+
         boolean recovered = true;
         boolean bestBlockShifted = true;
         int countRecoveryAttempts = 0;
 
         // fix the trie if necessary
-        while (bestBlockShifted
+        while (fastSyncPivotNumber < 0
+                && // the state is not expected to be present during the fast sync
+                bestBlockShifted
                 && // the best block was updated after recovery attempt
                 (countRecoveryAttempts < 5)
                 && // allow 5 recovery attempts
@@ -2506,6 +2847,7 @@ public class AionBlockchainImpl implements IAionBlockchain {
             if (recovered) {
                 // reverting block & index DB
                 repository.getBlockStore().rollback(blockNumber);
+                truncateLogIndex(blockNumber);
 
                 // new best block after recovery
                 bestBlock = repository.getBestBlock();
@@ -2605,12 +2947,18 @@ public class AionBlockchainImpl implements IAionBlockchain {
         }
 
         long bestNumber = getBestBlock().getNumber();
+        if (fastSyncPivotNumber < 0 || bestNumber != forkUtility.getNonceForkBlockHeight()) {
+            setNonceForkResetDiff(bestNumber);
+        }
+    }
+
+    private void setNonceForkResetDiff(long bestNumber) {
         if (forkUtility.isNonceForkActive(bestNumber + 1)) {
             // Reset the PoS difficulty as part of the fork logic.
             if (bestNumber == forkUtility.getNonceForkBlockHeight()) {
                 // If this is the trigger for the fork calculate the new difficulty.
                 Block block = getBestBlock();
-                BigInteger newDiff = calculateFirstPoSDifficultyAtBlock(block);
+                BigInteger newDiff = calculateFirstPoSDifficultyAtBlock(block.getHeader());
                 forkUtility.setNonceForkResetDiff(newDiff);
             } else {
                 // Otherwise, assume that it was already calculated and validated during import.
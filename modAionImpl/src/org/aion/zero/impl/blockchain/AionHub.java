@@ -39,6 +39,7 @@ import org.aion.zero.impl.pendingState.AionPendingStateImpl;
 import org.aion.zero.impl.pendingState.IPendingState;
 import org.aion.zero.impl.config.CfgAion;
 import org.aion.zero.impl.pow.AionPoW;
+import org.aion.zero.impl.sync.EncodedBlockCache;
 import org.aion.zero.impl.sync.NodeWrapper;
 import org.aion.zero.impl.sync.SyncMgr;
 import org.aion.zero.impl.sync.handler.BlockPropagationHandler;
@@ -47,9 +48,11 @@ import org.aion.zero.impl.sync.handler.BroadcastTxHandler;
 import org.aion.zero.impl.sync.handler.ReqBlocksBodiesHandler;
 import org.aion.zero.impl.sync.handler.ReqBlocksHeadersHandler;
 import org.aion.zero.impl.sync.handler.ReqStatusHandler;
+import org.aion.zero.impl.sync.handler.RequestTrieDataHandler;
 import org.aion.zero.impl.sync.handler.ResBlocksBodiesHandler;
 import org.aion.zero.impl.sync.handler.ResBlocksHeadersHandler;
 import org.aion.zero.impl.sync.handler.ResStatusHandler;
+import org.aion.zero.impl.sync.handler.ResponseTrieDataHandler;
 import org.aion.zero.impl.types.BlockContext;
 import org.aion.zero.impl.types.StakingBlock;
 import org.slf4j.Logger;
@@ -171,7 +174,9 @@ public class AionHub {
                         cfgNetP2p.getMaxTempNodes(),
                         cfgNetP2p.getMaxActiveNodes(),
                         cfgNetP2p.getBootlistSyncOnly(),
-                        cfgNetP2p.getErrorTolerance());
+                        cfgNetP2p.getErrorTolerance(),
+                        cfgNetP2p.getIoThreads(),
+                        cfgNetP2p.getCompression());
 
         this.syncMgr = new SyncMgr(
                 blockchain,
@@ -179,7 +184,8 @@ public class AionHub {
                 eventMgr,
                 cfg.getSync().getShowStatus(),
                 cfg.getSync().getShowStatistics(),
-                cfg.getNet().getP2p().getMaxActiveNodes());
+                cfg.getNet().getP2p().getMaxActiveNodes(),
+                cfg.getSync().getFastSync());
 
         ChainConfiguration chainConfig = new ChainConfiguration();
         this.propHandler =
@@ -243,12 +249,21 @@ public class AionHub {
                         apiVersion));
         cbs.add(new ResStatusHandler(syncLOG, surveyLOG, p2pMgr, syncMgr));
         boolean inSyncOnlyMode = cfg.getNet().getP2p().inSyncOnlyMode();
-        cbs.add(new ReqBlocksHeadersHandler(syncLOG, blockchain, p2pMgr, inSyncOnlyMode));
+        EncodedBlockCache encodedBlocks = blockchain.getEncodedBlockCache();
+        cbs.add(
+                new ReqBlocksHeadersHandler(
+                        syncLOG, blockchain, p2pMgr, encodedBlocks, inSyncOnlyMode));
         cbs.add(new ResBlocksHeadersHandler(syncLOG, surveyLOG, syncMgr, p2pMgr));
-        cbs.add(new ReqBlocksBodiesHandler(syncLOG, blockchain, syncMgr, p2pMgr, inSyncOnlyMode));
+        cbs.add(
+                new ReqBlocksBodiesHandler(
+                        syncLOG, blockchain, syncMgr, p2pMgr, encodedBlocks, inSyncOnlyMode));
         cbs.add(new ResBlocksBodiesHandler(syncLOG, surveyLOG, syncMgr, p2pMgr));
         cbs.add(new BroadcastTxHandler(syncLOG, mempool, p2pMgr, inSyncOnlyMode));
         cbs.add(new BroadcastNewBlockHandler(syncLOG, surveyLOG, propHandler, p2pMgr));
+        cbs.add(new RequestTrieDataHandler(syncLOG, blockchain, p2pMgr));
+        if (syncMgr.getFastSyncManager() != null) {
+            cbs.add(new ResponseTrieDataHandler(syncLOG, syncMgr.getFastSyncManager().getResponseQueue()));
+        }
         this.p2pMgr.register(cbs);
     }
 
@@ -23,6 +23,8 @@ import org.aion.zero.impl.vm.common.BlockCachingContext;
 import org.aion.zero.impl.vm.common.BulkExecutor;
 import org.aion.zero.impl.SystemExitCodes;
 import org.aion.zero.impl.config.CfgAion;
+import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.db.StateSnapshot;
 import org.aion.zero.impl.tx.TxCollector;
 import org.aion.base.AionTxReceipt;
 import org.slf4j.Logger;
@@ -221,6 +223,11 @@ public class AionImpl implements IAionChain {
         return snapshot;
     }
 
+    @Override
+    public StateSnapshot getCommittedState() {
+        return ((AionRepositoryImpl) aionHub.getRepository()).getCommittedState();
+    }
+
     @Override
     public List<AionTransaction> getWireTransactions() {
         return aionHub.getPendingState().getPendingTransactions();
@@ -335,7 +342,7 @@ public class AionImpl implements IAionChain {
     }
 
     public Optional<ByteArrayWrapper> getCode(AionAddress address) {
-        byte[] code = this.aionHub.getRepository().getCode(address);
+        byte[] code = getCommittedState().getCode(address);
         if (code == null) return Optional.empty();
         return Optional.of(ByteArrayWrapper.wrap(code));
     }
@@ -8,6 +8,8 @@ public class BlockWrapper {
     public final boolean skipExistCheck;
     public final boolean reBuild;
     public final boolean skipRepoFlush;
+    /** The checks that do not depend on the chain state were already passed. */
+    public final boolean statelessValidated;
 
     public BlockWrapper(Block block) {
         this.block = block;
@@ -15,6 +17,7 @@ public class BlockWrapper {
         this.skipExistCheck = false;
         this.reBuild = false;
         this.skipRepoFlush = false;
+        this.statelessValidated = false;
     }
 
     public BlockWrapper(
@@ -23,10 +26,21 @@ public class BlockWrapper {
             boolean skipExistCheck,
             boolean reBuild,
             boolean skipRepoFlush) {
+        this(block, validHeader, skipExistCheck, reBuild, skipRepoFlush, false);
+    }
+
+    public BlockWrapper(
+            Block block,
+            boolean validHeader,
+            boolean skipExistCheck,
+            boolean reBuild,
+            boolean skipRepoFlush,
+            boolean statelessValidated) {
         this.block = block;
         this.validatedHeader = validHeader;
         this.skipExistCheck = skipExistCheck;
         this.reBuild = reBuild;
         this.skipRepoFlush = skipRepoFlush;
+        this.statelessValidated = statelessValidated;
     }
 }
@@ -27,6 +27,18 @@ public interface IAionBlockchain extends UnityChain {
 
     Block getBlockByNumber(long num);
 
+    /**
+     * Returns the header of the main chain block at the given height without reading the block
+     * body, or {@code null} if there is no such block.
+     */
+    BlockHeader getBlockHeaderByNumber(long num);
+
+    /**
+     * Returns the header of the block with the given hash without reading the block body, or
+     * {@code null} if the block is not stored.
+     */
+    BlockHeader getBlockHeaderByHash(byte[] hash);
+
     List<Block> getBlocksByNumber(long num);
 
     /**
@@ -7,6 +7,7 @@ import org.aion.equihash.EquihashMiner;
 import org.aion.mcf.blockchain.Block;
 import org.aion.mcf.db.Repository;
 import org.aion.base.AionTxReceipt;
+import org.aion.zero.impl.db.StateSnapshot;
 
 /** Aion chain interface. */
 public interface IAionChain  {
@@ -26,6 +27,9 @@ public interface IAionChain  {
 
     Repository<?> getSnapshotTo(byte[] root);
 
+    /** @return a lock-free read-only view of the state at the last committed block */
+    StateSnapshot getCommittedState();
+
     List<AionTransaction> getWireTransactions();
 
     List<AionTransaction> getPendingStateTransactions();
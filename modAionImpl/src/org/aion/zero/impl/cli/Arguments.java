@@ -112,6 +112,25 @@ public class Arguments {
                     "drops all databases except for block and index when not given a parameter or starting from 0 and redoes import of all known main chain blocks")
     private String redoImport = null;
 
+    @Option(
+            names = {"--flat-state"},
+            arity = "1",
+            paramLabel = "<action>",
+            description = "rebuild or verify the flat state database\noptions: rebuild, check")
+    private String flatStateAction = null;
+
+    @Option(
+            names = {"--log-index"},
+            arity = "1",
+            paramLabel = "<action>",
+            description = "index the logs of the blocks imported before enabling the log index\noptions: backfill")
+    private String logIndexAction = null;
+
+    @Option(
+            names = {"--migrate-column-families"},
+            description = "copies the rocksdb databases into column families of a single database and enables column families in the config")
+    private boolean migrateColumnFamilies;
+
     /** Compacts the account options into specific commands. */
     public static String[] preProcess(String[] arguments) {
         List<String> list = new ArrayList<>();
@@ -189,4 +208,16 @@ public class Arguments {
     public String isRedoImport() {
         return redoImport;
     }
+
+    public String getFlatStateAction() {
+        return flatStateAction;
+    }
+
+    public String getLogIndexAction() {
+        return logIndexAction;
+    }
+
+    public boolean isMigrateColumnFamilies() {
+        return migrateColumnFamilies;
+    }
 }
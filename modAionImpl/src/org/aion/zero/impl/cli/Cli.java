@@ -19,12 +19,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import org.aion.db.impl.DBVendor;
+import org.aion.db.impl.rocksdb.RocksDBColumnFamilies;
 import org.aion.log.AionLoggerFactory;
 import org.aion.log.LogEnum;
 import org.aion.log.LogLevel;
 import org.aion.zero.impl.blockchain.AionBlockchainImpl;
 import org.aion.zero.impl.config.CfgDb;
 import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.db.DatabaseUtils;
 import org.aion.zero.impl.vm.avm.AvmConfigurations;
 import org.aion.zero.impl.vm.avm.schedule.AvmVersionSchedule;
 import org.aion.zero.impl.config.CfgAion;
@@ -94,7 +97,10 @@ public class Cli {
         PRUNE_STATE,
         DEV,
         DB_COMPACT,
-        REDO_IMPORT
+        REDO_IMPORT,
+        FLAT_STATE,
+        LOG_INDEX,
+        MIGRATE_COLUMN_FAMILIES
     }
 
     public ReturnType callAndInitializeAvm(String[] args, CfgAion cfg) {
@@ -457,6 +463,126 @@ public class Cli {
                 }
             }
 
+            if (options.getFlatStateAction() != null) {
+                String action = options.getFlatStateAction().toLowerCase();
+
+                // ensure mining is disabled and the flat state is opened
+                CfgAion localCfg = CfgAion.inst();
+                localCfg.dbFromXML();
+                localCfg.getConsensus().setMining(false);
+                localCfg.getDb().setFlatState(true);
+
+                AionLoggerFactory.initAll(Map.of(LogEnum.GEN, LogLevel.INFO));
+                final Logger log = AionLoggerFactory.getLogger(LogEnum.GEN.name());
+
+                if (!action.equals("rebuild") && !action.equals("check")) {
+                    log.error("The given argument «" + action + "» is not a valid flat state action.");
+                    return ERROR;
+                }
+
+                AionRepositoryImpl repository = AionRepositoryImpl.inst();
+                try {
+                    byte[] stateRoot = repository.getBestBlock().getStateRoot();
+                    if (action.equals("rebuild")) {
+                        log.info("Rebuilding the flat state INITIATED...");
+                        long count = repository.rebuildFlatState(stateRoot, log);
+                        log.info("Rebuilding the flat state COMPLETE. Copied {} entries.", count);
+                        return EXIT;
+                    } else {
+                        log.info("Checking the flat state INITIATED...");
+                        long errors = repository.checkFlatState(stateRoot, log);
+                        log.info("Checking the flat state COMPLETE. Found {} errors.", errors);
+                        return errors == 0 ? EXIT : ERROR;
+                    }
+                } finally {
+                    repository.close();
+                }
+            }
+
+            if (options.getLogIndexAction() != null) {
+                String action = options.getLogIndexAction().toLowerCase();
+
+                // ensure mining is disabled and the log index is opened
+                CfgAion localCfg = CfgAion.inst();
+                localCfg.dbFromXML();
+                localCfg.getConsensus().setMining(false);
+                localCfg.getDb().setLogIndex(true);
+
+                AionLoggerFactory.initAll(Map.of(LogEnum.GEN, LogLevel.INFO));
+                final Logger log = AionLoggerFactory.getLogger(LogEnum.GEN.name());
+
+                if (!action.equals("backfill")) {
+                    log.error("The given argument «" + action + "» is not a valid log index action.");
+                    return ERROR;
+                }
+
+                AionRepositoryImpl repository = AionRepositoryImpl.inst();
+                try {
+                    log.info("Indexing the logs of the stored blocks INITIATED...");
+                    long count = repository.backfillLogIndex(log);
+                    log.info("Indexing the logs of the stored blocks COMPLETE. Found {} blocks with logs.", count);
+                    return EXIT;
+                } finally {
+                    repository.close();
+                }
+            }
+
+            if (options.isMigrateColumnFamilies()) {
+                CfgAion localCfg = CfgAion.inst();
+                localCfg.dbFromXML();
+
+                AionLoggerFactory.initAll(Map.of(LogEnum.GEN, LogLevel.INFO));
+                final Logger log = AionLoggerFactory.getLogger(LogEnum.GEN.name());
+
+                if (!DBVendor.fromString(localCfg.getDb().getVendor()).equals(DBVendor.ROCKSDB)) {
+                    log.error("Column families can only be used with the rocksdb vendor.");
+                    return ERROR;
+                }
+                if (localCfg.getDb().isColumnFamiliesEnabled()) {
+                    log.error("Column families are already enabled in the config.");
+                    return ERROR;
+                }
+
+                String dbPath = localCfg.getDatabasePath();
+                List<String> names =
+                        List.of(
+                                CfgDb.Names.STATE,
+                                CfgDb.Names.STATE_ARCHIVE,
+                                CfgDb.Names.FLAT_STATE,
+                                CfgDb.Names.LOG_INDEX,
+                                CfgDb.Names.PRUNE_JOURNAL,
+                                CfgDb.Names.TRANSACTION,
+                                CfgDb.Names.CONTRACT_INDEX,
+                                CfgDb.Names.CONTRACT_PERFORM_CODE,
+                                CfgDb.Names.DETAILS,
+                                CfgDb.Names.STORAGE,
+                                CfgDb.Names.GRAPH,
+                                CfgDb.Names.INDEX,
+                                CfgDb.Names.BLOCK,
+                                CfgDb.Names.HEADER,
+                                CfgDb.Names.FAST_SYNC,
+                                CfgDb.Names.TX_POOL,
+                                CfgDb.Names.TX_CACHE);
+
+                log.info("Migrating the databases to column families INITIATED...");
+                RocksDBColumnFamilies columnFamilies =
+                        RocksDBColumnFamilies.withDefaults(
+                                new File(dbPath, CfgDb.Names.COLUMN_FAMILIES).getPath(),
+                                log,
+                                localCfg.getDb().isCompression());
+                try {
+                    long count = DatabaseUtils.migrateToColumnFamilies(dbPath, columnFamilies, names, log);
+                    log.info("Migrating the databases to column families COMPLETE. Copied {} entries.", count);
+                } catch (Exception e) {
+                    log.error("Migrating the databases to column families FAILED due to:", e);
+                    return ERROR;
+                }
+
+                localCfg.getDb().setColumnFamilies(true);
+                localCfg.toXML(null, localCfg.getExecConfigFile());
+                log.info("Column families enabled in the config. The old database directories can be removed once the kernel runs correctly.");
+                return EXIT;
+            }
 
             // if no return happened earlier, run the kernel
             return RUN;
@@ -667,6 +793,15 @@ public class Cli {
         if (options.isRedoImport() != null) {
             return TaskPriority.REDO_IMPORT;
         }
+        if (options.getFlatStateAction() != null) {
+            return TaskPriority.FLAT_STATE;
+        }
+        if (options.getLogIndexAction() != null) {
+            return TaskPriority.LOG_INDEX;
+        }
+        if (options.isMigrateColumnFamilies()) {
+            return TaskPriority.MIGRATE_COLUMN_FAMILIES;
+        }
         return TaskPriority.NONE;
     }
 
@@ -728,6 +863,18 @@ public class Cli {
                 && options.isRedoImport() != null) {
             skippedTasks.add("--redo-import");
         }
+        if (breakingTaskPriority.compareTo(TaskPriority.FLAT_STATE) < 0
+                && options.getFlatStateAction() != null) {
+            skippedTasks.add("--flat-state");
+        }
+        if (breakingTaskPriority.compareTo(TaskPriority.LOG_INDEX) < 0
+                && options.getLogIndexAction() != null) {
+            skippedTasks.add("--log-index");
+        }
+        if (breakingTaskPriority.compareTo(TaskPriority.MIGRATE_COLUMN_FAMILIES) < 0
+                && options.isMigrateColumnFamilies()) {
+            skippedTasks.add("--migrate-column-families");
+        }
 
         return skippedTasks;
     }
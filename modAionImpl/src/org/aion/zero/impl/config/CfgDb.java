@@ -20,6 +20,7 @@ public class CfgDb {
         public static final String DEFAULT = "default";
 
         public static final String BLOCK = "block";
+        public static final String HEADER = "header";
         public static final String INDEX = "index";
         public static final String PENDING_BLOCK = "pendingBlock";
 
@@ -32,10 +33,17 @@ public class CfgDb {
 
         public static final String STATE = "state";
         public static final String STATE_ARCHIVE = "stateArchive";
+        public static final String FLAT_STATE = "flatState";
+        public static final String LOG_INDEX = "logIndex";
+        public static final String PRUNE_JOURNAL = "pruneJournal";
         public static final String TRANSACTION = "transaction";
+        public static final String FAST_SYNC = "fastSync";
 
         public static final String TX_CACHE = "pendingtxCache";
         public static final String TX_POOL = "pendingtxPool";
+
+        // directory of the RocksDB instance storing the databases as column families
+        public static final String COLUMN_FAMILIES = "columnFamilies";
     }
 
     /** Properties used by the DatabaseFactory */
@@ -46,6 +54,14 @@ public class CfgDb {
         public static final String DB_PATH = "db_path";
 
         public static final String CHECK_INTEGRITY = "check_integrity";
+        public static final String PARALLEL_TRIE_HASHING = "parallel_trie_hashing";
+        public static final String FLAT_STATE = "flat_state";
+        public static final String LOG_INDEX = "log_index";
+        public static final String STATE_PREFETCH_THREADS = "state_prefetch_threads";
+        public static final String COLUMN_FAMILIES = "column_families";
+        public static final String ROCKSDB_PROFILES = "rocksdb_profiles";
+        public static final String ROCKSDB_PROFILE = "rocksdb_profile";
+        public static final String COMPACTION_RATE_LIMIT = "compaction_rate_limit";
 
         public static final String ENABLE_AUTO_COMMIT = "enable_auto_commit";
         public static final String ENABLE_DB_CACHE = "enable_db_cache";
@@ -65,6 +81,13 @@ public class CfgDb {
     private String vendor;
     private boolean compression;
     private boolean check_integrity;
+    private boolean parallel_trie_hashing;
+    private boolean flat_state;
+    private boolean log_index;
+    private int state_prefetch_threads;
+    private boolean column_families;
+    private boolean rocksdb_profiles;
+    private int compaction_rate_limit;
     private CfgPrune prune;
     private PruneOption prune_option;
     private boolean internalTxStorage;
@@ -84,6 +107,13 @@ public class CfgDb {
         this.vendor = "leveldb";
         this.compression = false;
         this.check_integrity = true;
+        this.parallel_trie_hashing = false;
+        this.flat_state = false;
+        this.log_index = false;
+        this.state_prefetch_threads = 0;
+        this.column_families = false;
+        this.rocksdb_profiles = false;
+        this.compaction_rate_limit = 0;
         this.prune = new CfgPrune(false);
         this.prune_option = PruneOption.FULL;
 
@@ -107,6 +137,30 @@ public class CfgDb {
                         case "check_integrity":
                             this.check_integrity = Boolean.parseBoolean(ConfigUtil.readValue(sr));
                             break;
+                        case Props.PARALLEL_TRIE_HASHING:
+                            this.parallel_trie_hashing =
+                                    Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
+                        case Props.FLAT_STATE:
+                            this.flat_state = Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
+                        case Props.LOG_INDEX:
+                            this.log_index = Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
+                        case Props.STATE_PREFETCH_THREADS:
+                            this.state_prefetch_threads =
+                                    Math.max(0, Integer.parseInt(ConfigUtil.readValue(sr)));
+                            break;
+                        case Props.COLUMN_FAMILIES:
+                            this.column_families = Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
+                        case Props.ROCKSDB_PROFILES:
+                            this.rocksdb_profiles = Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
+                        case Props.COMPACTION_RATE_LIMIT:
+                            this.compaction_rate_limit =
+                                    Math.max(0, Integer.parseInt(ConfigUtil.readValue(sr)));
+                            break;
                         case "state-storage":
                             setPrune(ConfigUtil.readValue(sr));
                             break;
@@ -138,6 +192,22 @@ public class CfgDb {
                                 break;
                             }
                             // parameter considered only when expert==true
+                        case Names.HEADER:
+                            {
+                                CfgDbDetails dbConfig = new CfgDbDetails();
+                                dbConfig.fromXML(sr);
+                                this.specificConfig.put(Names.HEADER, dbConfig);
+                                break;
+                            }
+                            // parameter considered only when expert==true
+                        case Names.FAST_SYNC:
+                            {
+                                CfgDbDetails dbConfig = new CfgDbDetails();
+                                dbConfig.fromXML(sr);
+                                this.specificConfig.put(Names.FAST_SYNC, dbConfig);
+                                break;
+                            }
+                            // parameter considered only when expert==true
                         case Names.INDEX:
                             {
                                 CfgDbDetails dbConfig = new CfgDbDetails();
@@ -229,6 +299,62 @@ public class CfgDb {
             xmlWriter.writeCharacters(String.valueOf(this.check_integrity));
             xmlWriter.writeEndElement();
 
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeComment(
+                    "Boolean value. Enable/disable building and hashing independent state trie branches in parallel.");
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeStartElement(Props.PARALLEL_TRIE_HASHING);
+            xmlWriter.writeCharacters(String.valueOf(this.parallel_trie_hashing));
+            xmlWriter.writeEndElement();
+
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeComment(
+                    "Boolean value. Enable/disable the flat account and storage database used for fast state reads.");
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeStartElement(Props.FLAT_STATE);
+            xmlWriter.writeCharacters(String.valueOf(this.flat_state));
+            xmlWriter.writeEndElement();
+
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeComment(
+                    "Boolean value. Enable/disable the index of blocks by log address and topic used for fast log queries.");
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeStartElement(Props.LOG_INDEX);
+            xmlWriter.writeCharacters(String.valueOf(this.log_index));
+            xmlWriter.writeEndElement();
+
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeComment(
+                    "Integer value. Number of threads loading the accounts used by a block before its execution; 0 disables prefetching.");
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeStartElement(Props.STATE_PREFETCH_THREADS);
+            xmlWriter.writeCharacters(String.valueOf(this.state_prefetch_threads));
+            xmlWriter.writeEndElement();
+
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeComment(
+                    "Boolean value. Store all the databases as column families of one RocksDB instance; requires the rocksdb vendor and --migrate-column-families for existing data.");
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeStartElement(Props.COLUMN_FAMILIES);
+            xmlWriter.writeCharacters(String.valueOf(this.column_families));
+            xmlWriter.writeEndElement();
+
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeComment(
+                    "Boolean value. Use RocksDB table settings matching the access pattern of each database instead of the same settings for all.");
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeStartElement(Props.ROCKSDB_PROFILES);
+            xmlWriter.writeCharacters(String.valueOf(this.rocksdb_profiles));
+            xmlWriter.writeEndElement();
+
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeComment(
+                    "Integer value. Maximum rate of RocksDB compaction and flush writes in MB per second; 0 means unlimited.");
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeStartElement(Props.COMPACTION_RATE_LIMIT);
+            xmlWriter.writeCharacters(String.valueOf(this.compaction_rate_limit));
+            xmlWriter.writeEndElement();
+
             xmlWriter.writeCharacters("\r\n\t\t");
             xmlWriter.writeComment(
                     "Data pruning behavior for the state database. Options: FULL, TOP, SPREAD.");
@@ -327,6 +453,62 @@ public class CfgDb {
         this.internalTxStorage = isEnabled;
     }
 
+    public boolean isParallelTrieHashingEnabled() {
+        return parallel_trie_hashing;
+    }
+
+    public void setParallelTrieHashing(boolean isEnabled) {
+        this.parallel_trie_hashing = isEnabled;
+    }
+
+    public boolean isFlatStateEnabled() {
+        return flat_state;
+    }
+
+    public void setFlatState(boolean isEnabled) {
+        this.flat_state = isEnabled;
+    }
+
+    public boolean isLogIndexEnabled() {
+        return log_index;
+    }
+
+    public void setLogIndex(boolean isEnabled) {
+        this.log_index = isEnabled;
+    }
+
+    public int getStatePrefetchThreads() {
+        return state_prefetch_threads;
+    }
+
+    public void setStatePrefetchThreads(int threads) {
+        this.state_prefetch_threads = threads;
+    }
+
+    public boolean isColumnFamiliesEnabled() {
+        return column_families;
+    }
+
+    public void setColumnFamilies(boolean isEnabled) {
+        this.column_families = isEnabled;
+    }
+
+    public boolean isRocksDbProfilesEnabled() {
+        return rocksdb_profiles;
+    }
+
+    public void setRocksDbProfiles(boolean isEnabled) {
+        this.rocksdb_profiles = isEnabled;
+    }
+
+    public int getCompactionRateLimit() {
+        return compaction_rate_limit;
+    }
+
+    public void setCompactionRateLimit(int rateLimit) {
+        this.compaction_rate_limit = rateLimit;
+    }
+
     public CfgPrune getPrune() {
         return this.prune;
     }
@@ -404,11 +586,25 @@ public class CfgDb {
 
             Properties props = propSet.get(Names.DEFAULT);
             props.setProperty(Props.CHECK_INTEGRITY, String.valueOf(this.check_integrity));
+            props.setProperty(
+                    Props.PARALLEL_TRIE_HASHING, String.valueOf(this.parallel_trie_hashing));
+            props.setProperty(Props.FLAT_STATE, String.valueOf(this.flat_state));
+            props.setProperty(Props.LOG_INDEX, String.valueOf(this.log_index));
+            props.setProperty(Props.COLUMN_FAMILIES, String.valueOf(this.column_families));
+            props.setProperty(Props.ROCKSDB_PROFILES, String.valueOf(this.rocksdb_profiles));
+            props.setProperty(Props.COMPACTION_RATE_LIMIT, String.valueOf(this.compaction_rate_limit));
         } else {
             Properties props = new Properties();
             props.setProperty(Props.DB_TYPE, this.vendor);
             props.setProperty(Props.ENABLE_DB_COMPRESSION, String.valueOf(this.compression));
             props.setProperty(Props.CHECK_INTEGRITY, String.valueOf(this.check_integrity));
+            props.setProperty(
+                    Props.PARALLEL_TRIE_HASHING, String.valueOf(this.parallel_trie_hashing));
+            props.setProperty(Props.FLAT_STATE, String.valueOf(this.flat_state));
+            props.setProperty(Props.LOG_INDEX, String.valueOf(this.log_index));
+            props.setProperty(Props.COLUMN_FAMILIES, String.valueOf(this.column_families));
+            props.setProperty(Props.ROCKSDB_PROFILES, String.valueOf(this.rocksdb_profiles));
+            props.setProperty(Props.COMPACTION_RATE_LIMIT, String.valueOf(this.compaction_rate_limit));
 
             props.setProperty(Props.ENABLE_DB_CACHE, "true");
             props.setProperty(Props.DB_CACHE_SIZE, String.valueOf(128 * (int) Utils.MEGA_BYTE));
@@ -437,6 +633,13 @@ public class CfgDb {
         CfgDb cfgDb = (CfgDb) o;
         return compression == cfgDb.compression
                 && check_integrity == cfgDb.check_integrity
+                && parallel_trie_hashing == cfgDb.parallel_trie_hashing
+                && flat_state == cfgDb.flat_state
+                && log_index == cfgDb.log_index
+                && state_prefetch_threads == cfgDb.state_prefetch_threads
+                && column_families == cfgDb.column_families
+                && rocksdb_profiles == cfgDb.rocksdb_profiles
+                && compaction_rate_limit == cfgDb.compaction_rate_limit
                 && expert == cfgDb.expert
                 && Objects.equal(path, cfgDb.path)
                 && Objects.equal(vendor, cfgDb.vendor)
@@ -452,6 +655,13 @@ public class CfgDb {
                 vendor,
                 compression,
                 check_integrity,
+                parallel_trie_hashing,
+                flat_state,
+                log_index,
+                state_prefetch_threads,
+                column_families,
+                rocksdb_profiles,
+                compaction_rate_limit,
                 prune,
                 prune_option,
                 expert,
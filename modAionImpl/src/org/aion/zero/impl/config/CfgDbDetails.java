@@ -19,6 +19,8 @@ public class CfgDbDetails {
         // size 0 means unbound
         this.max_heap_cache_size = "1024";
         this.enable_heap_cache_stats = false;
+        // null means the profile is selected based on the database name
+        this.rocksdb_profile = null;
     }
 
     public String vendor;
@@ -29,6 +31,7 @@ public class CfgDbDetails {
     public boolean enable_auto_commit;
     public String max_heap_cache_size;
     public boolean enable_heap_cache_stats;
+    public String rocksdb_profile;
 
     public void fromXML(final XMLStreamReader sr) throws XMLStreamException {
         loop:
@@ -50,6 +53,9 @@ public class CfgDbDetails {
                         case Props.ENABLE_DB_COMPRESSION:
                             this.enable_db_compression = Boolean.parseBoolean(ConfigUtil.readValue(sr));
                             break;
+                        case Props.ROCKSDB_PROFILE:
+                            this.rocksdb_profile = ConfigUtil.readValue(sr);
+                            break;
                         default:
                             ConfigUtil.skipElement(sr);
                             break;
@@ -83,6 +89,13 @@ public class CfgDbDetails {
         xmlWriter.writeCharacters(String.valueOf(this.enable_db_compression));
         xmlWriter.writeEndElement();
 
+        if (this.rocksdb_profile != null) {
+            xmlWriter.writeCharacters("\r\n\t\t\t");
+            xmlWriter.writeStartElement(Props.ROCKSDB_PROFILE);
+            xmlWriter.writeCharacters(this.rocksdb_profile);
+            xmlWriter.writeEndElement();
+        }
+
         xmlWriter.writeCharacters("\r\n\t\t");
         xmlWriter.writeEndElement();
     }
@@ -94,6 +107,9 @@ public class CfgDbDetails {
         props.setProperty(Props.ENABLE_DB_CACHE, String.valueOf(this.enable_db_cache));
         props.setProperty(Props.ENABLE_DB_COMPRESSION, String.valueOf(this.enable_db_compression));
         props.setProperty(Props.ENABLE_AUTO_COMMIT, String.valueOf(this.enable_auto_commit));
+        if (this.rocksdb_profile != null) {
+            props.setProperty(Props.ROCKSDB_PROFILE, this.rocksdb_profile);
+        }
 
         return props;
     }
@@ -108,6 +124,7 @@ public class CfgDbDetails {
                 && enable_auto_commit == that.enable_auto_commit
                 && enable_heap_cache_stats == that.enable_heap_cache_stats
                 && Objects.equal(vendor, that.vendor)
+                && Objects.equal(rocksdb_profile, that.rocksdb_profile)
                 && Objects.equal(max_heap_cache_size, that.max_heap_cache_size);
     }
 
@@ -119,6 +136,7 @@ public class CfgDbDetails {
                 enable_db_compression,
                 enable_auto_commit,
                 max_heap_cache_size,
-                enable_heap_cache_stats);
+                enable_heap_cache_stats,
+                rocksdb_profile);
     }
 }
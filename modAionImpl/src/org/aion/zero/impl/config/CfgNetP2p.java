@@ -21,6 +21,8 @@ public final class CfgNetP2p {
         this.errorTolerance = 50;
         this.clusterNodeMode = false;
         this.syncOnlyMode = false;
+        this.ioThreads = 0;
+        this.compression = true;
     }
 
     private String ip;
@@ -41,6 +43,12 @@ public final class CfgNetP2p {
 
     private int errorTolerance;
 
+    /** The number of p2p IO threads with their own selector; 0 keeps the single inbound thread. */
+    private int ioThreads;
+
+    /** Whether compressed message bodies are negotiated with the peers. */
+    private boolean compression;
+
     public void fromXML(final XMLStreamReader sr) throws XMLStreamException {
         loop:
         while (sr.hasNext()) {
@@ -76,6 +84,12 @@ public final class CfgNetP2p {
                         case "err-tolerance":
                             this.errorTolerance = Integer.parseInt(ConfigUtil.readValue(sr));
                             break;
+                        case "io-threads":
+                            this.ioThreads = Integer.parseInt(ConfigUtil.readValue(sr));
+                            break;
+                        case "compression":
+                            this.compression = Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
                         default:
                             // ConfigUtil.skipElement(sr);
                             break;
@@ -171,6 +185,14 @@ public final class CfgNetP2p {
         return errorTolerance;
     }
 
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public boolean getCompression() {
+        return compression;
+    }
+
     public boolean inClusterNodeMode() {
         return clusterNodeMode;
     }
@@ -192,6 +214,8 @@ public final class CfgNetP2p {
                 && maxTempNodes == cfgNetP2p.maxTempNodes
                 && maxActiveNodes == cfgNetP2p.maxActiveNodes
                 && errorTolerance == cfgNetP2p.errorTolerance
+                && ioThreads == cfgNetP2p.ioThreads
+                && compression == cfgNetP2p.compression
                 && Objects.equal(ip, cfgNetP2p.ip);
     }
 
@@ -206,6 +230,8 @@ public final class CfgNetP2p {
                 syncOnlyMode,
                 maxTempNodes,
                 maxActiveNodes,
-                errorTolerance);
+                errorTolerance,
+                ioThreads,
+                compression);
     }
 }
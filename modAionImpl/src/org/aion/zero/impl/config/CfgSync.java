@@ -17,9 +17,11 @@ public final class CfgSync {
 
     private boolean showStatus;
     private Set<StatsType> showStatistics;
+    private boolean fastSync;
 
     public CfgSync() {
         this.showStatus = false;
+        this.fastSync = false;
         this.showStatistics = new HashSet<>();
         this.showStatistics.add(StatsType.NONE);
     }
@@ -38,6 +40,9 @@ public final class CfgSync {
                         case "show-statistics":
                             parseSelectedStats(showStatistics, ConfigUtil.readValue(sr));
                             break;
+                        case "fast-sync":
+                            this.fastSync = Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
                         default:
                             ConfigUtil.skipElement(sr);
                             break;
@@ -106,6 +111,14 @@ public final class CfgSync {
             xmlWriter.writeCharacters(printSelectedStats().toLowerCase());
             xmlWriter.writeEndElement();
 
+            // sub-element fast-sync
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeComment("download the state at a recent block instead of executing all the blocks; used only for empty databases");
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeStartElement("fast-sync");
+            xmlWriter.writeCharacters(this.fastSync + "");
+            xmlWriter.writeEndElement();
+
             // close element sync
             xmlWriter.writeCharacters("\r\n\t");
             xmlWriter.writeEndElement();
@@ -163,6 +176,14 @@ public final class CfgSync {
         return showStatistics;
     }
 
+    public void setFastSync(boolean fastSync) {
+        this.fastSync = fastSync;
+    }
+
+    public boolean getFastSync() {
+        return this.fastSync;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -19,6 +19,7 @@ public class CfgTx {
         this.poolBackup = false;
         this.pendingTransactionTimeout = 3600;
         this.seedMode = false;
+        this.speculativeExecution = false;
     }
 
     private int cacheMax;
@@ -31,6 +32,8 @@ public class CfgTx {
 
     private boolean seedMode;
 
+    private boolean speculativeExecution;
+
     public void fromXML(final XMLStreamReader sr) throws XMLStreamException {
         loop:
         while (sr.hasNext()) {
@@ -62,6 +65,9 @@ public class CfgTx {
                         case "seedmode":
                             this.seedMode = Boolean.parseBoolean(ConfigUtil.readValue(sr));
                             break;
+                        case "speculativeexecution":
+                            this.speculativeExecution = Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
                         default:
                             ConfigUtil.skipElement(sr);
                             break;
@@ -142,12 +148,13 @@ public class CfgTx {
         return cacheMax == cfgTx.cacheMax
                 && poolDump == cfgTx.poolDump
                 && poolBackup == cfgTx.poolBackup
-                && pendingTransactionTimeout == cfgTx.pendingTransactionTimeout;
+                && pendingTransactionTimeout == cfgTx.pendingTransactionTimeout
+                && speculativeExecution == cfgTx.speculativeExecution;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(cacheMax, poolDump, poolBackup, pendingTransactionTimeout);
+        return Objects.hashCode(cacheMax, poolDump, poolBackup, pendingTransactionTimeout, speculativeExecution);
     }
 
     public boolean isSeedMode() {
@@ -158,4 +165,14 @@ public class CfgTx {
     public void setSeedMode(final boolean value) {
         seedMode = value;
     }
+
+    /** @return whether consecutive FVM transactions are executed speculatively in parallel */
+    public boolean isSpeculativeExecutionEnabled() {
+        return speculativeExecution;
+    }
+
+    @VisibleForTesting
+    public void setSpeculativeExecution(final boolean value) {
+        speculativeExecution = value;
+    }
 }
@@ -17,11 +17,12 @@ public enum StatsType {
     LEECHES,
     RESPONSES,
     SYSTEMINFO,
+    IMPORT,
     NONE; // used as default for invalid settings
 
     private static final List<StatsType> allSpecificTypes =
             Collections.unmodifiableList(
-                    Arrays.asList(REQUESTS, SEEDS, LEECHES, RESPONSES, SYSTEMINFO));
+                    Arrays.asList(REQUESTS, SEEDS, LEECHES, RESPONSES, SYSTEMINFO, IMPORT));
 
     /**
      * List of all the specific types of statistics that can be displayed, i.e. excluding the {@link
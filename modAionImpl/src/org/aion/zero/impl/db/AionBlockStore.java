@@ -11,10 +11,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import org.aion.base.AionTransaction;
 import org.aion.db.impl.ByteArrayKeyValueDatabase;
 import org.aion.db.store.ArrayStore;
 import org.aion.db.store.ObjectStore;
@@ -40,8 +43,21 @@ public class AionBlockStore {
     protected Lock lock = new ReentrantLock();
 
     private ArrayStore<List<BlockInfo>> index;
+    private ObjectStore<BlockHeader> headers;
     private ObjectStore<Block> blocks;
 
+    /**
+     * The index database also stores the hash and total difficulty of the main chain block at each
+     * height under a key made of {@link #CANONICAL_PREFIX} and the big-endian block number. The
+     * keys of consecutive heights are adjacent, so ranges of the main chain can be read with a
+     * single iterator scan instead of walking the parent hashes.
+     */
+    private final ByteArrayKeyValueDatabase indexDatabase;
+
+    // the array store uses 4 or 8 byte keys, so the 9 byte canonical keys cannot collide with them
+    private static final byte CANONICAL_PREFIX = (byte) 'c';
+    private static final int HASH_LENGTH = 32;
+
     private boolean checkIntegrity;
 
     private Deque<Block> branchingBlk = new ArrayDeque<>(),
@@ -49,44 +65,212 @@ public class AionBlockStore {
     private long branchingLevel;
 
     @VisibleForTesting
-    public AionBlockStore(ByteArrayKeyValueDatabase index, ByteArrayKeyValueDatabase blocks, boolean checkIntegrity) {
-        this(index, blocks, checkIntegrity, 0);
+    public AionBlockStore(ByteArrayKeyValueDatabase index, ByteArrayKeyValueDatabase headers, ByteArrayKeyValueDatabase blocks, boolean checkIntegrity) {
+        this(index, headers, blocks, checkIntegrity, 0, 0);
     }
 
-    public AionBlockStore(ByteArrayKeyValueDatabase index, ByteArrayKeyValueDatabase blocks, boolean checkIntegrity, int blockCacheSize) {
+    /**
+     * Creates a block store that keeps the block headers and the block bodies in separate
+     * databases, each with its own cache. Blocks stored by previous versions in the block database
+     * are split into a header and a body by a one-time migration.
+     */
+    public AionBlockStore(ByteArrayKeyValueDatabase index, ByteArrayKeyValueDatabase headers, ByteArrayKeyValueDatabase blocks, boolean checkIntegrity, int headerCacheSize, int blockCacheSize) {
         if (index == null) {
             throw new NullPointerException("index db is null");
         }
 
+        if (headers == null) {
+            throw new NullPointerException("header db is null");
+        }
+
         if (blocks == null) {
             throw new NullPointerException("block db is null");
         }
 
         this.index = Stores.newArrayStore(index, BLOCK_INFO_SERIALIZER);
+        this.indexDatabase = index;
+
+        migrateToSplitStorage(headers, blocks);
 
-        // Note: because of cache use the blocks db should write lock on get as well
-        this.blocks = Stores.newObjectStoreWithCache(blocks, BLOCK_SERIALIZER, blockCacheSize, false);
+        // Note: because of cache use the header and blocks dbs should write lock on get as well
+        this.headers = Stores.newObjectStoreWithCache(headers, HEADER_SERIALIZER, headerCacheSize, false);
+        this.blocks = new SplitBlockStore(this.headers, Stores.newObjectStoreWithCache(blocks, BODY_SERIALIZER, blockCacheSize, false));
         this.checkIntegrity = checkIntegrity;
     }
 
-    private static final Serializer<Block> BLOCK_SERIALIZER =
+    private static final Serializer<BlockHeader> HEADER_SERIALIZER =
+        new Serializer<>() {
+            @Override
+            public byte[] serialize(BlockHeader header) {
+                return header.getEncoded();
+            }
+
+            @Override
+            public BlockHeader deserialize(byte[] bytes) {
+                BlockHeader header = BlockUtil.newHeaderFromRlp(bytes);
+                if (header != null) {
+                    return header;
+                } else {
+                    throw new NullPointerException("Invalid rlp encode data: " + ByteUtil.toHexString(bytes));
+                }
+            }
+        };
+
+    private static final Serializer<List<AionTransaction>> BODY_SERIALIZER =
         new Serializer<>() {
             @Override
-            public byte[] serialize(Block block) {
-                return block.getEncoded();
+            public byte[] serialize(List<AionTransaction> transactions) {
+                // same encoding as Block#getEncodedBody()
+                byte[][] encoded = new byte[transactions.size()][];
+                for (int i = 0; i < encoded.length; i++) {
+                    encoded[i] = transactions.get(i).getEncoded();
+                }
+                return RLP.encodeList(RLP.encodeList(encoded));
             }
 
             @Override
-            public Block deserialize(byte[] bytes) {
-                Block block = BlockUtil.newBlockFromRlp(bytes);
-                if (block != null) {
-                    return block;
+            public List<AionTransaction> deserialize(byte[] bytes) {
+                List<AionTransaction> transactions = BlockUtil.newTransactionsFromBodyRlp(bytes);
+                if (transactions != null) {
+                    return transactions;
                 } else {
                     throw new NullPointerException("Invalid rlp encode data: " + ByteUtil.toHexString(bytes));
                 }
             }
         };
 
+    /**
+     * Stores each block as a header and a body kept under the block hash in separate object
+     * stores. A block is only returned when both parts are present.
+     */
+    private static final class SplitBlockStore implements ObjectStore<Block> {
+        private final ObjectStore<BlockHeader> headers;
+        private final ObjectStore<List<AionTransaction>> bodies;
+
+        SplitBlockStore(ObjectStore<BlockHeader> headers, ObjectStore<List<AionTransaction>> bodies) {
+            this.headers = headers;
+            this.bodies = bodies;
+        }
+
+        @Override
+        public void put(byte[] key, Block block) {
+            headers.put(key, block.getHeader());
+            bodies.put(key, block.getTransactionsList());
+        }
+
+        @Override
+        public void delete(byte[] key) {
+            headers.delete(key);
+            bodies.delete(key);
+        }
+
+        @Override
+        public void commit() {
+            // the body is written first so that a stored header always has its body available,
+            // the migration from the previous format uses the reverse order for its own reason
+            bodies.commit();
+            headers.commit();
+        }
+
+        @Override
+        public Block get(byte[] key) {
+            BlockHeader header = headers.get(key);
+            if (header == null) {
+                return null;
+            }
+            List<AionTransaction> transactions = bodies.get(key);
+            if (transactions == null) {
+                return null;
+            }
+            return BlockUtil.newBlockWithHeader(header, transactions);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return headers.isOpen() && bodies.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                headers.close();
+            } finally {
+                bodies.close();
+            }
+        }
+    }
+
+    // marks the header database of a block store that no longer has blocks in the combined format
+    private static final byte[] SPLIT_STORAGE_KEY = "splitStorage".getBytes();
+
+    /**
+     * Moves the headers of the blocks stored in the previous format, where the block database
+     * held the full block encoding, to the header database and replaces the block entries with
+     * the block bodies.
+     *
+     * @return the number of blocks that were migrated
+     * @implNote Unlike {@link SplitBlockStore#commit()}, the headers are committed before the
+     *     bodies, because a full block encoding is the only copy of its header until the body
+     *     replaces it. An interrupted migration can be resumed: entries still holding the full
+     *     encoding are migrated again, and entries already holding only a body are recognized by
+     *     their encoding and skipped.
+     */
+    @VisibleForTesting
+    static long migrateToSplitStorage(ByteArrayKeyValueDatabase headers, ByteArrayKeyValueDatabase blocks) {
+        if (headers.get(SPLIT_STORAGE_KEY).isPresent()) {
+            return 0L;
+        }
+
+        final long TARGET_BATCH_SIZE = 1_000, TEN_SEC = 10_000_000_000L;
+        long count = 0L, currentBatchSize = 0L, time = System.nanoTime();
+
+        if (!blocks.isEmpty()) {
+            LOG.info("Splitting the stored blocks into headers and bodies. This one-time migration may take a while.");
+
+            Iterator<byte[]> keys = blocks.keys();
+            while (keys.hasNext()) {
+                byte[] key = keys.next();
+                byte[] encoding = blocks.get(key).orElse(null);
+                if (encoding == null) {
+                    continue;
+                }
+
+                // a full block encoding contains the header and the transactions, a body only the transactions
+                RLPList items = (RLPList) RLP.decode2(encoding).get(0);
+                if (items.size() != 2) {
+                    continue;
+                }
+
+                Block block = BlockUtil.newBlockFromRlp(encoding);
+                if (block == null) {
+                    LOG.error("Unable to migrate the block with hash {} due to invalid encoding.", Hex.toHexString(key));
+                    continue;
+                }
+                headers.putToBatch(key, block.getHeader().getEncoded());
+                blocks.putToBatch(key, block.getEncodedBody());
+                count++;
+                currentBatchSize++;
+
+                if (currentBatchSize >= TARGET_BATCH_SIZE) {
+                    headers.commit();
+                    blocks.commit();
+                    currentBatchSize = 0;
+                    if (System.nanoTime() - time > TEN_SEC) {
+                        LOG.info("Progress report: migrated {} blocks.", count);
+                        time = System.nanoTime();
+                    }
+                }
+            }
+            headers.commit();
+            blocks.commit();
+
+            LOG.info("Splitting the stored blocks into headers and bodies COMPLETE. Migrated {} blocks.", count);
+        }
+
+        headers.put(SPLIT_STORAGE_KEY, new byte[] {1});
+        return count;
+    }
+
     /**
      *  Get current highest block data, usually use this method when the kernel need to know the
      *  block information itself.
@@ -205,7 +389,7 @@ public class AionBlockStore {
         lock.lock();
 
         try {
-            Block branchBlock = blocks.get(branchBlockHash);
+            BlockHeader branchBlock = headers.get(branchBlockHash);
             if (branchBlock.getNumber() < blockNumber) {
                 throw new IllegalArgumentException(
                     "Requested block number > branch hash number: "
@@ -214,7 +398,7 @@ public class AionBlockStore {
                         + branchBlock.getNumber());
             }
             while (branchBlock.getNumber() > blockNumber) {
-                branchBlock = blocks.get(branchBlock.getParentHash());
+                branchBlock = headers.get(branchBlock.getParentHash());
             }
             return branchBlock.getHash();
         } finally{
@@ -267,7 +451,7 @@ public class AionBlockStore {
 
             blocks.put(block.getHash(), block);
             blocks.commit(); // TODO AKI-309: flush in bulk by the repository
-            index.set(block.getNumber(), blockInfos);
+            setIndexLevel(block.getNumber(), blockInfos);
         } finally {
             lock.unlock();
         }
@@ -425,10 +609,25 @@ public class AionBlockStore {
             if (first == last) {
                 return List.of(block);
             } else if (first > last) { // first is highest -> can query directly by parent hash
+                long lowest = last > 0 ? last : 1;
+                if (first > lowest) {
+                    List<Block> range = getCanonicalRange(lowest, first - 1);
+                    if (range != null
+                            && Arrays.equals(range.get(range.size() - 1).getHash(), block.getParentHash())) {
+                        List<Block> blocks = new ArrayList<>(range.size() + 1);
+                        blocks.add(block);
+                        for (int i = range.size() - 1; i >= 0; i--) {
+                            blocks.add(range.get(i));
+                        }
+                        return blocks;
+                    }
+                }
+
+                // fall back to walking the parent hashes when the canonical index is incomplete
                 List<Block> blocks = new ArrayList<>();
                 blocks.add(block);
 
-                for (long i = first - 1; i >= (last > 0 ? last : 1); i--) {
+                for (long i = first - 1; i >= lowest; i--) {
                     block = getBlockByHashWithInfo(block.getParentHash());
                     if (block == null) {
                         // the block should have been stored but null was returned above
@@ -443,9 +642,9 @@ public class AionBlockStore {
                         blocks.add(block);
                     }
                 }
+                addCanonicalEntries(blocks);
                 return blocks;
             } else { // last is highest
-                LinkedList<Block> blocks = new LinkedList<>();
                 Block lastBlock = getChainBlockByNumber(last);
 
                 if (lastBlock == null) { // assuming height was above best block
@@ -471,9 +670,23 @@ public class AionBlockStore {
                 // the block was not null
                 // or  it was higher than the best block and replaced with the best block
 
-                // building existing range
-                blocks.addFirst(lastBlock);
                 long newLast = lastBlock.getNumber();
+                if (newLast - first > 1) {
+                    List<Block> range = getCanonicalRange(first + 1, newLast - 1);
+                    if (range != null
+                            && Arrays.equals(range.get(0).getParentHash(), block.getHash())
+                            && Arrays.equals(range.get(range.size() - 1).getHash(), lastBlock.getParentHash())) {
+                        List<Block> blocks = new ArrayList<>(range.size() + 2);
+                        blocks.add(block);
+                        blocks.addAll(range);
+                        blocks.add(lastBlock);
+                        return blocks;
+                    }
+                }
+
+                // fall back to walking the parent hashes when the canonical index is incomplete
+                LinkedList<Block> blocks = new LinkedList<>();
+                blocks.addFirst(lastBlock);
                 for (long i = newLast - 1; i > first; i--) {
                     lastBlock = getBlockByHashWithInfo(lastBlock.getParentHash());
                     if (lastBlock == null) {
@@ -493,6 +706,7 @@ public class AionBlockStore {
 
                 // adding the initial block
                 blocks.addFirst(block);
+                addCanonicalEntries(blocks);
                 return blocks;
             }
         } finally {
@@ -521,6 +735,44 @@ public class AionBlockStore {
         }
     }
 
+    /**
+     * Get the block header by given block hash without reading the block body.
+     *
+     * @param hash the block hash
+     * @return the block header stored at the header database or {@code null} if it is not stored
+     */
+    public BlockHeader getHeaderByHash(byte[] hash) {
+        if (hash == null) {
+            return null;
+        }
+
+        lock.lock();
+
+        try {
+            return headers.get(hash);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the header of the main chain block at the given height without reading the block body.
+     *
+     * @param number the block height
+     * @return the main chain block header or {@code null} if there is no main chain block stored
+     *     at the given height
+     */
+    public BlockHeader getChainHeaderByNumber(long number) {
+        lock.lock();
+
+        try {
+            byte[] hash = getBlockHashByNumber(number);
+            return hash == null ? null : headers.get(hash);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Determines if the given block (referenced by hash and number) is already stored in the database.
      *
@@ -654,11 +906,11 @@ public class AionBlockStore {
         lock.lock();
 
         try {
-            List<Block> blocks = getListBlocksEndWith(hash, number);
-            List<byte[]> hashes = new ArrayList<>(blocks.size());
+            List<BlockHeader> headers = getListHeadersEndWithInternal(hash, number);
+            List<byte[]> hashes = new ArrayList<>(headers.size());
 
-            for (Block b : blocks) {
-                hashes.add(b.getHash());
+            for (BlockHeader h : headers) {
+                hashes.add(h.getHash());
             }
 
             return hashes;
@@ -675,19 +927,37 @@ public class AionBlockStore {
         lock.lock();
 
         try {
-            List<Block> blocks = getListBlocksEndWith(hash, qty);
-            List<BlockHeader> headers = new ArrayList<>(blocks.size());
-
-            for (Block b : blocks) {
-                headers.add(b.getHeader());
-            }
-
-            return headers;
+            return getListHeadersEndWithInternal(hash, qty);
         } finally {
             lock.unlock();
         }
     }
 
+    /** @implNote The method calling this method must handle the locking. */
+    private List<BlockHeader> getListHeadersEndWithInternal(byte[] hash, long qty) {
+        if (hash == null || qty < 0) {
+            return null;
+        }
+
+        BlockHeader header = this.headers.get(hash);
+
+        if (header == null) {
+            return new ArrayList<>();
+        }
+
+        List<BlockHeader> result = new ArrayList<>((int) qty);
+
+        for (int i = 0; i < qty; ++i) {
+            result.add(header);
+            header = this.headers.get(header.getParentHash());
+            if (header == null) {
+                break;
+            }
+        }
+
+        return result;
+    }
+
     public List<Block> getListBlocksEndWith(byte[] hash, long qty) {
         if (hash == null || qty < 0) {
             return null;
@@ -917,7 +1187,7 @@ public class AionBlockStore {
                 }
 
                 // remove the level
-                index.remove(currentLevel);
+                removeIndexLevel(currentLevel);
                 if (currentBatchSize >= TARGET_BATCH_SIZE) {
                     blocks.commit();
                     if (System.nanoTime() - time > TEN_SEC) {
@@ -1303,8 +1573,8 @@ public class AionBlockStore {
             long storedSize = index.size();
             if (maxNumber >= storedSize) {
                 // can't change size directly, so we do a put + delete the next level to reset it
-                index.set(maxNumber + 1, new ArrayList<>());
-                index.remove(maxNumber + 1);
+                setIndexLevel(maxNumber + 1, new ArrayList<>());
+                removeIndexLevel(maxNumber + 1);
                 log.info("Corrupted index size corrected from {} to {}.", storedSize, index.size());
             }
         } finally {
@@ -1379,7 +1649,7 @@ public class AionBlockStore {
                 blocks.commit();
 
                 // replace all the block info with empty list
-                index.set(block.getNumber(), Collections.emptyList());
+                setIndexLevel(block.getNumber(), Collections.emptyList());
             }
         } finally {
             lock.unlock();
@@ -1426,6 +1696,42 @@ public class AionBlockStore {
         }
     }
 
+    /**
+     * Retrieves the headers of three generations of blocks without reading the block bodies.
+     * <p>
+     * Always returns a 3-element array. If the headers cannot be retrieved the array will contain null values.
+     * BlockHeader[0] is the parent header and has the given hash. BlockHeader[1] is the grandparent header.
+     * BlockHeader[2] is the great grandparent header.
+     *
+     * @param hash the hash of the parent block
+     * @return the retrieved three generation headers
+     */
+    public final BlockHeader[] getThreeGenerationHeadersByHash(byte[] hash) {
+        BlockHeader[] headerFamily = new BlockHeader[] { null, null, null};
+        if (hash == null) {
+            return headerFamily;
+        }
+
+        lock.lock();
+
+        try {
+            BlockHeader header = headers.get(hash);
+            if (header != null) {
+                headerFamily[0] = header;
+
+                BlockHeader parentHeader = headers.get(header.getParentHash());
+                if (parentHeader != null) {
+                    headerFamily[1] = parentHeader;
+                    headerFamily[2] = headers.get(parentHeader.getParentHash());
+                }
+            }
+
+            return headerFamily;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Retrieves two generation blocks with unity protocol info.
      * <p>
@@ -1611,7 +1917,119 @@ public class AionBlockStore {
     /** @implNote The method calling this method must handle the locking. */
     private void setBlockInfoForLevel(long level, List<BlockInfo> infos) {
         // locks acquired by calling method
+        setIndexLevel(level, infos);
+    }
+
+    /**
+     * Stores the block information for the given level and updates the canonical index entry to
+     * the main chain block at that level.
+     *
+     * @implNote The method calling this method must handle the locking.
+     */
+    private void setIndexLevel(long level, List<BlockInfo> infos) {
         index.set(level, infos);
+
+        if (infos != null) {
+            for (BlockInfo info : infos) {
+                if (info.isMainChain()) {
+                    indexDatabase.put(
+                            canonicalKey(level),
+                            encodeCanonicalEntry(info.getHash(), info.getTotalDifficulty()));
+                    return;
+                }
+            }
+        }
+        indexDatabase.delete(canonicalKey(level));
+    }
+
+    /** @implNote The method calling this method must handle the locking. */
+    private void removeIndexLevel(long level) {
+        index.remove(level);
+        indexDatabase.delete(canonicalKey(level));
+    }
+
+    private static byte[] canonicalKey(long number) {
+        byte[] key = new byte[1 + Long.BYTES];
+        key[0] = CANONICAL_PREFIX;
+        System.arraycopy(ByteUtil.longToBytes(number), 0, key, 1, Long.BYTES);
+        return key;
+    }
+
+    private static byte[] encodeCanonicalEntry(byte[] hash, BigInteger totalDifficulty) {
+        byte[] td = totalDifficulty.toByteArray();
+        byte[] entry = new byte[hash.length + td.length];
+        System.arraycopy(hash, 0, entry, 0, hash.length);
+        System.arraycopy(td, 0, entry, hash.length, td.length);
+        return entry;
+    }
+
+    /**
+     * Reads the main chain blocks with heights from {@code low} to {@code high} (inclusive) using
+     * the canonical index.
+     *
+     * @return the blocks in ascending order of their height or {@code null} when the canonical
+     *     index does not have a consistent entry for every height in the range
+     * @implNote The method calling this method must handle the locking.
+     */
+    private List<Block> getCanonicalRange(long low, long high) {
+        long count = high - low + 1;
+        if (count <= 0 || count > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        List<Map.Entry<byte[], byte[]>> entries =
+                indexDatabase.getRange(canonicalKey(low), canonicalKey(high + 1), (int) count);
+        if (entries.size() != count) {
+            // the index was not populated for part of the range
+            return null;
+        }
+
+        List<Block> range = new ArrayList<>((int) count);
+        byte[] parentHash = null;
+        long number = low;
+        for (Map.Entry<byte[], byte[]> entry : entries) {
+            byte[] value = entry.getValue();
+            if (!Arrays.equals(entry.getKey(), canonicalKey(number)) || value.length <= HASH_LENGTH) {
+                return null;
+            }
+
+            byte[] hash = Arrays.copyOfRange(value, 0, HASH_LENGTH);
+            Block block = blocks.get(hash);
+            if (block == null
+                    || block.getNumber() != number
+                    || (parentHash != null && !Arrays.equals(block.getParentHash(), parentHash))) {
+                return null;
+            }
+
+            block.setTotalDifficulty(new BigInteger(1, Arrays.copyOfRange(value, HASH_LENGTH, value.length)));
+            block.setMainChain();
+            range.add(block);
+            parentHash = hash;
+            number++;
+        }
+        return range;
+    }
+
+    /**
+     * Adds the canonical index entries for main chain blocks that were retrieved by walking the
+     * parent hashes, so that databases created before the canonical index existed are populated
+     * gradually by the range requests.
+     *
+     * @implNote The method calling this method must handle the locking.
+     */
+    private void addCanonicalEntries(List<Block> range) {
+        boolean updated = false;
+        for (Block block : range) {
+            if (block.isMainChain() && block.getTotalDifficulty() != null) {
+                indexDatabase.putToBatch(
+                        canonicalKey(block.getNumber()),
+                        encodeCanonicalEntry(block.getHash(), block.getTotalDifficulty()));
+                updated = true;
+            }
+        }
+        if (updated) {
+            indexDatabase.commit();
+        }
     }
 
     /**
@@ -1840,7 +2258,7 @@ public class AionBlockStore {
                 }
                 blocks.commit();
 
-                index.remove(level--);
+                removeIndexLevel(level--);
             }
         } finally {
             lock.unlock();
@@ -8,7 +8,11 @@ import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.aion.log.AionLoggerFactory;
@@ -42,13 +46,133 @@ public final class AionRepositoryCache implements RepositoryCache<AccountState>
     /** local transformed code cache */
     private final Map<AionAddress, TransformedCodeInfo> cachedTransformedCode;
 
+    /** addresses read from the tracked repository, {@code null} when accesses are not recorded */
+    private final Set<AionAddress> accessedAddresses;
+
+    /** account states and contract details loaded from the tracked repository ahead of use */
+    private final Map<AionAddress, Pair<AccountState, ContractDetails>> prefetched = new ConcurrentHashMap<>();
+    private final LongAdder prefetchHits = new LongAdder();
+
     private final Lock lock = new ReentrantLock();
 
     public AionRepositoryCache(final Repository trackedRepository) {
+        this(trackedRepository, false);
+    }
+
+    /**
+     * @param trackedRepository the repository being tracked
+     * @param recordAccesses whether to record the addresses read from the tracked repository by
+     *     this cache and its children
+     */
+    public AionRepositoryCache(final Repository trackedRepository, boolean recordAccesses) {
         this.repository = trackedRepository;
         this.cachedAccounts = new HashMap<>();
         this.cachedDetails = new HashMap<>();
         this.cachedTransformedCode = new HashMap<>();
+        // children record accesses without holding the lock of this cache
+        this.accessedAddresses = recordAccesses ? ConcurrentHashMap.newKeySet() : null;
+    }
+
+    private void recordAccess(AionAddress address) {
+        if (accessedAddresses != null) {
+            accessedAddresses.add(address);
+        }
+    }
+
+    /**
+     * Returns the addresses whose state was read from the tracked repository by this cache or by
+     * any of its children. Available only when the cache was created with access recording.
+     *
+     * @return the addresses read from the tracked repository
+     */
+    public Set<AionAddress> getAccessedAddresses() {
+        if (accessedAddresses == null) {
+            throw new IllegalStateException("Accesses are not recorded by this cache.");
+        }
+        return new HashSet<>(accessedAddresses);
+    }
+
+    /**
+     * Returns the addresses of the accounts, contract details and transformed code modified in
+     * this cache, including the changes flushed into it by its children.
+     *
+     * @return the addresses modified in this cache
+     */
+    public Set<AionAddress> getModifiedAddresses() {
+        lock.lock();
+        try {
+            Set<AionAddress> modified = new HashSet<>(cachedTransformedCode.keySet());
+            for (Map.Entry<AionAddress, AccountState> entry : cachedAccounts.entrySet()) {
+                AccountState account = entry.getValue();
+                if (account != null && (account.isDirty() || account.isDeleted())) {
+                    modified.add(entry.getKey());
+                }
+            }
+            for (Map.Entry<AionAddress, InnerContractDetails> entry : cachedDetails.entrySet()) {
+                InnerContractDetails details = entry.getValue();
+                if (details != null && (details.isDirty() || details.isDeleted())) {
+                    modified.add(entry.getKey());
+                }
+            }
+            return modified;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards the cached state of all the accounts except the given ones, so that the other
+     * accounts are loaded again after the tracked repository was updated.
+     *
+     * @param addresses the accounts whose cached state remains valid
+     */
+    public void retainAccounts(Set<AionAddress> addresses) {
+        lock.lock();
+        try {
+            cachedAccounts.keySet().retainAll(addresses);
+            cachedDetails.keySet().retainAll(addresses);
+            cachedTransformedCode.keySet().retainAll(addresses);
+            prefetched.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return {@code true} if nothing is cached locally, {@code false} otherwise */
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return cachedAccounts.isEmpty() && cachedDetails.isEmpty() && cachedTransformedCode.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loads the account state and contract details for the given address from the tracked
+     * repository, so that the first access to the account does not wait for the database. The
+     * loaded data is used at most once and is discarded when the account is flushed to the
+     * tracked repository. May be called concurrently for different addresses.
+     *
+     * @param address the address of the account to load
+     * @throws IllegalStateException if the tracked repository is itself a cache
+     */
+    public void prefetch(AionAddress address) {
+        if (repository instanceof AionRepositoryCache) {
+            throw new IllegalStateException("Prefetching is only supported for the top level cache.");
+        }
+        if (prefetched.containsKey(address)) {
+            return;
+        }
+
+        AccountState account = repository.getAccountState(address);
+        ContractDetails details = account == null ? null : repository.getContractDetails(address);
+        prefetched.putIfAbsent(address, Pair.of(account, details));
+    }
+
+    /** @return the number of accounts whose first access was served by a {@link #prefetch} */
+    public long getPrefetchHitCount() {
+        return prefetchHits.sum();
     }
 
     @Override
@@ -134,6 +258,7 @@ public final class AionRepositoryCache implements RepositoryCache<AccountState>
                 return !accountState.isDeleted();
             } else {
                 // check repository when not cached
+                recordAccess(address);
                 return repository.hasAccountState(address);
             }
         } finally {
@@ -174,6 +299,7 @@ public final class AionRepositoryCache implements RepositoryCache<AccountState>
 
             if (contractDetails == null) {
                 // ask repository when not cached
+                recordAccess(address);
                 return repository.hasContractDetails(address);
             } else {
                 // TODO: may also need to check if the details are empty
@@ -193,6 +319,9 @@ public final class AionRepositoryCache implements RepositoryCache<AccountState>
      *     ContractDetails} as they are known to the closest ancestor repository
      */
     private Pair<AccountState, InnerContractDetails> getAccountStateFromParent(AionAddress address) {
+        // also called by the children of this cache when the account is not cached by them
+        recordAccess(address);
+
         if (repository instanceof AionRepositoryCache) {
             AionRepositoryCache parent = (AionRepositoryCache) repository;
 
@@ -207,11 +336,22 @@ public final class AionRepositoryCache implements RepositoryCache<AccountState>
                 return Pair.of(new AccountState(account), new InnerContractDetails(details));
             }
         } else {
-            AccountState account = repository.getAccountState(address);
+            Pair<AccountState, ContractDetails> loaded = prefetched.remove(address);
+            AccountState account;
+            ContractDetails storedDetails;
+            if (loaded != null) {
+                prefetchHits.increment();
+                account = loaded.getLeft();
+                storedDetails = loaded.getRight();
+            } else {
+                account = repository.getAccountState(address);
+                storedDetails = account == null ? null : repository.getContractDetails(address);
+            }
+
             InnerContractDetails details;
             if (account != null) {
                 account = new AccountState(account);
-                details = new InnerContractDetails(repository.getContractDetails(address));
+                details = new InnerContractDetails(storedDetails);
             } else {
                 account = new AccountState();
                 details = new InnerContractDetails(null);
@@ -332,6 +472,9 @@ public final class AionRepositoryCache implements RepositoryCache<AccountState>
                 transformedCode = transformedCodeInfo.getTransformedCode(ByteArrayWrapper.wrap(codeHash), avmVersion);
             }
             // If we don't find it in the cache, go to the underlying repo
+            if (transformedCode == null) {
+                recordAccess(address);
+            }
             return transformedCode != null ? transformedCode : repository.getTransformedCode(address, codeHash, avmVersion);
         }
         finally {
@@ -484,6 +627,10 @@ public final class AionRepositoryCache implements RepositoryCache<AccountState>
     public void flushTo(Repository other, boolean clearStateAfterFlush) {
         lock.lock();
         try {
+            // the prefetched state of the flushed accounts becomes outdated
+            prefetched.keySet().removeAll(cachedAccounts.keySet());
+            prefetched.keySet().removeAll(cachedDetails.keySet());
+
             // determine which accounts should get stored
             HashMap<AionAddress, AccountState> cleanedCacheAccounts = new HashMap<>();
             for (Map.Entry<AionAddress, AccountState> entry : cachedAccounts.entrySet()) {
@@ -608,6 +755,7 @@ public final class AionRepositoryCache implements RepositoryCache<AccountState>
     }
 
     public InternalVmType getVMUsed(AionAddress contract, byte[] codeHash) {
+        recordAccess(contract);
         return repository.getVMUsed(contract, codeHash);
     }
 
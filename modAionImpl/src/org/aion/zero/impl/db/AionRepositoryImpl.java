@@ -5,13 +5,19 @@ import static org.aion.crypto.HashUtil.h256;
 import static org.aion.util.bytes.ByteUtil.EMPTY_BYTE_ARRAY;
 import static org.aion.util.conversions.Hex.toHexString;
 import static org.aion.zero.impl.config.CfgDb.Names.BLOCK;
+import static org.aion.zero.impl.config.CfgDb.Names.COLUMN_FAMILIES;
 import static org.aion.zero.impl.config.CfgDb.Names.CONTRACT_INDEX;
 import static org.aion.zero.impl.config.CfgDb.Names.CONTRACT_PERFORM_CODE;
 import static org.aion.zero.impl.config.CfgDb.Names.DEFAULT;
 import static org.aion.zero.impl.config.CfgDb.Names.DETAILS;
+import static org.aion.zero.impl.config.CfgDb.Names.FAST_SYNC;
+import static org.aion.zero.impl.config.CfgDb.Names.FLAT_STATE;
 import static org.aion.zero.impl.config.CfgDb.Names.GRAPH;
+import static org.aion.zero.impl.config.CfgDb.Names.HEADER;
 import static org.aion.zero.impl.config.CfgDb.Names.INDEX;
+import static org.aion.zero.impl.config.CfgDb.Names.LOG_INDEX;
 import static org.aion.zero.impl.config.CfgDb.Names.PENDING_BLOCK;
+import static org.aion.zero.impl.config.CfgDb.Names.PRUNE_JOURNAL;
 import static org.aion.zero.impl.config.CfgDb.Names.STATE;
 import static org.aion.zero.impl.config.CfgDb.Names.STATE_ARCHIVE;
 import static org.aion.zero.impl.config.CfgDb.Names.STORAGE;
@@ -36,6 +42,7 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -43,12 +50,16 @@ import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
 import org.aion.base.AionTransaction;
+import org.aion.base.AionTxReceipt;
 import org.aion.base.ConstantUtil;
 import org.aion.base.AccountState;
 import org.aion.db.impl.ByteArrayKeyValueDatabase;
 import org.aion.db.impl.ByteArrayKeyValueStore;
 import org.aion.db.impl.DBVendor;
+import org.aion.db.impl.rocksdb.RocksDBColumnFamilies;
+import org.aion.db.impl.rocksdb.RocksDBProfile;
 import org.aion.db.store.ArchivedDataSource;
 import org.aion.db.store.JournalPruneDataSource;
 import org.aion.db.store.ObjectStore;
@@ -94,11 +105,19 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
     private static final Logger LOG = AionLoggerFactory.getLogger(LogEnum.DB.name());
     private static final Logger LOGGEN = AionLoggerFactory.getLogger(LogEnum.GEN.name());
 
+    private static final long UNKNOWN_PRUNED_BLOCK = Long.MIN_VALUE;
+    /** Maximum number of blocks left unpruned by a previous run that are pruned with each block. */
+    private static final int MAX_PRUNE_CATCH_UP = 16;
+
     // Read Write Lock
     private ReadWriteLock rwLock = new ReentrantReadWriteLock();
 
     // Databases used by the repository.
     private Collection<ByteArrayKeyValueDatabase> databaseGroup;
+    // the RocksDB instance holding the databases as column families, null when not used
+    private RocksDBColumnFamilies columnFamilies;
+    // the state root committed into the open atomic batch, published once the batch is written
+    private byte[] atomicCommitRoot = null;
     @VisibleForTesting ByteArrayKeyValueDatabase transactionDatabase;
     @VisibleForTesting ByteArrayKeyValueDatabase contractIndexDatabase;
     @VisibleForTesting ByteArrayKeyValueDatabase detailsDatabase;
@@ -106,11 +125,16 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
     @VisibleForTesting ByteArrayKeyValueDatabase graphDatabase;
     @VisibleForTesting ByteArrayKeyValueDatabase indexDatabase;
     @VisibleForTesting ByteArrayKeyValueDatabase blockDatabase;
+    @VisibleForTesting ByteArrayKeyValueDatabase headerDatabase;
+    @VisibleForTesting ByteArrayKeyValueDatabase fastSyncDatabase;
     @VisibleForTesting ByteArrayKeyValueDatabase stateDatabase;
     @VisibleForTesting ByteArrayKeyValueDatabase stateArchiveDatabase;
     @VisibleForTesting ByteArrayKeyValueDatabase txPoolDatabase;
     @VisibleForTesting ByteArrayKeyValueDatabase pendingTxCacheDatabase;
     @VisibleForTesting ByteArrayKeyValueDatabase contractPerformCodeDatabase;
+    @VisibleForTesting ByteArrayKeyValueDatabase flatStateDatabase;
+    @VisibleForTesting ByteArrayKeyValueDatabase logIndexDatabase;
+    @VisibleForTesting ByteArrayKeyValueDatabase pruneJournalDatabase;
 
     // Current block store.
     private AionBlockStore blockStore;
@@ -123,10 +147,21 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
     private int pruneBlockCount;
     private long archiveRate;
     private boolean pruneEnabled;
+    // the highest block number pruned, unknown until the first block is pruned after startup
+    private long lastPrunedBlockNumber = UNKNOWN_PRUNED_BLOCK;
+    private boolean parallelTrieHashing;
 
     private DetailsDataStore detailsDS;
     private TransactionStore transactionStore;
 
+    // flat copy of the state at the head of the chain, null when disabled
+    private FlatStateStore flatState;
+    // stages the changes of snapshots, which must not modify the flat state of the main repository
+    private FlatStateStore.Branch flatStateBranch;
+
+    // blocks by log address and topic, null when disabled
+    private LogIndexStore logIndex;
+
     // pending block store
     private PendingBlockStore pendingStore;
 
@@ -138,10 +173,14 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
     // TODO: include in the repository config after the FVM is decoupled or remove RepositoryConfig and pass individual parameters
     private int blockCacheSize;
+    private int headerCacheSize;
 
     // Flag to see if the current instance is a snapshot.
     private boolean isSnapshot = false;
 
+    // Read-only view of the state at the best block, replaced when a new best block is published.
+    private volatile StateSnapshot committedState;
+
     /**
      * used by getSnapShotTo
      *
@@ -150,8 +189,9 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
      */
     private AionRepositoryImpl() {}
 
-    private AionRepositoryImpl(RepositoryConfig repoConfig, int blockCacheSize) {
+    private AionRepositoryImpl(RepositoryConfig repoConfig, int blockCacheSize, int headerCacheSize) {
         this.blockCacheSize = blockCacheSize;
+        this.headerCacheSize = headerCacheSize;
         init(repoConfig);
     }
 
@@ -160,29 +200,46 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
     }
 
     public static AionRepositoryImpl createForTesting(RepositoryConfig repoConfig) {
-        return new AionRepositoryImpl(repoConfig, 0);
+        return new AionRepositoryImpl(repoConfig, 0, 0);
     }
 
     private void init(RepositoryConfig cfg) {
         try {
             initializeDatabasesAndCaches(cfg);
 
+            // Read the state trie hashing mode directly from config.
+            parallelTrieHashing = Boolean.valueOf(cfg.getDatabaseConfig(DEFAULT).getProperty(Props.PARALLEL_TRIE_HASHING));
+
             // Setup the cache for the contract details data source.
             detailsDS = new DetailsDataStore(detailsDatabase, storageDatabase, graphDatabase, LOG);
 
+            // Setup the flat state when enabled in the config.
+            if (Boolean.valueOf(cfg.getDatabaseConfig(DEFAULT).getProperty(Props.FLAT_STATE))) {
+                setupFlatState(getDatabaseConfig(cfg, FLAT_STATE, cfg.getDbPath()));
+            }
+
             // Setup the cache for transaction data source.
             this.transactionStore =
                     new TransactionStore(
                             transactionDatabase, AionTransactionStoreSerializer.serializer);
 
             // Setup block store. Read integrity check flag (set to perform a block store integrity check at startup) directly from config.
-            blockStore = new AionBlockStore(indexDatabase, blockDatabase, Boolean.valueOf(cfg.getDatabaseConfig(DEFAULT).getProperty(Props.CHECK_INTEGRITY)), blockCacheSize);
+            blockStore = new AionBlockStore(indexDatabase, headerDatabase, blockDatabase, Boolean.valueOf(cfg.getDatabaseConfig(DEFAULT).getProperty(Props.CHECK_INTEGRITY)), headerCacheSize, blockCacheSize);
+
+            // Setup the log index when enabled in the config.
+            if (Boolean.valueOf(cfg.getDatabaseConfig(DEFAULT).getProperty(Props.LOG_INDEX))) {
+                setupLogIndex(getDatabaseConfig(cfg, LOG_INDEX, cfg.getDbPath()));
+            }
 
             pendingStore = new PendingBlockStore(getDatabaseConfig(cfg, PENDING_BLOCK, cfg.getDbPath()));
             this.contractInfoSource = Stores.newObjectStoreWithCache(contractIndexDatabase, ContractInformation.RLP_SERIALIZER, 10, true);
             this.transformedCodeSource = Stores.newObjectStore(contractPerformCodeDatabase, TransformedCodeSerializer.RLP_SERIALIZER);
+            indexHashedContractAddresses();
 
             // State and pruning config.
+            if (cfg.getPruneConfig().isEnabled()) {
+                setupPruneJournal(getDatabaseConfig(cfg, PRUNE_JOURNAL, cfg.getDbPath()));
+            }
             if (cfg.getPruneConfig().isArchived()) {
                 setupSpreadPruning(cfg.getPruneConfig().getCurrentCount(), cfg.getPruneConfig().getArchiveRate(), getDatabaseConfig(cfg, STATE_ARCHIVE, cfg.getDbPath()));
             } else if (cfg.getPruneConfig().isEnabled()) {
@@ -205,6 +262,70 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         }
     }
 
+    @VisibleForTesting
+    void setupFlatState(Properties dbConfig) {
+        flatStateDatabase = openDatabase(dbConfig);
+        if (flatStateDatabase == null || flatStateDatabase.isClosed()) {
+            throw newException(FLAT_STATE, dbConfig);
+        }
+        databaseGroup.add(flatStateDatabase);
+
+        flatState = new FlatStateStore(flatStateDatabase);
+        if (!flatState.isUsable()) {
+            if (stateDatabase.isEmpty()) {
+                // nothing to copy for a new database
+                flatState.initialize(ConstantUtil.EMPTY_TRIE_HASH);
+            } else {
+                LOGGEN.warn("The flat state is not initialized. Run the kernel with --flat-state rebuild to enable fast state reads.");
+            }
+        }
+        LOGGEN.info("Flat state ENABLED.");
+    }
+
+    @VisibleForTesting
+    void setupLogIndex(Properties dbConfig) {
+        logIndexDatabase = openDatabase(dbConfig);
+        if (logIndexDatabase == null || logIndexDatabase.isClosed()) {
+            throw newException(LOG_INDEX, dbConfig);
+        }
+        databaseGroup.add(logIndexDatabase);
+
+        logIndex = new LogIndexStore(logIndexDatabase);
+        logIndex.open(blockStore.getMaxNumber());
+        LOGGEN.info("Log index ENABLED.");
+    }
+
+    @VisibleForTesting
+    void setupPruneJournal(Properties dbConfig) {
+        pruneJournalDatabase = openDatabase(dbConfig);
+        if (pruneJournalDatabase == null || pruneJournalDatabase.isClosed()) {
+            throw newException(PRUNE_JOURNAL, dbConfig);
+        }
+        databaseGroup.add(pruneJournalDatabase);
+    }
+
+    /**
+     * Creates the pruning data source for the state. When the journal database is available, the
+     * journal is recovered from it and the blocks are pruned in the background. Otherwise the
+     * journal is kept in memory.
+     */
+    private JournalPruneDataSource createStatePruneSource(ByteArrayKeyValueStore src) {
+        if (pruneJournalDatabase == null) {
+            return new JournalPruneDataSource(src, LOG);
+        }
+
+        JournalPruneDataSource pruneSource = new JournalPruneDataSource(src, pruneJournalDatabase, LOG);
+        long newest = pruneSource.getNewestBlockNumber();
+        if (newest >= 0 && blockStore != null && newest < blockStore.getMaxNumber()) {
+            // blocks were imported without pruning, so the deletes in the journal are not safe to apply
+            LOGGEN.warn("The pruning journal ends at block {} before the best block {} and will be discarded.", newest, blockStore.getMaxNumber());
+            pruneSource.clearJournal();
+        }
+        pruneSource.setBackgroundPruning(true);
+        lastPrunedBlockNumber = UNKNOWN_PRUNED_BLOCK;
+        return pruneSource;
+    }
+
     @VisibleForTesting
     public void setupSpreadPruning(int blockCount, int rate, Properties dbConfig) {
         this.pruneEnabled = true;
@@ -213,11 +334,11 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         this.archiveRate = rate;
 
         // using state config for state_archive
-        stateArchiveDatabase = connectAndOpen(dbConfig, LOG);
+        stateArchiveDatabase = openDatabase(dbConfig);
         databaseGroup.add(stateArchiveDatabase);
 
         stateWithArchive = new ArchivedDataSource(stateDatabase, stateArchiveDatabase);
-        stateDSPrune = new JournalPruneDataSource(stateWithArchive, LOG);
+        stateDSPrune = createStatePruneSource(stateWithArchive);
 
         stateDSPrune.setPruneEnabled(pruneEnabled);
         worldState = createStateTrie();
@@ -233,7 +354,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
         stateArchiveDatabase = null;
         stateWithArchive = null;
-        stateDSPrune = new JournalPruneDataSource(stateDatabase, LOG);
+        stateDSPrune = createStatePruneSource(stateDatabase);
 
         stateDSPrune.setPruneEnabled(pruneEnabled);
         worldState = createStateTrie();
@@ -271,9 +392,16 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         Properties sharedProps;
         databaseGroup = new ArrayList<>();
 
+        Properties defaultProps = cfg.getDatabaseConfig(DEFAULT);
+        if (vendor.equals(DBVendor.ROCKSDB) && Boolean.valueOf(defaultProps.getProperty(Props.COLUMN_FAMILIES))) {
+            int compactionRateLimit = Integer.parseInt(defaultProps.getProperty(Props.COMPACTION_RATE_LIMIT, "0"));
+            columnFamilies = RocksDBColumnFamilies.withDefaults(new File(dbPath, COLUMN_FAMILIES).getPath(), LOG, Boolean.valueOf(defaultProps.getProperty(Props.ENABLE_DB_COMPRESSION)), compactionRateLimit);
+            LOGGEN.info("RocksDB column families ENABLED.");
+        }
+
         // getting state specific properties
         sharedProps = getDatabaseConfig(cfg, STATE, dbPath);
-        this.stateDatabase = connectAndOpen(sharedProps, LOG);
+        this.stateDatabase = openDatabase(sharedProps);
         if (stateDatabase == null || stateDatabase.isClosed()) {
             throw newException(STATE, sharedProps);
         }
@@ -281,7 +409,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
         // getting transaction specific properties
         sharedProps = getDatabaseConfig(cfg, TRANSACTION, dbPath);
-        this.transactionDatabase = connectAndOpen(sharedProps, LOG);
+        this.transactionDatabase = openDatabase(sharedProps);
         if (transactionDatabase == null || transactionDatabase.isClosed()) {
             throw newException(TRANSACTION, sharedProps);
         }
@@ -290,7 +418,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         // getting contract index specific properties
         // this db will be used only for fast sync
         sharedProps = getDatabaseConfig(cfg, CONTRACT_INDEX, dbPath);
-        this.contractIndexDatabase = connectAndOpen(sharedProps, LOG);
+        this.contractIndexDatabase = openDatabase(sharedProps);
         if (contractIndexDatabase == null || contractIndexDatabase.isClosed()) {
             throw newException(CONTRACT_INDEX, sharedProps);
         }
@@ -298,7 +426,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
         // getting contract perform code specific properties
         sharedProps = getDatabaseConfig(cfg, CONTRACT_PERFORM_CODE, dbPath);
-        this.contractPerformCodeDatabase = connectAndOpen(sharedProps, LOG);
+        this.contractPerformCodeDatabase = openDatabase(sharedProps);
         if (contractPerformCodeDatabase == null || contractPerformCodeDatabase.isClosed()) {
             throw newException(CONTRACT_PERFORM_CODE, sharedProps);
         }
@@ -306,7 +434,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
         // getting details specific properties
         sharedProps = getDatabaseConfig(cfg, DETAILS, dbPath);
-        this.detailsDatabase = connectAndOpen(sharedProps, LOG);
+        this.detailsDatabase = openDatabase(sharedProps);
         if (detailsDatabase == null || detailsDatabase.isClosed()) {
             throw newException(DETAILS, sharedProps);
         }
@@ -314,7 +442,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
         // getting storage specific properties
         sharedProps = getDatabaseConfig(cfg, STORAGE, dbPath);
-        this.storageDatabase = connectAndOpen(sharedProps, LOG);
+        this.storageDatabase = openDatabase(sharedProps);
         if (storageDatabase == null || storageDatabase.isClosed()) {
             throw newException(STORAGE, sharedProps);
         }
@@ -322,7 +450,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
         // getting graph specific properties
         sharedProps = getDatabaseConfig(cfg, GRAPH, dbPath);
-        this.graphDatabase = connectAndOpen(sharedProps, LOG);
+        this.graphDatabase = openDatabase(sharedProps);
         if (graphDatabase == null || graphDatabase.isClosed()) {
             throw newException(GRAPH, sharedProps);
         }
@@ -330,7 +458,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
         // getting index specific properties
         sharedProps = getDatabaseConfig(cfg, INDEX, dbPath);
-        this.indexDatabase = connectAndOpen(sharedProps, LOG);
+        this.indexDatabase = openDatabase(sharedProps);
         if (indexDatabase == null || indexDatabase.isClosed()) {
             throw newException(INDEX, sharedProps);
         }
@@ -338,15 +466,31 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
         // getting block specific properties
         sharedProps = getDatabaseConfig(cfg, BLOCK, dbPath);
-        this.blockDatabase = connectAndOpen(sharedProps, LOG);
+        this.blockDatabase = openDatabase(sharedProps);
         if (blockDatabase == null || blockDatabase.isClosed()) {
             throw newException(BLOCK, sharedProps);
         }
         databaseGroup.add(blockDatabase);
 
+        // getting header specific properties
+        sharedProps = getDatabaseConfig(cfg, HEADER, dbPath);
+        this.headerDatabase = openDatabase(sharedProps);
+        if (headerDatabase == null || headerDatabase.isClosed()) {
+            throw newException(HEADER, sharedProps);
+        }
+        databaseGroup.add(headerDatabase);
+
+        // getting fast sync specific properties
+        sharedProps = getDatabaseConfig(cfg, FAST_SYNC, dbPath);
+        this.fastSyncDatabase = openDatabase(sharedProps);
+        if (fastSyncDatabase == null || fastSyncDatabase.isClosed()) {
+            throw newException(FAST_SYNC, sharedProps);
+        }
+        databaseGroup.add(fastSyncDatabase);
+
         // getting pending tx pool specific properties
         sharedProps = getDatabaseConfig(cfg, TX_POOL, dbPath);
-        this.txPoolDatabase = connectAndOpen(sharedProps, LOG);
+        this.txPoolDatabase = openDatabase(sharedProps);
         if (txPoolDatabase == null || txPoolDatabase.isClosed()) {
             throw newException(TX_POOL, sharedProps);
         }
@@ -354,21 +498,74 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
         // getting pending tx cache specific properties
         sharedProps = getDatabaseConfig(cfg, TX_CACHE, dbPath);
-        this.pendingTxCacheDatabase = connectAndOpen(sharedProps, LOG);
+        this.pendingTxCacheDatabase = openDatabase(sharedProps);
         if (pendingTxCacheDatabase == null || pendingTxCacheDatabase.isClosed()) {
             throw newException(TX_CACHE, sharedProps);
         }
         databaseGroup.add(pendingTxCacheDatabase);
     }
 
+    /**
+     * Opens the database with the given properties, as a column family of the shared RocksDB
+     * instance when column families are enabled.
+     */
+    private ByteArrayKeyValueDatabase openDatabase(Properties props) {
+        if (columnFamilies == null) {
+            return connectAndOpen(props, LOG);
+        }
+
+        RocksDBProfile profile = RocksDBProfile.fromValue(props.getProperty(Props.ROCKSDB_PROFILE));
+        ByteArrayKeyValueDatabase db = columnFamilies.getDatabase(props.getProperty(Props.DB_NAME), profile);
+        db.open();
+        return db;
+    }
+
     private Properties getDatabaseConfig(RepositoryConfig cfg, String dbName, String dbPath) {
         Properties prop = cfg.getDatabaseConfig(dbName);
         prop.setProperty(Props.ENABLE_LOCKING, "false");
         prop.setProperty(Props.DB_PATH, dbPath);
         prop.setProperty(Props.DB_NAME, dbName);
+
+        // the RocksDB tuning options are global
+        Properties defaultProps = cfg.getDatabaseConfig(DEFAULT);
+        if (prop.getProperty(Props.COMPACTION_RATE_LIMIT) == null && defaultProps.getProperty(Props.COMPACTION_RATE_LIMIT) != null) {
+            prop.setProperty(Props.COMPACTION_RATE_LIMIT, defaultProps.getProperty(Props.COMPACTION_RATE_LIMIT));
+        }
+        if (Boolean.valueOf(defaultProps.getProperty(Props.ROCKSDB_PROFILES)) && prop.getProperty(Props.ROCKSDB_PROFILE) == null) {
+            prop.setProperty(Props.ROCKSDB_PROFILE, getRocksDbProfile(dbName).toValue());
+        }
         return prop;
     }
 
+    /** @return the RocksDB table settings matching the access pattern of the given database */
+    @VisibleForTesting
+    static RocksDBProfile getRocksDbProfile(String dbName) {
+        switch (dbName) {
+            case STATE:
+            case STATE_ARCHIVE:
+            case STORAGE:
+            case DETAILS:
+            case GRAPH:
+            case FLAT_STATE:
+            case LOG_INDEX:
+            case TRANSACTION:
+            case CONTRACT_INDEX:
+            case CONTRACT_PERFORM_CODE:
+            case HEADER:
+                // random lookups by hash or address
+                return RocksDBProfile.POINT_LOOKUP;
+            case INDEX:
+            case PRUNE_JOURNAL:
+                // keyed by block number
+                return RocksDBProfile.RANGE_SCAN;
+            case BLOCK:
+            case PENDING_BLOCK:
+                return RocksDBProfile.LARGE_VALUES;
+            default:
+                return RocksDBProfile.DEFAULT;
+        }
+    }
+
     private IllegalStateException newException(String dbName, Properties props) {
         // A shutdown is required if the databases cannot be initialized.
         return new IllegalStateException(
@@ -388,7 +585,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
     }
 
     private Trie createStateTrie() {
-        return new SecureTrie(stateDSPrune).withPruningEnabled(pruneEnabled);
+        return new SecureTrie(stateDSPrune).withPruningEnabled(pruneEnabled).withParallelHashingEnabled(parallelTrieHashing);
     }
 
     @Override
@@ -399,6 +596,9 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         rwLock.writeLock().lock();
 
         try {
+            // account updates are applied together to allow building the trie in parallel
+            Map<ByteArrayWrapper, byte[]> accountUpdates = new LinkedHashMap<>();
+
             for (Map.Entry<AionAddress, AccountState> entry : stateCache.entrySet()) {
                 AionAddress address = entry.getKey();
                 AccountState accountState = entry.getValue();
@@ -408,6 +608,9 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
                     // TODO-A: batch operations here
                     try {
                         worldState.delete(address.toByteArray());
+                        if (flatState != null) {
+                            stageAccountInFlatState(address, null);
+                        }
                     } catch (Exception e) {
                         LOG.error("key deleted exception [{}]", e.toString());
                     }
@@ -424,7 +627,10 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
                         // TODO: issue above will be solved with the conversion to a
                         // ContractState class
                         if (accountState.isDirty()) {
-                            updateAccountState(address, accountState);
+                            accountUpdates.put(ByteArrayWrapper.wrap(address.toByteArray()), accountState.getEncoded());
+                            if (flatState != null) {
+                                stageAccountInFlatState(address, accountState.getEncoded());
+                            }
 
                             if (LOG.isTraceEnabled()) {
                                 LOG.trace(
@@ -452,7 +658,10 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
                     accountState.setStateRoot(parentDetails.getStorageHash());
 
-                    updateAccountState(address, accountState);
+                    accountUpdates.put(ByteArrayWrapper.wrap(address.toByteArray()), accountState.getEncoded());
+                    if (flatState != null) {
+                        stageContractInFlatState(address, accountState, contractDetailsCache);
+                    }
 
                     cachedContractIndex.put(address, Pair.of(ByteArrayWrapper.wrap(accountState.getCodeHash()), parentDetails.getVmType()));
 
@@ -467,6 +676,8 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
                 }
             }
 
+            worldState.updateAll(accountUpdates);
+
             for (Map.Entry<AionAddress, TransformedCodeInfo> entry : transformedCodeCache.entrySet()) {
                 for (Map.Entry<ByteArrayWrapper, Map<Integer, byte[]>> infoMap : entry.getValue().transformedCodeMap.entrySet()) {
                     for (Map.Entry<Integer, byte[]> innerEntry : infoMap.getValue().entrySet()) {
@@ -485,6 +696,37 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         }
     }
 
+    private void stageAccountInFlatState(AionAddress address, byte[] encoding) {
+        if (flatStateBranch != null) {
+            flatStateBranch.stageAccount(address, encoding);
+        } else {
+            flatState.stageAccount(address, encoding);
+        }
+    }
+
+    private void stageContractInFlatState(AionAddress address, AccountState accountState, InnerContractDetails details) {
+        stageAccountInFlatState(address, accountState.getEncoded());
+        for (Map.Entry<ByteArrayWrapper, ByteArrayWrapper> entry : details.getStorageChanges().entrySet()) {
+            ByteArrayWrapper value = entry.getValue();
+            // the values are encoded the same way as in the storage trie
+            byte[] encoding = value == null ? null : RLP.encodeElement(value.toBytes());
+            if (flatStateBranch != null) {
+                flatStateBranch.stageStorage(address, entry.getKey(), encoding);
+            } else {
+                flatState.stageStorage(address, entry.getKey(), encoding);
+            }
+        }
+    }
+
+    /** Moves the flat state to the given root, or only restarts the branch of a snapshot. */
+    private void moveFlatStateTo(byte[] root) {
+        if (flatStateBranch != null) {
+            flatStateBranch.reset(root);
+        } else if (flatState != null) {
+            flatState.moveTo(root);
+        }
+    }
+
     @Override
     public void flush() {
         if (LOG.isDebugEnabled()) {
@@ -547,6 +789,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         rwLock.writeLock().lock();
         try {
             worldState.setRoot(root);
+            moveFlatStateTo(root);
         } finally {
             rwLock.writeLock().unlock();
         }
@@ -574,6 +817,13 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
     @Override
     public ByteArrayWrapper getStorageValue(AionAddress address, ByteArrayWrapper key) {
+        if (flatState != null) {
+            byte[] value = flatState.getStorage(address, key, getRoot());
+            if (value != null) {
+                return FlatStateStore.decodeStorageValue(value);
+            }
+        }
+
         ContractDetails details = getContractDetails(address);
         return (details == null) ? null : details.get(key);
     }
@@ -695,12 +945,6 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         return (account == null) ? BigInteger.ZERO : account.getNonce();
     }
 
-    /** @implNote The method calling this method must handle the locking. */
-    private void updateAccountState(AionAddress address, AccountState accountState) {
-        // locked by calling method
-        worldState.update(address.toByteArray(), accountState.getEncoded());
-    }
-
     /**
      * @inheritDoc
      * @implNote Methods calling this can rely on the fact that the contract details returned is a
@@ -754,7 +998,10 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         AccountState result = null;
 
         try {
-            byte[] accountData = worldState.get(address.toByteArray());
+            byte[] accountData = flatState == null ? null : flatState.getAccount(address, worldState.getRootHash());
+            if (accountData == null) {
+                accountData = worldState.get(address.toByteArray());
+            }
 
             if (accountData.length != 0) {
                 result = new AccountState(accountData);
@@ -801,6 +1048,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         rwLock.writeLock().lock();
         try {
             worldState.setRoot(root);
+            moveFlatStateTo(root);
         } finally {
             rwLock.writeLock().unlock();
         }
@@ -810,6 +1058,59 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         return this.pruneBlockCount;
     }
 
+    /**
+     * Groups the following writes of the calling thread into one atomic batch when the databases
+     * are column families of a single RocksDB instance. Has no effect otherwise. The batch is
+     * owned by the caller, which must end it with either {@link #commitAtomicWrite()} or {@link
+     * #abortAtomicWrite()}.
+     */
+    public void startAtomicWrite() {
+        if (columnFamilies != null) {
+            columnFamilies.startAtomicWrite();
+        }
+    }
+
+    /**
+     * Writes the atomic batch started by the calling thread with {@link #startAtomicWrite()}, if
+     * any. The flat state of a block committed into the batch is only updated after the batch is
+     * written, so that it never refers to missing data.
+     *
+     * @throws RuntimeException if the batch could not be written, in which case it is discarded
+     */
+    public void commitAtomicWrite() {
+        if (columnFamilies == null || !columnFamilies.isAtomicWriteOpen()) {
+            return;
+        }
+
+        rwLock.writeLock().lock();
+        try {
+            byte[] root = atomicCommitRoot;
+            atomicCommitRoot = null;
+            columnFamilies.commitAtomicWrite();
+
+            if (root != null) {
+                commitFlatState(root);
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    /** Discards the atomic batch started by the calling thread with {@link #startAtomicWrite()}, if any. */
+    public void abortAtomicWrite() {
+        if (columnFamilies == null || !columnFamilies.isAtomicWriteOpen()) {
+            return;
+        }
+
+        rwLock.writeLock().lock();
+        try {
+            atomicCommitRoot = null;
+            columnFamilies.abortAtomicWrite();
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
     public void commitBlock(ByteArrayWrapper blockHash, long blockNumber, byte[] blockStateRoot) {
         rwLock.writeLock().lock();
 
@@ -825,24 +1126,48 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
                 detailsDS.getStorageDSPrune().storeBlockChanges(blockHash, blockNumber);
                 pruneBlocks(blockNumber);
             }
+
+            if (columnFamilies != null && columnFamilies.isAtomicWriteOpen()) {
+                // the flat state must only refer to data already written
+                atomicCommitRoot = blockStateRoot;
+            } else {
+                commitFlatState(blockStateRoot);
+            }
         } finally {
             rwLock.writeLock().unlock();
         }
     }
 
+    /** Moves the flat state to the given written state root. */
+    private void commitFlatState(byte[] blockStateRoot) {
+        if (flatStateBranch != null) {
+            flatStateBranch.commit(blockStateRoot);
+        } else if (flatState != null) {
+            flatState.commit(blockStateRoot);
+        }
+    }
+
     private void pruneBlocks(long currentBlockNumber) {
         if (currentBlockNumber > bestBlockNumber) {
             // Prune only on increasing blocks
             long pruneBlockNumber = currentBlockNumber - pruneBlockCount;
 
-            if (pruneBlockNumber >= 0) {
-                byte[] pruneBlockHash = blockStore.getBlockHashByNumber(pruneBlockNumber);
+            if (lastPrunedBlockNumber == UNKNOWN_PRUNED_BLOCK) {
+                // resume from the blocks left in the journal by the previous run
+                lastPrunedBlockNumber = Math.min(stateDSPrune.getOldestBlockNumber(), pruneBlockNumber) - 1;
+            }
+
+            // the blocks are pruned in order, catching up with a few more blocks on each call
+            long lastBlockNumber = Math.min(pruneBlockNumber, lastPrunedBlockNumber + 1 + MAX_PRUNE_CATCH_UP);
+            for (long number = Math.max(lastPrunedBlockNumber + 1, 0); number <= lastBlockNumber; number++) {
+                byte[] pruneBlockHash = blockStore.getBlockHashByNumber(number);
                 if (pruneBlockHash != null) {
                     ByteArrayWrapper hash = ByteArrayWrapper.wrap(pruneBlockHash);
-                    stateDSPrune.prune(hash, pruneBlockNumber);
-                    detailsDS.getStorageDSPrune().prune(hash, pruneBlockNumber);
+                    stateDSPrune.prune(hash, number);
+                    detailsDS.getStorageDSPrune().prune(hash, number);
                 }
             }
+            lastPrunedBlockNumber = Math.max(lastPrunedBlockNumber, lastBlockNumber);
         }
         bestBlockNumber = currentBlockNumber;
     }
@@ -859,6 +1184,155 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         return worldState;
     }
 
+    public boolean isFlatStateEnabled() {
+        return flatState != null;
+    }
+
+    /** @return the index of blocks by log address and topic or {@code null} when it is disabled */
+    public LogIndexStore getLogIndex() {
+        return logIndex;
+    }
+
+    /**
+     * Adds the logs of all the main chain blocks to the log index.
+     *
+     * @param log logger for reporting progress
+     * @return the number of blocks with logs
+     * @throws IllegalStateException when the log index is not enabled
+     */
+    public long backfillLogIndex(Logger log) {
+        rwLock.readLock().lock();
+        try {
+            if (logIndex == null) {
+                throw new IllegalStateException("The log index is not enabled.");
+            }
+            return logIndex.backfill(0, blockStore.getMaxNumber(), this::getMainChainReceipts, log);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    private List<AionTxReceipt> getMainChainReceipts(long number) {
+        Block block = blockStore.getChainBlockByNumber(number);
+        if (block == null) {
+            return Collections.emptyList();
+        }
+        List<AionTxReceipt> receipts = new ArrayList<>();
+        for (AionTransaction tx : block.getTransactionsList()) {
+            AionTxInfo info = transactionStore.getTxInfo(tx.getTransactionHash(), block.getHash());
+            if (info != null) {
+                receipts.add(info.getReceipt());
+            }
+        }
+        return receipts;
+    }
+
+    /**
+     * Replaces the content of the flat state database with the state at the given root.
+     *
+     * @param stateRoot the state root of the block at the head of the chain
+     * @param log logger for reporting progress
+     * @return the number of entries written
+     * @throws IllegalStateException when the flat state is not enabled
+     */
+    public long rebuildFlatState(byte[] stateRoot, Logger log) {
+        rwLock.writeLock().lock();
+        try {
+            if (flatState == null) {
+                throw new IllegalStateException("The flat state is not enabled.");
+            }
+            return flatState.rebuild(new SecureTrie(stateDSPrune.getSrc(), stateRoot), detailsDS.keys(), this::forEachStorageEntry, log);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Verifies that the flat state database matches the state at the given root.
+     *
+     * @param stateRoot the state root of the block at the head of the chain
+     * @param log logger for reporting the inconsistencies found
+     * @return the number of inconsistencies found
+     * @throws IllegalStateException when the flat state is not enabled
+     */
+    public long checkFlatState(byte[] stateRoot, Logger log) {
+        rwLock.readLock().lock();
+        try {
+            if (flatState == null) {
+                throw new IllegalStateException("The flat state is not enabled.");
+            }
+            return flatState.check(new SecureTrie(stateDSPrune.getSrc(), stateRoot), detailsDS.keys(), this::forEachStorageEntry, log);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    private void forEachStorageEntry(AionAddress address, AccountState account, BiConsumer<byte[], byte[]> visitor) {
+        InternalVmType vm = getVMUsed(address, account.getCodeHash());
+        if (vm == InternalVmType.EITHER) {
+            // storage without code, like the total currency contract, is only written by the FVM
+            vm = InternalVmType.FVM;
+        }
+        StoredContractDetails details = detailsDS.getSnapshot(vm, address.toByteArray(), account.getStateRoot());
+        if (details != null) {
+            details.forEachStorageEntry(visitor);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the state at the best block published with {@link
+     * #publishCommittedState(byte[])}. Reading from the returned view does not acquire the
+     * repository lock and is not delayed by block import.
+     *
+     * @return an immutable view of the state of the best block
+     */
+    public StateSnapshot getCommittedState() {
+        StateSnapshot snapshot = committedState;
+        if (snapshot == null) {
+            // no best block published since startup
+            Block best = blockStore.getBestBlock();
+            snapshot = createStateSnapshot(best == null ? getRoot() : best.getStateRoot());
+            committedState = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Publishes the state of a new canonical best block to {@link #getCommittedState()}. Must only
+     * be called after the block is committed, so that readers never see a partial state. The
+     * roots that the repository is moved to for other reasons, e.g. rolling back a block or
+     * executing on top of a side chain, are not published.
+     *
+     * @param stateRoot the state root of the best block
+     */
+    public void publishCommittedState(byte[] stateRoot) {
+        StateSnapshot snapshot = committedState;
+        if (snapshot == null || !Arrays.equals(snapshot.getRoot(), stateRoot)) {
+            committedState = createStateSnapshot(stateRoot);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the state at the given root. Unlike {@link
+     * #getSnapshotTo(byte[])} the view does not acquire the repository lock and cannot be used to
+     * track changes.
+     *
+     * @param root the state root of a committed block
+     * @return an immutable view of the state at the given root
+     */
+    public StateSnapshot getStateSnapshot(byte[] root) {
+        StateSnapshot snapshot = committedState;
+        if (snapshot != null && Arrays.equals(snapshot.getRoot(), root)) {
+            return snapshot;
+        }
+        return createStateSnapshot(root);
+    }
+
+    private StateSnapshot createStateSnapshot(byte[] root) {
+        // read the nodes directly from the underlying store to avoid the pruning journal lock
+        return new StateSnapshot(root, stateDSPrune.getSrc(), detailsDS, contractInfoSource, flatState);
+    }
+
     @Override
     public Repository getSnapshotTo(byte[] root) {
         rwLock.readLock().lock();
@@ -875,14 +1349,28 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
             // pruning config
             repo.pruneEnabled = this.pruneEnabled;
             repo.pruneBlockCount = this.pruneBlockCount;
+            repo.lastPrunedBlockNumber = this.lastPrunedBlockNumber;
             repo.archiveRate = this.archiveRate;
+            repo.parallelTrieHashing = this.parallelTrieHashing;
 
             repo.detailsDS = this.detailsDS;
             repo.isSnapshot = true;
 
+            // the databases are shared, so side chain blocks are also written in atomic batches
+            repo.columnFamilies = this.columnFamilies;
+
             repo.worldState = repo.createStateTrie();
             repo.worldState.setRoot(root);
 
+            // side chain blocks are recorded as diff layers the flat state can move to on a reorg
+            if (flatState != null) {
+                repo.flatState = flatState;
+                repo.flatStateBranch = flatState.newBranch(root);
+            }
+
+            // side chain blocks are indexed in case they become part of the main chain
+            repo.logIndex = this.logIndex;
+
             // gives snapshots access to the pending store
             repo.pendingStore = this.pendingStore;
 
@@ -970,6 +1458,25 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
                         "Exception occurred while closing the pendingTxCacheDatabase store.", e);
             }
 
+            try {
+                if (stateDSPrune != null) {
+                    // complete the pruning scheduled in the background
+                    stateDSPrune.setBackgroundPruning(false);
+                }
+            } catch (Exception e) {
+                LOGGEN.error("Exception occurred while stopping the state pruning.", e);
+            }
+
+            try {
+                if (pruneJournalDatabase != null) {
+                    pruneJournalDatabase.close();
+                    LOGGEN.info("Prune journal database closed.");
+                    pruneJournalDatabase = null;
+                }
+            } catch (Exception e) {
+                LOGGEN.error("Exception occurred while closing the prune journal database.", e);
+            }
+
             try {
                 if (stateDatabase != null) {
                     stateDatabase.close();
@@ -980,6 +1487,28 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
                 LOGGEN.error("Exception occurred while closing the state database.", e);
             }
 
+            try {
+                if (flatStateDatabase != null) {
+                    flatStateDatabase.close();
+                    LOGGEN.info("Flat state database closed.");
+                    flatStateDatabase = null;
+                    flatState = null;
+                }
+            } catch (Exception e) {
+                LOGGEN.error("Exception occurred while closing the flat state database.", e);
+            }
+
+            try {
+                if (logIndexDatabase != null) {
+                    logIndexDatabase.close();
+                    LOGGEN.info("Log index database closed.");
+                    logIndexDatabase = null;
+                    logIndex = null;
+                }
+            } catch (Exception e) {
+                LOGGEN.error("Exception occurred while closing the log index database.", e);
+            }
+
             try {
                 if (stateArchiveDatabase != null) {
                     stateArchiveDatabase.close();
@@ -1051,6 +1580,21 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
                 LOGGEN.error(
                         "Exception occurred while closing the contractTransformedCode store.", e);
             }
+
+            try {
+                if (columnFamilies != null) {
+                    // the shared instance is closed with its last open column family
+                    for (ByteArrayKeyValueDatabase db : databaseGroup) {
+                        if (db.isOpen()) {
+                            db.close();
+                        }
+                    }
+                    LOGGEN.info("Column families closed.");
+                    columnFamilies = null;
+                }
+            } catch (Exception e) {
+                LOGGEN.error("Exception occurred while closing the column families.", e);
+            }
         } finally {
             rwLock.writeLock().unlock();
         }
@@ -1089,6 +1633,16 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         return this.blockDatabase;
     }
 
+    /** For testing. */
+    public ByteArrayKeyValueDatabase getHeaderDatabase() {
+        return this.headerDatabase;
+    }
+
+    /** Stores the progress of the fast sync. */
+    public ByteArrayKeyValueDatabase getFastSyncDatabase() {
+        return this.fastSyncDatabase;
+    }
+
     /** For testing. */
     public ByteArrayKeyValueDatabase getIndexDatabase() {
         return this.indexDatabase;
@@ -1148,6 +1702,9 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
      *     supported
      */
     public byte[] getTrieNode(byte[] key, DatabaseType dbType) {
+        if (dbType == DatabaseType.CONTRACT) {
+            return getContractData(key);
+        }
         ByteArrayKeyValueDatabase db = selectDatabase(dbType);
 
         Optional<byte[]> value = db.get(key);
@@ -1169,7 +1726,8 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
      */
     public Map<ByteArrayWrapper, byte[]> getReferencedTrieNodes(
             byte[] value, int limit, DatabaseType dbType) {
-        if (limit <= 0) {
+        if (limit <= 0 || dbType == DatabaseType.CONTRACT) {
+            // the contract data is not a trie node
             return Collections.emptyMap();
         } else {
             ByteArrayKeyValueDatabase db = selectDatabase(dbType);
@@ -1210,7 +1768,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         if (limit <= 0) {
             return Collections.emptyList();
         } else {
-            byte[] subKey = h256(("details-storage/" + contract.toString()).getBytes());
+            byte[] subKey = DetailsDataStore.storageSubKey(contract);
 
             ByteArrayKeyValueStore db =
                     new XorDataSource(selectDatabase(DatabaseType.STORAGE), subKey, false);
@@ -1262,6 +1820,10 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
             return TrieNodeResult.INVALID_VALUE;
         }
 
+        if (dbType == DatabaseType.CONTRACT) {
+            return importContractData(key, value);
+        }
+
         ByteArrayKeyValueDatabase db = selectDatabase(dbType);
 
         Optional<byte[]> stored = db.get(key);
@@ -1286,12 +1848,127 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
                 return storageDatabase;
             case STATE:
                 return stateDatabase;
+            case GRAPH:
+                return graphDatabase;
             default:
                 throw new IllegalArgumentException(
                         "The database type " + dbType.toString() + " is not supported.");
         }
     }
 
+    /**
+     * Retrieves the contract details and the indexed contract information for the contract with
+     * the given hashed address, i.e. the key of the contract account in the state trie.
+     *
+     * @return the RLP encoded list of the contract details and the contract information (which is
+     *     empty when missing) or {@code null} when the contract is not known
+     */
+    private byte[] getContractData(byte[] hashedAddress) {
+        AionAddress contract = getAddressForHash(hashedAddress);
+        if (contract == null) {
+            return null;
+        }
+
+        Optional<byte[]> details = detailsDatabase.get(contract.toByteArray());
+        if (!details.isPresent()) {
+            return null;
+        }
+        ContractInformation info = getIndexedContractInformation(contract);
+        byte[] encodedInfo = info == null ? EMPTY_BYTE_ARRAY : ContractInformation.RLP_SERIALIZER.serialize(info);
+        return RLP.encodeList(RLP.encodeElement(details.get()), RLP.encodeElement(encodedInfo));
+    }
+
+    /**
+     * Imports the contract details and the indexed contract information retrieved with {@link
+     * #getContractData(byte[])}.
+     */
+    private TrieNodeResult importContractData(byte[] hashedAddress, byte[] value) {
+        DetailsDataStore.RLPContractDetails details;
+        byte[] encodedDetails, encodedInfo;
+        try {
+            RLPList data = (RLPList) RLP.decode2(value).get(0);
+            encodedDetails = data.get(0).getRLPData();
+            encodedInfo = data.get(1).getRLPData();
+            details = DetailsDataStore.fromEncoding(encodedDetails);
+        } catch (Exception e) {
+            return TrieNodeResult.INVALID_VALUE;
+        }
+        if (!Arrays.equals(h256(details.address.toByteArray()), hashedAddress)) {
+            return TrieNodeResult.INVALID_VALUE;
+        }
+
+        Optional<byte[]> stored = detailsDatabase.get(details.address.toByteArray());
+        if (stored.isPresent()) {
+            return Arrays.equals(stored.get(), encodedDetails) ? TrieNodeResult.KNOWN : TrieNodeResult.INCONSISTENT;
+        }
+
+        detailsDatabase.putToBatch(details.address.toByteArray(), encodedDetails);
+        detailsDatabase.commit();
+        if (encodedInfo != null && encodedInfo.length > 0) {
+            ContractInformation info = ContractInformation.RLP_SERIALIZER.deserialize(encodedInfo);
+            if (info != null) {
+                contractInfoSource.put(details.address.toByteArray(), info);
+                contractInfoSource.commit();
+            }
+        }
+        indexHashedAddress(details.address);
+        return TrieNodeResult.IMPORTED;
+    }
+
+    // marks that the contracts stored before the hashed addresses were indexed are also indexed
+    private static final byte[] HASHED_ADDRESS_INDEX_KEY = "hashedAddressIndex".getBytes();
+    // prefix for the hashed address entries that distinguishes them from the contract information
+    private static final byte HASHED_ADDRESS_PREFIX = 'h';
+
+    private static byte[] hashedAddressKey(byte[] hashedAddress) {
+        byte[] key = new byte[hashedAddress.length + 1];
+        key[0] = HASHED_ADDRESS_PREFIX;
+        System.arraycopy(hashedAddress, 0, key, 1, hashedAddress.length);
+        return key;
+    }
+
+    private void indexHashedAddress(AionAddress contract) {
+        contractIndexDatabase.put(hashedAddressKey(h256(contract.toByteArray())), contract.toByteArray());
+    }
+
+    /** @return the contract address with the given hash or {@code null} when unknown */
+    private AionAddress getAddressForHash(byte[] hashedAddress) {
+        if (hashedAddress == null || hashedAddress.length != V1Constants.HASH_SIZE) {
+            return null;
+        }
+        // the precompiled contracts may not have contract information
+        for (ContractInfo precompiled : ContractInfo.values()) {
+            if (Arrays.equals(h256(precompiled.contractAddress.toByteArray()), hashedAddress)) {
+                return precompiled.contractAddress;
+            }
+        }
+        Optional<byte[]> address = contractIndexDatabase.get(hashedAddressKey(hashedAddress));
+        return address.map(AionAddress::new).orElse(null);
+    }
+
+    /**
+     * Indexes the contracts by their hashed address once for databases created before the index
+     * was introduced. The index allows serving contract data by its key in the state trie.
+     */
+    private void indexHashedContractAddresses() {
+        if (contractIndexDatabase.get(HASHED_ADDRESS_INDEX_KEY).isPresent()) {
+            return;
+        }
+
+        long count = 0;
+        Iterator<ByteArrayWrapper> contracts = detailsDS.keys();
+        while (contracts.hasNext()) {
+            byte[] contract = contracts.next().toBytes();
+            contractIndexDatabase.putToBatch(hashedAddressKey(h256(contract)), contract);
+            count++;
+        }
+        contractIndexDatabase.putToBatch(HASHED_ADDRESS_INDEX_KEY, new byte[] {1});
+        contractIndexDatabase.commit();
+        if (count > 0) {
+            LOG.info("Indexed the hashed addresses of {} contracts.", count);
+        }
+    }
+
     /**
      * Returns the {@link ContractInformation} stored for the given contract.
      *
@@ -1333,6 +2010,7 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
                 // overwrites entry with new value
                 contractInfoSource.put(contract.toByteArray(), ci);
             }
+            indexHashedAddress(contract);
             // TODO AKI-309: refactor to flush in bulk
             contractInfoSource.commit();
         }
@@ -1430,7 +2108,8 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
                         new RepositoryConfigImpl(
                                 config.getDatabasePath(),
                                 config.getDb()),
-                        10);
+                        10,
+                        1024);
     }
 
     /**
@@ -1490,6 +2169,10 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
 
         commitBlock(genesis.getHashWrapper(), genesis.getNumber(), genesis.getStateRoot());
         blockStore.saveBlock(genesis, genesis.getDifficultyBI(), true);
+        if (logIndex != null) {
+            // the genesis has no logs, indexing it lets the coverage start from block 0
+            logIndex.index(genesis.getNumber(), Collections.emptyList());
+        }
     }
 
     private static ByteArrayWrapper wrapValueForPut(DataWord value) {
@@ -1675,6 +2358,9 @@ public final class AionRepositoryImpl implements Repository<AccountState> {
         blockStore.revert(nbBlock, log);
 
         nbBestBlock = blockStore.getBestBlock().getNumber();
+        if (logIndex != null) {
+            logIndex.truncate(nbBestBlock);
+        }
 
         // ok if we managed to get down to the expected block
         return nbBestBlock == nbBlock;
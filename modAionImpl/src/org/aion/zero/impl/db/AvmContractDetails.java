@@ -11,6 +11,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import org.aion.base.ConstantUtil;
 import org.aion.db.impl.ByteArrayKeyValueStore;
@@ -364,6 +365,11 @@ public class AvmContractDetails implements StoredContractDetails {
         storageTrie.sync();
     }
 
+    @Override
+    public void forEachStorageEntry(BiConsumer<byte[], byte[]> visitor) {
+        storageTrie.forEachEntry(storageTrie.getRootHash(), visitor);
+    }
+
     @Override
     public String toString() {
         StringBuilder ret = new StringBuilder();
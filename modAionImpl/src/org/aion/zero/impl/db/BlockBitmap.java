@@ -0,0 +1,212 @@
+package org.aion.zero.impl.db;
+
+import java.util.Arrays;
+
+/**
+ * Set of block offsets within one section of {@link #SECTION_SIZE} consecutive blocks, stored the
+ * way a roaring bitmap stores its containers: a sorted array of offsets while the set is sparse
+ * and a bitset once the array would take more space than the bitset.
+ *
+ * <p>The encoding starts with a byte identifying the container. The array container is followed
+ * by the offsets as unsigned big-endian shorts and the bitset container by its {@code
+ * SECTION_SIZE / 8} bytes.
+ */
+final class BlockBitmap {
+
+    /** The number of consecutive blocks described by a bitmap. */
+    static final int SECTION_SIZE = 4096;
+
+    private static final int WORDS = SECTION_SIZE / Long.SIZE;
+    /** Above this cardinality the array of offsets is larger than the bitset. */
+    private static final int ARRAY_MAX = SECTION_SIZE / Short.SIZE;
+
+    private static final byte ARRAY = 0;
+    private static final byte BITSET = 1;
+
+    // exactly one of the containers is used
+    private char[] offsets;
+    private int size;
+    private long[] words;
+
+    BlockBitmap() {
+        offsets = new char[4];
+    }
+
+    /** @param offset the offset of a block within the section */
+    void add(int offset) {
+        checkOffset(offset);
+        if (words != null) {
+            words[offset >>> 6] |= 1L << offset;
+            return;
+        }
+
+        int position = Arrays.binarySearch(offsets, 0, size, (char) offset);
+        if (position >= 0) {
+            return;
+        }
+        if (size == ARRAY_MAX) {
+            toBitset();
+            add(offset);
+            return;
+        }
+        position = -position - 1;
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.min(size * 2, ARRAY_MAX));
+        }
+        System.arraycopy(offsets, position, offsets, position + 1, size - position);
+        offsets[position] = (char) offset;
+        size++;
+    }
+
+    boolean contains(int offset) {
+        checkOffset(offset);
+        if (words != null) {
+            return (words[offset >>> 6] & (1L << offset)) != 0;
+        }
+        return Arrays.binarySearch(offsets, 0, size, (char) offset) >= 0;
+    }
+
+    int cardinality() {
+        if (words != null) {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+        return size;
+    }
+
+    boolean isEmpty() {
+        return cardinality() == 0;
+    }
+
+    /** Adds the offsets of the other bitmap to this one. */
+    void or(BlockBitmap other) {
+        if (other.words != null) {
+            if (words == null) {
+                toBitset();
+            }
+            for (int i = 0; i < WORDS; i++) {
+                words[i] |= other.words[i];
+            }
+        } else {
+            for (int i = 0; i < other.size; i++) {
+                add(other.offsets[i]);
+            }
+        }
+    }
+
+    /** Keeps only the offsets also contained by the other bitmap. */
+    void and(BlockBitmap other) {
+        if (words != null && other.words != null) {
+            for (int i = 0; i < WORDS; i++) {
+                words[i] &= other.words[i];
+            }
+            return;
+        }
+
+        int[] kept = toArray();
+        offsets = new char[Math.max(kept.length, 4)];
+        size = 0;
+        words = null;
+        for (int offset : kept) {
+            if (other.contains(offset)) {
+                offsets[size++] = (char) offset;
+            }
+        }
+    }
+
+    /** @return the offsets in increasing order */
+    int[] toArray() {
+        int[] result = new int[cardinality()];
+        if (words != null) {
+            int index = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    result[index++] = (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                result[i] = offsets[i];
+            }
+        }
+        return result;
+    }
+
+    byte[] encode() {
+        if (words != null) {
+            byte[] encoding = new byte[1 + WORDS * Long.BYTES];
+            encoding[0] = BITSET;
+            for (int i = 0; i < WORDS; i++) {
+                for (int b = 0; b < Long.BYTES; b++) {
+                    encoding[1 + i * Long.BYTES + b] = (byte) (words[i] >>> (b * 8));
+                }
+            }
+            return encoding;
+        }
+
+        byte[] encoding = new byte[1 + size * 2];
+        encoding[0] = ARRAY;
+        for (int i = 0; i < size; i++) {
+            encoding[1 + i * 2] = (byte) (offsets[i] >>> 8);
+            encoding[2 + i * 2] = (byte) offsets[i];
+        }
+        return encoding;
+    }
+
+    /**
+     * @param encoding a bitmap encoded with {@link #encode()}
+     * @throws IllegalArgumentException when the encoding is not valid
+     */
+    static BlockBitmap decode(byte[] encoding) {
+        BlockBitmap bitmap = new BlockBitmap();
+        if (encoding.length == 1 + WORDS * Long.BYTES && encoding[0] == BITSET) {
+            bitmap.words = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                long word = 0;
+                for (int b = Long.BYTES - 1; b >= 0; b--) {
+                    word = (word << 8) | (encoding[1 + i * Long.BYTES + b] & 0xFF);
+                }
+                bitmap.words[i] = word;
+            }
+            bitmap.offsets = null;
+        } else if (encoding.length % 2 == 1 && encoding[0] == ARRAY) {
+            int count = encoding.length / 2;
+            if (count > ARRAY_MAX) {
+                throw new IllegalArgumentException("Invalid block bitmap encoding.");
+            }
+            bitmap.offsets = new char[Math.max(count, 4)];
+            for (int i = 0; i < count; i++) {
+                int offset = ((encoding[1 + i * 2] & 0xFF) << 8) | (encoding[2 + i * 2] & 0xFF);
+                if (offset >= SECTION_SIZE || (i > 0 && offset <= bitmap.offsets[i - 1])) {
+                    throw new IllegalArgumentException("Invalid block bitmap encoding.");
+                }
+                bitmap.offsets[i] = (char) offset;
+            }
+            bitmap.size = count;
+        } else {
+            throw new IllegalArgumentException("Invalid block bitmap encoding.");
+        }
+        return bitmap;
+    }
+
+    private void toBitset() {
+        long[] bits = new long[WORDS];
+        for (int i = 0; i < size; i++) {
+            bits[offsets[i] >>> 6] |= 1L << offsets[i];
+        }
+        words = bits;
+        offsets = null;
+        size = 0;
+    }
+
+    private static void checkOffset(int offset) {
+        if (offset < 0 || offset >= SECTION_SIZE) {
+            throw new IllegalArgumentException("The offset " + offset + " is outside the section.");
+        }
+    }
+}
@@ -10,11 +10,17 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.stream.Stream;
 import org.aion.db.impl.ByteArrayKeyValueDatabase;
+import org.aion.db.impl.DBVendor;
 import org.aion.db.impl.DatabaseFactory;
+import org.aion.db.impl.rocksdb.RocksDBColumnFamilies;
 import org.aion.mcf.db.exception.InvalidFileTypeException;
 import org.slf4j.Logger;
 
@@ -153,6 +159,70 @@ public class DatabaseUtils {
         }
     }
 
+    /**
+     * Copies the separate RocksDB databases with the given names into column families of a single
+     * RocksDB instance. The column families are cleared before the copy, so an interrupted migration
+     * can be restarted. The original databases are left unchanged.
+     *
+     * @param dbPath the directory containing the databases
+     * @param target the instance receiving the data
+     * @param names the names of the databases to migrate
+     * @param log the logger used for messages
+     * @return the number of entries copied
+     */
+    public static long migrateToColumnFamilies(String dbPath, RocksDBColumnFamilies target, List<String> names, Logger log) {
+        long total = 0;
+        for (String name : names) {
+            if (!new File(dbPath, name).isDirectory()) {
+                log.info("Database «{}» not found, skipping it.", name);
+                continue;
+            }
+
+            Properties props = new Properties();
+            props.setProperty(DatabaseFactory.Props.DB_TYPE, DBVendor.ROCKSDB.toValue());
+            props.setProperty(DatabaseFactory.Props.DB_NAME, name);
+            props.setProperty(DatabaseFactory.Props.DB_PATH, dbPath);
+            ByteArrayKeyValueDatabase source = connectAndOpen(props, log);
+            if (source == null || source.isClosed()) {
+                throw new IllegalStateException("Unable to open the «" + name + "» database.");
+            }
+
+            ByteArrayKeyValueDatabase destination = target.getDatabase(name);
+            if (!destination.open()) {
+                source.close();
+                throw new IllegalStateException("Unable to open the «" + name + "» column family.");
+            }
+            try {
+                if (!destination.isEmpty()) {
+                    log.info("Clearing the «{}» column family from a previous migration.", name);
+                    destination.drop();
+                }
+
+                long count = 0;
+                Map<byte[], byte[]> batch = new HashMap<>();
+                Iterator<byte[]> keys = source.keys();
+                while (keys.hasNext()) {
+                    byte[] key = keys.next();
+                    source.get(key).ifPresent(value -> batch.put(key, value));
+                    if (batch.size() >= 10_000) {
+                        destination.putBatch(batch);
+                        count += batch.size();
+                        batch.clear();
+                    }
+                }
+                destination.putBatch(batch);
+                count += batch.size();
+
+                log.info("Migrated {} entries from the «{}» database.", count, name);
+                total += count;
+            } finally {
+                destination.close();
+                source.close();
+            }
+        }
+        return total;
+    }
+
     public static boolean deleteRecursively(File file) {
         Path path = file.toPath();
         try {
@@ -49,7 +49,12 @@ public class DetailsDataStore {
      */
     private ByteArrayKeyValueStore createStorageSource(AionAddress address) {
         // NOTE: The consensus-correct Trie use for contracts requires not pushing deletions via the XorDataSource.
-        return new XorDataSource(storageDSPrune, h256(("details-storage/" + address.toString()).getBytes()), false);
+        return new XorDataSource(storageDSPrune, storageSubKey(address), false);
+    }
+
+    /** @return the key combined with the storage keys of the given contract in the storage database */
+    public static byte[] storageSubKey(AionAddress address) {
+        return h256(("details-storage/" + address.toString()).getBytes());
     }
 
     /**
@@ -60,7 +65,12 @@ public class DetailsDataStore {
      * @return the object graph data source associated with the given contract address
      */
     private ByteArrayKeyValueStore createGraphSource(AionAddress address) {
-        return new XorDataSource(graphSrc, h256(("details-graph/" + address.toString()).getBytes()), true);
+        return new XorDataSource(graphSrc, graphSubKey(address), true);
+    }
+
+    /** @return the key combined with the object graph keys of the given contract in the graph database */
+    public static byte[] graphSubKey(AionAddress address) {
+        return h256(("details-graph/" + address.toString()).getBytes());
     }
 
     /**
@@ -0,0 +1,611 @@
+package org.aion.zero.impl.db;
+
+import static org.aion.crypto.HashUtil.h256;
+import static org.aion.util.bytes.ByteUtil.EMPTY_BYTE_ARRAY;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import org.aion.base.AccountState;
+import org.aion.base.ConstantUtil;
+import org.aion.db.impl.ByteArrayKeyValueDatabase;
+import org.aion.log.AionLoggerFactory;
+import org.aion.log.LogEnum;
+import org.aion.rlp.RLP;
+import org.aion.types.AionAddress;
+import org.aion.util.conversions.Hex;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.trie.SecureTrie;
+import org.slf4j.Logger;
+
+/**
+ * Flat copy of the world state at the head of the chain. Accounts are stored by the hash of their
+ * address and storage values by the hash of the contract address followed by the hash of the
+ * storage key, i.e. using the same keys as the state and storage tries.
+ *
+ * <p>A read is served with a single database lookup instead of a walk from the trie root. The tries
+ * remain the source of truth for state roots and proofs and the flat state is used only when it is
+ * at the root requested by the caller.
+ *
+ * <p>The changes applied by a block are staged and written atomically together with the new state
+ * root on {@link #commit(byte[])}. The changes of the most recent blocks are retained in memory as
+ * diff layers. They allow moving the flat state to any other root known to the layers, e.g. during
+ * chain reorganizations. Blocks imported on top of another root, such as side chain blocks, are
+ * recorded through a {@link Branch} as layers that are only written when the flat state moves to
+ * them. When the requested root cannot be reached, the flat state is disabled until rebuilt from
+ * the trie.
+ *
+ * <p>Reads do not lock and may run concurrently with a single writer. Writes are synchronized.
+ */
+public final class FlatStateStore {
+
+    private static final Logger LOG = AionLoggerFactory.getLogger(LogEnum.DB.name());
+
+    public static final int DEFAULT_DIFF_LAYERS = 128;
+
+    private static final byte ACCOUNT_PREFIX = 0;
+    private static final byte STORAGE_PREFIX = 1;
+    private static final int ACCOUNT_KEY_LENGTH = 33;
+    private static final int STORAGE_KEY_LENGTH = 65;
+    private static final byte[] ROOT_KEY = "flat-state-root".getBytes();
+
+    /** Number of changes written in one batch during a rebuild. */
+    private static final int REBUILD_BATCH_SIZE = 10_000;
+
+    private final ByteArrayKeyValueDatabase database;
+    private final int maxDiffLayers;
+
+    /** The state root matching the stored data. {@code null} when the flat state is not usable. */
+    private volatile byte[] root;
+
+    /** Changes of the block currently being applied. A {@code null} value marks a deletion. */
+    private final Map<ByteArrayWrapper, byte[]> pending = new HashMap<>();
+
+    /**
+     * Diff layers of the most recent blocks indexed by the state root they produce. The layers of
+     * side chain blocks have no undo changes until they are applied.
+     */
+    private final Map<ByteArrayWrapper, DiffLayer> layers;
+
+    public FlatStateStore(ByteArrayKeyValueDatabase database) {
+        this(database, DEFAULT_DIFF_LAYERS);
+    }
+
+    /**
+     * @param database the database storing the flat state
+     * @param maxDiffLayers the number of recent blocks for which the changes are kept in memory
+     */
+    public FlatStateStore(ByteArrayKeyValueDatabase database, int maxDiffLayers) {
+        if (maxDiffLayers < 0) {
+            throw new IllegalArgumentException("The number of diff layers cannot be negative.");
+        }
+        this.database = database;
+        this.maxDiffLayers = maxDiffLayers;
+        this.layers =
+                new LinkedHashMap<>() {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, DiffLayer> eldest) {
+                        return size() > FlatStateStore.this.maxDiffLayers;
+                    }
+                };
+        this.root = database.get(ROOT_KEY).orElse(null);
+    }
+
+    /** @return the state root matching the stored data or {@code null} if the flat state is disabled */
+    public byte[] getRoot() {
+        byte[] current = root;
+        return current == null ? null : Arrays.copyOf(current, current.length);
+    }
+
+    public boolean isUsable() {
+        return root != null;
+    }
+
+    /**
+     * Retrieves the encoding of the given account if the flat state is at the expected root.
+     *
+     * @param address the account address
+     * @param expectedRoot the state root at which the account is requested
+     * @return the {@link AccountState} encoding, an empty array if the account does not exist or
+     *     {@code null} if the flat state is not at the expected root
+     */
+    public byte[] getAccount(AionAddress address, byte[] expectedRoot) {
+        return read(accountKey(h256(address.toByteArray())), expectedRoot);
+    }
+
+    /**
+     * Retrieves the value stored by the given contract under the given key if the flat state is at
+     * the expected root.
+     *
+     * @param address the contract address
+     * @param key the storage key
+     * @param expectedRoot the state root at which the value is requested
+     * @return the value as encoded in the storage trie, an empty array if the key is not set or
+     *     {@code null} if the flat state is not at the expected root
+     * @see #decodeStorageValue(byte[])
+     */
+    public byte[] getStorage(AionAddress address, ByteArrayWrapper key, byte[] expectedRoot) {
+        // the storage of removed accounts is kept until the next rebuild so the account is checked first
+        byte[] account = getAccount(address, expectedRoot);
+        if (account == null) {
+            return null;
+        }
+        if (account.length == 0
+                || Arrays.equals(new AccountState(account).getStateRoot(), ConstantUtil.EMPTY_TRIE_HASH)) {
+            return EMPTY_BYTE_ARRAY;
+        }
+        return read(storageKey(h256(address.toByteArray()), h256(key.toBytes())), expectedRoot);
+    }
+
+    /**
+     * Decodes a value returned by {@link #getStorage(AionAddress, ByteArrayWrapper, byte[])}.
+     *
+     * @param encoding the value as encoded in the storage trie
+     * @return the storage value or {@code null} if the key is not set
+     */
+    public static ByteArrayWrapper decodeStorageValue(byte[] encoding) {
+        return encoding.length == 0 ? null : ByteArrayWrapper.wrap(RLP.decode2(encoding).get(0).getRLPData());
+    }
+
+    private byte[] read(byte[] key, byte[] expectedRoot) {
+        if (!Arrays.equals(root, expectedRoot)) {
+            return null;
+        }
+        Optional<byte[]> value = database.get(key);
+        // the root is cleared before any write, so an unchanged root means the value is consistent
+        if (!Arrays.equals(root, expectedRoot)) {
+            return null;
+        }
+        return value.orElse(EMPTY_BYTE_ARRAY);
+    }
+
+    /**
+     * Stages the new state of an account until the next {@link #commit(byte[])}.
+     *
+     * @param address the account address
+     * @param encoding the account encoding or {@code null} if the account was deleted
+     */
+    public synchronized void stageAccount(AionAddress address, byte[] encoding) {
+        if (root != null) {
+            pending.put(ByteArrayWrapper.wrap(accountKey(h256(address.toByteArray()))), encoding);
+        }
+    }
+
+    /**
+     * Stages a storage update until the next {@link #commit(byte[])}.
+     *
+     * @param address the contract address
+     * @param key the storage key
+     * @param encoding the value as encoded in the storage trie or {@code null} if the key was
+     *     deleted
+     */
+    public synchronized void stageStorage(AionAddress address, ByteArrayWrapper key, byte[] encoding) {
+        if (root != null) {
+            pending.put(
+                    ByteArrayWrapper.wrap(storageKey(h256(address.toByteArray()), h256(key.toBytes()))),
+                    encoding);
+        }
+    }
+
+    /**
+     * Writes the staged changes and records them as the diff layer leading to the given root.
+     *
+     * @param newRoot the state root obtained after applying the staged changes
+     */
+    public synchronized void commit(byte[] newRoot) {
+        byte[] parentRoot = root;
+        if (parentRoot == null || Arrays.equals(parentRoot, newRoot)) {
+            pending.clear();
+            return;
+        }
+
+        Map<ByteArrayWrapper, byte[]> redo = new HashMap<>(pending);
+        Map<ByteArrayWrapper, byte[]> undo = new HashMap<>();
+        for (ByteArrayWrapper key : redo.keySet()) {
+            undo.put(key, database.get(key.toBytes()).orElse(null));
+        }
+        pending.clear();
+
+        write(redo, newRoot);
+        layers.put(ByteArrayWrapper.wrap(newRoot), new DiffLayer(ByteArrayWrapper.wrap(parentRoot), undo, redo));
+    }
+
+    /**
+     * Creates a branch for staging the changes of blocks applied on top of the given root without
+     * modifying the stored data.
+     *
+     * @param parentRoot the state root the first staged block is applied to
+     */
+    public Branch newBranch(byte[] parentRoot) {
+        return new Branch(parentRoot);
+    }
+
+    /** Records the changes of a block that is not applied to the stored data. */
+    private synchronized void addBranchLayer(byte[] parentRoot, byte[] newRoot, Map<ByteArrayWrapper, byte[]> redo) {
+        ByteArrayWrapper key = ByteArrayWrapper.wrap(newRoot);
+        // a layer applied to the stored data also knows how to revert the changes
+        if (root == null || Arrays.equals(parentRoot, newRoot) || layers.containsKey(key)) {
+            return;
+        }
+        layers.put(key, new DiffLayer(ByteArrayWrapper.wrap(parentRoot), null, new HashMap<>(redo)));
+    }
+
+    /**
+     * Moves the flat state to the given root using the retained diff layers. Any staged changes are
+     * discarded. When the root cannot be reached the flat state is disabled.
+     *
+     * @param targetRoot the state root to move to
+     * @return {@code true} if the flat state is at the given root, {@code false} otherwise
+     */
+    public synchronized boolean moveTo(byte[] targetRoot) {
+        pending.clear();
+
+        if (root == null) {
+            return false;
+        }
+        if (Arrays.equals(root, targetRoot)) {
+            return true;
+        }
+
+        // index the ancestors of the target known to the diff layers
+        ByteArrayWrapper target = ByteArrayWrapper.wrap(targetRoot);
+        List<DiffLayer> toApply = new ArrayList<>();
+        Map<ByteArrayWrapper, Integer> targetAncestors = new HashMap<>();
+        ByteArrayWrapper current = target;
+        while (!targetAncestors.containsKey(current) && targetAncestors.size() <= layers.size()) {
+            targetAncestors.put(current, toApply.size());
+            DiffLayer layer = layers.get(current);
+            if (layer == null) {
+                break;
+            }
+            toApply.add(layer);
+            current = layer.parentRoot;
+        }
+
+        // revert the current state until reaching one of the target's ancestors
+        List<DiffLayer> toRevert = new ArrayList<>();
+        current = ByteArrayWrapper.wrap(root);
+        while (!targetAncestors.containsKey(current)) {
+            DiffLayer layer = layers.get(current);
+            if (layer == null || layer.undo == null || toRevert.size() >= layers.size()) {
+                disable("root " + Hex.toHexString(targetRoot) + " is not known to the diff layers");
+                return false;
+            }
+            toRevert.add(layer);
+            current = layer.parentRoot;
+        }
+
+        Map<ByteArrayWrapper, byte[]> changes = new HashMap<>();
+        for (DiffLayer layer : toRevert) {
+            changes.putAll(layer.undo);
+        }
+        // apply the layers starting from the common ancestor
+        for (int i = targetAncestors.get(current) - 1; i >= 0; i--) {
+            DiffLayer layer = toApply.get(i);
+            if (layer.undo == null) {
+                // the previous values of a side chain block are known once its ancestors are applied
+                Map<ByteArrayWrapper, byte[]> undo = new HashMap<>();
+                for (ByteArrayWrapper key : layer.redo.keySet()) {
+                    undo.put(key, changes.containsKey(key) ? changes.get(key) : database.get(key.toBytes()).orElse(null));
+                }
+                layer.undo = undo;
+            }
+            changes.putAll(layer.redo);
+        }
+
+        write(changes, targetRoot);
+        return true;
+    }
+
+    private void write(Map<ByteArrayWrapper, byte[]> changes, byte[] newRoot) {
+        // readers fall back to the trie while the changes are written
+        root = null;
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : changes.entrySet()) {
+            if (entry.getValue() == null) {
+                database.deleteInBatch(entry.getKey().toBytes());
+            } else {
+                database.putToBatch(entry.getKey().toBytes(), entry.getValue());
+            }
+        }
+        database.putToBatch(ROOT_KEY, newRoot);
+        database.commit();
+        root = Arrays.copyOf(newRoot, newRoot.length);
+    }
+
+    /**
+     * Stops using the flat state until it is rebuilt. The stored root is removed so that the flat
+     * state is not used after a restart either.
+     */
+    public synchronized void disable(String reason) {
+        if (root != null) {
+            LOG.warn("Flat state disabled because the {}. Rebuild it to enable fast state reads.", reason);
+        }
+        root = null;
+        pending.clear();
+        layers.clear();
+        database.delete(ROOT_KEY);
+    }
+
+    /**
+     * Marks the stored data as matching the given root. Used for an empty state when no data needs
+     * to be written.
+     */
+    synchronized void initialize(byte[] stateRoot) {
+        pending.clear();
+        layers.clear();
+        write(new HashMap<>(), stateRoot);
+    }
+
+    /**
+     * Replaces the stored data with the accounts and storage reachable from the root of the given
+     * trie.
+     *
+     * @param worldState the state trie set to the root to be copied
+     * @param contracts the addresses of the known contracts
+     * @param storage provides the storage of each contract
+     * @param log logger for reporting progress
+     * @return the number of entries written
+     */
+    public synchronized long rebuild(
+            SecureTrie worldState,
+            Iterator<ByteArrayWrapper> contracts,
+            ContractStorage storage,
+            Logger log) {
+        byte[] stateRoot = worldState.getRootHash();
+        disable("flat state is being rebuilt");
+
+        log.info("Removing the existing flat state entries...");
+        long count = 0;
+        Iterator<byte[]> keys = database.keys();
+        while (keys.hasNext()) {
+            database.deleteInBatch(keys.next());
+            if (++count % REBUILD_BATCH_SIZE == 0) {
+                database.commit();
+            }
+        }
+        database.commit();
+
+        log.info("Copying accounts from state root {}...", Hex.toHexString(stateRoot));
+        long[] written = new long[1];
+        worldState.forEachEntry(
+                stateRoot,
+                (hashedAddress, encoding) -> {
+                    database.putToBatch(accountKey(hashedAddress), encoding);
+                    if (++written[0] % REBUILD_BATCH_SIZE == 0) {
+                        database.commit();
+                        log.info("{} entries written.", written[0]);
+                    }
+                });
+
+        log.info("Copying contract storage...");
+        while (contracts.hasNext()) {
+            AionAddress address = new AionAddress(contracts.next().toBytes());
+            AccountState account = getContract(worldState, address);
+            if (account != null) {
+                byte[] hashedAddress = h256(address.toByteArray());
+                storage.forEachEntry(
+                        address,
+                        account,
+                        (hashedKey, encoding) -> {
+                            database.putToBatch(storageKey(hashedAddress, hashedKey), encoding);
+                            if (++written[0] % REBUILD_BATCH_SIZE == 0) {
+                                database.commit();
+                                log.info("{} entries written.", written[0]);
+                            }
+                        });
+            }
+        }
+
+        write(new HashMap<>(), stateRoot);
+        log.info("Flat state rebuilt at state root {} with {} entries.", Hex.toHexString(stateRoot), written[0]);
+        return written[0];
+    }
+
+    /**
+     * Compares the stored data with the accounts and storage reachable from the root of the given
+     * trie.
+     *
+     * @param worldState the state trie set to the root to compare against
+     * @param contracts the addresses of the known contracts
+     * @param storage provides the storage of each contract
+     * @param log logger for reporting the inconsistencies found
+     * @return the number of inconsistencies found
+     */
+    public long check(
+            SecureTrie worldState,
+            Iterator<ByteArrayWrapper> contracts,
+            ContractStorage storage,
+            Logger log) {
+        byte[] stateRoot = worldState.getRootHash();
+        long[] errors = new long[1];
+
+        if (!Arrays.equals(root, stateRoot)) {
+            log.error(
+                    "The flat state is at root {} instead of {}.",
+                    root == null ? "<disabled>" : Hex.toHexString(root),
+                    Hex.toHexString(stateRoot));
+            errors[0]++;
+        }
+
+        long[] accounts = new long[1];
+        worldState.forEachEntry(
+                stateRoot,
+                (hashedAddress, encoding) -> {
+                    accounts[0]++;
+                    if (!Arrays.equals(database.get(accountKey(hashedAddress)).orElse(null), encoding)) {
+                        log.error("Incorrect flat state for account hash {}.", Hex.toHexString(hashedAddress));
+                        errors[0]++;
+                    }
+                });
+
+        long[] storageEntries = new long[1];
+        Set<ByteArrayWrapper> hashedContracts = new HashSet<>();
+        while (contracts.hasNext()) {
+            AionAddress address = new AionAddress(contracts.next().toBytes());
+            AccountState account = getContract(worldState, address);
+            if (account != null) {
+                byte[] hashedAddress = h256(address.toByteArray());
+                hashedContracts.add(ByteArrayWrapper.wrap(hashedAddress));
+                storage.forEachEntry(
+                        address,
+                        account,
+                        (hashedKey, encoding) -> {
+                            storageEntries[0]++;
+                            byte[] key = storageKey(hashedAddress, hashedKey);
+                            if (!Arrays.equals(database.get(key).orElse(null), encoding)) {
+                                log.error(
+                                        "Incorrect flat storage for contract {} and key hash {}.",
+                                        address,
+                                        Hex.toHexString(hashedKey));
+                                errors[0]++;
+                            }
+                        });
+            }
+        }
+
+        // entries that do not exist in the trie
+        long flatAccounts = 0, flatStorage = 0, unreachable = 0;
+        Iterator<byte[]> keys = database.keys();
+        while (keys.hasNext()) {
+            byte[] key = keys.next();
+            if (key.length == ACCOUNT_KEY_LENGTH && key[0] == ACCOUNT_PREFIX) {
+                flatAccounts++;
+            } else if (key.length == STORAGE_KEY_LENGTH && key[0] == STORAGE_PREFIX) {
+                if (hashedContracts.contains(ByteArrayWrapper.wrap(Arrays.copyOfRange(key, 1, ACCOUNT_KEY_LENGTH)))) {
+                    flatStorage++;
+                } else {
+                    unreachable++;
+                }
+            }
+        }
+        if (flatAccounts != accounts[0]) {
+            log.error("The flat state has {} accounts while the trie has {}.", flatAccounts, accounts[0]);
+            errors[0]++;
+        }
+        if (flatStorage != storageEntries[0]) {
+            log.error("The flat state has {} storage entries while the tries have {}.", flatStorage, storageEntries[0]);
+            errors[0]++;
+        }
+        if (unreachable > 0) {
+            log.info("The flat state has {} storage entries of removed contracts.", unreachable);
+        }
+
+        log.info(
+                "Flat state check completed: {} accounts, {} storage entries, {} inconsistencies.",
+                accounts[0],
+                storageEntries[0],
+                errors[0]);
+        return errors[0];
+    }
+
+    /** @return the state of the account if it exists and has storage, {@code null} otherwise */
+    private static AccountState getContract(SecureTrie worldState, AionAddress address) {
+        byte[] encoding = worldState.get(address.toByteArray());
+        if (encoding.length == 0) {
+            return null;
+        }
+        AccountState account = new AccountState(encoding);
+        return Arrays.equals(account.getStateRoot(), ConstantUtil.EMPTY_TRIE_HASH) ? null : account;
+    }
+
+    private static byte[] accountKey(byte[] hashedAddress) {
+        byte[] key = new byte[ACCOUNT_KEY_LENGTH];
+        key[0] = ACCOUNT_PREFIX;
+        System.arraycopy(hashedAddress, 0, key, 1, hashedAddress.length);
+        return key;
+    }
+
+    private static byte[] storageKey(byte[] hashedAddress, byte[] hashedKey) {
+        byte[] key = new byte[STORAGE_KEY_LENGTH];
+        key[0] = STORAGE_PREFIX;
+        System.arraycopy(hashedAddress, 0, key, 1, hashedAddress.length);
+        System.arraycopy(hashedKey, 0, key, ACCOUNT_KEY_LENGTH, hashedKey.length);
+        return key;
+    }
+
+    /** Provides the storage entries of a contract as stored in its storage trie. */
+    public interface ContractStorage {
+
+        /**
+         * Visits the storage of the given contract.
+         *
+         * @param address the contract address
+         * @param account the state of the contract at the root being processed
+         * @param visitor receives each hashed key and encoded value
+         */
+        void forEachEntry(AionAddress address, AccountState account, BiConsumer<byte[], byte[]> visitor);
+    }
+
+    /**
+     * Stages the changes of blocks applied on top of a root that may differ from the stored one,
+     * e.g. side chain blocks imported in a snapshot of the repository. Each committed block is kept
+     * as a diff layer so that the flat state can move to it if the branch becomes the main chain.
+     * Instances are not thread safe.
+     */
+    public final class Branch {
+        private byte[] parentRoot;
+        private final Map<ByteArrayWrapper, byte[]> staged = new HashMap<>();
+
+        private Branch(byte[] parentRoot) {
+            this.parentRoot = parentRoot;
+        }
+
+        /** @see FlatStateStore#stageAccount(AionAddress, byte[]) */
+        public void stageAccount(AionAddress address, byte[] encoding) {
+            staged.put(ByteArrayWrapper.wrap(accountKey(h256(address.toByteArray()))), encoding);
+        }
+
+        /** @see FlatStateStore#stageStorage(AionAddress, ByteArrayWrapper, byte[]) */
+        public void stageStorage(AionAddress address, ByteArrayWrapper key, byte[] encoding) {
+            staged.put(
+                    ByteArrayWrapper.wrap(storageKey(h256(address.toByteArray()), h256(key.toBytes()))),
+                    encoding);
+        }
+
+        /**
+         * Records the staged changes as the diff layer leading to the given root. The following
+         * blocks of the branch are applied on top of it.
+         *
+         * @param newRoot the state root obtained after applying the staged changes
+         */
+        public void commit(byte[] newRoot) {
+            addBranchLayer(parentRoot, newRoot, staged);
+            staged.clear();
+            parentRoot = Arrays.copyOf(newRoot, newRoot.length);
+        }
+
+        /**
+         * Discards the staged changes and continues the branch from the given root.
+         *
+         * @param root the state root the next staged block is applied to
+         */
+        public void reset(byte[] root) {
+            staged.clear();
+            parentRoot = Arrays.copyOf(root, root.length);
+        }
+    }
+
+    /** The changes applied by one block, with the previous values needed to revert them. */
+    private static final class DiffLayer {
+        private final ByteArrayWrapper parentRoot;
+        private Map<ByteArrayWrapper, byte[]> undo;
+        private final Map<ByteArrayWrapper, byte[]> redo;
+
+        private DiffLayer(
+                ByteArrayWrapper parentRoot,
+                Map<ByteArrayWrapper, byte[]> undo,
+                Map<ByteArrayWrapper, byte[]> redo) {
+            this.parentRoot = parentRoot;
+            this.undo = undo;
+            this.redo = redo;
+        }
+    }
+}
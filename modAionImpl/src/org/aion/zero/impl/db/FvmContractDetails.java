@@ -10,6 +10,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import org.aion.base.ConstantUtil;
 import org.aion.db.impl.ByteArrayKeyValueStore;
@@ -284,6 +285,11 @@ public class FvmContractDetails implements StoredContractDetails {
         storageTrie.sync();
     }
 
+    @Override
+    public void forEachStorageEntry(BiConsumer<byte[], byte[]> visitor) {
+        storageTrie.forEachEntry(storageTrie.getRootHash(), visitor);
+    }
+
     @Override
     public String toString() {
         StringBuilder ret = new StringBuilder();
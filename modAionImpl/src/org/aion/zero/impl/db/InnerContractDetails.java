@@ -121,6 +121,16 @@ public class InnerContractDetails implements ContractDetails {
         return !storage.isEmpty();
     }
 
+    /**
+     * Returns the storage entries read or modified through this object. A {@code null} value marks
+     * a deleted key.
+     *
+     * @return the locally stored storage entries
+     */
+    Map<ByteArrayWrapper, ByteArrayWrapper> getStorageChanges() {
+        return storage;
+    }
+
     @Override
     public Map<ByteArrayWrapper, ByteArrayWrapper> getStorage(Collection<ByteArrayWrapper> keys) {
         Map<ByteArrayWrapper, ByteArrayWrapper> storage = new HashMap<>();
@@ -0,0 +1,356 @@
+package org.aion.zero.impl.db;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongFunction;
+import org.aion.base.AionTxReceipt;
+import org.aion.db.impl.ByteArrayKeyValueDatabase;
+import org.aion.log.AionLoggerFactory;
+import org.aion.log.LogEnum;
+import org.aion.types.Log;
+import org.aion.util.types.ByteArrayWrapper;
+import org.slf4j.Logger;
+
+/**
+ * Index of the blocks containing logs, used to answer log queries over large block ranges without
+ * reading the blocks and receipts that cannot match.
+ *
+ * <p>For every log address, every topic at a given position and for logs in general the index
+ * stores one {@link BlockBitmap} per section of {@link BlockBitmap#SECTION_SIZE} blocks, keyed by
+ * the term followed by the section number. A query reads one bitmap per term and section and
+ * combines them, instead of testing the bloom of every block in the range.
+ *
+ * <p>The index is updated with the receipts of every imported block, including the blocks of side
+ * chains which are imported in snapshots of the repository sharing the same index. It returns
+ * candidate block numbers which the caller checks against the logs of the main chain blocks, so the
+ * additional entries only cost an extra check. The indexed range is truncated when the main chain
+ * becomes shorter.
+ *
+ * <p>The index is complete only for the blocks between {@link #getFirstIndexed()} and {@link
+ * #getLastIndexed()}. Blocks imported while the index is disabled leave a gap, in which case the
+ * coverage restarts from the next imported block until the older blocks are added with {@link
+ * #backfill(long, long, LongFunction, Logger)}.
+ *
+ * <p>Queries do not lock and may run concurrently with a single writer. Writes are synchronized.
+ */
+public final class LogIndexStore {
+
+    private static final Logger LOG = AionLoggerFactory.getLogger(LogEnum.DB.name());
+
+    private static final byte LOGS = 'l';
+    private static final byte ADDRESS = 'a';
+    private static final byte TOPIC = 't';
+    private static final byte[] FIRST_KEY = "log-index-first".getBytes();
+    private static final byte[] LAST_KEY = "log-index-last".getBytes();
+
+    /** Number of recently updated bitmaps kept in memory to avoid reading them for every block. */
+    private static final int RECENT_BITMAPS = 8_192;
+
+    private final ByteArrayKeyValueDatabase database;
+
+    /** The indexed range of block numbers, which is empty when {@code last < first}. */
+    private volatile long first;
+    private volatile long last;
+
+    private final Map<ByteArrayWrapper, BlockBitmap> recent =
+            new LinkedHashMap<>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, BlockBitmap> eldest) {
+                    return size() > RECENT_BITMAPS;
+                }
+            };
+
+    public LogIndexStore(ByteArrayKeyValueDatabase database) {
+        this.database = database;
+        this.first = database.get(FIRST_KEY).map(LogIndexStore::decodeNumber).orElse(0L);
+        this.last = database.get(LAST_KEY).map(LogIndexStore::decodeNumber).orElse(-1L);
+    }
+
+    /**
+     * Aligns the indexed range with the stored blocks. Blocks imported while the index was
+     * disabled cannot be found through the index, so the range restarts after them.
+     *
+     * @param bestNumber the highest block number in the block store, or -1 when it is empty
+     */
+    public synchronized void open(long bestNumber) {
+        if (last < first && bestNumber <= 0) {
+            // a new database, the genesis block has no logs
+            setRange(0, bestNumber);
+        } else if (last > bestNumber) {
+            // the chain was reverted
+            setRange(first, bestNumber);
+        } else if (last < bestNumber) {
+            if (last >= first) {
+                LOG.warn(
+                        "The log index ends at block {} before the best block {}. Run the kernel with --log-index backfill to index the older blocks.",
+                        last,
+                        bestNumber);
+            } else {
+                LOG.warn("The log index is empty. Run the kernel with --log-index backfill to index the existing blocks.");
+            }
+            setRange(bestNumber + 1, bestNumber);
+        }
+    }
+
+    /**
+     * Shrinks the indexed range when the main chain becomes shorter, e.g. after a rollback or a
+     * reorganization to a lower block. The entries of the removed blocks remain in the index and
+     * only produce additional candidates.
+     *
+     * @param bestNumber the number of the new best block
+     */
+    public synchronized void truncate(long bestNumber) {
+        if (last > bestNumber) {
+            setRange(first, bestNumber);
+        }
+    }
+
+    /** @return the lowest block number covered by the index */
+    public long getFirstIndexed() {
+        return first;
+    }
+
+    /** @return the highest block number covered by the index, lower than the first when empty */
+    public long getLastIndexed() {
+        return last;
+    }
+
+    /** @return {@code true} if all the blocks in the given range are indexed */
+    public boolean covers(long from, long to) {
+        long lowest = first;
+        long highest = last;
+        return from >= lowest && to <= highest && from <= to;
+    }
+
+    /**
+     * Adds the logs of an imported block to the index.
+     *
+     * @param number the block number
+     * @param receipts the receipts of the block transactions
+     */
+    public synchronized void index(long number, List<AionTxReceipt> receipts) {
+        long section = number / BlockBitmap.SECTION_SIZE;
+        int offset = (int) (number % BlockBitmap.SECTION_SIZE);
+        for (byte[] term : termsOf(receipts)) {
+            byte[] key = sectionKey(term, section);
+            ByteArrayWrapper wrappedKey = ByteArrayWrapper.wrap(key);
+            BlockBitmap bitmap = recent.get(wrappedKey);
+            if (bitmap == null) {
+                bitmap = load(key);
+                recent.put(wrappedKey, bitmap);
+            }
+            bitmap.add(offset);
+            database.putToBatch(key, bitmap.encode());
+        }
+
+        if (number == last + 1) {
+            putRange(first, number);
+        } else if (number > last + 1) {
+            // the blocks in between are not indexed
+            putRange(number, number);
+        }
+        database.commit();
+    }
+
+    /**
+     * Adds the logs of the given range of main chain blocks to the index and extends the indexed
+     * range with it.
+     *
+     * @param from the first block number to index
+     * @param to the last block number to index
+     * @param receiptsByNumber provides the receipts of the main chain block with a given number
+     * @param log logger for reporting progress
+     * @return the number of blocks with logs
+     */
+    public synchronized long backfill(
+            long from, long to, LongFunction<List<AionTxReceipt>> receiptsByNumber, Logger log) {
+        recent.clear();
+        long blocksWithLogs = 0;
+        long number = from;
+        while (number <= to) {
+            long section = number / BlockBitmap.SECTION_SIZE;
+            long sectionEnd = Math.min(to, (section + 1) * BlockBitmap.SECTION_SIZE - 1);
+
+            Map<ByteArrayWrapper, BlockBitmap> bitmaps = new HashMap<>();
+            for (; number <= sectionEnd; number++) {
+                Set<byte[]> terms = termsOf(receiptsByNumber.apply(number));
+                if (!terms.isEmpty()) {
+                    blocksWithLogs++;
+                }
+                for (byte[] term : terms) {
+                    bitmaps.computeIfAbsent(ByteArrayWrapper.wrap(sectionKey(term, section)), k -> new BlockBitmap())
+                            .add((int) (number % BlockBitmap.SECTION_SIZE));
+                }
+            }
+
+            for (Map.Entry<ByteArrayWrapper, BlockBitmap> entry : bitmaps.entrySet()) {
+                BlockBitmap bitmap = load(entry.getKey().toBytes());
+                bitmap.or(entry.getValue());
+                database.putToBatch(entry.getKey().toBytes(), bitmap.encode());
+            }
+            database.commit();
+            log.info("Indexed the logs of the blocks up to {}.", sectionEnd);
+        }
+
+        if (last >= first && from <= last + 1 && to >= first - 1) {
+            putRange(Math.min(first, from), Math.max(last, to));
+        } else if (last < first && to >= first - 1) {
+            putRange(from, Math.max(last, to));
+        } else {
+            putRange(from, to);
+        }
+        database.commit();
+        return blocksWithLogs;
+    }
+
+    /**
+     * Finds the blocks in the given range which may contain logs matching the given filter. An
+     * empty list of addresses matches any address and a {@code null} or empty list of topics at a
+     * position matches any topic.
+     *
+     * @param from the first block number of the range
+     * @param to the last block number of the range
+     * @param addresses the log addresses to match
+     * @param topics the topics to match at each position
+     * @return the candidate block numbers in increasing order or {@code null} if the range is not
+     *     entirely indexed
+     */
+    public long[] getCandidateBlocks(long from, long to, List<byte[]> addresses, List<byte[][]> topics) {
+        if (!covers(from, to)) {
+            return null;
+        }
+
+        // a block must match every constraint, i.e. any of the terms of each constraint
+        List<List<byte[]>> constraints = new ArrayList<>();
+        if (addresses != null && !addresses.isEmpty()) {
+            List<byte[]> terms = new ArrayList<>();
+            for (byte[] address : addresses) {
+                terms.add(addressTerm(address));
+            }
+            constraints.add(terms);
+        }
+        if (topics != null) {
+            for (int position = 0; position < topics.size(); position++) {
+                byte[][] orTopics = topics.get(position);
+                if (orTopics != null && orTopics.length > 0) {
+                    List<byte[]> terms = new ArrayList<>();
+                    for (byte[] topic : orTopics) {
+                        terms.add(topicTerm(position, topic));
+                    }
+                    constraints.add(terms);
+                }
+            }
+        }
+        if (constraints.isEmpty()) {
+            constraints.add(List.of(new byte[] {LOGS}));
+        }
+
+        long[] candidates = new long[16];
+        int count = 0;
+        for (long section = from / BlockBitmap.SECTION_SIZE; section <= to / BlockBitmap.SECTION_SIZE; section++) {
+            BlockBitmap matching = null;
+            for (List<byte[]> terms : constraints) {
+                BlockBitmap any = new BlockBitmap();
+                for (byte[] term : terms) {
+                    Optional<byte[]> stored = database.get(sectionKey(term, section));
+                    if (stored.isPresent()) {
+                        any.or(BlockBitmap.decode(stored.get()));
+                    }
+                }
+                if (matching == null) {
+                    matching = any;
+                } else {
+                    matching.and(any);
+                }
+                if (matching.isEmpty()) {
+                    break;
+                }
+            }
+
+            long sectionStart = section * BlockBitmap.SECTION_SIZE;
+            for (int offset : matching.toArray()) {
+                long number = sectionStart + offset;
+                if (number >= from && number <= to) {
+                    if (count == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, count * 2);
+                    }
+                    candidates[count++] = number;
+                }
+            }
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    /** @return the terms under which a block with the given receipts is indexed */
+    private static Set<byte[]> termsOf(List<AionTxReceipt> receipts) {
+        Set<ByteArrayWrapper> terms = new LinkedHashSet<>();
+        for (AionTxReceipt receipt : receipts) {
+            for (Log log : receipt.getLogInfoList()) {
+                terms.add(ByteArrayWrapper.wrap(new byte[] {LOGS}));
+                terms.add(ByteArrayWrapper.wrap(addressTerm(log.copyOfAddress())));
+                List<byte[]> topics = log.copyOfTopics();
+                for (int position = 0; position < topics.size(); position++) {
+                    terms.add(ByteArrayWrapper.wrap(topicTerm(position, topics.get(position))));
+                }
+            }
+        }
+
+        Set<byte[]> result = new LinkedHashSet<>();
+        for (ByteArrayWrapper term : terms) {
+            result.add(term.toBytes());
+        }
+        return result;
+    }
+
+    private static byte[] addressTerm(byte[] address) {
+        byte[] term = new byte[1 + address.length];
+        term[0] = ADDRESS;
+        System.arraycopy(address, 0, term, 1, address.length);
+        return term;
+    }
+
+    private static byte[] topicTerm(int position, byte[] topic) {
+        byte[] term = new byte[2 + topic.length];
+        term[0] = TOPIC;
+        term[1] = (byte) position;
+        System.arraycopy(topic, 0, term, 2, topic.length);
+        return term;
+    }
+
+    private static byte[] sectionKey(byte[] term, long section) {
+        return ByteBuffer.allocate(term.length + Long.BYTES).put(term).putLong(section).array();
+    }
+
+    private BlockBitmap load(byte[] key) {
+        Optional<byte[]> stored = database.get(key);
+        return stored.isPresent() ? BlockBitmap.decode(stored.get()) : new BlockBitmap();
+    }
+
+    private void setRange(long lowest, long highest) {
+        putRange(lowest, highest);
+        database.commit();
+    }
+
+    private void putRange(long lowest, long highest) {
+        database.putToBatch(FIRST_KEY, encodeNumber(lowest));
+        database.putToBatch(LAST_KEY, encodeNumber(highest));
+        first = lowest;
+        last = highest;
+    }
+
+    private static byte[] encodeNumber(long number) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(number).array();
+    }
+
+    private static long decodeNumber(byte[] encoding) {
+        return ByteBuffer.wrap(encoding).getLong();
+    }
+}
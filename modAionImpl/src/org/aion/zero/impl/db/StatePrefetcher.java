@@ -0,0 +1,157 @@
+package org.aion.zero.impl.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.aion.base.AionTransaction;
+import org.aion.log.AionLoggerFactory;
+import org.aion.log.LogEnum;
+import org.aion.types.AionAddress;
+import org.slf4j.Logger;
+
+/**
+ * Loads the accounts used by the transactions of a block into the {@link AionRepositoryCache}
+ * that will execute them, using a bounded pool of I/O threads.
+ *
+ * <p>Without prefetching, each account is loaded from the state trie and the details database on
+ * the import thread when it is first accessed by the virtual machine. The prefetcher loads the
+ * senders and destinations of all the transactions in parallel before the execution starts.
+ *
+ * <p>The prefetcher keeps the following metrics:
+ *
+ * <ul>
+ *   <li>the warm-hit ratio, i.e. the fraction of prefetched accounts that were later accessed
+ *       during execution;
+ *   <li>the time saved, estimated as the total time spent loading the accounts by the pool minus
+ *       the time the import thread waited for the prefetch to complete.
+ * </ul>
+ */
+public final class StatePrefetcher {
+
+    private static final Logger LOG = AionLoggerFactory.getLogger(LogEnum.DB.name());
+
+    private final ExecutorService pool;
+
+    private final LongAdder prefetched = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /** @param threads the number of threads used to load accounts */
+    public StatePrefetcher(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of prefetch threads must be positive.");
+        }
+        AtomicInteger count = new AtomicInteger();
+        this.pool =
+                Executors.newFixedThreadPool(
+                        threads,
+                        r -> {
+                            Thread thread = new Thread(r, "state-prefetch-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    /**
+     * Collects the accounts accessed by every transaction regardless of its outcome, namely the
+     * senders and the destinations of calls.
+     *
+     * @param transactions the transactions of a block
+     * @return the addresses in the order of their first use
+     */
+    public static Set<AionAddress> collectAddresses(Collection<AionTransaction> transactions) {
+        Set<AionAddress> addresses = new LinkedHashSet<>();
+        for (AionTransaction transaction : transactions) {
+            addresses.add(transaction.getSenderAddress());
+            if (transaction.getDestinationAddress() != null) {
+                addresses.add(transaction.getDestinationAddress());
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * Loads the accounts used by the given transactions into the given cache and returns once all
+     * of them are loaded. Failures are logged and leave the account to be loaded on first access.
+     *
+     * @param track the top level cache that will execute the transactions
+     * @param transactions the transactions to be executed
+     */
+    public void prefetch(AionRepositoryCache track, Collection<AionTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Callable<Void>> loads = new ArrayList<>();
+        for (AionAddress address : collectAddresses(transactions)) {
+            loads.add(
+                    () -> {
+                        long loadStart = System.nanoTime();
+                        track.prefetch(address);
+                        loadNanos.add(System.nanoTime() - loadStart);
+                        return null;
+                    });
+        }
+
+        try {
+            for (Future<Void> load : pool.invokeAll(loads)) {
+                if (!load.isCancelled()) {
+                    try {
+                        load.get();
+                    } catch (Exception e) {
+                        LOG.debug("Unable to prefetch account state.", e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // the remaining accounts are loaded on first access
+            Thread.currentThread().interrupt();
+        }
+
+        prefetched.add(loads.size());
+        waitNanos.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Records how many of the accounts prefetched into the given cache were used by the execution.
+     * Must be called once per {@link #prefetch} after the execution completes.
+     */
+    public void recordUsage(AionRepositoryCache track) {
+        hits.add(track.getPrefetchHitCount());
+    }
+
+    /** @return the number of accounts prefetched */
+    public long getPrefetchedCount() {
+        return prefetched.sum();
+    }
+
+    /** @return the number of prefetched accounts that were accessed during execution */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /** @return the fraction of prefetched accounts that were accessed during execution */
+    public double getHitRatio() {
+        long total = prefetched.sum();
+        return total == 0 ? 0 : (double) hits.sum() / total;
+    }
+
+    /** @return the estimated import thread time saved by prefetching, in nanoseconds */
+    public long getTimeSavedNanos() {
+        return loadNanos.sum() - waitNanos.sum();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,157 @@
+package org.aion.zero.impl.db;
+
+import static org.aion.crypto.HashUtil.EMPTY_DATA_HASH;
+import static org.aion.util.bytes.ByteUtil.EMPTY_BYTE_ARRAY;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import org.aion.base.AccountState;
+import org.aion.db.impl.ByteArrayKeyValueStore;
+import org.aion.db.store.ObjectStore;
+import org.aion.mcf.db.ContractDetails;
+import org.aion.mcf.db.InternalVmType;
+import org.aion.precompiled.ContractInfo;
+import org.aion.types.AionAddress;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.trie.SecureTrie;
+import org.aion.zero.impl.trie.Trie;
+
+/**
+ * Immutable read-only view of the world state at a fixed state root.
+ *
+ * <p>The view reads the trie nodes directly from the state database and has its own node cache.
+ * Since trie nodes are addressed by their hash, the nodes reachable from a committed root do not
+ * change while new blocks are imported. Therefore, reading from a snapshot never acquires the
+ * repository lock and is not delayed by block import.
+ *
+ * <p>When the flat state is enabled and at the pinned root, accounts and storage values are read
+ * from the flat state instead of the tries.
+ *
+ * <p>When pruning is enabled, the nodes of a root are only guaranteed to be available while the
+ * corresponding block is within the pruning window. Long-lived snapshots of old roots should be
+ * avoided. The snapshot returned by {@link AionRepositoryImpl#getCommittedState()} is replaced
+ * whenever a new best block is published.
+ */
+public final class StateSnapshot {
+
+    private final byte[] root;
+    private final Trie worldState;
+    private final DetailsDataStore detailsDS;
+    private final ObjectStore<ContractInformation> contractInfoSource;
+    private final FlatStateStore flatState;
+
+    StateSnapshot(
+            byte[] root,
+            ByteArrayKeyValueStore stateSource,
+            DetailsDataStore detailsDS,
+            ObjectStore<ContractInformation> contractInfoSource,
+            FlatStateStore flatState) {
+        this.root = Arrays.copyOf(root, root.length);
+        this.worldState = new SecureTrie(stateSource, this.root);
+        this.detailsDS = detailsDS;
+        this.contractInfoSource = contractInfoSource;
+        this.flatState = flatState;
+    }
+
+    /** @return the state root pinned by this snapshot */
+    public byte[] getRoot() {
+        return Arrays.copyOf(root, root.length);
+    }
+
+    /**
+     * Retrieves the state of the given account at the pinned root.
+     *
+     * @param address the account address
+     * @return a newly created account state or {@code null} if the account does not exist
+     */
+    public AccountState getAccountState(AionAddress address) {
+        byte[] accountData = flatState == null ? null : flatState.getAccount(address, root);
+        if (accountData == null) {
+            accountData = worldState.get(address.toByteArray());
+        }
+        return accountData.length == 0 ? null : new AccountState(accountData);
+    }
+
+    public boolean hasAccountState(AionAddress address) {
+        return getAccountState(address) != null;
+    }
+
+    public BigInteger getBalance(AionAddress address) {
+        AccountState account = getAccountState(address);
+        return (account == null) ? BigInteger.ZERO : account.getBalance();
+    }
+
+    public BigInteger getNonce(AionAddress address) {
+        AccountState account = getAccountState(address);
+        return (account == null) ? BigInteger.ZERO : account.getNonce();
+    }
+
+    /**
+     * Retrieves the contract details of the given account at the pinned root.
+     *
+     * @param address the account address
+     * @return a newly created snapshot of the contract details or {@code null} if the account is
+     *     not a contract
+     */
+    public StoredContractDetails getContractDetails(AionAddress address) {
+        AccountState account = getAccountState(address);
+        return account == null ? null : getContractDetails(address, account);
+    }
+
+    private StoredContractDetails getContractDetails(AionAddress address, AccountState account) {
+        InternalVmType vm = getVMUsed(address, account.getCodeHash());
+        return detailsDS.getSnapshot(vm, address.toByteArray(), account.getStateRoot());
+    }
+
+    public ByteArrayWrapper getStorageValue(AionAddress address, ByteArrayWrapper key) {
+        if (flatState != null) {
+            byte[] value = flatState.getStorage(address, key, root);
+            if (value != null) {
+                return FlatStateStore.decodeStorageValue(value);
+            }
+        }
+
+        ContractDetails details = getContractDetails(address);
+        return (details == null) ? null : details.get(key);
+    }
+
+    public Map<ByteArrayWrapper, ByteArrayWrapper> getStorage(
+            AionAddress address, Collection<ByteArrayWrapper> keys) {
+        ContractDetails details = getContractDetails(address);
+        return (details == null) ? Collections.emptyMap() : details.getStorage(keys);
+    }
+
+    public byte[] getCode(AionAddress address) {
+        AccountState account = getAccountState(address);
+        if (account == null) {
+            return EMPTY_BYTE_ARRAY;
+        }
+
+        ContractDetails details = getContractDetails(address, account);
+        return (details == null) ? EMPTY_BYTE_ARRAY : details.getCode(account.getCodeHash());
+    }
+
+    public InternalVmType getVmType(AionAddress contract) {
+        ContractDetails details = getContractDetails(contract);
+        return (details == null) ? InternalVmType.EITHER : details.getVmType();
+    }
+
+    /**
+     * Determines the virtual machine used by the contract. Differs from {@link
+     * AionRepositoryImpl#getVMUsed(AionAddress, byte[])} by ignoring contracts that were not yet
+     * committed, since they cannot be part of the pinned state.
+     */
+    private InternalVmType getVMUsed(AionAddress contract, byte[] codeHash) {
+        if (ContractInfo.isPrecompiledContract(contract)) {
+            return InternalVmType.FVM;
+        } else if (Arrays.equals(codeHash, EMPTY_DATA_HASH)) {
+            return InternalVmType.EITHER;
+        } else {
+            ContractInformation ci = contractInfoSource.get(contract.toByteArray());
+            return ci == null ? InternalVmType.UNKNOWN : ci.getVmUsed(codeHash);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.aion.zero.impl.db;
 
+import java.util.function.BiConsumer;
 import org.aion.mcf.db.ContractDetails;
 
 /**
@@ -21,4 +22,12 @@ public interface StoredContractDetails extends ContractDetails {
      * external storage trie and the object graph (when applicable).
      */
     void syncStorage();
+
+    /**
+     * Visits all the entries of the storage trie. The keys are the hashed storage keys and the
+     * values are encoded as stored in the trie.
+     *
+     * @param visitor receives each hashed key and encoded value
+     */
+    void forEachStorageEntry(BiConsumer<byte[], byte[]> visitor);
 }
@@ -1,10 +1,20 @@
 package org.aion.zero.impl.pendingState;
 
+import static org.aion.crypto.HashUtil.EMPTY_DATA_HASH;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.math.BigInteger;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +23,9 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
@@ -33,6 +46,7 @@ import org.aion.base.TxUtil;
 import org.aion.log.AionLoggerFactory;
 import org.aion.log.LogEnum;
 import org.aion.mcf.blockchain.Block;
+import org.aion.precompiled.ContractInfo;
 import org.aion.zero.impl.blockchain.AionBlockchainImpl;
 import org.aion.zero.impl.types.TxResponse;
 import org.aion.base.AccountState;
@@ -43,6 +57,10 @@ import org.aion.util.conversions.Hex;
 import org.aion.zero.impl.vm.common.BlockCachingContext;
 import org.aion.zero.impl.vm.common.BulkExecutor;
 import org.aion.zero.impl.SystemExitCodes;
+import org.aion.zero.impl.db.AionRepositoryCache;
+import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.db.StateSnapshot;
+import org.aion.zero.impl.forks.ForkUtility;
 import org.aion.zero.impl.valid.TXValidator;
 import org.aion.zero.impl.valid.TransactionTypeValidator;
 import org.aion.base.AionTxExecSummary;
@@ -53,13 +71,41 @@ public final class AionPendingStateImpl implements IPendingState {
 
     private static final Logger LOGGER_TX = AionLoggerFactory.getLogger(LogEnum.TX.toString());
     private static final Logger LOGGER_VM = AionLoggerFactory.getLogger(LogEnum.VM.toString());
+    private static final Logger SURVEY_LOG = AionLoggerFactory.getLogger(LogEnum.SURVEY.name());
+
+    /** The number of network transactions validated by a task of the validation pool. */
+    private static final int VALIDATION_BATCH = 128;
+    private static final int SEEN_TX_CACHE_SIZE = 64 * 1024;
 
     private final AionBlockchainImpl blockchain;
     private final TxPoolV1 txPool;
     private final AtomicReference<Block> currentBestBlock;
     private final PendingTxCacheV1 pendingTxCache;
 
-    private RepositoryCache<AccountState> pendingState;
+    private AionRepositoryCache pendingState;
+    /** The repository tracked by the pending state. */
+    private AionRepositoryImpl pendingStateBase;
+
+    /**
+     * The pool transactions of each sender executed in the pending state and the accounts they
+     * accessed, used to determine which results remain valid after a new block.
+     */
+    private final Map<AionAddress, SenderExecution> executedSenders = new HashMap<>();
+
+    /**
+     * Hashes of the recently received network transactions that were valid and accepted, so that
+     * the repeated gossip is skipped. The rejected transactions are not recorded, so that they can
+     * be accepted when received again after the next blocks.
+     */
+    private final Cache<ByteArrayWrapper, Boolean> seenNetworkTxs =
+            Caffeine.newBuilder().maximumSize(SEEN_TX_CACHE_SIZE).build();
+
+    /**
+     * The cached senders to check for transactions that can be moved to the pool after the next
+     * block: the senders whose nonce was changed by the imported blocks and the senders with cached
+     * transactions following their pool transactions, left in the cache because of the pool limits.
+     */
+    private final Set<AionAddress> cachedSendersToPromote = new HashSet<>();
 
     /**
      * This buffer stores txs that come in with double the energy price as an existing tx with the same nonce
@@ -163,7 +209,8 @@ public final class AionPendingStateImpl implements IPendingState {
         this.poolDumpEnable = poolDump && !seedMode;
         this.poolBackUpEnable = poolBackup && !seedMode;
         this.repayTransaction = new LinkedHashSet<>();
-        this.pendingState = blockchain.getRepository().startTracking();
+        this.pendingStateBase = blockchain.getRepository();
+        this.pendingState = new AionRepositoryCache(pendingStateBase);
         this.pendingTxCache = new PendingTxCacheV1(poolBackUpEnable);
 
         if (poolBackUpEnable) {
@@ -193,11 +240,12 @@ public final class AionPendingStateImpl implements IPendingState {
 
     /**
      * Transaction comes from the ApiServer. Validate it first then add into the pendingPool.
-     * Synchronized it because multiple Api interfaces call this method.
+     * The validation does not hold the pending state lock, only the insertion into the pool is
+     * synchronized because multiple Api interfaces call this method.
      * @param tx transaction comes from the ApiServer.
      * @return the TxResponse.
      */
-    public synchronized TxResponse addTransactionFromApiServer(AionTransaction tx) {
+    public TxResponse addTransactionFromApiServer(AionTransaction tx) {
 
         TxResponse response = validateTx(tx);
         if (response.isFail()) {
@@ -205,6 +253,10 @@ public final class AionPendingStateImpl implements IPendingState {
             return response;
         }
 
+        return addValidTransactionFromApiServer(tx);
+    }
+
+    private synchronized TxResponse addValidTransactionFromApiServer(AionTransaction tx) {
         // SeedMode or the syncing status will just broadcast the transaction to the network.
         if (isSeedMode || !closeToNetworkBest) {
             transactionBroadcastCallback.broadcastTransactions(Collections.singletonList(tx));
@@ -215,24 +267,107 @@ public final class AionPendingStateImpl implements IPendingState {
     }
 
     /**
-     * The transactions come from the p2p network. We validate it first then add into the pendingPool.
+     * The transactions come from the p2p network. The transactions not seen before are validated
+     * in parallel without holding the pending state lock, then the valid ones are added into the
+     * pendingPool in nonce order.
      * @param transactions transaction list come from the network.
      */
-    public synchronized void addTransactionsFromNetwork(List<AionTransaction> transactions) {
+    public void addTransactionsFromNetwork(List<AionTransaction> transactions) {
+        long t1 = System.nanoTime();
+        List<AionTransaction> validTransactions = validateNetworkTransactions(transactions);
+        long t2 = System.nanoTime();
+
+        addValidTransactionsFromNetwork(inNonceOrder(validTransactions));
+
+        LOGGER_TX.debug(
+                "addTransactionsFromNetwork tx#[{}] valid#[{}], validation {} ms, insertion {} ms",
+                transactions.size(),
+                validTransactions.size(),
+                (t2 - t1) / 1_000_000,
+                (System.nanoTime() - t2) / 1_000_000);
+    }
+
+    private synchronized void addValidTransactionsFromNetwork(List<AionTransaction> validTransactions) {
+        // SeedMode or the syncing status will just broadcast the transaction to the network.
+        if (isSeedMode || !closeToNetworkBest) {
+            transactionBroadcastCallback.broadcastTransactions(validTransactions);
+            for (AionTransaction tx : validTransactions) {
+                seenNetworkTxs.put(ByteArrayWrapper.wrap(tx.getTransactionHash()), Boolean.TRUE);
+            }
+        } else {
+            List<TxResponse> responses = addPendingTransactions(validTransactions);
+            for (int i = 0; i < validTransactions.size(); i++) {
+                if (responses.get(i).isSuccess()) {
+                    seenNetworkTxs.put(ByteArrayWrapper.wrap(validTransactions.get(i).getTransactionHash()), Boolean.TRUE);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the valid transactions among the ones not accepted before. The transactions rejected
+     *     before are validated again, which only repeats the checks not cached by the {@link
+     *     TXValidator}.
+     */
+    private List<AionTransaction> validateNetworkTransactions(List<AionTransaction> transactions) {
+        List<AionTransaction> unseen = new ArrayList<>();
+        Set<ByteArrayWrapper> hashes = new HashSet<>();
+        for (AionTransaction tx : transactions) {
+            ByteArrayWrapper hash = ByteArrayWrapper.wrap(tx.getTransactionHash());
+            // the hashes are only recorded after the insertion, so the batch is deduplicated here
+            if (seenNetworkTxs.getIfPresent(hash) == null && hashes.add(hash)) {
+                unseen.add(tx);
+            }
+        }
+
+        if (unseen.size() <= VALIDATION_BATCH) {
+            return filterValid(unseen);
+        }
+
+        List<Future<List<AionTransaction>>> futures = new ArrayList<>();
+        for (int from = 0; from < unseen.size(); from += VALIDATION_BATCH) {
+            List<AionTransaction> batch = unseen.subList(from, Math.min(from + VALIDATION_BATCH, unseen.size()));
+            futures.add(ValidationPool.INSTANCE.submit(() -> filterValid(batch)));
+        }
+
         List<AionTransaction> validTransactions = new ArrayList<>();
+        for (Future<List<AionTransaction>> future : futures) {
+            try {
+                validTransactions.addAll(Uninterruptibles.getUninterruptibly(future));
+            } catch (ExecutionException e) {
+                LOGGER_TX.error("Network transaction validation failed.", e.getCause());
+            }
+        }
+        return validTransactions;
+    }
 
+    private List<AionTransaction> filterValid(List<AionTransaction> transactions) {
+        List<AionTransaction> validTransactions = new ArrayList<>();
         for (AionTransaction tx : transactions) {
-            if (!TXValidator.isInCache(ByteArrayWrapper.wrap(tx.getTransactionHash())) && !validateTx(tx).isFail()) {
+            if (!validateTx(tx).isFail()) {
                 validTransactions.add(tx);
             }
         }
+        return validTransactions;
+    }
 
-        // SeedMode or the syncing status will just broadcast the transaction to the network.
-        if (isSeedMode || !closeToNetworkBest) {
-            transactionBroadcastCallback.broadcastTransactions(validTransactions);
-        } else {
-            addPendingTransactions(validTransactions);
+    /**
+     * Orders the transactions of each sender by nonce, so that the consecutive transactions of a
+     * batch go to the txPool instead of the cachePool. The senders keep the order of their first
+     * transaction.
+     */
+    private static List<AionTransaction> inNonceOrder(List<AionTransaction> transactions) {
+        Map<AionAddress, List<AionTransaction>> txsBySender = new LinkedHashMap<>();
+        for (AionTransaction tx : transactions) {
+            txsBySender.computeIfAbsent(tx.getSenderAddress(), k -> new ArrayList<>()).add(tx);
+        }
+
+        List<AionTransaction> ordered = new ArrayList<>(transactions.size());
+        for (List<AionTransaction> txs : txsBySender.values()) {
+            txs.sort(Comparator.comparing(AionTransaction::getNonceBI));
+            ordered.addAll(txs);
         }
+        return ordered;
     }
 
     private TxResponse validateTx(AionTransaction tx) {
@@ -364,33 +499,31 @@ public final class AionPendingStateImpl implements IPendingState {
             newPending.add(tx);
             addPendingTxToBackupDatabase(tx);
 
-            Map<BigInteger, AionTransaction> cachedTxWithSender = pendingTxCache.getCacheTxBySender(tx.getSenderAddress());
-            if (cachedTxWithSender != null) {
-                LOGGER_TX.debug(
-                    "add Transaction from cache, sender: {}, size: {}",
-                    tx.getSenderAddress(),
-                    cachedTxWithSender.size());
-
-                BigInteger newCachedTxNonce = tx.getNonceBI().add(BigInteger.ONE);
-                AionTransaction newCachedTx = cachedTxWithSender.get(newCachedTxNonce);
-                while (response.equals(TxResponse.SUCCESS)
-                    && newCachedTx != null
-                    && fetchLimit-- > 0
-                    && !txPool.isFull()) {
-
-                    LOGGER_TX.debug("add Transaction from cache, sender: {}, nonce: {}", newCachedTx.getSenderAddress(), newCachedTxNonce);
-
-                    response = addPendingTransactionInner(newCachedTx);
-                    if (response.equals(TxResponse.SUCCESS)) {
-                        newPending.add(newCachedTx);
-                        addPendingTxToBackupDatabase(newCachedTx);
-                        pendingTxCache.removeTransaction(newCachedTx.getSenderAddress(), newCachedTxNonce);
-
-                        newCachedTxNonce = newCachedTxNonce.add(BigInteger.ONE);
-                        newCachedTx = cachedTxWithSender.get(newCachedTxNonce);
-                    }
+            AionAddress sender = tx.getSenderAddress();
+            long newCachedTxNonce = tx.getNonceBI().longValue() + 1;
+            AionTransaction newCachedTx = pendingTxCache.getCacheTx(sender, newCachedTxNonce);
+            while (response.equals(TxResponse.SUCCESS)
+                && newCachedTx != null
+                && fetchLimit-- > 0
+                && !txPool.isFull()) {
+
+                LOGGER_TX.debug("add Transaction from cache, sender: {}, nonce: {}", sender, newCachedTxNonce);
+
+                response = addPendingTransactionInner(newCachedTx);
+                if (response.equals(TxResponse.SUCCESS)) {
+                    newPending.add(newCachedTx);
+                    addPendingTxToBackupDatabase(newCachedTx);
+                    pendingTxCache.removeTransaction(sender, newCachedTxNonce);
+
+                    newCachedTxNonce++;
+                    newCachedTx = pendingTxCache.getCacheTx(sender, newCachedTxNonce);
                 }
             }
+
+            if (response.equals(TxResponse.SUCCESS) && newCachedTx != null) {
+                // stopped by the fetch limit or the pool size, continue after the next block
+                cachedSendersToPromote.add(sender);
+            }
         }
 
         return response;
@@ -403,6 +536,10 @@ public final class AionPendingStateImpl implements IPendingState {
             newLargeNonceTx.add(tx);
         }
 
+        if (response.equals(TxResponse.CACHED_POOLMAX)) {
+            cachedSendersToPromote.add(tx.getSenderAddress());
+        }
+
         return response;
     }
 
@@ -425,7 +562,7 @@ public final class AionPendingStateImpl implements IPendingState {
      * @return the max transaction number of each account should fetch from the cachePool.
      */
     private int calculateTxFetchNumberLimit() {
-        int cachedAccount = pendingTxCache.getCacheTxAccount().size();
+        int cachedAccount = pendingTxCache.cacheAccountSize();
         return cachedAccount == 0 ? 1 : Math.max((txPool.maxPoolSize / 4) / cachedAccount, 1);
     }
 
@@ -563,6 +700,7 @@ public final class AionPendingStateImpl implements IPendingState {
             return;
         }
 
+        Block previousBest = currentBestBlock.get();
         if (currentBestBlock.get().isParentOf(newBlock)) {
             LOGGER_TX.info("PendingStateImpl.processBest: {}", newBlock.getShortDescr());
             processBestInternal(newBlock, receipts);
@@ -588,8 +726,7 @@ public final class AionPendingStateImpl implements IPendingState {
         checkCloseToNetworkBest();
 
         // Should update the pendingState before re run the transactions in txPool.
-        pendingState = blockchain.getRepository().startTracking();
-        rerunTxsInPool(currentBestBlock.get());
+        rerunTxsInPool(previousBest, currentBestBlock.get());
 
         flushCachedTx();
         backupPendingTx();
@@ -646,6 +783,7 @@ public final class AionPendingStateImpl implements IPendingState {
         while (!stack.isEmpty()) {
             List<AionTransaction> transactions = stack.pop();
             for (AionTransaction tx : transactions) {
+                cachedSendersToPromote.add(tx.getSenderAddress());
                     /* We can add the Tx directly to the pool with the energy value
                      because all txs in the pool are going to be re-run in rerunTxsInPool(best.get()) */
                 txPool.add(new PooledTransaction(tx, tx.getEnergyLimit()));
@@ -658,19 +796,31 @@ public final class AionPendingStateImpl implements IPendingState {
         pendingTxReceivedforMining.set(newPendingTxReceived);
     }
 
+    /**
+     * Removes the sealed and the expired transactions from the cache and moves the cached
+     * transactions which follow the pending state nonce to the pool. Only the senders whose nonce
+     * was changed by the imported blocks and the senders left in the cache by the pool limits are
+     * checked, since the cached transactions of the other senders cannot have become sealed or
+     * executable.
+     */
     private void flushCachedTx() {
-        Set<AionAddress> cacheTxAccount = this.pendingTxCache.getCacheTxAccount();
-
-        if (cacheTxAccount.isEmpty()) {
+        if (pendingTxCache.cacheTxSize() == 0) {
+            cachedSendersToPromote.clear();
             return;
         }
 
-        LOGGER_TX.debug("PendingStateImpl.flushCachePendingTx: acc#[{}]", cacheTxAccount.size());
-
         Map<AionAddress, BigInteger> nonceMap = new HashMap<>();
-        for (AionAddress addr : cacheTxAccount) {
-            nonceMap.put(addr, bestPendingStateNonce(addr));
+        for (AionAddress addr : cachedSendersToPromote) {
+            if (pendingTxCache.hasCacheTx(addr)) {
+                nonceMap.put(addr, bestPendingStateNonce(addr));
+            }
         }
+        cachedSendersToPromote.clear();
+
+        LOGGER_TX.debug(
+                "PendingStateImpl.flushCachePendingTx: acc#[{}] of cached acc#[{}]",
+                nonceMap.size(),
+                pendingTxCache.cacheAccountSize());
 
         List<AionTransaction> outdatedTransaction = this.pendingTxCache.removeSealedTransactions(nonceMap);
         LOGGER_TX.debug("PendingStateImpl.flushCachePendingTx: outdatedTransaction#[{}]", outdatedTransaction.size());
@@ -704,13 +854,13 @@ public final class AionPendingStateImpl implements IPendingState {
             if (txSum.isRejected()) {
                 LOGGER_TX.debug("Invalid transaction in cachedPool: {}", tx);
                 fireTxUpdate(receipt, PendingTransactionState.DROPPED, currentBestBlock.get());
-                pendingTxCache.removeTransaction(tx.getSenderAddress(), tx.getNonceBI());
+                pendingTxCache.removeTransaction(tx.getSenderAddress(), tx.getNonceBI().longValue());
             } else {
                 PooledTransaction pTx = txPool.add(new PooledTransaction(tx, receipt.getEnergyUsed()));
                 if (pTx != null) {
                     fireTxUpdate(receipt, PendingTransactionState.PENDING, currentBestBlock.get());
                     updatedAddress.add(tx.getSenderAddress());
-                    pendingTxCache.removeTransaction(tx.getSenderAddress(), tx.getNonceBI());
+                    pendingTxCache.removeTransaction(tx.getSenderAddress(), tx.getNonceBI().longValue());
                 }
             }
         }
@@ -718,6 +868,15 @@ public final class AionPendingStateImpl implements IPendingState {
         for (AionAddress addr : updatedAddress) {
             nonceMap.put(addr, bestPendingStateNonce(addr));
         }
+
+        for (Map.Entry<AionAddress, BigInteger> e : nonceMap.entrySet()) {
+            BigInteger nonce = e.getValue();
+            if (nonce.bitLength() < Long.SIZE
+                    && pendingTxCache.getCacheTx(e.getKey(), nonce.longValue()) != null) {
+                // left in the cache by the pool limits
+                cachedSendersToPromote.add(e.getKey());
+            }
+        }
     }
 
     private void processBestInternal(Block block, List<AionTxReceipt> receipts) {
@@ -769,6 +928,7 @@ public final class AionPendingStateImpl implements IPendingState {
             int cnt = 0;
             for (AionTransaction tx : txList) {
                 accountNonce.computeIfAbsent(tx.getSenderAddress(), this::bestRepoNonce);
+                cachedSendersToPromote.add(tx.getSenderAddress());
 
                 LOGGER_TX.debug(
                     "Clear pending transaction, addr: {} hash: {}",
@@ -806,38 +966,302 @@ public final class AionPendingStateImpl implements IPendingState {
         return info;
     }
 
-    private void rerunTxsInPool(Block block) {
+    /**
+     * Updates the pending state to the new best block. Only the pool transactions of the senders
+     * affected by the new block are executed again: the senders whose pool transactions changed,
+     * the senders that accessed an account modified since the previous best block, the senders
+     * whose transactions ran code that can read the block context, and the senders that accessed
+     * the accounts of other affected senders. The results of the other senders are kept in the
+     * pending state.
+     */
+    private void rerunTxsInPool(Block previousBest, Block block) {
+        long start = System.nanoTime();
 
         addRepayTxToTxPool();
 
         List<AionTransaction> pendingTxl = txPool.snapshotAll();
         LOGGER_TX.info("rerunTxsInPool - snapshotAll tx[{}]", pendingTxl.size());
 
-        if (!pendingTxl.isEmpty()) {
-            for (AionTransaction tx : pendingTxl) {
-                LOGGER_TX.debug("rerunTxsInPool - loop: {}", tx);
+        Map<AionAddress, List<AionTransaction>> txsBySender = new LinkedHashMap<>();
+        for (AionTransaction tx : pendingTxl) {
+            txsBySender.computeIfAbsent(tx.getSenderAddress(), k -> new ArrayList<>()).add(tx);
+        }
 
-                AionTxExecSummary txSum = executeTx(tx);
-                AionTxReceipt receipt = txSum.getReceipt();
-                receipt.setTransaction(tx);
+        Set<AionAddress> keptSenders = findUnaffectedSenders(previousBest, block, txsBySender);
+        executedSenders.keySet().retainAll(keptSenders);
+        if (keptSenders.isEmpty()) {
+            pendingStateBase = blockchain.getRepository();
+            pendingState = new AionRepositoryCache(pendingStateBase);
+        } else {
+            Set<AionAddress> keptAccounts = new HashSet<>();
+            BigInteger keptFees = BigInteger.ZERO;
+            for (SenderExecution execution : executedSenders.values()) {
+                keptAccounts.addAll(execution.footprint);
+                keptFees = keptFees.add(execution.fees);
+            }
+            // the coinbase accounts are read again from the new block
+            // and the fees of the kept executions are paid to the new coinbase
+            pendingState.retainAccounts(keptAccounts);
+            if (keptFees.signum() > 0) {
+                pendingState.addBalance(block.getCoinbase(), keptFees);
+            }
+        }
 
-                if (txSum.isRejected()) {
-                    LOGGER_TX.debug("Invalid transaction in txPool: {}", tx);
+        List<List<AionTransaction>> rerunTxs = new ArrayList<>();
+        int rerunTxCount = 0;
+        int keptTxCount = 0;
+        for (Map.Entry<AionAddress, List<AionTransaction>> entry : txsBySender.entrySet()) {
+            if (keptSenders.contains(entry.getKey())) {
+                keptTxCount += entry.getValue().size();
+                for (AionTxReceipt receipt : executedSenders.get(entry.getKey()).receipts) {
+                    fireTxUpdate(receipt, PendingTransactionState.PENDING, block);
+                }
+            } else {
+                rerunTxCount += entry.getValue().size();
+                rerunTxs.add(entry.getValue());
+            }
+        }
 
-                    txPool.remove(new PooledTransaction(tx, receipt.getEnergyUsed()));
-                    removeBackupDBPendingTx(tx.getTransactionHash());
-                    fireTxUpdate(receipt, PendingTransactionState.DROPPED, block);
-                } else {
-                    if (repayTransaction.contains(tx)) {
-                        txPool.updatePoolTransaction(new PooledTransaction(tx, receipt.getEnergyUsed()));
+        int conflicts = rerunSenders(rerunTxs, block);
+
+        repayTransaction.clear();
+
+        SURVEY_LOG.info(
+                "Pending state rerun block#[{}]: senders rerun#[{}] kept#[{}], tx rerun#[{}] kept#[{}], conflicts#[{}], {}ms",
+                block.getNumber(),
+                rerunTxs.size(),
+                keptSenders.size(),
+                rerunTxCount,
+                keptTxCount,
+                conflicts,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return the senders whose results in the pending state remain valid on top of the new best
+     *     block, or an empty set when the whole pool must be executed again
+     */
+    private Set<AionAddress> findUnaffectedSenders(
+            Block previousBest, Block block, Map<AionAddress, List<AionTransaction>> txsBySender) {
+        AionRepositoryImpl repository = blockchain.getRepository();
+        if (executedSenders.isEmpty()
+                || repository != pendingStateBase
+                || !haveSameExecutionRules(previousBest, block)) {
+            return Collections.emptySet();
+        }
+
+        Map<AionAddress, List<AionAddress>> sendersByAccount = new HashMap<>();
+        for (Map.Entry<AionAddress, SenderExecution> entry : executedSenders.entrySet()) {
+            for (AionAddress account : entry.getValue().footprint) {
+                sendersByAccount.computeIfAbsent(account, k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+
+        boolean sameContext = haveSameExecutionContext(previousBest, block);
+        Set<AionAddress> affected = new HashSet<>();
+        for (Map.Entry<AionAddress, SenderExecution> entry : executedSenders.entrySet()) {
+            AionAddress sender = entry.getKey();
+            // the fees paid to the coinbase are not part of the footprints
+            if (!entry.getValue().isExecutionOf(txsBySender.get(sender))
+                    || (!sameContext && !entry.getValue().onlyTransfers)
+                    || sender.equals(previousBest.getCoinbase())
+                    || sender.equals(block.getCoinbase())
+                    || entry.getValue().footprint.contains(previousBest.getCoinbase())) {
+                affected.add(sender);
+            }
+        }
+
+        try {
+            // the pending state was executed on top of the state of the previous best block
+            StateSnapshot previousState = repository.getStateSnapshot(previousBest.getStateRoot());
+            StateSnapshot currentState = repository.getStateSnapshot(block.getStateRoot());
+            for (Map.Entry<AionAddress, List<AionAddress>> entry : sendersByAccount.entrySet()) {
+                if (!affected.containsAll(entry.getValue())
+                        && isModified(entry.getKey(), previousState, currentState)) {
+                    affected.addAll(entry.getValue());
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER_TX.warn("Cannot compare the state of the previous best block, rerunning all the pool transactions.", e);
+            return Collections.emptySet();
+        }
+
+        // the senders accessing the accounts of the affected senders depend on their results
+        Deque<AionAddress> dependents = new ArrayDeque<>(affected);
+        while (!dependents.isEmpty()) {
+            for (AionAddress account : executedSenders.get(dependents.poll()).footprint) {
+                for (AionAddress sender : sendersByAccount.get(account)) {
+                    if (affected.add(sender)) {
+                        dependents.add(sender);
                     }
+                }
+            }
+        }
 
-                    fireTxUpdate(receipt, PendingTransactionState.PENDING, block);
+        Set<AionAddress> unaffected = new HashSet<>(executedSenders.keySet());
+        unaffected.removeAll(affected);
+        return unaffected;
+    }
+
+    private boolean haveSameExecutionRules(Block previousBest, Block block) {
+        ForkUtility forkUtility = blockchain.forkUtility;
+        long previous = previousBest.getNumber() + 1;
+        long next = block.getNumber() + 1;
+        return forkUtility.is040ForkActive(previous) == forkUtility.is040ForkActive(next)
+                && forkUtility.isUnityForkActive(previous) == forkUtility.isUnityForkActive(next)
+                && forkUtility.isSignatureSwapForkActive(previous) == forkUtility.isSignatureSwapForkActive(next);
+    }
+
+    /**
+     * @return {@code true} if the pending transactions are executed with the same block number,
+     *     timestamp, difficulty and energy limit on top of both blocks
+     */
+    private static boolean haveSameExecutionContext(Block previousBest, Block block) {
+        return previousBest.getNumber() == block.getNumber()
+                && previousBest.getTimestamp() == block.getTimestamp()
+                && previousBest.getNrgLimit() == block.getNrgLimit()
+                && Arrays.equals(previousBest.getDifficulty(), block.getDifficulty());
+    }
+
+    /**
+     * @return {@code true} if the transaction only transferred value to an account without code,
+     *     so that its result does not depend on the block context
+     */
+    private static boolean isPlainTransfer(AionTransaction tx, RepositoryCache<AccountState> repository) {
+        if (tx.isContractCreationTransaction()
+                || ContractInfo.isPrecompiledContract(tx.getDestinationAddress())) {
+            return false;
+        }
+        AccountState destination = repository.getAccountState(tx.getDestinationAddress());
+        return destination == null || Arrays.equals(destination.getCodeHash(), EMPTY_DATA_HASH);
+    }
+
+    private static boolean isModified(AionAddress address, StateSnapshot before, StateSnapshot after) {
+        AccountState previous = before.getAccountState(address);
+        AccountState current = after.getAccountState(address);
+        if (previous == null || current == null) {
+            return previous != current;
+        }
+        return !Arrays.equals(previous.getEncoded(), current.getEncoded());
+    }
+
+    /**
+     * Executes the pool transactions of the given senders on top of the pending state. The senders
+     * are executed in parallel, each in its own cache, and their results are applied in the pool
+     * order. A sender that accessed an account modified by a sender applied before it is executed
+     * again on top of the updated pending state.
+     *
+     * @param senderTxs the pool transactions of each sender to execute
+     * @param block the new best block
+     * @return the number of senders executed again due to a conflict
+     */
+    private int rerunSenders(List<List<AionTransaction>> senderTxs, Block block) {
+        AionAddress miner = block.getCoinbase();
+        // loaded before the executions start so that they only read the pending state
+        BigInteger minerBalance = pendingState.getBalance(miner);
+
+        List<Future<SenderRerun>> futures = new ArrayList<>();
+        if (senderTxs.size() > 1) {
+            for (List<AionTransaction> txs : senderTxs) {
+                futures.add(RerunPool.INSTANCE.submit(() -> rerunSender(txs, minerBalance)));
+            }
+        }
+
+        // all the executions must complete before any changes are applied to the pending state
+        List<SenderRerun> reruns = new ArrayList<>();
+        for (Future<SenderRerun> future : futures) {
+            reruns.add(awaitRerun(future));
+        }
+
+        Set<AionAddress> modifiedInBatch = new HashSet<>();
+        int conflicts = 0;
+        for (int i = 0; i < senderTxs.size(); i++) {
+            List<AionTransaction> txs = senderTxs.get(i);
+            SenderRerun rerun = reruns.isEmpty() ? null : reruns.get(i);
+
+            if (rerun == null
+                    || rerun.conflictsWith(modifiedInBatch)
+                    || txs.get(0).getSenderAddress().equals(miner)) {
+                if (rerun != null) {
+                    conflicts++;
                 }
+                rerun = rerunSender(txs, pendingState.getBalance(miner));
             }
+
+            Set<AionAddress> modified = rerun.track.getModifiedAddresses();
+            Set<AionAddress> footprint = rerun.track.getAccessedAddresses();
+            footprint.addAll(modified);
+            modifiedInBatch.addAll(modified);
+            modifiedInBatch.remove(miner);
+            BigInteger minerCredit = rerun.track.getBalance(miner).subtract(rerun.minerBalance);
+
+            // the fees are added to the coinbase balance the execution started from
+            BigInteger feesApplied = pendingState.getBalance(miner).subtract(rerun.minerBalance);
+            rerun.track.flush();
+            if (modified.contains(miner)) {
+                pendingState.addBalance(miner, feesApplied);
+            }
+
+            applyRerunResults(txs, rerun.summaries, footprint, miner, minerCredit, block);
         }
+        return conflicts;
+    }
 
-        repayTransaction.clear();
+    private SenderRerun rerunSender(List<AionTransaction> txs, BigInteger minerBalance) {
+        AionRepositoryCache track = new AionRepositoryCache(pendingState, true);
+        List<AionTxExecSummary> summaries = new ArrayList<>();
+        for (AionTransaction tx : txs) {
+            LOGGER_TX.debug("rerunTxsInPool - loop: {}", tx);
+            summaries.add(executeTx(tx, track));
+        }
+        return new SenderRerun(track, summaries, minerBalance);
+    }
+
+    private static SenderRerun awaitRerun(Future<SenderRerun> future) {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+            // the sender is executed again on top of the pending state
+            LOGGER_TX.debug("Parallel rerun of the pool transactions failed.", e.getCause());
+            return null;
+        }
+    }
+
+    private void applyRerunResults(
+            List<AionTransaction> txs,
+            List<AionTxExecSummary> summaries,
+            Set<AionAddress> footprint,
+            AionAddress miner,
+            BigInteger minerCredit,
+            Block block) {
+        SenderExecution execution = new SenderExecution(footprint);
+        BigInteger fees = BigInteger.ZERO;
+
+        for (int i = 0; i < txs.size(); i++) {
+            AionTransaction tx = txs.get(i);
+            AionTxExecSummary txSum = summaries.get(i);
+            AionTxReceipt receipt = txSum.getReceipt();
+            receipt.setTransaction(tx);
+
+            if (txSum.isRejected()) {
+                LOGGER_TX.debug("Invalid transaction in txPool: {}", tx);
+
+                txPool.remove(new PooledTransaction(tx, receipt.getEnergyUsed()));
+                removeBackupDBPendingTx(tx.getTransactionHash());
+                fireTxUpdate(receipt, PendingTransactionState.DROPPED, block);
+            } else {
+                if (repayTransaction.contains(tx)) {
+                    txPool.updatePoolTransaction(new PooledTransaction(tx, receipt.getEnergyUsed()));
+                }
+
+                execution.addReceipt(receipt, isPlainTransfer(tx, pendingState));
+                fees = fees.add(txSum.getFee());
+                fireTxUpdate(receipt, PendingTransactionState.PENDING, block);
+            }
+        }
+
+        execution.addCoinbaseCredit(miner, minerCredit, fees);
+        executedSenders.put(txs.get(0).getSenderAddress(), execution);
     }
 
     private void addRepayTxToTxPool() {
@@ -857,7 +1281,35 @@ public final class AionPendingStateImpl implements IPendingState {
         }
     }
 
+    /**
+     * Executes the transaction on top of the pending state and records the accounts it accessed
+     * when it is valid.
+     */
     private AionTxExecSummary executeTx(AionTransaction tx) {
+        AionRepositoryCache track = new AionRepositoryCache(pendingState, true);
+        AionTxExecSummary txSum = executeTx(tx, track);
+
+        if (!txSum.isRejected()) {
+            AionTxReceipt receipt = txSum.getReceipt();
+            receipt.setTransaction(tx);
+
+            AionAddress miner = currentBestBlock.get().getCoinbase();
+            BigInteger minerCredit = track.getBalance(miner).subtract(pendingState.getBalance(miner));
+
+            SenderExecution execution =
+                    executedSenders.computeIfAbsent(tx.getSenderAddress(), k -> new SenderExecution(new HashSet<>()));
+            execution.addReceipt(receipt, isPlainTransfer(tx, track));
+            execution.footprint.addAll(track.getAccessedAddresses());
+            execution.footprint.addAll(track.getModifiedAddresses());
+            execution.addCoinbaseCredit(miner, minerCredit, txSum.getFee());
+        }
+
+        track.flush();
+        return txSum;
+    }
+
+    /** May be called concurrently with different repositories. */
+    private AionTxExecSummary executeTx(AionTransaction tx, RepositoryCache<AccountState> repository) {
 
         Block bestBlk = currentBestBlock.get();
         LOGGER_TX.debug("executeTx: {}", Hex.toHexString(tx.getTransactionHash()));
@@ -886,7 +1338,7 @@ public final class AionPendingStateImpl implements IPendingState {
                     blockNrgLimit,
                     miner,
                     tx,
-                    pendingState,
+                    repository,
                     isLocalCall,
                     incrementSenderNonce,
                     blockchain.forkUtility.is040ForkActive(currentBlockNumber),
@@ -944,7 +1396,7 @@ public final class AionPendingStateImpl implements IPendingState {
         LOGGER_TX.info("=========== Cache pending tx");
         Set<AionAddress> cacheAddr = pendingTxCache.getCacheTxAccount();
         for (AionAddress addr : cacheAddr) {
-            Map<BigInteger, AionTransaction> cacheMap = pendingTxCache.getCacheTxBySender(addr);
+            Map<Long, AionTransaction> cacheMap = pendingTxCache.getCacheTxBySender(addr);
             if (cacheMap != null) {
                 for (AionTransaction tx : cacheMap.values()) {
                     LOGGER_TX.info("{}", tx.toString());
@@ -996,6 +1448,8 @@ public final class AionPendingStateImpl implements IPendingState {
         }
 
         sortedMap.values().forEach(kv -> kv.values().forEach(pendingTxCache::addCacheTx));
+        // the pool may have been restored to the same nonces, check them after the next block
+        cachedSendersToPromote.addAll(sortedMap.keySet());
         blockchain.getRepository().removeCacheTx();
 
         LOGGER_TX.info("tx loaded from DB to the cachePool, {} ms", System.currentTimeMillis() - t1);
@@ -1037,4 +1491,98 @@ public final class AionPendingStateImpl implements IPendingState {
     public synchronized int getCachePoolSize() {
         return pendingTxCache.cacheTxSize();
     }
+
+    /**
+     * The valid pool transactions of a sender executed in the pending state and the accounts read
+     * or modified by them, excluding the coinbase they paid the fees to.
+     */
+    private static final class SenderExecution {
+        private final List<AionTxReceipt> receipts = new ArrayList<>();
+        private final Set<AionAddress> footprint;
+        /** The fees paid to the coinbase, paid again to the coinbase of the next block when kept. */
+        private BigInteger fees = BigInteger.ZERO;
+        private boolean paidOnlyFees = true;
+        /** Whether no code was run, so that the results do not depend on the block context. */
+        private boolean onlyTransfers = true;
+
+        private SenderExecution(Set<AionAddress> footprint) {
+            this.footprint = footprint;
+        }
+
+        private void addReceipt(AionTxReceipt receipt, boolean plainTransfer) {
+            receipts.add(receipt);
+            onlyTransfers &= plainTransfer;
+        }
+
+        /**
+         * Leaves the coinbase out of the footprint when the execution only paid it the fees. Any
+         * other change to the coinbase keeps it in the footprint and the execution is not kept.
+         */
+        private void addCoinbaseCredit(AionAddress coinbase, BigInteger credit, BigInteger fees) {
+            paidOnlyFees &= credit.equals(fees);
+            if (paidOnlyFees) {
+                this.fees = this.fees.add(fees);
+                footprint.remove(coinbase);
+            } else {
+                footprint.add(coinbase);
+            }
+        }
+
+        /** @return {@code true} if exactly the given pool transactions were executed */
+        private boolean isExecutionOf(List<AionTransaction> poolTxs) {
+            if (poolTxs == null || poolTxs.size() != receipts.size()) {
+                return false;
+            }
+            for (int i = 0; i < poolTxs.size(); i++) {
+                if (!Arrays.equals(
+                        poolTxs.get(i).getTransactionHash(),
+                        receipts.get(i).getTransaction().getTransactionHash())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** The result of executing the pool transactions of a sender in its own cache. */
+    private static final class SenderRerun {
+        private final AionRepositoryCache track;
+        private final List<AionTxExecSummary> summaries;
+        /** The coinbase balance in the pending state when the execution started. */
+        private final BigInteger minerBalance;
+
+        private SenderRerun(
+                AionRepositoryCache track, List<AionTxExecSummary> summaries, BigInteger minerBalance) {
+            this.track = track;
+            this.summaries = summaries;
+            this.minerBalance = minerBalance;
+        }
+
+        /** @return {@code true} if the execution accessed any of the given accounts */
+        private boolean conflictsWith(Set<AionAddress> modifiedAccounts) {
+            for (AionAddress address : track.getAccessedAddresses()) {
+                if (modifiedAccounts.contains(address)) {
+                    return true;
+                }
+            }
+            for (AionAddress address : track.getModifiedAddresses()) {
+                if (modifiedAccounts.contains(address)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Lazily created pool used to validate the network transactions in parallel. */
+    private static final class ValidationPool {
+        private static final ForkJoinPool INSTANCE =
+                new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Lazily created pool used to execute the pool transactions of the senders in parallel. */
+    private static final class RerunPool {
+        private static final ForkJoinPool INSTANCE =
+                new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
 }
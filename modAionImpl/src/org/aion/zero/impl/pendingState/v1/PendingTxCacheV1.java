@@ -4,15 +4,19 @@ import com.google.common.annotations.VisibleForTesting;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -27,24 +31,78 @@ import org.slf4j.Logger;
  * transaction pool. The pending state will temporary caching the transaction if the transaction has
  * not adding to the pool in order.
  *
+ * <p>The cache is bounded by the estimated memory used by the cached transactions. When the bound
+ * is exceeded the transaction with the highest nonce of the sender using the most memory is
+ * evicted, so that a sender flooding the cache does not push out the transactions of the others.
+ * The transactions are indexed by sender and nonce, and by their expiry time, so that adding,
+ * removing and expiring a transaction take logarithmic time.
+ *
+ * <p>The transactions with a nonce which does not fit in a long are not cached.
+ *
  * @author Jay Tseng
  */
 public final class PendingTxCacheV1 {
 
-    static int ACCOUNT_CACHE_MAX = 2_000;
-    public static final int TX_PER_ACCOUNT_MAX = 500;
+    /** The default bound on the estimated memory used by the cached transactions. */
+    public static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+
     public static final int CACHE_TIMEOUT = 3_600;
+
+    /** Estimated memory used by a transaction object and its index entries besides the encoding. */
+    static final int ENTRY_OVERHEAD = 640;
+
     private static final Logger LOG = AionLoggerFactory.getLogger(LogEnum.TX.name());
-    private final Map<AionAddress, SortedMap<BigInteger, AionTransaction>> cacheTxMap;
-    private final SortedMap<Long, Set<AionTransaction>> timeOutMap;
+
+    private static final class CachedTx {
+        final AionTransaction tx;
+        final long nonce;
+        final long expiry;
+        final long size;
+        final long sequence;
+
+        CachedTx(AionTransaction tx, long nonce, long sequence) {
+            this.tx = tx;
+            this.nonce = nonce;
+            this.expiry = getExpiredTime(tx.getTimeStampBI().longValue());
+            this.size = estimateSize(tx);
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class SenderTxs {
+        final AionAddress sender;
+        final long sequence;
+        final TreeMap<Long, CachedTx> byNonce = new TreeMap<>();
+        long size;
+
+        SenderTxs(AionAddress sender, long sequence) {
+            this.sender = sender;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<CachedTx> BY_EXPIRY =
+            Comparator.<CachedTx>comparingLong(c -> c.expiry).thenComparingLong(c -> c.sequence);
+
+    private static final Comparator<SenderTxs> BY_SIZE =
+            Comparator.<SenderTxs>comparingLong(s -> s.size).thenComparingLong(s -> s.sequence);
+
+    private final long maxBytes;
+
+    // access to the indexes and to the size is guarded by the lock
+    private final Map<AionAddress, SenderTxs> cacheTxMap = new HashMap<>();
+    private final TreeSet<CachedTx> timeOutIndex = new TreeSet<>(BY_EXPIRY);
+    private final TreeSet<SenderTxs> senderBySize = new TreeSet<>(BY_SIZE);
+    private long bytes = 0;
+    private int txCount = 0;
+    private long sequence = 0;
+
     private final Lock lock = new ReentrantLock();
     private final List<AionTransaction> removedTransactionForPoolBackup;
 
     /** @implNote the default constructor */
     public PendingTxCacheV1() {
-        cacheTxMap = new LinkedHashMap<>(ACCOUNT_CACHE_MAX);
-        timeOutMap = new TreeMap<>();
-        removedTransactionForPoolBackup = null;
+        this(DEFAULT_CACHE_SIZE, false);
     }
 
     /**
@@ -53,20 +111,19 @@ public final class PendingTxCacheV1 {
      * @param backupTransactions the flag to enable/disable the removedTxHash set
      */
     public PendingTxCacheV1(boolean backupTransactions) {
-        cacheTxMap = new LinkedHashMap<>(ACCOUNT_CACHE_MAX);
-        timeOutMap = new TreeMap<>();
-        removedTransactionForPoolBackup = backupTransactions ? new ArrayList<>() : null;
+        this(DEFAULT_CACHE_SIZE, backupTransactions);
     }
 
-    @VisibleForTesting
     /**
-     * the constructor for the unit test
+     * @param maxBytes the bound on the estimated memory used by the cached transactions
+     * @param backupTransactions the flag to enable/disable the removedTxHash set
      */
-    public PendingTxCacheV1(int  accountMax) {
-        ACCOUNT_CACHE_MAX = accountMax;
-        cacheTxMap = new LinkedHashMap<>(ACCOUNT_CACHE_MAX);
-        timeOutMap = new TreeMap<>();
-        removedTransactionForPoolBackup = null;
+    public PendingTxCacheV1(long maxBytes, boolean backupTransactions) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("The cache size must be positive.");
+        }
+        this.maxBytes = maxBytes;
+        removedTransactionForPoolBackup = backupTransactions ? new ArrayList<>() : null;
     }
 
     private static long getExpiredTime(long longValue) {
@@ -74,53 +131,100 @@ public final class PendingTxCacheV1 {
     }
 
     /**
-     * @implNote add transaction into the cache layer.
+     * @param tx the aion transaction
+     * @return the estimated memory used by the transaction in the cache
+     */
+    static long estimateSize(AionTransaction tx) {
+        return tx.getEncoded().length + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * @implNote add transaction into the cache layer. A cached transaction with the same sender and
+     * nonce is replaced. When the cache exceeds its size the transactions with the highest nonces
+     * of the largest senders are evicted.
      * @param tx the aion transaction.
      * @return return transaction if add success, otherwise, return null.
      */
     public AionTransaction addCacheTx(AionTransaction tx) {
         Objects.requireNonNull(tx);
 
+        BigInteger nonceBI = tx.getNonceBI();
+        if (nonceBI.bitLength() >= Long.SIZE) {
+            LOG.info("Cannot add tx:{} into the cache, the nonce is too large.", tx);
+            return null;
+        }
+
         lock.lock();
         try {
-            long time = getExpiredTime(tx.getTimeStampBI().longValue());
             AionAddress sender = tx.getSenderAddress();
-            if (cacheTxMap.size() == ACCOUNT_CACHE_MAX && !cacheTxMap.containsKey(sender)) {
-                AionAddress removeAgedAddress = cacheTxMap.entrySet().iterator().next().getKey();
-                Map<BigInteger, AionTransaction> removedTxMap = cacheTxMap.remove(removeAgedAddress);
-                for (AionTransaction removedTx : removedTxMap.values()) {
-                    removeTxInTimeoutMap(removedTx);
-                    addTransactionToRemovedTransactionForPoolBackup(removedTx);
+            SenderTxs senderTxs = cacheTxMap.get(sender);
+            if (senderTxs == null) {
+                senderTxs = new SenderTxs(sender, sequence++);
+                cacheTxMap.put(sender, senderTxs);
+            } else {
+                senderBySize.remove(senderTxs);
+            }
+
+            CachedTx cached = new CachedTx(tx, nonceBI.longValue(), sequence++);
+            CachedTx replaced = senderTxs.byNonce.put(cached.nonce, cached);
+            if (replaced != null) {
+                timeOutIndex.remove(replaced);
+                senderTxs.size -= replaced.size;
+                bytes -= replaced.size;
+                txCount--;
+                addTransactionToRemovedTransactionForPoolBackup(replaced.tx);
+            }
+            timeOutIndex.add(cached);
+            senderTxs.size += cached.size;
+            bytes += cached.size;
+            txCount++;
+            senderBySize.add(senderTxs);
+
+            boolean evicted = false;
+            while (bytes > maxBytes) {
+                SenderTxs largest = senderBySize.last();
+                CachedTx removed = largest.byNonce.lastEntry().getValue();
+                removeCachedTx(largest, removed);
+                if (removed == cached) {
+                    evicted = true;
+                } else {
+                    LOG.debug("Evicted tx:{} from the cache, reached the cache size limit.", removed.tx);
+                    addTransactionToRemovedTransactionForPoolBackup(removed.tx);
                 }
             }
 
-            SortedMap<BigInteger, AionTransaction> cachedTxBySender = cacheTxMap.getOrDefault(sender, new TreeMap<>());
-            if (cachedTxBySender.size() < TX_PER_ACCOUNT_MAX) {
-                cachedTxBySender.put(tx.getNonceBI(), tx);
-                cacheTxMap.putIfAbsent(sender, cachedTxBySender);
+            if (evicted) {
+                LOG.info("Cannot add tx:{} into the cache, reached the cache size limit.", tx);
+                return null;
+            }
 
-                LOG.trace(
+            LOG.trace(
                     "PendingTx added {}, cachedTxSize:{} by the sender:{}",
                     tx,
-                    cachedTxBySender.size(),
+                    senderTxs.byNonce.size(),
                     sender);
-            } else {
-                LOG.info(
-                    "Cannot add tx:{} into the cache, reached the account cached limit.",
-                    tx);
-                return null;
-            }
-
-            Set<AionTransaction> txSet = timeOutMap.getOrDefault(time, new HashSet<>());
-            txSet.add(tx);
-            timeOutMap.putIfAbsent(time, txSet);
-
             return tx;
         } finally {
             lock.unlock();
         }
     }
 
+    /** Removes the cached transaction from all the indexes and drops the sender once empty. */
+    private void removeCachedTx(SenderTxs senderTxs, CachedTx cached) {
+        senderBySize.remove(senderTxs);
+        senderTxs.byNonce.remove(cached.nonce);
+        timeOutIndex.remove(cached);
+        senderTxs.size -= cached.size;
+        bytes -= cached.size;
+        txCount--;
+
+        if (senderTxs.byNonce.isEmpty()) {
+            cacheTxMap.remove(senderTxs.sender);
+        } else {
+            senderBySize.add(senderTxs);
+        }
+    }
+
     private void addTransactionToRemovedTransactionForPoolBackup(AionTransaction removedTx) {
         if (removedTransactionForPoolBackup == null) {
             return;
@@ -129,17 +233,9 @@ public final class PendingTxCacheV1 {
         removedTransactionForPoolBackup.add(removedTx);
     }
 
-    private void removeTxInTimeoutMap(AionTransaction tx) {
-        long expiredTime = getExpiredTime(tx.getTimeStampBI().longValue());
-        Set<AionTransaction> set = timeOutMap.get(expiredTime);
-        set.remove(tx);
-        if (set.isEmpty()) {
-            timeOutMap.remove(expiredTime);
-        }
-    }
-
     /**
-     * @implNote remove the cached transactions base on the account nonce updated by the block import.
+     * @implNote remove the cached transactions base on the account nonce updated by the block import,
+     * and the transactions which have been cached for longer than {@link #CACHE_TIMEOUT}.
      * @param nonceMap The account with the latest nonce.
      * @return The transaction has been removed in the pending tx cache.
      */
@@ -151,30 +247,32 @@ public final class PendingTxCacheV1 {
         try {
             List<AionTransaction> txList = new ArrayList<>();
             for (Entry<AionAddress, BigInteger> e : nonceMap.entrySet()) {
-                AionAddress address = e.getKey();
-                SortedMap<BigInteger, AionTransaction> accountCachedTx = cacheTxMap.get(address);
-                if (accountCachedTx != null) {
-                    BigInteger nonce = e.getValue();
-                    Map<BigInteger, AionTransaction> flushedTxMap = accountCachedTx.headMap(nonce);
-                    if (!flushedTxMap.isEmpty()) {
-                        for (AionTransaction tx : flushedTxMap.values()) {
-                            removeTxInTimeoutMap(tx);
-                            addTransactionToRemovedTransactionForPoolBackup(tx);
-                        }
-
-                        txList.addAll(flushedTxMap.values());
+                SenderTxs senderTxs = cacheTxMap.get(e.getKey());
+                if (senderTxs != null) {
+                    long nonce = toCacheNonce(e.getValue());
+                    senderBySize.remove(senderTxs);
+                    Iterator<CachedTx> sealed = senderTxs.byNonce.headMap(nonce).values().iterator();
+                    while (sealed.hasNext()) {
+                        CachedTx cached = sealed.next();
+                        sealed.remove();
+                        timeOutIndex.remove(cached);
+                        senderTxs.size -= cached.size;
+                        bytes -= cached.size;
+                        txCount--;
+                        addTransactionToRemovedTransactionForPoolBackup(cached.tx);
+                        txList.add(cached.tx);
                     }
-
-                    cacheTxMap.get(address).headMap(nonce).clear();
-                    if (cacheTxMap.get(address).isEmpty()) {
-                        cacheTxMap.remove(address);
+                    if (senderTxs.byNonce.isEmpty()) {
+                        cacheTxMap.remove(senderTxs.sender);
+                    } else {
+                        senderBySize.add(senderTxs);
                     }
                 }
             }
 
             // Update the timeout cached Tx
             txList.addAll(flushTimeoutTx(false));
-            LOG.info("cacheTx.flush cacheTx# {}", cacheTxSize());
+            LOG.info("cacheTx.flush cacheTx# {}", txCount);
 
             return txList;
         } finally {
@@ -182,9 +280,19 @@ public final class PendingTxCacheV1 {
         }
     }
 
+    /** Nonces beyond the long range are never cached, so they are all above the cached ones. */
+    private static long toCacheNonce(BigInteger nonce) {
+        return nonce.bitLength() >= Long.SIZE ? Long.MAX_VALUE : nonce.longValue();
+    }
+
     @VisibleForTesting
     List<AionTransaction> flushTimeoutTxForTest() {
-        return flushTimeoutTx(true);
+        lock.lock();
+        try {
+            return flushTimeoutTx(true);
+        } finally {
+            lock.unlock();
+        }
     }
 
     private List<AionTransaction> flushTimeoutTx(boolean forTest) {
@@ -192,23 +300,12 @@ public final class PendingTxCacheV1 {
         long current =
                 TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis())
                         + (forTest ? CACHE_TIMEOUT + 1 : 0);
-        Map<Long, Set<AionTransaction>> timeoutTxs = timeOutMap.headMap(current);
-        if (!timeoutTxs.isEmpty()) {
-            for (Set<AionTransaction> set : timeoutTxs.values()) {
-                for (AionTransaction tx : set) {
-                    AionAddress sender = tx.getSenderAddress();
-                    if (cacheTxMap.containsKey(sender)) {
-                        SortedMap<BigInteger, AionTransaction> map = cacheTxMap.get(sender);
-                        BigInteger nonce = tx.getNonceBI();
-                        if (map.containsKey(nonce)) {
-                            timeoutTransactions.add(map.remove(nonce));
-                        }
-                    }
-                }
-            }
+        while (!timeOutIndex.isEmpty() && timeOutIndex.first().expiry < current) {
+            CachedTx cached = timeOutIndex.first();
+            removeCachedTx(cacheTxMap.get(cached.tx.getSenderAddress()), cached);
+            timeoutTransactions.add(cached.tx);
         }
 
-        timeOutMap.headMap(current).clear();
         return timeoutTransactions;
     }
 
@@ -219,12 +316,17 @@ public final class PendingTxCacheV1 {
     public int cacheTxSize() {
         lock.lock();
         try {
-            int size = 0;
-            for (Map<BigInteger, AionTransaction> accountMap : cacheTxMap.values()) {
-                size += accountMap.values().size();
-            }
+            return txCount;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            return size;
+    /** @return the estimated memory used by the cached transactions */
+    public long cacheTxBytes() {
+        lock.lock();
+        try {
+            return bytes;
         } finally {
             lock.unlock();
         }
@@ -242,23 +344,60 @@ public final class PendingTxCacheV1 {
         Objects.requireNonNull(sender);
         Objects.requireNonNull(nonce);
 
+        return nonce.bitLength() < Long.SIZE && getCacheTx(sender, nonce.longValue()) != null;
+    }
+
+    /**
+     * @param sender the transaction sender
+     * @param nonce the transaction nonce
+     * @return the cached transaction with the given sender and nonce, or null if it is not cached
+     */
+    public AionTransaction getCacheTx(AionAddress sender, long nonce) {
+        Objects.requireNonNull(sender);
+
         lock.lock();
         try {
-            return this.cacheTxMap.containsKey(sender)
-                    && (this.cacheTxMap.get(sender).containsKey(nonce));
+            SenderTxs senderTxs = cacheTxMap.get(sender);
+            CachedTx cached = senderTxs == null ? null : senderTxs.byNonce.get(nonce);
+            return cached == null ? null : cached.tx;
         } finally {
             lock.unlock();
         }
     }
 
     /**
-     * @implNote get how many accounts have been cached in the instance.
-     * @return the set of the account address.
+     * @param sender the transaction sender
+     * @return true if the cache holds any transaction of the given sender
+     */
+    public boolean hasCacheTx(AionAddress sender) {
+        Objects.requireNonNull(sender);
+
+        lock.lock();
+        try {
+            return cacheTxMap.containsKey(sender);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @implNote get the accounts have been cached in the instance.
+     * @return the copy of the set of the account address.
      */
     public Set<AionAddress> getCacheTxAccount() {
         lock.lock();
         try {
-            return cacheTxMap.keySet();
+            return new HashSet<>(cacheTxMap.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return how many accounts have been cached in the instance */
+    public int cacheAccountSize() {
+        lock.lock();
+        try {
+            return cacheTxMap.size();
         } finally {
             lock.unlock();
         }
@@ -267,15 +406,24 @@ public final class PendingTxCacheV1 {
     /**
      * @implNote get cached transactions relate with the sender.
      * @param sender the transactions in the cache relate with the sender.
-     * @return the map of the transaction nonce and the  transaction sent from the given sender address.
-     * Return null if cannot find the send address in the cache instance.
+     * @return the copy of the map of the transaction nonce and the transaction sent from the given
+     * sender address. Return null if cannot find the send address in the cache instance.
      */
-    public Map<BigInteger, AionTransaction> getCacheTxBySender(AionAddress sender) {
+    public SortedMap<Long, AionTransaction> getCacheTxBySender(AionAddress sender) {
         Objects.requireNonNull(sender);
 
         lock.lock();
         try {
-            return cacheTxMap.get(sender);
+            SenderTxs senderTxs = cacheTxMap.get(sender);
+            if (senderTxs == null) {
+                return null;
+            }
+
+            SortedMap<Long, AionTransaction> txs = new TreeMap<>();
+            for (CachedTx cached : senderTxs.byNonce.values()) {
+                txs.put(cached.nonce, cached.tx);
+            }
+            return txs;
         } finally {
             lock.unlock();
         }
@@ -315,14 +463,16 @@ public final class PendingTxCacheV1 {
         try {
             List<AionTransaction> txList = new ArrayList<>();
             for (Entry<AionAddress, BigInteger> e : nonceMap.entrySet()) {
-                AionAddress address = e.getKey();
-                SortedMap<BigInteger, AionTransaction> accountCachedTx = cacheTxMap.get(address);
-                if (accountCachedTx != null) {
-                    BigInteger nonce = e.getValue();
-
-                    while (accountCachedTx.containsKey(nonce)) {
-                        txList.add(accountCachedTx.get(nonce));
-                        nonce = nonce.add(BigInteger.ONE);
+                SenderTxs senderTxs = cacheTxMap.get(e.getKey());
+                if (senderTxs != null && e.getValue().bitLength() < Long.SIZE) {
+                    long nonce = e.getValue().longValue();
+                    NavigableMap<Long, CachedTx> following = senderTxs.byNonce.tailMap(nonce, true);
+                    for (CachedTx cached : following.values()) {
+                        if (cached.nonce != nonce) {
+                            break;
+                        }
+                        txList.add(cached.tx);
+                        nonce++;
                     }
                 }
             }
@@ -338,22 +488,18 @@ public final class PendingTxCacheV1 {
      * @param sender the sender of the remove transaction
      * @param nonce the nonce of the remove transaction
      */
-    public void removeTransaction(AionAddress sender, BigInteger nonce) {
+    public void removeTransaction(AionAddress sender, long nonce) {
         Objects.requireNonNull(sender);
-        Objects.requireNonNull(nonce);
 
         lock.lock();
         try {
-            if (cacheTxMap.containsKey(sender)) {
+            SenderTxs senderTxs = cacheTxMap.get(sender);
+            if (senderTxs != null) {
                 LOG.debug("remove cachedTransaction: sender:{}, nonce:{}", sender, nonce);
-                Map<BigInteger, AionTransaction> accountInfo = cacheTxMap.get(sender);
-                AionTransaction removedTx = accountInfo.remove(nonce);
-                if (removedTx != null) {
-                    addTransactionToRemovedTransactionForPoolBackup(removedTx);
-                }
-
-                if (accountInfo.isEmpty()) {
-                    cacheTxMap.remove(sender);
+                CachedTx cached = senderTxs.byNonce.get(nonce);
+                if (cached != null) {
+                    removeCachedTx(senderTxs, cached);
+                    addTransactionToRemovedTransactionForPoolBackup(cached.tx);
                 }
             }
         } finally{
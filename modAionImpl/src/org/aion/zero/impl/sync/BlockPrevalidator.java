@@ -0,0 +1,110 @@
+package org.aion.zero.impl.sync;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.aion.log.AionLoggerFactory;
+import org.aion.log.LogEnum;
+import org.aion.mcf.blockchain.Block;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.blockchain.AionBlockchainImpl;
+import org.aion.zero.impl.sync.statistics.ImportStage;
+import org.slf4j.Logger;
+
+/**
+ * Runs the validations of received blocks that do not depend on the chain state (header rules,
+ * Equihash solution or staking signature, transaction signatures and the transaction trie root) on
+ * a pool of worker threads. The validations are started when a batch is queued for import so that
+ * they overlap with the execution of the previous batches, which remains single threaded and
+ * ordered on the import thread.
+ *
+ * <p>The worker queue is bounded. When it is full, the validations are executed by the thread
+ * submitting the batch, which slows down the intake of new batches until the workers catch up.
+ */
+final class BlockPrevalidator {
+
+    private static final Logger log = AionLoggerFactory.getLogger(LogEnum.SYNC.name());
+
+    private final AionBlockchainImpl chain;
+    private final SyncStats stats;
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * @param chain the blockchain that will import the blocks
+     * @param stats the statistics where the stage latencies are recorded
+     * @param threads the number of worker threads
+     * @param capacity the maximum number of blocks waiting for a worker
+     */
+    BlockPrevalidator(AionBlockchainImpl chain, SyncStats stats, int threads, int capacity) {
+        this.chain = chain;
+        this.stats = stats;
+        this.workers =
+                new ThreadPoolExecutor(
+                        threads,
+                        threads,
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(capacity),
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "sync-pv");
+                            thread.setDaemon(true);
+                            return thread;
+                        },
+                        // run in the caller also after shutdown to ensure that every task completes
+                        (runnable, executor) -> runnable.run());
+    }
+
+    /**
+     * Starts the validations for the given blocks.
+     *
+     * @return a predicate that returns the outcome of the validations for a block, waiting for them
+     *     to complete if needed
+     */
+    Predicate<Block> submit(List<Block> blocks) {
+        Map<ByteArrayWrapper, Future<Boolean>> pending = new HashMap<>();
+        for (Block block : blocks) {
+            FutureTask<Boolean> task =
+                    new FutureTask<>(
+                            () -> {
+                                long startTime = System.nanoTime();
+                                boolean valid = chain.isValidStateless(block);
+                                stats.updateImportStageTime(ImportStage.PREVALIDATION, System.nanoTime() - startTime);
+                                return valid;
+                            });
+            pending.put(block.getHashWrapper(), task);
+            workers.execute(task);
+        }
+        return block -> await(pending.get(block.getHashWrapper()), block);
+    }
+
+    private boolean await(Future<Boolean> result, Block block) {
+        if (result == null) {
+            // the block was not part of the submitted batch
+            return chain.isValidStateless(block);
+        }
+
+        long startTime = System.nanoTime();
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            log.error("Unable to validate block " + block.getShortDescr(), e.getCause());
+            return false;
+        } finally {
+            stats.updateImportStageTime(ImportStage.PREVALIDATION_WAIT, System.nanoTime() - startTime);
+        }
+    }
+
+    ThreadPoolExecutor getExecutor() {
+        return workers;
+    }
+}
@@ -8,5 +8,12 @@ package org.aion.zero.impl.sync;
 public enum DatabaseType {
     STATE,
     DETAILS,
-    STORAGE
+    STORAGE,
+    /** The AVM object graphs and the links between the storage roots and the object graphs. */
+    GRAPH,
+    /**
+     * The details and indexed information of a contract, requested by the hash of the contract
+     * address as found in the state trie.
+     */
+    CONTRACT
 }
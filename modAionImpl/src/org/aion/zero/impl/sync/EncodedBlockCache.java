@@ -0,0 +1,261 @@
+package org.aion.zero.impl.sync;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.aion.mcf.blockchain.Block;
+import org.aion.rlp.RLP;
+import org.aion.util.types.ByteArrayWrapper;
+
+/**
+ * Keeps the encoded headers and bodies of the recently imported blocks so that the sync request
+ * handlers can answer the peers asking for the same recent ranges without reading and encoding the
+ * blocks from the block store again.
+ *
+ * <p>The blocks are kept by hash and evicted in least recently used order once their total size
+ * exceeds the configured number of bytes. The blocks of the main chain are also indexed by number.
+ * The index is maintained by the blockchain when the best block changes and the entries affected
+ * by a reorganization are removed.
+ *
+ * <p>Lookups by number return {@code null} unless the whole requested range is cached, in which
+ * case the callers fall back to the block store.
+ */
+public final class EncodedBlockCache {
+
+    /** The default bound on the size of the cached encodings. */
+    public static final long DEFAULT_SIZE = 32L * 1024 * 1024;
+
+    /** Estimated memory used by an entry and its keys in addition to the encodings. */
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private static final class Entry {
+        final long number;
+        final byte[] header;
+        final byte[] body;
+
+        Entry(long number, byte[] header, byte[] body) {
+            this.number = number;
+            this.header = header;
+            this.body = body;
+        }
+
+        long size() {
+            return header.length + body.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    private final long maxBytes;
+
+    // access to the maps and to the size is guarded by this
+    private final LinkedHashMap<ByteArrayWrapper, Entry> byHash =
+            new LinkedHashMap<>(1024, 0.75f, true);
+    private final Map<Long, ByteArrayWrapper> byNumber = new HashMap<>();
+    private long bytes = 0;
+    private long bestNumber = -1;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** @param maxBytes the bound on the size of the cached encodings */
+    public EncodedBlockCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("The cache size must be positive.");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Adds the encoding of an imported block, regardless of whether it is on the main chain.
+     *
+     * @param block the imported block
+     * @return the encoded body of the block
+     */
+    public byte[] add(Block block) {
+        byte[] header = block.getHeader().getEncoded();
+        byte[] body = block.getEncodedBody();
+        put(block.getHashWrapper(), new Entry(block.getNumber(), header, body));
+        return body;
+    }
+
+    private synchronized void put(ByteArrayWrapper hash, Entry entry) {
+        Entry previous = byHash.put(hash, entry);
+        if (previous != null) {
+            bytes -= previous.size();
+        }
+        bytes += entry.size();
+
+        Iterator<Map.Entry<ByteArrayWrapper, Entry>> iterator = byHash.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<ByteArrayWrapper, Entry> eldest = iterator.next();
+            iterator.remove();
+            bytes -= eldest.getValue().size();
+            byNumber.remove(eldest.getValue().number, eldest.getKey());
+        }
+    }
+
+    /**
+     * Indexes the given block as the main chain block at its height. The main chain blocks at the
+     * same or greater heights are removed from the index. When the block does not extend the
+     * indexed main chain all the number keys are dropped, since the point where the chains diverge
+     * is not known.
+     *
+     * @param block the new best block
+     */
+    public synchronized void onBestBlock(Block block) {
+        ByteArrayWrapper parent = byNumber.get(block.getNumber() - 1);
+        if (parent == null || !parent.equals(ByteArrayWrapper.wrap(block.getParentHash()))) {
+            byNumber.clear();
+        } else {
+            byNumber.keySet().removeIf(number -> number >= block.getNumber());
+        }
+        index(block);
+    }
+
+    /**
+     * Removes the main chain blocks replaced by a reorganization from the number index.
+     *
+     * @param commonNumber the height of the common ancestor of the old and the new main chain
+     * @param best the best block of the new main chain
+     */
+    public synchronized void onReBranch(long commonNumber, Block best) {
+        byNumber.keySet().removeIf(number -> number > commonNumber);
+        index(best);
+    }
+
+    private void index(Block block) {
+        bestNumber = block.getNumber();
+        if (byHash.containsKey(block.getHashWrapper())) {
+            byNumber.put(block.getNumber(), block.getHashWrapper());
+        }
+    }
+
+    /**
+     * @param hash the hash of a block
+     * @return the encoded body of the block or {@code null} if it is not cached
+     */
+    public synchronized byte[] getBody(byte[] hash) {
+        Entry entry = byHash.get(ByteArrayWrapper.wrap(hash));
+        record(entry != null);
+        return entry == null ? null : entry.body;
+    }
+
+    /**
+     * @param hash the hash of a block
+     * @return the height of the block if it is a cached main chain block, {@code null} otherwise
+     */
+    public synchronized Long getMainChainNumber(byte[] hash) {
+        Entry entry = byHash.get(ByteArrayWrapper.wrap(hash));
+        if (entry != null && ByteArrayWrapper.wrap(hash).equals(byNumber.get(entry.number))) {
+            return entry.number;
+        }
+        return null;
+    }
+
+    /**
+     * @param from the height of the first header
+     * @param limit the maximum number of headers
+     * @return the encoded main chain headers from the given height up to the limit or the best
+     *     block, or {@code null} if any of them is not cached
+     */
+    public synchronized List<byte[]> getHeaders(long from, int limit) {
+        List<Entry> entries = getRange(from, Math.min(from + limit - 1, bestNumber));
+        if (entries == null) {
+            return null;
+        }
+        List<byte[]> headers = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            headers.add(entry.header);
+        }
+        return headers;
+    }
+
+    /**
+     * @param first the height of the first block in the response
+     * @param last the height of the last block in the response, which may be lower than the first
+     *     for a descending range
+     * @return the encoded main chain blocks in the given order up to the best block, or {@code
+     *     null} if any of them is not cached
+     */
+    public synchronized List<byte[]> getBlocks(long first, long last) {
+        boolean descending = first > last;
+        List<Entry> entries =
+                descending
+                        ? getRange(Math.max(last, 1), first)
+                        : getRange(first, Math.min(last, bestNumber));
+        if (entries == null) {
+            return null;
+        }
+        List<byte[]> blocks = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            blocks.add(encodeBlock(entry));
+        }
+        if (descending) {
+            Collections.reverse(blocks);
+        }
+        return blocks;
+    }
+
+    /** @return the entries of the main chain between the given heights, or null if not cached */
+    private List<Entry> getRange(long lowest, long highest) {
+        if (lowest <= 0 || highest < lowest || highest > bestNumber) {
+            record(false);
+            return null;
+        }
+        List<Entry> entries = new ArrayList<>((int) (highest - lowest + 1));
+        for (long number = lowest; number <= highest; number++) {
+            ByteArrayWrapper hash = byNumber.get(number);
+            Entry entry = hash == null ? null : byHash.get(hash);
+            if (entry == null) {
+                record(false);
+                return null;
+            }
+            entries.add(entry);
+        }
+        record(true);
+        return entries;
+    }
+
+    /**
+     * A block is encoded as the list of its header followed by the elements of its body, so the
+     * encoding is assembled from the header and the content of the body list.
+     */
+    private static byte[] encodeBlock(Entry entry) {
+        int prefix = (entry.body[0] & 0xFF) < 0xF8 ? 1 : 1 + (entry.body[0] & 0xFF) - 0xF7;
+        int elements = entry.body.length - prefix;
+        byte[] listHeader = RLP.encodeListHeader(entry.header.length + elements);
+        byte[] block = new byte[listHeader.length + entry.header.length + elements];
+        System.arraycopy(listHeader, 0, block, 0, listHeader.length);
+        System.arraycopy(entry.header, 0, block, listHeader.length, entry.header.length);
+        System.arraycopy(
+                entry.body, prefix, block, listHeader.length + entry.header.length, elements);
+        return block;
+    }
+
+    private void record(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    public synchronized int getEntryCount() {
+        return byHash.size();
+    }
+
+    public synchronized long getSize() {
+        return bytes;
+    }
+
+    /** @return the fraction of the lookups answered from the cache */
+    public double getHitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0d : (double) hit / total;
+    }
+}
@@ -0,0 +1,511 @@
+package org.aion.zero.impl.sync;
+
+import static org.aion.base.ConstantUtil.EMPTY_TRIE_HASH;
+import static org.aion.crypto.HashUtil.EMPTY_DATA_HASH;
+import static org.aion.crypto.HashUtil.h256;
+import static org.aion.p2p.V1Constants.TRIE_DATA_REQUEST_MAXIMUM_BATCH_SIZE;
+import static org.aion.util.bytes.ByteUtil.EMPTY_BYTE_ARRAY;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.aion.base.AccountState;
+import org.aion.log.AionLoggerFactory;
+import org.aion.log.LogEnum;
+import org.aion.mcf.blockchain.Block;
+import org.aion.mcf.db.InternalVmType;
+import org.aion.p2p.INode;
+import org.aion.p2p.IP2pMgr;
+import org.aion.rlp.RLP;
+import org.aion.rlp.RLPElement;
+import org.aion.rlp.RLPList;
+import org.aion.types.AionAddress;
+import org.aion.util.bytes.ByteUtil;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.blockchain.AionBlockchainImpl;
+import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.db.ContractInformation;
+import org.aion.zero.impl.db.DetailsDataStore;
+import org.aion.zero.impl.db.DetailsDataStore.RLPContractDetails;
+import org.aion.zero.impl.sync.msg.RequestTrieData;
+import org.aion.zero.impl.trie.TrieImpl;
+import org.slf4j.Logger;
+
+/**
+ * Downloads the state at a pivot block behind the network best block instead of executing all the
+ * blocks from genesis. The blocks up to the pivot are stored without execution by the chain while
+ * the state trie, the contract details, the contract storage and the AVM object graphs of the
+ * pivot are requested node by node with {@link RequestTrieData} messages from the peers that have
+ * reached the pivot. The blocks above the pivot are imported normally once the state is complete.
+ *
+ * <p>The nodes that are still required are persisted with {@link FastSyncProgress}, so the download
+ * continues from where it stopped after a restart. The received nodes are checked against their
+ * hash before they are stored, so a peer can only slow down the download.
+ *
+ * @implNote All the methods except {@link #getResponseQueue()} are called from a single thread.
+ */
+public final class FastSyncManager {
+
+    private static final Logger log = AionLoggerFactory.getLogger(LogEnum.SYNC.name());
+
+    /** Distance behind the network best block, making reorganizations above the pivot unlikely. */
+    @VisibleForTesting static final long PIVOT_DISTANCE = 64;
+    /** Fast sync is not used unless it skips the execution of at least this many blocks. */
+    @VisibleForTesting static final long MIN_PIVOT_NUMBER = 1_024;
+    /** Number of peers that must report their status before choosing the pivot. */
+    private static final int MIN_PEERS_FOR_PIVOT = 3;
+    /** Time after which the pivot is chosen based on the peers available. */
+    private static final long PIVOT_WAIT = TimeUnit.MINUTES.toMillis(1);
+
+    private static final int MAX_REQUESTS_PER_PEER = 16;
+    private static final long REQUEST_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final int MAX_RESPONSES_PER_UPDATE = 4_096;
+
+    private static final byte[] GRAPH_ROOT = new byte[] {1};
+    private static final byte[] GRAPH_OBJECT = new byte[] {0};
+
+    private final AionBlockchainImpl chain;
+    private final AionRepositoryImpl repository;
+    private final IP2pMgr p2pMgr;
+    private final FastSyncProgress progress;
+    private final BlockingQueue<TrieNodeWrapper> responses = new LinkedBlockingQueue<>();
+
+    // the nodes still required for the state of the pivot, indexed by database type and key
+    private final Map<ByteArrayWrapper, RequiredNode> required = new LinkedHashMap<>();
+    // the required nodes that are not requested from any peer
+    private final Deque<RequiredNode> waiting = new ArrayDeque<>();
+    private final Map<Integer, Integer> requestsPerPeer = new HashMap<>();
+
+    private final long startTime = System.currentTimeMillis();
+    private Block pivot = null;
+    private volatile boolean done;
+    private long importedNodes = 0;
+
+    public FastSyncManager(AionBlockchainImpl chain, IP2pMgr p2pMgr) {
+        this.chain = chain;
+        this.repository = chain.getRepository();
+        this.p2pMgr = p2pMgr;
+        this.progress = new FastSyncProgress(repository.getFastSyncDatabase());
+
+        if (progress.isComplete()) {
+            done = true;
+        } else if (chain.getFastSyncPivotNumber() < 0 && chain.getBestBlock().getNumber() > 0) {
+            log.info("Fast sync disabled since the database already contains blocks.");
+            done = true;
+        }
+    }
+
+    /** @return the queue where the trie data responses are delivered by the network handler */
+    public BlockingQueue<TrieNodeWrapper> getResponseQueue() {
+        return responses;
+    }
+
+    /**
+     * @return {@code true} while the headers must not be requested, i.e. while waiting for the
+     *     pivot to be chosen and while downloading the state of the pivot
+     */
+    public boolean isBlockingHeaderRequests() {
+        if (done) {
+            return false;
+        }
+        long pivotNumber = chain.getFastSyncPivotNumber();
+        return pivotNumber < 0 || chain.getBestBlock().getNumber() >= pivotNumber;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Moves the fast sync forward: chooses the pivot, processes the received nodes and requests
+     * the missing ones.
+     *
+     * @param networkBestBlockNumber the best block number known from the peers
+     */
+    public void update(long networkBestBlockNumber) {
+        if (done) {
+            return;
+        }
+
+        long pivotNumber = chain.getFastSyncPivotNumber();
+        if (pivotNumber < 0) {
+            selectPivot(networkBestBlockNumber);
+            return;
+        }
+        if (chain.getBestBlock().getNumber() < pivotNumber) {
+            // the blocks up to the pivot are still being stored
+            return;
+        }
+
+        Block block = chain.getBlockByNumber(pivotNumber);
+        if (pivot == null || !pivot.getHashWrapper().equals(block.getHashWrapper())) {
+            startStateDownload(block);
+        }
+
+        processResponses();
+        if (required.isEmpty()) {
+            complete();
+        } else {
+            sendRequests();
+        }
+    }
+
+    private void selectPivot(long networkBestBlockNumber) {
+        int peers = p2pMgr.getActiveNodes().size();
+        if (networkBestBlockNumber <= 0 || (peers < MIN_PEERS_FOR_PIVOT && System.currentTimeMillis() - startTime < PIVOT_WAIT)) {
+            // waiting for the peers to report their status
+            return;
+        }
+
+        long pivotNumber = networkBestBlockNumber - PIVOT_DISTANCE;
+        if (pivotNumber < MIN_PIVOT_NUMBER) {
+            log.info("Fast sync disabled since the network best block {} is too low.", networkBestBlockNumber);
+            done = true;
+            return;
+        }
+
+        progress.setPivot(pivotNumber, null, null);
+        chain.startFastSync(pivotNumber);
+        log.info("Fast sync started with the pivot at block {}.", pivotNumber);
+    }
+
+    private void startStateDownload(Block block) {
+        pivot = block;
+        required.clear();
+        waiting.clear();
+        requestsPerPeer.clear();
+
+        if (Arrays.equals(progress.getPivotHash(), block.getHash())) {
+            // resuming the download after a restart
+            progress.forEachRequiredNode((type, key, context) -> addRequired(type, key, context, false));
+            log.info("Fast sync resumed at block {} with {} required nodes.", block.getNumber(), required.size());
+        } else {
+            // the pivot was reached for the first time or the chain was reorganized at the pivot
+            progress.clearRequiredNodes();
+            progress.setPivot(block.getNumber(), block.getHash(), block.getStateRoot());
+            if (!Arrays.equals(block.getStateRoot(), EMPTY_TRIE_HASH)) {
+                addRequired(DatabaseType.STATE, block.getStateRoot(), EMPTY_BYTE_ARRAY, true);
+            }
+            progress.commit();
+            log.info("Fast sync downloading the state of block {} with root {}.", block.getNumber(), block.getShortHash());
+        }
+    }
+
+    private void complete() {
+        if (chain.completeFastSync(pivot)) {
+            progress.markComplete();
+            done = true;
+            log.info("Fast sync downloaded {} state nodes for block {}.", importedNodes, pivot.getNumber());
+        } else {
+            // the pivot is no longer the best block or some nodes were not stored
+            log.warn("Fast sync could not complete at block {}. Restarting the state download.", pivot.getNumber());
+            progress.setPivot(pivot.getNumber(), null, null);
+            pivot = null;
+        }
+    }
+
+    private void processResponses() {
+        List<TrieNodeWrapper> batch = new ArrayList<>();
+        responses.drainTo(batch, MAX_RESPONSES_PER_UPDATE);
+
+        for (TrieNodeWrapper response : batch) {
+            RequiredNode node = required.get(id(response.getDbType(), response.getNodeKey().toBytes()));
+            if (node == null) {
+                // duplicate or not requested
+                continue;
+            }
+            if (node.peerId >= 0) {
+                releasePeer(node);
+            } else {
+                // a late response after the request timed out
+                waiting.remove(node);
+            }
+
+            if (!importNode(node, response.getNodeValue())) {
+                log.debug("Fast sync received an invalid {} node from peer {}.", node.type, response.getDisplayId());
+                node.failedPeerId = response.getPeerId();
+                waiting.addFirst(node);
+                continue;
+            }
+
+            // the nodes referenced by the requested one are sent when known by the peer
+            if (response.getDbType() == DatabaseType.STATE) {
+                importReferencedNodes(response.getReferencedNodes());
+            }
+        }
+        progress.commit();
+    }
+
+    private void importReferencedNodes(Map<ByteArrayWrapper, byte[]> references) {
+        Map<ByteArrayWrapper, byte[]> remaining = new HashMap<>(references);
+        boolean imported = true;
+        // the referenced nodes become required only after their parent is imported
+        while (imported && !remaining.isEmpty()) {
+            imported = false;
+            Iterator<Map.Entry<ByteArrayWrapper, byte[]>> it = remaining.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<ByteArrayWrapper, byte[]> entry = it.next();
+                RequiredNode node = required.get(id(DatabaseType.STATE, entry.getKey().toBytes()));
+                if (node != null && node.peerId < 0 && importNode(node, entry.getValue())) {
+                    it.remove();
+                    imported = true;
+                }
+            }
+        }
+    }
+
+    private void sendRequests() {
+        long now = System.currentTimeMillis();
+
+        // the requests without a response are retried with other peers
+        for (RequiredNode node : required.values()) {
+            if (node.peerId >= 0 && now - node.requestTime > REQUEST_TIMEOUT) {
+                node.failedPeerId = node.peerId;
+                releasePeer(node);
+                waiting.addFirst(node);
+            }
+        }
+
+        List<INode> peers = new ArrayList<>();
+        for (INode peer : p2pMgr.getActiveNodes().values()) {
+            // only the peers that reached the pivot can have its state
+            if (peer.getBestBlockNumber() >= pivot.getNumber()) {
+                peers.add(peer);
+            }
+        }
+
+        int nextPeer = 0;
+        int fullPeers = 0;
+        while (!waiting.isEmpty() && !peers.isEmpty() && fullPeers < peers.size()) {
+            RequiredNode node = waiting.peekFirst();
+            if (required.get(id(node.type, node.key)) != node) {
+                // imported from a response received after a timeout
+                waiting.pollFirst();
+                continue;
+            }
+
+            // nodes already stored, e.g. shared by several contracts or stored before a restart
+            byte[] stored = repository.getTrieNode(node.key, node.type);
+            if (stored != null) {
+                waiting.pollFirst();
+                if (!importNode(node, stored)) {
+                    log.error("Fast sync found an invalid stored {} node with key {}.", node.type, ByteUtil.toHexString(node.key));
+                    required.remove(id(node.type, node.key));
+                }
+                continue;
+            }
+
+            INode peer = peers.get(nextPeer++ % peers.size());
+            if (requestsPerPeer.getOrDefault(peer.getIdHash(), 0) >= MAX_REQUESTS_PER_PEER || (peer.getIdHash() == node.failedPeerId && peers.size() > 1)) {
+                fullPeers++;
+                continue;
+            }
+            fullPeers = 0;
+            waiting.pollFirst();
+
+            node.peerId = peer.getIdHash();
+            node.requestTime = now;
+            requestsPerPeer.merge(node.peerId, 1, Integer::sum);
+            p2pMgr.send(peer.getIdHash(), peer.getIdShort(), new RequestTrieData(node.key, node.type, requestLimit(node.type)));
+        }
+        progress.commit();
+    }
+
+    private static int requestLimit(DatabaseType type) {
+        // the peers can collect the referenced nodes only for the state trie
+        // since the other databases combine the node hashes with the contract address
+        return type == DatabaseType.STATE ? TRIE_DATA_REQUEST_MAXIMUM_BATCH_SIZE : 1;
+    }
+
+    private void releasePeer(RequiredNode node) {
+        requestsPerPeer.computeIfPresent(node.peerId, (peer, count) -> count > 1 ? count - 1 : null);
+        node.peerId = -1;
+    }
+
+    /**
+     * Verifies and stores the value of a required node, then adds the nodes it references.
+     *
+     * @return {@code false} if the value does not match the node
+     */
+    private boolean importNode(RequiredNode node, byte[] value) {
+        switch (node.type) {
+            case STATE:
+                if (!Arrays.equals(h256(value), node.key) || !repository.importTrieNode(node.key, value, DatabaseType.STATE).isSuccessful()) {
+                    return false;
+                }
+                TrieImpl.decodeNode(
+                        node.context,
+                        value,
+                        (path, hash) -> addRequired(DatabaseType.STATE, hash, path, true),
+                        this::addAccount);
+                break;
+            case CONTRACT:
+                if (!importContract(node, value)) {
+                    return false;
+                }
+                break;
+            case STORAGE:
+                {
+                    AionAddress address = new AionAddress(node.context);
+                    byte[] subKey = DetailsDataStore.storageSubKey(address);
+                    if (!Arrays.equals(h256(value), ByteUtil.xorAlignRight(node.key, subKey)) || !repository.importTrieNode(node.key, value, DatabaseType.STORAGE).isSuccessful()) {
+                        return false;
+                    }
+                    TrieImpl.decodeNode(
+                            EMPTY_BYTE_ARRAY,
+                            value,
+                            (path, hash) -> addRequired(DatabaseType.STORAGE, ByteUtil.xorAlignRight(hash, subKey), node.context, true),
+                            (key, entry) -> {});
+                    break;
+                }
+            case GRAPH:
+                if (!importGraph(node, value)) {
+                    return false;
+                }
+                break;
+            default:
+                return false;
+        }
+
+        required.remove(id(node.type, node.key));
+        progress.removeRequiredNode(node.type, node.key);
+        importedNodes++;
+        return true;
+    }
+
+    /** Requires the contract data for the accounts with code or storage. */
+    private void addAccount(byte[] hashedAddress, byte[] encodedAccount) {
+        AccountState account = new AccountState(encodedAccount);
+        if (!Arrays.equals(account.getStateRoot(), EMPTY_TRIE_HASH) || !Arrays.equals(account.getCodeHash(), EMPTY_DATA_HASH)) {
+            addRequired(DatabaseType.CONTRACT, hashedAddress, RLP.encodeList(RLP.encodeElement(account.getStateRoot()), RLP.encodeElement(account.getCodeHash())), true);
+        }
+    }
+
+    private boolean importContract(RequiredNode node, byte[] value) {
+        RLPList context = (RLPList) RLP.decode2(node.context).get(0);
+        byte[] storageRoot = context.get(0).getRLPData();
+        byte[] codeHash = context.get(1).getRLPData();
+
+        RLPContractDetails details;
+        try {
+            details = DetailsDataStore.fromEncoding(((RLPList) RLP.decode2(value).get(0)).get(0).getRLPData());
+        } catch (Exception e) {
+            return false;
+        }
+        if (!Arrays.equals(codeHash, EMPTY_DATA_HASH) && !containsCode(details.code, codeHash)) {
+            return false;
+        }
+        if (!repository.importTrieNode(node.key, value, DatabaseType.CONTRACT).isSuccessful()) {
+            return false;
+        }
+
+        AionAddress address = details.address;
+        ContractInformation info = repository.getIndexedContractInformation(address);
+        if (info != null && info.getVmUsed(codeHash) == InternalVmType.AVM) {
+            // the account storage root links the storage root and the object graph
+            addRequired(DatabaseType.GRAPH, ByteUtil.xorAlignRight(storageRoot, DetailsDataStore.graphSubKey(address)), RLP.encodeList(RLP.encodeElement(address.toByteArray()), RLP.encodeElement(GRAPH_ROOT)), true);
+        } else if (!Arrays.equals(storageRoot, EMPTY_TRIE_HASH)) {
+            addRequired(DatabaseType.STORAGE, ByteUtil.xorAlignRight(storageRoot, DetailsDataStore.storageSubKey(address)), address.toByteArray(), true);
+        }
+        return true;
+    }
+
+    private static boolean containsCode(RLPElement codes, byte[] codeHash) {
+        if (codes instanceof RLPList) {
+            for (RLPElement code : (RLPList) codes) {
+                if (Arrays.equals(h256(code.getRLPData()), codeHash)) {
+                    return true;
+                }
+            }
+            return false;
+        } else {
+            return codes != null && Arrays.equals(h256(codes.getRLPData()), codeHash);
+        }
+    }
+
+    private boolean importGraph(RequiredNode node, byte[] value) {
+        RLPList context = (RLPList) RLP.decode2(node.context).get(0);
+        AionAddress address = new AionAddress(context.get(0).getRLPData());
+        byte[] hash = ByteUtil.xorAlignRight(node.key, DetailsDataStore.graphSubKey(address));
+
+        if (Arrays.equals(context.get(1).getRLPData(), GRAPH_ROOT)) {
+            RLPList link;
+            try {
+                link = (RLPList) RLP.decode2(value).get(0);
+            } catch (Exception e) {
+                return false;
+            }
+            byte[] storageRoot = link.get(0).getRLPData();
+            byte[] graphHash = link.get(1).getRLPData();
+            byte[] concatenated = new byte[storageRoot.length + graphHash.length];
+            System.arraycopy(storageRoot, 0, concatenated, 0, storageRoot.length);
+            System.arraycopy(graphHash, 0, concatenated, storageRoot.length, graphHash.length);
+            if (!Arrays.equals(h256(concatenated), hash) || !repository.importTrieNode(node.key, value, DatabaseType.GRAPH).isSuccessful()) {
+                return false;
+            }
+
+            if (!Arrays.equals(graphHash, EMPTY_DATA_HASH)) {
+                addRequired(DatabaseType.GRAPH, ByteUtil.xorAlignRight(graphHash, DetailsDataStore.graphSubKey(address)), RLP.encodeList(RLP.encodeElement(address.toByteArray()), RLP.encodeElement(GRAPH_OBJECT)), true);
+            }
+            if (!Arrays.equals(storageRoot, EMPTY_TRIE_HASH)) {
+                addRequired(DatabaseType.STORAGE, ByteUtil.xorAlignRight(storageRoot, DetailsDataStore.storageSubKey(address)), address.toByteArray(), true);
+            }
+            return true;
+        } else {
+            return Arrays.equals(h256(value), hash) && repository.importTrieNode(node.key, value, DatabaseType.GRAPH).isSuccessful();
+        }
+    }
+
+    private void addRequired(DatabaseType type, byte[] key, byte[] context, boolean persist) {
+        ByteArrayWrapper id = id(type, key);
+        if (!required.containsKey(id)) {
+            RequiredNode node = new RequiredNode(type, key, context);
+            required.put(id, node);
+            waiting.addLast(node);
+            if (persist) {
+                progress.addRequiredNode(type, key, context);
+            }
+        }
+    }
+
+    private static ByteArrayWrapper id(DatabaseType type, byte[] key) {
+        byte[] id = new byte[key.length + 1];
+        id[0] = (byte) type.ordinal();
+        System.arraycopy(key, 0, id, 1, key.length);
+        return ByteArrayWrapper.wrap(id);
+    }
+
+    @VisibleForTesting
+    int getRequiredNodeCount() {
+        return required.size();
+    }
+
+    /** A node of the pivot state that has not been downloaded yet. */
+    private static final class RequiredNode {
+        final DatabaseType type;
+        // the key in the database, i.e. combined with the contract key for storage and graph nodes
+        final byte[] key;
+        // the state trie path, the contract address or the account data needed to process the node
+        final byte[] context;
+
+        int peerId = -1;
+        int failedPeerId = -1;
+        long requestTime;
+
+        RequiredNode(DatabaseType type, byte[] key, byte[] context) {
+            this.type = type;
+            this.key = key;
+            this.context = context;
+        }
+    }
+}
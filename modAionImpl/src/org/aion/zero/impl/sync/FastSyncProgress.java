@@ -0,0 +1,148 @@
+package org.aion.zero.impl.sync;
+
+import static org.aion.util.bytes.ByteUtil.EMPTY_BYTE_ARRAY;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import org.aion.db.impl.ByteArrayKeyValueDatabase;
+import org.aion.rlp.RLP;
+import org.aion.rlp.RLPList;
+import org.aion.util.bytes.ByteUtil;
+
+/**
+ * Persists the progress of the fast sync so that the download resumes after a restart: the pivot
+ * block and the nodes that are still required to complete its state.
+ */
+public final class FastSyncProgress {
+
+    private static final byte[] PIVOT_KEY = "pivot".getBytes();
+    private static final byte[] COMPLETE_KEY = "complete".getBytes();
+    // the required nodes are stored under the database type followed by the node key
+    private static final int NODE_ENTRY_LENGTH = 33;
+
+    private final ByteArrayKeyValueDatabase db;
+
+    public FastSyncProgress(ByteArrayKeyValueDatabase db) {
+        this.db = db;
+    }
+
+    /** @return {@code true} if the fast sync was completed on this database */
+    public boolean isComplete() {
+        return db.get(COMPLETE_KEY).isPresent();
+    }
+
+    /** @return the number of the pivot block or {@code -1} when the fast sync is not in progress */
+    public long getPivotNumber() {
+        if (isComplete()) {
+            return -1;
+        }
+        Optional<byte[]> pivot = db.get(PIVOT_KEY);
+        return pivot.map(p -> ByteUtil.byteArrayToLong(decodePivot(p).get(0).getRLPData())).orElse(-1L);
+    }
+
+    /** @return the hash of the pivot block or {@code null} when the pivot block was not stored yet */
+    public byte[] getPivotHash() {
+        return getPivotField(1);
+    }
+
+    /** @return the state root of the pivot block or {@code null} when the pivot block was not stored yet */
+    public byte[] getPivotStateRoot() {
+        return getPivotField(2);
+    }
+
+    private byte[] getPivotField(int index) {
+        Optional<byte[]> pivot = db.get(PIVOT_KEY);
+        if (!pivot.isPresent()) {
+            return null;
+        }
+        byte[] field = decodePivot(pivot.get()).get(index).getRLPData();
+        return field == null || field.length == 0 ? null : field;
+    }
+
+    private static RLPList decodePivot(byte[] encoding) {
+        return (RLPList) RLP.decode2(encoding).get(0);
+    }
+
+    /**
+     * Stores the pivot block.
+     *
+     * @param hash the hash of the pivot block or {@code null} when the block was not stored yet
+     * @param stateRoot the state root of the pivot block or {@code null} when the block was not
+     *     stored yet
+     */
+    public void setPivot(long number, byte[] hash, byte[] stateRoot) {
+        db.put(
+                PIVOT_KEY,
+                RLP.encodeList(
+                        RLP.encodeElement(ByteUtil.longToBytes(number)),
+                        RLP.encodeElement(hash == null ? EMPTY_BYTE_ARRAY : hash),
+                        RLP.encodeElement(stateRoot == null ? EMPTY_BYTE_ARRAY : stateRoot)));
+    }
+
+    /** Marks the fast sync as complete and removes the remaining progress data. */
+    public void markComplete() {
+        clearRequiredNodes();
+        db.put(COMPLETE_KEY, new byte[] {1});
+    }
+
+    /** Adds a required node to the current batch. The batch is written by {@link #commit()}. */
+    public void addRequiredNode(DatabaseType type, byte[] key, byte[] context) {
+        db.putToBatch(nodeEntry(type, key), context);
+    }
+
+    /** Removes a required node in the current batch. The batch is written by {@link #commit()}. */
+    public void removeRequiredNode(DatabaseType type, byte[] key) {
+        db.deleteInBatch(nodeEntry(type, key));
+    }
+
+    public void commit() {
+        db.commit();
+    }
+
+    /** Deletes all the required nodes, e.g. when the pivot changes. */
+    public void clearRequiredNodes() {
+        List<byte[]> entries = new ArrayList<>();
+        Iterator<byte[]> keys = db.keys();
+        while (keys.hasNext()) {
+            byte[] key = keys.next();
+            if (isNodeEntry(key)) {
+                entries.add(key);
+            }
+        }
+        db.deleteBatch(entries);
+    }
+
+    /** Visits the required nodes stored by a previous run. */
+    public void forEachRequiredNode(RequiredNodeConsumer consumer) {
+        Iterator<byte[]> keys = db.keys();
+        while (keys.hasNext()) {
+            byte[] entry = keys.next();
+            if (isNodeEntry(entry)) {
+                Optional<byte[]> context = db.get(entry);
+                if (context.isPresent()) {
+                    consumer.accept(DatabaseType.values()[entry[0]], Arrays.copyOfRange(entry, 1, NODE_ENTRY_LENGTH), context.get());
+                }
+            }
+        }
+    }
+
+    private static byte[] nodeEntry(DatabaseType type, byte[] key) {
+        byte[] entry = new byte[NODE_ENTRY_LENGTH];
+        entry[0] = (byte) type.ordinal();
+        System.arraycopy(key, 0, entry, 1, key.length);
+        return entry;
+    }
+
+    private static boolean isNodeEntry(byte[] key) {
+        return key.length == NODE_ENTRY_LENGTH && key[0] >= 0 && key[0] < DatabaseType.values().length;
+    }
+
+    /** Receives the required nodes read from the database. */
+    @FunctionalInterface
+    public interface RequiredNodeConsumer {
+        void accept(DatabaseType type, byte[] key, byte[] context);
+    }
+}
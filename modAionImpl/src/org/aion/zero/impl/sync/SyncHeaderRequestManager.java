@@ -8,7 +8,9 @@ import com.google.common.annotations.VisibleForTesting;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -18,9 +20,11 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 import org.aion.mcf.blockchain.Block;
 import org.aion.mcf.blockchain.BlockHeader;
@@ -75,7 +79,9 @@ public class SyncHeaderRequestManager {
     public static final int MIN_REQUEST_SIZE = 24;
 
     /**
-     * Maximum request size used in header requests.
+     * Maximum request size used in header requests to peers without measured throughput. With
+     * adaptive scheduling the cap for each peer moves between {@link #MIN_REQUEST_SIZE} and {@link
+     * #PEAK_REQUEST_SIZE} based on the peer's response times.
      *
      * @implNote The functionality for matching headers to bodies currently requires this to be an
      *     even number. More specifically, it is expected to be of different parity from {@link
@@ -84,6 +90,32 @@ public class SyncHeaderRequestManager {
      */
     public static final int MAX_REQUEST_SIZE = 40;
 
+    /**
+     * Largest request size used for peers that answer quickly.
+     *
+     * @implNote Must be an even number no larger than the number of headers returned by a peer in
+     *     one response.
+     */
+    static final int PEAK_REQUEST_SIZE = 96;
+
+    /** Increase in the request size cap of a peer after a complete and timely response. */
+    private static final int REQUEST_SIZE_STEP = 8;
+
+    /** Response time under which a peer is considered able to handle larger requests. */
+    private static final long TARGET_RESPONSE_TIME = 1_000_000_000L;
+
+    /** Bounds for the time after which an unanswered request is considered stalled. */
+    private static final long MIN_STALL_TIMEOUT = 2_000_000_000L, MAX_STALL_TIMEOUT = 10_000_000_000L;
+
+    /** Multiple of the average response time of a peer after which its requests are stalled. */
+    private static final int STALL_FACTOR = 4;
+
+    /** Number of unanswered header requests after which a peer does not receive new requests. */
+    private static final int MAX_OUTSTANDING_REQUESTS = 2;
+
+    /** Weight of a new sample in the moving averages of the peer measurements. */
+    private static final double SAMPLE_WEIGHT = 0.2;
+
     /** Number of blocks used in {@link SyncMode#BACKWARD} to find the common chain. */
     private static final int BACKWARD_SYNC_STEP = 128;
 
@@ -110,17 +142,35 @@ public class SyncHeaderRequestManager {
 
     private final Set<Integer> knownActiveNodes;
 
+    // ranges from stalled or dropped requests waiting to be requested from other peers
+    private final TreeMap<Long, Integer> unclaimedRanges;
+
     private long localHeight, networkHeight, requestHeight;
     private final Logger syncLog, surveyLog;
 
+    /**
+     * When {@code true} the request sizes and peer order follow the measured throughput of each
+     * peer and stalled requests are reassigned to other peers.
+     */
+    private final boolean adaptive;
+
+    /** Source of nano time used for request timing. */
+    private final LongSupplier clock;
+
     Lock lock = new ReentrantLock();
 
     /** Used to randomly select peers to request headers from. */
     Random random;
 
     public SyncHeaderRequestManager(Logger syncLog, Logger surveyLog) {
+        this(syncLog, surveyLog, true, System::nanoTime);
+    }
+
+    @VisibleForTesting
+    SyncHeaderRequestManager(Logger syncLog, Logger surveyLog, boolean adaptive, LongSupplier clock) {
         Objects.requireNonNull(syncLog);
         Objects.requireNonNull(surveyLog);
+        Objects.requireNonNull(clock);
 
         // ensures that the chosen constants will not violate p2p limitations
         if (MAX_REQUESTS_PER_SECOND > P2pConstant.READ_MAX_RATE_TXBC) {
@@ -135,6 +185,9 @@ public class SyncHeaderRequestManager {
         this.availablePeerStates = new HashMap<>();
         this.storedHeaders = new HashMap<>();
         this.knownActiveNodes = new HashSet<>();
+        this.unclaimedRanges = new TreeMap<>();
+        this.adaptive = adaptive;
+        this.clock = clock;
         this.localHeight = 0;
         this.networkHeight = 0;
         this.requestHeight = 0;
@@ -204,7 +257,7 @@ public class SyncHeaderRequestManager {
                 requestHeight = Math.max(requestHeight, from + take);
 
                 // record that another request has been made for availability tracking
-                requestState.saveRequestTime(System.nanoTime());
+                requestState.saveRequest(from, take, clock.getAsLong());
                 availablePeerStates.remove(requestState.id);
                 bookedPeerStates.put(requestState.id, requestState);
 
@@ -248,7 +301,7 @@ public class SyncHeaderRequestManager {
      *       added according to the provided list of active connections.
      *   <li>Updates the best known block number for all active peers and the known network height.
      *   <li>Booked peers are checked for a change in their status based on the availability defined
-     *       in {@link RequestState#tryMakeAvailable()} which takes into account the number of
+     *       in {@link RequestState#tryMakeAvailable(long)} which takes into account the number of
      *       header requests allowed per second.
      * </ol>
      */
@@ -262,8 +315,16 @@ public class SyncHeaderRequestManager {
         // remove dropped connections
         for (Integer id : dropped) {
             storedHeaders.remove(id);
-            bookedPeerStates.remove(id);
-            availablePeerStates.remove(id);
+            RequestState state = bookedPeerStates.remove(id);
+            if (state == null) {
+                state = availablePeerStates.remove(id);
+            }
+            // the ranges requested from the dropped peer are passed on to other peers
+            if (adaptive && state != null) {
+                for (HeaderRange range : state.outstanding) {
+                    releaseRange(range);
+                }
+            }
         }
 
         // add new peers and update best block for known peers
@@ -286,13 +347,17 @@ public class SyncHeaderRequestManager {
         knownActiveNodes.clear();
         knownActiveNodes.addAll(current.keySet());
 
+        long now = clock.getAsLong();
+        expireStalledRequests(bookedPeerStates.values(), now);
+        expireStalledRequests(availablePeerStates.values(), now);
+
         // reset booked states if now available
         if (!bookedPeerStates.isEmpty()) {
             // check if any of the booked states have become available
             Iterator<RequestState> states = bookedPeerStates.values().iterator();
             while (states.hasNext()) {
                 RequestState currentState = states.next();
-                if (currentState.tryMakeAvailable()) {
+                if (isAvailable(currentState, now)) {
                     availablePeerStates.put(currentState.id, currentState);
                     states.remove();
                 }
@@ -300,6 +365,80 @@ public class SyncHeaderRequestManager {
         }
     }
 
+    /**
+     * Drops the requests that were not answered within the stall timeout of their peer. With
+     * adaptive scheduling the requested ranges are made available to other peers.
+     */
+    private void expireStalledRequests(Collection<RequestState> states, long now) {
+        for (RequestState state : states) {
+            long timeout = state.getStallTimeout();
+            Iterator<HeaderRange> it = state.outstanding.iterator();
+            while (it.hasNext()) {
+                HeaderRange range = it.next();
+                if (now - range.time > timeout) {
+                    it.remove();
+                    state.recordFailure();
+                    if (adaptive) {
+                        state.shrinkSizeCap();
+                        releaseRange(range);
+                    }
+                    syncLog.debug(
+                            "<stalled-headers-request from-num={} size={} node={} new-size-cap={}>",
+                            range.from,
+                            range.size,
+                            state.alias,
+                            state.sizeCap);
+                }
+            }
+        }
+    }
+
+    /** Stores a range that must be requested again if it is still above the local chain. */
+    private void releaseRange(HeaderRange range) {
+        if (range.from + range.size > localHeight) {
+            unclaimedRanges.merge(range.from, range.size, Math::max);
+        }
+    }
+
+    /**
+     * Removes from the unclaimed ranges the lowest one that the peer can serve, dropping the ranges
+     * that are already covered by the local chain. Ranges larger than the request size cap of the
+     * peer are split and the remainder is kept for other peers.
+     *
+     * @return the range assigned to the peer or {@code null} if there is none
+     */
+    private HeaderRange claimRange(RequestState state, long currentBestBlock) {
+        Iterator<Map.Entry<Long, Integer>> it = unclaimedRanges.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Integer> entry = it.next();
+            long from = entry.getKey();
+            int size = entry.getValue();
+            if (from + size <= currentBestBlock) {
+                it.remove();
+            } else if (from <= state.lastBestBlock || state.lastBestBlock == 0) {
+                it.remove();
+                // the sizes are even so the remainder keeps the parity expected for matching bodies
+                int take = Math.min(size, state.sizeCap);
+                if (take < size) {
+                    unclaimedRanges.put(from + take, size - take);
+                }
+                return new HeaderRange(from, take, 0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Determines if a request can be sent to the peer based on the route cool down and, with
+     * adaptive scheduling, on the number of requests still waiting for a response.
+     */
+    private boolean isAvailable(RequestState state, long now) {
+        if (adaptive && state.outstanding.size() >= MAX_OUTSTANDING_REQUESTS) {
+            return false;
+        }
+        return state.tryMakeAvailable(now);
+    }
+
     /**
      * Used in <b>unit tests</b> for validating correctness of the {@link #updateActiveNodes(Map)}
      * method.
@@ -403,6 +542,10 @@ public class SyncHeaderRequestManager {
      *       are even numbers to allow for the different sizes returned by the overlapping requests
      *       which will be odd numbers.
      * </ol>
+     *
+     * <p>With adaptive scheduling the peers with the highest measured throughput are served first,
+     * the ranges of stalled requests are reassigned before new ranges are created and the upper
+     * end of the size range is the request size cap of each peer.
      */
     private List<RequestState> updateStatesForRequests(boolean distantFuture, long currentBestBlock) {
         // update the known localHeight
@@ -423,6 +566,10 @@ public class SyncHeaderRequestManager {
         if (availableSet.isEmpty()){
             return Collections.emptyList();
         }
+        if (adaptive) {
+            // the lowest ranges are the most urgent for the import so they go to the fastest peers
+            availableSet.sort(Comparator.comparingDouble(RequestState::getScore).reversed());
+        }
 
         if (!distantFuture) {
             // make a single request when !distantFuture
@@ -434,15 +581,21 @@ public class SyncHeaderRequestManager {
         List<RequestState> requestStates = new ArrayList<>();
         for (RequestState state : availableSet) {
             // set up the size to decrease the chance of overlap for consecutive headers requests
-            // the range is from MIN to MAX_LARGE_REQUEST_SIZE
+            // the range is from MIN to MAX_REQUEST_SIZE shifted up to the size cap of the peer
             // avoids overlap with FAR_OVERLAPPING_BLOCKS and CLOSE_OVERLAPPING_BLOCKS because they
             // are odd and these are even numbers
+            int lowestSize = Math.max(MIN_REQUEST_SIZE, state.sizeCap - (MAX_REQUEST_SIZE - MIN_REQUEST_SIZE));
             int nextSize = state.size - 2;
-            if (nextSize < MIN_REQUEST_SIZE) {
-                nextSize = MAX_REQUEST_SIZE;
+            if (nextSize < lowestSize || nextSize > state.sizeCap) {
+                nextSize = state.sizeCap;
             }
 
-            if (state.mode == BACKWARD) {
+            HeaderRange unclaimed = adaptive && state.mode == NORMAL ? claimRange(state, currentBestBlock) : null;
+            if (unclaimed != null) {
+                // take over a range from a stalled request
+                state.from = unclaimed.from;
+                state.size = unclaimed.size;
+            } else if (state.mode == BACKWARD) {
                 state.from = Math.max(1, state.from - BACKWARD_SYNC_STEP);
                 state.size = nextSize;
             } else if (state.mode == FORWARD) {
@@ -582,13 +735,88 @@ public class SyncHeaderRequestManager {
 
         // headers were received so the peer is available for further requests
         if (bookedPeerStates.containsKey(peerId)
-                && bookedPeerStates.get(peerId).tryMakeAvailable()) {
+                && isAvailable(bookedPeerStates.get(peerId), clock.getAsLong())) {
             availablePeerStates.put(peerId, bookedPeerStates.remove(peerId));
         }
 
         syncLog.debug("<save-headers nodeId={} size={} object={}>", peerId, headers.size(), printHeaders(headers));
     }
 
+    /**
+     * Records the response to a header request for the peer measurements used by the adaptive
+     * scheduling.
+     *
+     * @param peerId the peer that sent the headers
+     * @param firstNumber the number of the first received header
+     * @param count the number of received headers
+     */
+    public void recordHeadersResponse(int peerId, long firstNumber, int count) {
+        lock.lock();
+
+        try {
+            long now = clock.getAsLong();
+            RequestState state = bookedPeerStates.get(peerId);
+            if (state == null) {
+                state = availablePeerStates.get(peerId);
+            }
+            if (state != null) {
+                HeaderRange range = state.removeOutstanding(firstNumber);
+                if (range != null) {
+                    long responseTime = now - range.time;
+                    state.recordResponse(responseTime, count);
+                    if (adaptive) {
+                        if (count >= range.size && responseTime <= TARGET_RESPONSE_TIME) {
+                            state.growSizeCap();
+                        } else if (responseTime > 2 * TARGET_RESPONSE_TIME) {
+                            state.shrinkSizeCap();
+                        }
+                    }
+                }
+                if (bookedPeerStates.containsKey(peerId) && isAvailable(state, now)) {
+                    availablePeerStates.put(peerId, bookedPeerStates.remove(peerId));
+                }
+            }
+
+            // a late response makes the reassignment of its range unnecessary
+            Map.Entry<Long, Integer> unclaimed = unclaimedRanges.floorEntry(firstNumber);
+            if (unclaimed != null && unclaimed.getKey() + unclaimed.getValue() <= firstNumber + count) {
+                unclaimedRanges.remove(unclaimed.getKey());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records an invalid response to a header request. The requested range is passed on to other
+     * peers and the request size cap of the peer is reduced.
+     *
+     * @param peerId the peer that sent the headers
+     * @param firstNumber the number of the first received header
+     */
+    public void recordInvalidHeaders(int peerId, long firstNumber) {
+        lock.lock();
+
+        try {
+            RequestState state = bookedPeerStates.get(peerId);
+            if (state == null) {
+                state = availablePeerStates.get(peerId);
+            }
+            if (state != null) {
+                HeaderRange range = state.removeOutstanding(firstNumber);
+                state.recordFailure();
+                if (adaptive) {
+                    state.shrinkSizeCap();
+                    if (range != null) {
+                        releaseRange(range);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private static List<String> printHeaders(List<BlockHeader> headers) {
         return headers.stream().map(h -> Hex.toHexString(h.getHash()).substring(0, 6) + " #" + h.getNumber()).collect(Collectors.toList());
     }
@@ -750,6 +978,12 @@ public class SyncHeaderRequestManager {
         // state information
         private long lastBestBlock;
         private final TreeSet<Long> headerRequests;
+        private final List<HeaderRange> outstanding;
+
+        // measurements: moving averages of the response time in nanoseconds, the number of
+        // headers delivered per second and the share of requests that stalled or were invalid
+        private double latency, throughput, failureRate;
+        private int sizeCap;
 
         // sync request
         private SyncMode mode;
@@ -763,24 +997,74 @@ public class SyncHeaderRequestManager {
             // state information
             this.lastBestBlock = lastBestBlock;
             this.headerRequests = new TreeSet<>();
+            this.outstanding = new LinkedList<>();
+            this.sizeCap = MAX_REQUEST_SIZE;
             // initial sync request data
             this.mode = NORMAL;
             this.from = 0;
             this.size = MIN_REQUEST_SIZE;
         }
 
-        /** Stores the nano time of the last header request. */
-        public void saveRequestTime(long latestStatusRequest) {
-            headerRequests.add(latestStatusRequest);
+        /** Stores the nano time and the range of the last header request. */
+        public void saveRequest(long from, int size, long requestTime) {
+            headerRequests.add(requestTime);
+            outstanding.add(new HeaderRange(from, size, requestTime));
+        }
+
+        /** Removes the request whose range contains the given block number. */
+        public HeaderRange removeOutstanding(long number) {
+            Iterator<HeaderRange> it = outstanding.iterator();
+            while (it.hasNext()) {
+                HeaderRange range = it.next();
+                if (range.from <= number && number < range.from + range.size) {
+                    it.remove();
+                    return range;
+                }
+            }
+            return null;
+        }
+
+        /** Updates the measurements with a response. */
+        public void recordResponse(long responseTime, int count) {
+            double rate = (double) count * ONE_SECOND / Math.max(1L, responseTime);
+            latency = latency == 0 ? responseTime : latency + SAMPLE_WEIGHT * (responseTime - latency);
+            throughput = throughput == 0 ? rate : throughput + SAMPLE_WEIGHT * (rate - throughput);
+            failureRate = failureRate - SAMPLE_WEIGHT * failureRate;
+        }
+
+        /** Updates the measurements with a stalled or invalid request. */
+        public void recordFailure() {
+            failureRate = failureRate + SAMPLE_WEIGHT * (1 - failureRate);
+        }
+
+        public void growSizeCap() {
+            sizeCap = Math.min(PEAK_REQUEST_SIZE, sizeCap + REQUEST_SIZE_STEP);
+        }
+
+        public void shrinkSizeCap() {
+            // halves the cap keeping it an even number
+            sizeCap = Math.max(MIN_REQUEST_SIZE, (sizeCap / 4) * 2);
+        }
+
+        /** @return the time after which a request to this peer is considered stalled */
+        public long getStallTimeout() {
+            return Math.min(MAX_STALL_TIMEOUT, Math.max(MIN_STALL_TIMEOUT, (long) (STALL_FACTOR * latency)));
+        }
+
+        /**
+         * @return the expected number of headers per second delivered by this peer, with peers that
+         *     were not measured yet assumed to deliver {@link #MAX_REQUEST_SIZE} headers per second
+         */
+        public double getScore() {
+            return (throughput == 0 ? MAX_REQUEST_SIZE : throughput) * (1 - failureRate);
         }
 
         /** Determines if a request can be sent based on the route cool down. */
-        public boolean tryMakeAvailable() {
+        public boolean tryMakeAvailable(long now) {
             if (headerRequests.size() < MAX_REQUESTS_PER_SECOND) {
                 // have not reached the limit of requests
                 return true;
             } else {
-                long now = System.nanoTime();
                 long first = headerRequests.first();
 
                 if ((now - first) <= ONE_SECOND) {
@@ -795,4 +1079,17 @@ public class SyncHeaderRequestManager {
             }
         }
     }
+
+    /** A header request range and the nano time when it was sent. */
+    private static class HeaderRange {
+        private final long from;
+        private final int size;
+        private final long time;
+
+        HeaderRange(long from, int size, long time) {
+            this.from = from;
+            this.size = size;
+            this.time = time;
+        }
+    }
 }
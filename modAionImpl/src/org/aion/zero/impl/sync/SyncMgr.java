@@ -18,6 +18,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.aion.evtmgr.IEvent;
 import org.aion.evtmgr.IEventMgr;
@@ -50,6 +51,7 @@ public final class SyncMgr {
     // interval - show status
     private static final long DELAY_SHOW_STATUS = 10L; // in seconds
     private static final long DELAY_STATUS_REQUEST = 2L; // in seconds
+    private static final long DELAY_FAST_SYNC = 200L; // in milliseconds
     /**
      * NOTE: This value was selected based on heap dumps for normal execution where the queue was
      * holding around 60 items.
@@ -57,6 +59,10 @@ public final class SyncMgr {
     private static final int QUEUE_CAPACITY = 100;
     private static final int HALF_QUEUE_CAPACITY = QUEUE_CAPACITY / 2;
 
+    /** Number of blocks that may wait for the stateless validations before throttling the intake. */
+    private static final int PREVALIDATION_QUEUE_CAPACITY = 1024;
+    private static final int PREVALIDATION_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
     /**
      * Threshold for pushing received blocks to storage.
      *
@@ -83,6 +89,9 @@ public final class SyncMgr {
 
     private final ScheduledExecutorService syncExecutors;
     private final ThreadPoolExecutor importExecutor;
+    private final BlockPrevalidator prevalidator;
+    // downloads the state at a pivot block, null when fast sync is disabled
+    private final FastSyncManager fastSyncManager;
 
     private BlockHeaderValidator blockHeaderValidator;
     private volatile long timeUpdated = 0;
@@ -94,7 +103,8 @@ public final class SyncMgr {
         final IEventMgr _evtMgr,
         final boolean _showStatus,
         final Set<StatsType> showStatistics,
-        final int maxActivePeers) {
+        final int maxActivePeers,
+        final boolean fastSync) {
 
         p2pMgr = _p2pMgr;
         chain = _chain;
@@ -108,11 +118,23 @@ public final class SyncMgr {
 
         long selfBest = chain.getBestBlock().getNumber();
         stats = new SyncStats(selfBest, _showStatus, statsTypes, maxActivePeers);
+        prevalidator = new BlockPrevalidator(chain, stats, PREVALIDATION_THREADS, PREVALIDATION_QUEUE_CAPACITY);
 
         syncHeaderRequestManager =  new SyncHeaderRequestManager(log, survey_log);
 
         syncExecutors.scheduleWithFixedDelay(() -> requestStatus(), 0L, DELAY_STATUS_REQUEST, TimeUnit.SECONDS);
 
+        if (fastSync || chain.getFastSyncPivotNumber() >= 0) {
+            // an interrupted fast sync is resumed even when disabled since the state is incomplete
+            FastSyncManager manager = new FastSyncManager(chain, p2pMgr);
+            fastSyncManager = manager.isDone() ? null : manager;
+        } else {
+            fastSyncManager = null;
+        }
+        if (fastSyncManager != null) {
+            syncExecutors.scheduleWithFixedDelay(() -> updateFastSync(), 0L, DELAY_FAST_SYNC, TimeUnit.MILLISECONDS);
+        }
+
         if (_showStatus) {
             syncExecutors.scheduleWithFixedDelay(() -> showStatus(statsTypes), 0, DELAY_SHOW_STATUS, TimeUnit.SECONDS);
         }
@@ -174,6 +196,13 @@ public final class SyncMgr {
                 p2pLog.info(requestedStats);
             }
         }
+
+        if (showStatistics.contains(StatsType.IMPORT)) {
+            requestedStats = stats.dumpImportStats();
+            if (!requestedStats.isEmpty()) {
+                p2pLog.info(requestedStats);
+            }
+        }
     }
 
     private static String getStatus(AionBlockchainImpl chain, NetworkStatus networkStatus, SyncStats syncStats) {
@@ -265,7 +294,26 @@ public final class SyncMgr {
         this.evtMgr.registerEvent(events);
     }
 
+    private void updateFastSync() {
+        Thread.currentThread().setName("sync-fs");
+        try {
+            fastSyncManager.update(getNetworkBestBlockNumber());
+        } catch (Exception e) {
+            log.error("Exception during the fast sync.", e);
+        }
+    }
+
+    /** @return the fast sync manager or {@code null} when fast sync is not used */
+    public FastSyncManager getFastSyncManager() {
+        return fastSyncManager;
+    }
+
     private void getHeaders(BigInteger _selfTd) {
+        if (fastSyncManager != null && fastSyncManager.isBlockingHeaderRequests()) {
+            // waiting for the fast sync to choose the pivot or to download its state
+            return;
+        }
+
         // Making requests only if the executor has capacity to add more than half the tasks since multiple requests may be sent at the same time.
         if (importExecutor.getQueue().size() < HALF_QUEUE_CAPACITY) {
             syncHeaderRequestManager.sendHeadersRequests(chain.getBestBlock().getNumber(), _selfTd, p2pMgr, stats);
@@ -305,6 +353,7 @@ public final class SyncMgr {
                 // Print header to allow debugging
                 log.debug("Invalid header: {}", current.toString());
 
+                syncHeaderRequestManager.recordInvalidHeaders(_nodeIdHashcode, _headers.get(0).getNumber());
                 return;
             }
 
@@ -319,6 +368,7 @@ public final class SyncMgr {
                         prev.getNumber() + 1,
                         ByteUtil.toHexString(current.getParentHash()),
                         ByteUtil.toHexString(prev.getHash()));
+                syncHeaderRequestManager.recordInvalidHeaders(_nodeIdHashcode, _headers.get(0).getNumber());
                 return;
             }
 
@@ -330,12 +380,18 @@ public final class SyncMgr {
             prev = current;
         }
 
+        // the measured response time and size adjust the future requests to this peer
+        syncHeaderRequestManager.recordHeadersResponse(_nodeIdHashcode, _headers.get(0).getNumber(), _headers.size());
+
         // NOTE: the filtered headers is still continuous
         if (!filtered.isEmpty()) {
             // save headers for future bodies requests and matching with bodies
             syncHeaderRequestManager.storeHeaders(_nodeIdHashcode, filtered);
             syncExecutors.execute(() -> requestBodies(_nodeIdHashcode, _displayId));
         }
+
+        // the peer may be available again so the request pipeline is refilled without waiting for the next status update
+        syncExecutors.execute(() -> getHeaders(chain.getTotalDifficulty()));
     }
 
     /**
@@ -443,7 +499,9 @@ public final class SyncMgr {
             int stored = chain.storePendingBlockRange(downloadedBlocks.blocks, log);
             stats.updatePeerBlocks(downloadedBlocks.displayId, stored, BlockType.STORED);
         } else {
-            importExecutor.execute(() -> TaskImportBlocks.importBlocks(chain, stats, downloadedBlocks, importedBlockHashes, syncHeaderRequestManager));
+            // the stateless validations start right away and overlap with the imports already in the queue
+            Predicate<Block> statelessChecks = prevalidator.submit(downloadedBlocks.blocks);
+            importExecutor.execute(() -> TaskImportBlocks.importBlocks(chain, stats, downloadedBlocks, statelessChecks, importedBlockHashes, syncHeaderRequestManager));
         }
     }
 
@@ -474,10 +532,15 @@ public final class SyncMgr {
             if (!requestedStats.isEmpty()) {
                 p2pLog.debug(requestedStats);
             }
+            requestedStats = stats.dumpImportStats();
+            if (!requestedStats.isEmpty()) {
+                p2pLog.debug(requestedStats);
+            }
         }
 
         shutdownAndAwaitTermination(syncExecutors);
         shutdownAndAwaitTermination(importExecutor);
+        shutdownAndAwaitTermination(prevalidator.getExecutor());
     }
 
     private void shutdownAndAwaitTermination(ExecutorService pool) {
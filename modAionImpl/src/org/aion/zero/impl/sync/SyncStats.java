@@ -19,6 +19,8 @@ import javax.management.ReflectionException;
 import org.aion.zero.impl.config.CfgAion;
 import org.aion.zero.impl.config.StatsType;
 import org.aion.zero.impl.sync.statistics.BlockType;
+import org.aion.zero.impl.sync.statistics.ImportStage;
+import org.aion.zero.impl.sync.statistics.ImportStatsTracker;
 import org.aion.zero.impl.sync.statistics.RequestStatsTracker;
 import org.aion.zero.impl.sync.statistics.RequestType;
 import org.aion.zero.impl.sync.statistics.ResponseStatsTracker;
@@ -48,6 +50,9 @@ public final class SyncStats {
     private final ResponseStatsTracker responseTracker;
     private final boolean responseEnabled;
 
+    private final ImportStatsTracker importTracker;
+    private final boolean importEnabled;
+
     private final boolean systemInfoEnabled;
     private static long MB = 1024 * 1024;
     private static long GB = MB * 1024;
@@ -104,6 +109,13 @@ public final class SyncStats {
             responseTracker = null;
         }
 
+        importEnabled = showStatistics.contains(StatsType.IMPORT);
+        if (importEnabled) {
+            importTracker = new ImportStatsTracker();
+        } else {
+            importTracker = null;
+        }
+
         systemInfoEnabled = showStatistics.contains(StatsType.SYSTEMINFO);
         if (systemInfoEnabled) {
             dbDir = CfgAion.inst().getDatabaseDir();
@@ -326,6 +338,36 @@ public final class SyncStats {
         }
     }
 
+    /**
+     * Log the time spent by the import in one of its stages.
+     *
+     * @param stage the import stage
+     * @param duration the duration of the stage in nanoseconds
+     */
+    public void updateImportStageTime(ImportStage stage, long duration) {
+        if (importEnabled) {
+            importTracker.updateStageTime(stage, duration);
+        }
+    }
+
+    @VisibleForTesting
+    ImportStatsTracker getImportStats() {
+        return importTracker;
+    }
+
+    /**
+     * Obtain log stream containing the latency distribution of each stage of the block import.
+     *
+     * @return log stream with import statistical data
+     */
+    public String dumpImportStats() {
+        if (importEnabled) {
+            return importTracker.dumpImportStats();
+        } else {
+            return "";
+        }
+    }
+
     /**
      * Obtain system info including cpu/mem usage, thread number and the disk free space.
      */
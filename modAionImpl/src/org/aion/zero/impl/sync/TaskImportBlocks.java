@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.aion.log.AionLoggerFactory;
 import org.aion.log.LogEnum;
@@ -19,6 +20,7 @@ import org.aion.zero.impl.SystemExitCodes;
 import org.aion.zero.impl.blockchain.AionBlockchainImpl;
 import org.aion.zero.impl.sync.SyncHeaderRequestManager.SyncMode;
 import org.aion.zero.impl.sync.statistics.BlockType;
+import org.aion.zero.impl.sync.statistics.ImportStage;
 import org.apache.commons.lang3.tuple.Triple;
 import org.slf4j.Logger;
 
@@ -32,15 +34,19 @@ import org.slf4j.Logger;
 final class TaskImportBlocks {
 
     private static final Logger log = AionLoggerFactory.getLogger(LogEnum.SYNC.name());
-    private static final Logger surveyLog = AionLoggerFactory.getLogger(LogEnum.SURVEY.name());
 
-    static void importBlocks(final AionBlockchainImpl chain, final SyncStats syncStats, final BlocksWrapper bw, final Map<ByteArrayWrapper, Object> importedBlockHashes, final SyncHeaderRequestManager syncHeaderRequestManager) {
+    /**
+     * Imports the blocks received from a peer.
+     *
+     * @param statelessChecks returns the outcome of the validations that do not depend on the chain
+     *     state, which were started ahead of the import by the {@link BlockPrevalidator}
+     */
+    static void importBlocks(final AionBlockchainImpl chain, final SyncStats syncStats, final BlocksWrapper bw, final Predicate<Block> statelessChecks, final Map<ByteArrayWrapper, Object> importedBlockHashes, final SyncHeaderRequestManager syncHeaderRequestManager) {
         Thread.currentThread().setName("sync-ib");
 
         long startTime = System.nanoTime();
         SyncMode syncMode = syncHeaderRequestManager.getSyncMode(bw.nodeId);
-        long duration = System.nanoTime() - startTime;
-        surveyLog.debug("Import Stage 2: wait for peer state, duration = {} ns.", duration);
+        syncStats.updateImportStageTime(ImportStage.PEER_STATE, System.nanoTime() - startTime);
 
         if (syncMode == null) {
             // ignoring these blocks
@@ -48,14 +54,10 @@ final class TaskImportBlocks {
         } else { // the peerState is not null after this
             startTime = System.nanoTime();
             List<Block> batch = filterBatch(bw.blocks, chain, importedBlockHashes);
-            duration = System.nanoTime() - startTime;
-            surveyLog.debug("Import Stage 3: filter batch, duration = {} ns.", duration);
+            syncStats.updateImportStageTime(ImportStage.FILTER, System.nanoTime() - startTime);
 
-            startTime = System.nanoTime();
             // process batch and update the peer state
-            SyncMode newMode = processBatch(chain, importedBlockHashes, syncStats, syncMode, batch, bw.displayId);
-            duration = System.nanoTime() - startTime;
-            surveyLog.debug("Import Stage 4: process received and disk batches, duration = {} ns.", duration);
+            SyncMode newMode = processBatch(chain, importedBlockHashes, syncStats, syncMode, batch, bw.displayId, statelessChecks);
 
             // transition to recommended sync mode
             if (syncMode != newMode) {
@@ -104,9 +106,9 @@ final class TaskImportBlocks {
     }
 
     /** @implNote This method is called only when state is not null. */
-    private static SyncMode processBatch(AionBlockchainImpl chain, Map<ByteArrayWrapper, Object> importedBlockHashes, SyncStats syncStats, SyncMode syncMode, List<Block> batch, String displayId) {
+    private static SyncMode processBatch(AionBlockchainImpl chain, Map<ByteArrayWrapper, Object> importedBlockHashes, SyncStats syncStats, SyncMode syncMode, List<Block> batch, String displayId, Predicate<Block> statelessChecks) {
         // for runtime survey information
-        long startTime, duration;
+        long startTime;
 
         // all blocks were filtered out
         // interpreted as repeated work
@@ -151,7 +153,7 @@ final class TaskImportBlocks {
         startTime = System.nanoTime();
         try {
             long importDuration = System.currentTimeMillis();
-            Triple<Long, Set<ByteArrayWrapper>, ImportResult> resultTriple = chain.tryToConnect(batch, displayId);
+            Triple<Long, Set<ByteArrayWrapper>, ImportResult> resultTriple = chain.tryToConnect(batch, displayId, statelessChecks);
             importDuration = System.currentTimeMillis() - importDuration;
 
             currentBest = resultTriple.getLeft();
@@ -179,14 +181,12 @@ final class TaskImportBlocks {
             int stored = chain.storePendingBlockRange(batch, log);
             syncStats.updatePeerBlocks(displayId, stored, BlockType.STORED);
 
+            syncStats.updateImportStageTime(ImportStage.IMPORT, System.nanoTime() - startTime);
+
             // check if it is below the current importable blocks
             if (firstInBatch.getNumber() <= getBestBlockNumber(chain) + 1) {
-                duration = System.nanoTime() - startTime;
-                surveyLog.debug("Import Stage 4.A: import received batch, duration = {} ns.", duration);
                 return BACKWARD;
             }
-            duration = System.nanoTime() - startTime;
-            surveyLog.debug("Import Stage 4.A: import received batch, duration = {} ns.", duration);
             return returnMode;
         } else if (importResult.isStored()) {
             if (syncMode == BACKWARD) {
@@ -195,16 +195,12 @@ final class TaskImportBlocks {
                 returnMode = NORMAL;
             }
         }
-        duration = System.nanoTime() - startTime;
-        surveyLog.debug("Import Stage 4.A: import received batch, duration = {} ns.", duration);
+        syncStats.updateImportStageTime(ImportStage.IMPORT, System.nanoTime() - startTime);
 
-        startTime = System.nanoTime();
         // check for stored blocks
         if (first < last) {
-            returnMode = importFromStorage(chain, importedBlockHashes, returnMode, first, last);
+            returnMode = importFromStorage(chain, importedBlockHashes, syncStats, returnMode, first, last);
         }
-        duration = System.nanoTime() - startTime;
-        surveyLog.debug("Import Stage 4.B: process all disk batches, duration = {} ns.", duration);
 
         return returnMode;
     }
@@ -214,9 +210,9 @@ final class TaskImportBlocks {
      *
      * @return the total number of imported blocks from all iterations
      */
-    private static SyncMode importFromStorage(AionBlockchainImpl chain,Map<ByteArrayWrapper, Object> importedBlockHashes, SyncMode givenMode, long first, long last) {
+    private static SyncMode importFromStorage(AionBlockchainImpl chain, Map<ByteArrayWrapper, Object> importedBlockHashes, SyncStats syncStats, SyncMode givenMode, long first, long last) {
         // for runtime survey information
-        long startTime, duration;
+        long startTime;
 
         ImportResult importResult = ImportResult.NO_PARENT;
         int imported = 0, batch;
@@ -227,8 +223,7 @@ final class TaskImportBlocks {
             startTime = System.nanoTime();
             // get blocks stored for level
             Map<ByteArrayWrapper, List<Block>> levelFromDisk = chain.loadPendingBlocksAtLevel(level, log);
-            duration = System.nanoTime() - startTime;
-            surveyLog.debug("Import Stage 4.B.i: load batch from disk, duration = {} ns.", duration);
+            syncStats.updateImportStageTime(ImportStage.STORAGE_LOAD, System.nanoTime() - startTime);
 
             if (levelFromDisk.isEmpty()) {
                 // move on to next level
@@ -247,8 +242,7 @@ final class TaskImportBlocks {
                 startTime = System.nanoTime();
                 // filter already imported blocks
                 batchFromDisk = filterBatch(batchFromDisk, chain, importedBlockHashes);
-                duration = System.nanoTime() - startTime;
-                surveyLog.debug("Import Stage 4.B.ii: filter batch from disk, duration = {} ns.", duration);
+                syncStats.updateImportStageTime(ImportStage.STORAGE_FILTER, System.nanoTime() - startTime);
 
                 if (!batchFromDisk.isEmpty()) {
                     if (log.isDebugEnabled()) {
@@ -296,8 +290,7 @@ final class TaskImportBlocks {
                         System.exit(SystemExitCodes.OUT_OF_DISK_SPACE);
                     }
                 }
-                duration = System.nanoTime() - startTime;
-                surveyLog.debug("Import Stage 4.B.iii: import batch from disk, duration = {} ns.", duration);
+                syncStats.updateImportStageTime(ImportStage.STORAGE_IMPORT, System.nanoTime() - startTime);
 
                 imported += batch;
             }
@@ -1,9 +1,7 @@
 package org.aion.zero.impl.sync.handler;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import org.aion.mcf.blockchain.Block;
 import org.aion.p2p.Ctrl;
@@ -12,13 +10,12 @@ import org.aion.p2p.IP2pMgr;
 import org.aion.p2p.P2pConstant;
 import org.aion.p2p.Ver;
 import org.aion.util.bytes.ByteUtil;
-import org.aion.util.types.ByteArrayWrapper;
 import org.aion.zero.impl.blockchain.IAionBlockchain;
 import org.aion.zero.impl.sync.Act;
+import org.aion.zero.impl.sync.EncodedBlockCache;
 import org.aion.zero.impl.sync.SyncMgr;
 import org.aion.zero.impl.sync.msg.ReqBlocksBodies;
 import org.aion.zero.impl.sync.msg.ResBlocksBodies;
-import org.apache.commons.collections4.map.LRUMap;
 import org.slf4j.Logger;
 
 /** @author chris handler for request block bodies broadcasted from network */
@@ -34,8 +31,7 @@ public final class ReqBlocksBodiesHandler extends Handler {
 
     private final IP2pMgr p2pMgr;
 
-    private final Map<ByteArrayWrapper, byte[]> cache =
-            Collections.synchronizedMap(new LRUMap<>(512));
+    private final EncodedBlockCache cache;
 
     private final boolean isSyncOnlyNode;
 
@@ -44,12 +40,14 @@ public final class ReqBlocksBodiesHandler extends Handler {
             final IAionBlockchain _blockchain,
             final SyncMgr _syncMgr,
             final IP2pMgr _p2pMgr,
+            final EncodedBlockCache _cache,
             final boolean isSyncOnlyNode) {
         super(Ver.V0, Ctrl.SYNC, Act.REQ_BLOCKS_BODIES);
         this.log = _log;
         this.blockchain = _blockchain;
         this.syncMgr = _syncMgr;
         this.p2pMgr = _p2pMgr;
+        this.cache = _cache;
         this.isSyncOnlyNode = isSyncOnlyNode;
     }
 
@@ -77,7 +75,7 @@ public final class ReqBlocksBodiesHandler extends Handler {
                 // ref for add.
                 byte[] blockBytesForadd;
 
-                byte[] blockBytes = cache.get(ByteArrayWrapper.wrap(hash));
+                byte[] blockBytes = cache.getBody(hash);
 
                 // if cached , add.
                 if (blockBytes != null) {
@@ -86,8 +84,7 @@ public final class ReqBlocksBodiesHandler extends Handler {
                     Block block = blockchain.getBlockByHash(hash);
 
                     if (block != null) {
-                        blockBytesForadd = block.getEncodedBody();
-                        cache.put(ByteArrayWrapper.wrap(hash), block.getEncodedBody());
+                        blockBytesForadd = cache.add(block);
                     } else {
                         // not found
                         break;
@@ -9,6 +9,7 @@ import org.aion.p2p.IP2pMgr;
 import org.aion.p2p.Ver;
 import org.aion.zero.impl.blockchain.IAionBlockchain;
 import org.aion.zero.impl.sync.Act;
+import org.aion.zero.impl.sync.EncodedBlockCache;
 import org.aion.zero.impl.sync.msg.ReqBlocksHeaders;
 import org.aion.zero.impl.sync.msg.ResBlocksHeaders;
 import org.slf4j.Logger;
@@ -28,17 +29,21 @@ public final class ReqBlocksHeadersHandler extends Handler {
 
     private final IP2pMgr p2pMgr;
 
+    private final EncodedBlockCache cache;
+
     private final boolean isSyncOnlyNode;
 
     public ReqBlocksHeadersHandler(
             final Logger _log,
             final IAionBlockchain _blockchain,
             final IP2pMgr _p2pMgr,
+            final EncodedBlockCache _cache,
             final boolean isSyncOnlyNode) {
         super(Ver.V0, Ctrl.SYNC, Act.REQ_BLOCKS_HEADERS);
         this.log = _log;
         this.blockchain = _blockchain;
         this.p2pMgr = _p2pMgr;
+        this.cache = _cache;
         this.isSyncOnlyNode = isSyncOnlyNode;
     }
 
@@ -59,10 +64,17 @@ public final class ReqBlocksHeadersHandler extends Handler {
                         take,
                         _displayId);
             }
-            List<BlockHeader> headers =
-                    this.blockchain.getListOfHeadersStartFrom(
-                            fromBlock, Math.min(take, MAX_NUM_OF_BLOCKS));
-            ResBlocksHeaders rbhs = new ResBlocksHeaders(headers);
+            int limit = Math.min(take, MAX_NUM_OF_BLOCKS);
+            // recent ranges are sent from the cached encodings
+            List<byte[]> encoded = this.cache.getHeaders(fromBlock, limit);
+            ResBlocksHeaders rbhs;
+            if (encoded != null) {
+                rbhs = ResBlocksHeaders.fromEncoded(encoded);
+            } else {
+                List<BlockHeader> headers =
+                        this.blockchain.getListOfHeadersStartFrom(fromBlock, limit);
+                rbhs = new ResBlocksHeaders(headers);
+            }
             this.p2pMgr.send(_nodeIdHashcode, _displayId, rbhs);
         } else {
             this.log.error(
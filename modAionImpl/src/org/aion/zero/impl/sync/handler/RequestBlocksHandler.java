@@ -12,6 +12,7 @@ import org.aion.p2p.Ver;
 import org.aion.util.conversions.Hex;
 import org.aion.zero.impl.blockchain.IAionBlockchain;
 import org.aion.zero.impl.sync.Act;
+import org.aion.zero.impl.sync.EncodedBlockCache;
 import org.aion.zero.impl.sync.msg.RequestBlocks;
 import org.aion.zero.impl.sync.msg.ResponseBlocks;
 import org.slf4j.Logger;
@@ -29,6 +30,8 @@ public final class RequestBlocksHandler extends Handler {
 
     private final IP2pMgr p2p;
 
+    private final EncodedBlockCache cache;
+
     /**
      * Constructor.
      *
@@ -37,10 +40,27 @@ public final class RequestBlocksHandler extends Handler {
      * @param p2p peer manager used to submit messages
      */
     public RequestBlocksHandler(final Logger log, final IAionBlockchain chain, final IP2pMgr p2p) {
+        this(log, chain, p2p, new EncodedBlockCache(EncodedBlockCache.DEFAULT_SIZE));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param log logger for reporting execution information
+     * @param chain the blockchain used by the application
+     * @param p2p peer manager used to submit messages
+     * @param cache the encodings of the recently imported blocks
+     */
+    public RequestBlocksHandler(
+            final Logger log,
+            final IAionBlockchain chain,
+            final IP2pMgr p2p,
+            final EncodedBlockCache cache) {
         super(Ver.V1, Ctrl.SYNC, Act.REQUEST_BLOCKS);
         this.log = log;
         this.chain = chain;
         this.p2p = p2p;
+        this.cache = cache;
     }
 
     @Override
@@ -68,6 +88,14 @@ public final class RequestBlocksHandler extends Handler {
                             descending ? "DESC" : "ASC");
                 }
 
+                // recent ranges are sent from the cached encodings
+                long end = descending ? start - count + 1 : start + count - 1;
+                List<byte[]> encoded = cache.getBlocks(start, end);
+                if (encoded != null) {
+                    this.p2p.send(peerId, displayId, ResponseBlocks.fromEncoded(encoded));
+                    return;
+                }
+
                 List<Block> blockList = null;
                 try {
                     // retrieve blocks from block store depending on requested order
@@ -102,6 +130,17 @@ public final class RequestBlocksHandler extends Handler {
                             descending ? "DESC" : "ASC");
                 }
 
+                // recent main chain ranges are sent from the cached encodings
+                Long number = cache.getMainChainNumber(startHash);
+                if (number != null) {
+                    long end = descending ? number - count + 1 : number + count - 1;
+                    List<byte[]> encoded = cache.getBlocks(number, end);
+                    if (encoded != null) {
+                        this.p2p.send(peerId, displayId, ResponseBlocks.fromEncoded(encoded));
+                        return;
+                    }
+                }
+
                 // check if block exists
                 Block block = chain.getBlockByHash(startHash);
 
@@ -37,6 +37,11 @@ public final class ResBlocksBodies extends Msg {
         return this.blocksBodies;
     }
 
+    @Override
+    public boolean isCompressible() {
+        return true;
+    }
+
     @Override
     public byte[] encode() {
         return RLP.encodeList(this.blocksBodies.toArray(new byte[this.blocksBodies.size()][]));
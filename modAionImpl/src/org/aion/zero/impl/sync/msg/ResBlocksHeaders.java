@@ -1,6 +1,7 @@
 package org.aion.zero.impl.sync.msg;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.aion.mcf.blockchain.BlockHeader;
 import org.aion.p2p.Ctrl;
@@ -18,9 +19,28 @@ public final class ResBlocksHeaders extends Msg {
 
     private final List<BlockHeader> blockHeaders;
 
+    // the headers of a response built from already encoded headers
+    private final List<byte[]> encodedHeaders;
+
     public ResBlocksHeaders(final List<BlockHeader> _blockHeaders) {
         super(Ver.V0, Ctrl.SYNC, Act.RES_BLOCKS_HEADERS);
         blockHeaders = _blockHeaders;
+        encodedHeaders = null;
+    }
+
+    private ResBlocksHeaders(final List<BlockHeader> _blockHeaders, final List<byte[]> _encoded) {
+        super(Ver.V0, Ctrl.SYNC, Act.RES_BLOCKS_HEADERS);
+        blockHeaders = _blockHeaders;
+        encodedHeaders = _encoded;
+    }
+
+    /**
+     * @param _encodedHeaders the encodings of the headers to send
+     * @return a response that sends the given encodings as they are
+     * @implNote The headers are not decoded, so {@link #getHeaders()} is empty for such responses.
+     */
+    public static ResBlocksHeaders fromEncoded(final List<byte[]> _encodedHeaders) {
+        return new ResBlocksHeaders(Collections.emptyList(), _encodedHeaders);
     }
 
     public static ResBlocksHeaders decode(final byte[] _msgBytes, Logger logger) {
@@ -46,8 +66,16 @@ public final class ResBlocksHeaders extends Msg {
         return this.blockHeaders;
     }
 
+    @Override
+    public boolean isCompressible() {
+        return true;
+    }
+
     @Override
     public byte[] encode() {
+        if (encodedHeaders != null) {
+            return RLP.encodeList(encodedHeaders.toArray(new byte[encodedHeaders.size()][]));
+        }
         List<byte[]> tempList = new ArrayList<>();
         for (BlockHeader blockHeader : this.blockHeaders) {
             tempList.add(blockHeader.getEncoded());
@@ -1,6 +1,8 @@
 package org.aion.zero.impl.sync.msg;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import org.aion.mcf.blockchain.Block;
@@ -22,6 +24,9 @@ public final class ResponseBlocks extends Msg {
 
     private final List<Block> blocks;
 
+    // the blocks of a response built from already encoded blocks
+    private final List<byte[]> encodedBlocks;
+
     /**
      * Constructor for block range responses.
      *
@@ -38,6 +43,29 @@ public final class ResponseBlocks extends Msg {
         Objects.requireNonNull(blocks);
 
         this.blocks = blocks;
+        this.encodedBlocks = null;
+    }
+
+    private ResponseBlocks(final List<byte[]> encodedBlocks, final boolean encoded) {
+        super(Ver.V1, Ctrl.SYNC, Act.RESPONSE_BLOCKS);
+
+        // ensure input is not null
+        Objects.requireNonNull(encodedBlocks);
+
+        this.blocks = Collections.emptyList();
+        this.encodedBlocks = encodedBlocks;
+    }
+
+    /**
+     * Constructs a block range response from already encoded blocks.
+     *
+     * @param encodedBlocks the encodings of the blocks representing the response to a requested
+     *     range
+     * @return a response that sends the given encodings as they are
+     * @implNote The blocks are not decoded, so {@link #getBlocks()} is empty for such responses.
+     */
+    public static ResponseBlocks fromEncoded(final List<byte[]> encodedBlocks) {
+        return new ResponseBlocks(encodedBlocks, true);
     }
 
     /**
@@ -72,8 +100,17 @@ public final class ResponseBlocks extends Msg {
         }
     }
 
+    @Override
+    public boolean isCompressible() {
+        return true;
+    }
+
     @Override
     public byte[] encode() {
+        if (encodedBlocks != null) {
+            return RLP.encodeList(encodedBlocks.toArray(new byte[encodedBlocks.size()][]));
+        }
+
         byte[][] toEncode = new byte[this.blocks.size()][];
 
         int i = 0;
@@ -103,11 +140,15 @@ public final class ResponseBlocks extends Msg {
             return false;
         }
         ResponseBlocks that = (ResponseBlocks) o;
+        if (encodedBlocks != null || that.encodedBlocks != null) {
+            return Arrays.equals(encode(), that.encode());
+        }
         return Objects.equals(blocks, that.blocks);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(blocks);
+        // consistent with equals for both kinds of responses, since equal blocks have equal encodings
+        return Arrays.hashCode(encode());
     }
 }
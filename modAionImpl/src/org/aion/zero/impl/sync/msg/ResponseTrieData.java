@@ -181,6 +181,11 @@ public final class ResponseTrieData extends Msg {
         return nodes;
     }
 
+    @Override
+    public boolean isCompressible() {
+        return true;
+    }
+
     @Override
     public byte[] encode() {
         return RLP.encodeList(
@@ -0,0 +1,21 @@
+package org.aion.zero.impl.sync.statistics;
+
+/** Used for tracking the time spent in the different stages of importing blocks from peers. */
+public enum ImportStage {
+    /** Retrieving the sync mode of the peer that sent the blocks. */
+    PEER_STATE,
+    /** Removing the blocks that were already imported or are restricted by pruning. */
+    FILTER,
+    /** Header, seal, transaction and trie checks for one block, executed on the worker pool. */
+    PREVALIDATION,
+    /** Time the import thread waited for the validations of a block to complete. */
+    PREVALIDATION_WAIT,
+    /** Executing and storing a batch received from a peer. */
+    IMPORT,
+    /** Loading a level of pending blocks from storage. */
+    STORAGE_LOAD,
+    /** Removing the already imported blocks from a batch loaded from storage. */
+    STORAGE_FILTER,
+    /** Executing and storing a batch loaded from storage. */
+    STORAGE_IMPORT
+}
@@ -0,0 +1,64 @@
+package org.aion.zero.impl.sync.statistics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency distribution of each {@link ImportStage} of the block import.
+ *
+ * @implNote This resource is thread safe since the histograms do not require locking.
+ */
+public class ImportStatsTracker {
+    private final Map<ImportStage, LatencyHistogram> histograms = new EnumMap<>(ImportStage.class);
+
+    public ImportStatsTracker() {
+        for (ImportStage stage : ImportStage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public void updateStageTime(ImportStage stage, long nanos) {
+        histograms.get(stage).record(nanos);
+    }
+
+    public LatencyHistogram getHistogram(ImportStage stage) {
+        return histograms.get(stage);
+    }
+
+    public String dumpImportStats() {
+        StringBuilder sb = new StringBuilder();
+
+        for (ImportStage stage : ImportStage.values()) {
+            LatencyHistogram histogram = histograms.get(stage);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            if (sb.length() == 0) {
+                sb.append(
+                        "\n============================== sync-import-stages ==============================\n");
+                sb.append(
+                        String.format(
+                                "   %18s %10s %12s %12s %12s %12s\n",
+                                "stage", "count", "avg (ms)", "p50 (ms)", "p99 (ms)", "max (ms)"));
+                sb.append(
+                        "--------------------------------------------------------------------------------\n");
+            }
+            sb.append(
+                    String.format(
+                            "   %18s %10d %12.3f %12.3f %12.3f %12.3f\n",
+                            stage.toString().toLowerCase(),
+                            histogram.getCount(),
+                            toMillis(histogram.getMean()),
+                            toMillis(histogram.getPercentile(0.5)),
+                            toMillis(histogram.getPercentile(0.99)),
+                            toMillis(histogram.getMax())));
+        }
+
+        return sb.toString();
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
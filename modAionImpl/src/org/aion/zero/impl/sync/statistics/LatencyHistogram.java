@@ -0,0 +1,70 @@
+package org.aion.zero.impl.sync.statistics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with exponentially growing buckets: bucket {@code i > 0} holds the
+ * durations in the range {@code [2^(i-1), 2^i)} nanoseconds and bucket {@code 0} the durations
+ * that were too short to measure. The precision is enough to tell apart
+ * the typical latencies of the import stages while recording stays lock free.
+ *
+ * @implNote The percentiles are approximated by the upper bound of the bucket where they fall.
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS = Long.SIZE;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Records a duration in {@link java.util.concurrent.TimeUnit#NANOSECONDS}. */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        // the bucket is given by the bit length of the duration
+        counts.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0d : (double) total.get() / n;
+    }
+
+    /**
+     * @param fraction the percentile expressed as a fraction in {@code (0, 1]}
+     * @return an upper bound for the duration at the given percentile in nanoseconds
+     */
+    public long getPercentile(double fraction) {
+        if (fraction <= 0 || fraction > 1) {
+            throw new IllegalArgumentException("The percentile must be in the range (0, 1].");
+        }
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                // the upper bound of the bucket, capped by the largest recorded value
+                return i == BUCKETS - 1 ? max.get() : Math.min((1L << i) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+}
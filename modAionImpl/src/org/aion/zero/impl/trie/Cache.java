@@ -3,17 +3,17 @@ package org.aion.zero.impl.trie;
 import static org.aion.rlp.Value.fromRlpEncoded;
 import static org.aion.util.types.ByteArrayWrapper.wrap;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import org.aion.crypto.HashUtil;
 import org.aion.db.impl.ByteArrayKeyValueStore;
 import org.aion.log.AionLoggerFactory;
@@ -22,24 +22,69 @@ import org.aion.rlp.Value;
 import org.aion.util.types.ByteArrayWrapper;
 import org.slf4j.Logger;
 
-/** Cache class */
+/**
+ * Node cache used by the {@link TrieImpl}.
+ *
+ * <p>Dirty nodes (i.e. nodes that were not yet written to the data source) are pinned in memory
+ * until the next {@link #commit(boolean)}. Clean nodes are kept in a Window-TinyLfu cache bounded
+ * by the total size of their RLP encodings, so the memory used by nodes loaded from the database
+ * does not grow without bound.
+ *
+ * <p>Reads do not acquire any lock and may run concurrently with a single writer. All mutating
+ * methods are synchronized on the cache instance, which is also the monitor used by {@link
+ * TrieImpl} to serialize updates.
+ */
 public class Cache {
 
     private static final Logger LOG = AionLoggerFactory.getLogger(LogEnum.DB.name());
 
-    private ByteArrayKeyValueStore dataSource;
-    private Map<ByteArrayWrapper, Node> nodes = new LinkedHashMap<>();
-    private Set<ByteArrayWrapper> removedNodes = new HashSet<>();
-    private boolean isDirty;
+    /** Default bound (in bytes of encoded nodes) for the clean nodes kept in memory. */
+    public static final long DEFAULT_CLEAN_NODES_SIZE = 16L * 1024 * 1024;
+
+    private volatile ByteArrayKeyValueStore dataSource;
+    private final long maxCleanNodesSize;
+    private Map<ByteArrayWrapper, Node> dirtyNodes = new ConcurrentHashMap<>();
+    private com.github.benmanes.caffeine.cache.Cache<ByteArrayWrapper, Value> cleanNodes;
+    private Set<ByteArrayWrapper> removedNodes = ConcurrentHashMap.newKeySet();
+    private volatile boolean isDirty;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
     public Cache(ByteArrayKeyValueStore dataSource) {
+        this(dataSource, DEFAULT_CLEAN_NODES_SIZE);
+    }
+
+    /**
+     * @param dataSource the database storing the trie nodes
+     * @param maxCleanNodesSize the maximum total size in bytes of the encoded clean nodes kept in
+     *     memory
+     */
+    public Cache(ByteArrayKeyValueStore dataSource, long maxCleanNodesSize) {
+        if (maxCleanNodesSize < 0) {
+            throw new IllegalArgumentException("The cache size cannot be negative.");
+        }
         this.dataSource = dataSource;
+        this.maxCleanNodesSize = maxCleanNodesSize;
+        this.cleanNodes = newCleanNodesCache(maxCleanNodesSize);
+    }
+
+    private static com.github.benmanes.caffeine.cache.Cache<ByteArrayWrapper, Value>
+            newCleanNodesCache(long maxSize) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher(
+                        (ByteArrayWrapper key, Value value) ->
+                                key.length() + value.encode().length)
+                .recordStats()
+                .build();
     }
 
     public synchronized void markRemoved(byte[] key) {
         ByteArrayWrapper keyW = ByteArrayWrapper.wrap(key);
         removedNodes.add(keyW);
-        nodes.remove(keyW);
+        dirtyNodes.remove(keyW);
+        cleanNodes.invalidate(keyW);
     }
 
     /**
@@ -52,31 +97,51 @@ public class Cache {
         Value value = new Value(o);
         byte[] enc = value.encode();
         if (enc.length >= 32) {
-            byte[] sha = HashUtil.h256(value.encode());
-            ByteArrayWrapper key = wrap(sha);
-            this.nodes.put(key, new Node(value, true));
-            this.removedNodes.remove(key);
-            this.isDirty = true;
+            byte[] sha = HashUtil.h256(enc);
+            putHashed(wrap(sha), value);
 
             return sha;
         }
         return value;
     }
 
-    public synchronized Value get(byte[] key) {
+    /**
+     * Puts a node whose encoding is at least 32 bytes long and was already hashed.
+     *
+     * @param key the hash of the RLP encoded node
+     * @param value the node
+     */
+    synchronized void putHashed(ByteArrayWrapper key, Value value) {
+        this.dirtyNodes.put(key, new Node(value, true));
+        this.cleanNodes.invalidate(key);
+        this.removedNodes.remove(key);
+        this.isDirty = true;
+    }
 
+    public Value get(byte[] key) {
         ByteArrayWrapper wrappedKey = wrap(key);
-        Node node = nodes.get(wrappedKey);
+
+        Node node = dirtyNodes.get(wrappedKey);
         if (node != null) {
-            // cachehits++;
+            hits.increment();
             return node.getValue();
         }
-        if (this.dataSource != null) {
-            Optional<byte[]> data = this.dataSource.get(key);
+
+        Value cached = cleanNodes.getIfPresent(wrappedKey);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        ByteArrayKeyValueStore db = this.dataSource;
+        if (db != null) {
+            Optional<byte[]> data = db.get(key);
             if (data.isPresent()) {
-                // dbhits++;
                 Value val = fromRlpEncoded(data.get());
-                nodes.put(wrappedKey, new Node(val, false));
+                // decode before publishing since the value is lazily decoded and may be shared
+                val.asObj();
+                cleanNodes.put(wrappedKey, val);
                 return val;
             }
         }
@@ -89,80 +154,81 @@ public class Cache {
         if ((dataSource == null) || !this.isDirty) {
             // clear cache when flush requested
             if (flushCache) {
-                this.nodes.clear();
+                this.cleanNodes.invalidateAll();
             }
             return;
         }
 
-        // long start = System.nanoTime();
-        // int batchMemorySize = 0;
-        Map<byte[], byte[]> batch = new HashMap<>();
-        List<byte[]> deleteBatch = new ArrayList<>();
-        for (ByteArrayWrapper nodeKey : this.nodes.keySet()) {
-            Node node = this.nodes.get(nodeKey);
-
-            if (node == null || node.isDirty()) {
-                byte[] value;
-                if (node != null) {
-                    node.setDirty(false);
-                    value = node.getValue().encode();
-                } else {
-                    value = null;
-                }
-
-                byte[] key = nodeKey.toBytes();
-
-                batch.put(key, value);
-                // batchMemorySize += length(key, value);
+        // The changes are staged directly in the write batch of the data source and applied
+        // with a single commit. The values are the encodings computed when the nodes were added
+        // to the cache (the encoding is retained by the Value object).
+        for (Entry<ByteArrayWrapper, Node> entry : this.dirtyNodes.entrySet()) {
+            ByteArrayWrapper key = entry.getKey();
+            // a node removed in the same batch would be deleted after being written
+            if (!removedNodes.contains(key)) {
+                this.dataSource.putToBatch(key.toBytes(), entry.getValue().getValue().encode());
             }
         }
         for (ByteArrayWrapper removedNode : removedNodes) {
-            deleteBatch.add(removedNode.toBytes());
+            this.dataSource.deleteInBatch(removedNode.toBytes());
+        }
+        this.dataSource.commit();
+
+        // the nodes are moved to the clean cache only after being persisted
+        // to ensure that concurrent readers can always find them
+        Iterator<Entry<ByteArrayWrapper, Node>> iterator = this.dirtyNodes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<ByteArrayWrapper, Node> entry = iterator.next();
+            Node node = entry.getValue();
+            node.setDirty(false);
+            if (!flushCache) {
+                this.cleanNodes.put(entry.getKey(), node.getValue());
+            }
+            iterator.remove();
         }
 
-        this.dataSource.putBatch(batch);
-        this.dataSource.deleteBatch(deleteBatch);
         this.isDirty = false;
         if (flushCache) {
-            this.nodes.clear();
+            this.cleanNodes.invalidateAll();
         }
         this.removedNodes.clear();
     }
 
-    // not used
-    //    public synchronized void undo() {
-    //        this.nodes.entrySet().removeIf(entry -> entry.getValue().isDirty());
-    //        this.isDirty = false;
-    //    }
-
-    public synchronized boolean isDirty() {
+    public boolean isDirty() {
         return isDirty;
     }
 
+    /**
+     * Returns a snapshot of all the nodes currently held in memory, both dirty and clean.
+     *
+     * @return an unmodifiable view of the cached nodes
+     */
     public synchronized Map<ByteArrayWrapper, Node> getNodes() {
-        return nodes;
+        Map<ByteArrayWrapper, Node> nodes = new LinkedHashMap<>(dirtyNodes);
+        for (Entry<ByteArrayWrapper, Value> entry : cleanNodes.asMap().entrySet()) {
+            nodes.putIfAbsent(entry.getKey(), new Node(entry.getValue(), false));
+        }
+        return Collections.unmodifiableMap(nodes);
     }
 
-    public synchronized ByteArrayKeyValueStore getDb() {
-        return dataSource;
+    /**
+     * Adds the given node to the cache. Dirty nodes are retained until the next commit, while
+     * clean nodes are subject to eviction.
+     */
+    synchronized void putNode(ByteArrayWrapper key, Node node) {
+        if (node.isDirty()) {
+            dirtyNodes.put(key, node);
+            cleanNodes.invalidate(key);
+            isDirty = true;
+        } else {
+            node.getValue().asObj();
+            cleanNodes.put(key, node.getValue());
+        }
     }
 
-    // not used
-    //    public String cacheDump() {
-    //        StringBuilder cacheDump = new StringBuilder();
-    //        for (ByteArrayWrapper key : nodes.keySet()) {
-    //            Node node = nodes.get(key);
-    //            if (node.getValue() != null) {
-    //                cacheDump
-    //                        .append(key.toString())
-    //                        .append(" : ")
-    //                        .append(node.getValue().toString())
-    //                        .append("\n");
-    //            }
-    //        }
-    //
-    //        return cacheDump.toString();
-    //    }
+    public ByteArrayKeyValueStore getDb() {
+        return dataSource;
+    }
 
     @SuppressWarnings("OptionalGetWithoutIsPresent")
     public synchronized void setDB(ByteArrayKeyValueStore kvds) {
@@ -172,13 +238,8 @@ public class Cache {
 
         Map<byte[], byte[]> rows = new HashMap<>();
         if (this.dataSource == null) {
-            for (ByteArrayWrapper key : nodes.keySet()) {
-                Node node = nodes.get(key);
-                if (node == null) {
-                    rows.put(key.toBytes(), null);
-                } else if (!node.isDirty()) {
-                    rows.put(key.toBytes(), node.getValue().encode());
-                }
+            for (Entry<ByteArrayWrapper, Value> entry : cleanNodes.asMap().entrySet()) {
+                rows.put(entry.getKey().toBytes(), entry.getValue().encode());
             }
         } else {
             Iterator<byte[]> iterator = dataSource.keys();
@@ -198,8 +259,24 @@ public class Cache {
         this.dataSource = kvds;
     }
 
+    /** @return the number of nodes held in memory (the clean nodes count is an estimate) */
     public int getSize() {
-        return nodes.size();
+        return dirtyNodes.size() + (int) cleanNodes.estimatedSize();
+    }
+
+    /** @return the number of node lookups that were served from memory */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /** @return the number of node lookups that had to be served by the data source */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /** @return the number of clean nodes evicted due to the size bound */
+    public long getEvictionCount() {
+        return cleanNodes.stats().evictionCount();
     }
 
     /**
@@ -211,37 +288,26 @@ public class Cache {
      *
      * @return A copy of this cache.
      */
-    public Cache copy() {
-        Cache cacheCopy = new Cache(this.dataSource);
+    public synchronized Cache copy() {
+        Cache cacheCopy = new Cache(this.dataSource, this.maxCleanNodesSize);
         cacheCopy.isDirty = this.isDirty;
-        cacheCopy.nodes = copyOfNodes();
+        cacheCopy.dirtyNodes = copyOfDirtyNodes();
+        cacheCopy.cleanNodes.putAll(this.cleanNodes.asMap());
         cacheCopy.removedNodes = copyOfRemovedNodes();
         return cacheCopy;
     }
 
-    private Map<ByteArrayWrapper, Node> copyOfNodes() {
-        if (this.nodes == null) {
-            return null;
-        }
-
-        Map<ByteArrayWrapper, Node> nodesCopy = new HashMap<>();
-        for (Entry<ByteArrayWrapper, Node> nodesEntry : this.nodes.entrySet()) {
-            nodesCopy.put(
-                    nodesEntry.getKey(),
-                    (nodesEntry.getValue() == null) ? null : nodesEntry.getValue().copy());
+    private Map<ByteArrayWrapper, Node> copyOfDirtyNodes() {
+        Map<ByteArrayWrapper, Node> nodesCopy = new ConcurrentHashMap<>();
+        for (Entry<ByteArrayWrapper, Node> nodesEntry : this.dirtyNodes.entrySet()) {
+            nodesCopy.put(nodesEntry.getKey(), nodesEntry.getValue().copy());
         }
         return nodesCopy;
     }
 
     private Set<ByteArrayWrapper> copyOfRemovedNodes() {
-        if (this.removedNodes == null) {
-            return null;
-        }
-
-        Set<ByteArrayWrapper> removedNodesCopy = new HashSet<>();
-        for (ByteArrayWrapper removedNode : this.removedNodes) {
-            removedNodesCopy.add(removedNode);
-        }
+        Set<ByteArrayWrapper> removedNodesCopy = ConcurrentHashMap.newKeySet();
+        removedNodesCopy.addAll(this.removedNodes);
         return removedNodesCopy;
     }
 }
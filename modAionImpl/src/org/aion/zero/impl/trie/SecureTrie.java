@@ -3,7 +3,10 @@ package org.aion.zero.impl.trie;
 import static org.aion.crypto.HashUtil.h256;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.aion.db.impl.ByteArrayKeyValueStore;
+import org.aion.util.types.ByteArrayWrapper;
 
 public class SecureTrie extends TrieImpl implements Trie {
 
@@ -29,6 +32,16 @@ public class SecureTrie extends TrieImpl implements Trie {
         super.update(h256(key), value);
     }
 
+    @Override
+    public void updateAll(Map<ByteArrayWrapper, byte[]> updates) {
+        Map<ByteArrayWrapper, byte[]> hashedUpdates = new LinkedHashMap<>();
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : updates.entrySet()) {
+            hashedUpdates.put(
+                    ByteArrayWrapper.wrap(h256(entry.getKey().toBytes())), entry.getValue());
+        }
+        super.updateAll(hashedUpdates);
+    }
+
     @Override
     public void delete(byte[] key) {
         super.delete(h256(key));
@@ -77,6 +90,7 @@ public class SecureTrie extends TrieImpl implements Trie {
             SecureTrie secureTrieCopy = new SecureTrie(super.getCache().copy(), rootCopy);
             // secureTrieCopy.setPrevRoot(previousRootCopy);
             secureTrieCopy.setPruningEnabled(super.isPruningEnabled());
+            secureTrieCopy.setParallelHashingEnabled(super.isParallelHashingEnabled());
             return secureTrieCopy;
         }
     }
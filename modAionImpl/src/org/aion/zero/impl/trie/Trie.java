@@ -27,6 +27,14 @@ public interface Trie {
      */
     void update(byte[] key, byte[] value);
 
+    /**
+     * Insert or update multiple values in the trie. The resulting root is the same as the one
+     * obtained by calling {@link #update(byte[], byte[])} for each entry.
+     *
+     * @param updates the keys and rlp encoded values to store
+     */
+    void updateAll(Map<ByteArrayWrapper, byte[]> updates);
+
     /**
      * Deletes a key/value from the trie for a given key
      *
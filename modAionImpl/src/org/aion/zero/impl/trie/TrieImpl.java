@@ -16,11 +16,18 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
 import org.aion.base.ConstantUtil;
 import org.aion.crypto.HashUtil;
 import org.aion.db.impl.ByteArrayKeyValueDatabase;
@@ -37,6 +44,7 @@ import org.aion.zero.impl.trie.scan.CountNodes;
 import org.aion.zero.impl.trie.scan.ExtractToDatabase;
 import org.aion.zero.impl.trie.scan.ScanAction;
 import org.aion.zero.impl.trie.scan.TraceAllNodes;
+import org.apache.commons.lang3.tuple.Pair;
 
 /**
  * The modified Merkle Patricia tree (trie) provides a persistent data structure to map between
@@ -68,12 +76,15 @@ public class TrieImpl implements Trie {
     private static final byte PAIR_SIZE = 2;
     private static final byte LIST_SIZE = 17;
     private static final int MAX_SIZE = 20;
+    /** Minimum number of updates below a branch node for its subtrees to be built in parallel. */
+    private static final int PARALLEL_UPDATE_THRESHOLD = 32;
 
     // private Object prevRoot;
-    private Object root;
-    private Cache cache;
+    private volatile Object root;
+    private volatile Cache cache;
 
     private boolean pruningEnabled;
+    private boolean parallelHashingEnabled;
 
     public TrieImpl(ByteArrayKeyValueStore db) {
         this(db, "");
@@ -145,6 +156,19 @@ public class TrieImpl implements Trie {
         return this;
     }
 
+    public boolean isParallelHashingEnabled() {
+        return parallelHashingEnabled;
+    }
+
+    public void setParallelHashingEnabled(boolean parallelHashingEnabled) {
+        this.parallelHashingEnabled = parallelHashingEnabled;
+    }
+
+    public TrieImpl withParallelHashingEnabled(boolean parallelHashingEnabled) {
+        this.parallelHashingEnabled = parallelHashingEnabled;
+        return this;
+    }
+
     /** Retrieve a value from a key as String. */
     public byte[] get(String key) {
         return this.get(key.getBytes());
@@ -152,12 +176,11 @@ public class TrieImpl implements Trie {
 
     @Override
     public byte[] get(byte[] key) {
-        synchronized (cache) {
-            byte[] k = binToNibbles(key);
-            Value c = new Value(this.get(this.root, k));
+        // reads do not lock the cache; they are performed against the root at the time of the call
+        byte[] k = binToNibbles(key);
+        Value c = new Value(this.get(this.root, k));
 
-            return c.asBytes();
-        }
+        return c.asBytes();
     }
 
     /** Insert key/value pair into trie. */
@@ -180,8 +203,11 @@ public class TrieImpl implements Trie {
             throw new IllegalArgumentException("The value should not be empty.");
         }
 
-        byte[] k = binToNibbles(key);
+        insertKey(binToNibbles(key), value);
+    }
 
+    /** Inserts a value at the given key nibbles without applying any key transformation. */
+    private void insertKey(byte[] k, byte[] value) {
         synchronized (cache) {
             if (isEmptyNode(root)) {
                 cache.markRemoved(getRootHash());
@@ -191,8 +217,52 @@ public class TrieImpl implements Trie {
         }
     }
 
+    /**
+     * Inserts all the given key/value pairs into the trie. The keys are used as given, overriding
+     * implementations transform them before calling this method.
+     *
+     * <p>When parallel hashing is enabled and the batch is large enough, the independent subtrees
+     * of each branch node are built, encoded and hashed concurrently. The node changes of each
+     * subtree are collected by its task and applied to the cache by the calling thread once all
+     * the tasks are complete. The resulting root is identical to the one obtained by applying the
+     * updates one by one.
+     */
     @Override
-    public synchronized boolean isValidRoot(byte[] root) {
+    public void updateAll(Map<ByteArrayWrapper, byte[]> updates) {
+        List<byte[][]> batch = new ArrayList<>(updates.size());
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : updates.entrySet()) {
+            byte[] value = entry.getValue();
+            // same checks as for single updates
+            if (value == null) {
+                throw new NullPointerException("The value should not be null.");
+            }
+            if (value.length == 0) {
+                throw new IllegalArgumentException("The value should not be empty.");
+            }
+            batch.add(new byte[][] {binToNibbles(entry.getKey().toBytes()), value});
+        }
+
+        if (!parallelHashingEnabled || batch.size() < PARALLEL_UPDATE_THRESHOLD) {
+            for (byte[][] update : batch) {
+                insertKey(update[0], update[1]);
+            }
+            return;
+        }
+
+        synchronized (cache) {
+            if (isEmptyNode(root)) {
+                cache.markRemoved(getRootHash());
+            }
+
+            InsertBatch task = new InsertBatch(this.root, batch);
+            Object newRoot = HashingPool.INSTANCE.invoke(task);
+            task.changes.applyTo(cache);
+            this.root = newRoot;
+        }
+    }
+
+    @Override
+    public boolean isValidRoot(byte[] root) {
         return !(this.getNode(root) == null);
     }
 
@@ -217,48 +287,45 @@ public class TrieImpl implements Trie {
 
     @Override
     public byte[] getRootHash() {
-        synchronized (cache) {
-            if (root == null
-                    || (root instanceof byte[] && ((byte[]) root).length == 0)
-                    || (root instanceof String && "".equals(root))) {
-                return ConstantUtil.EMPTY_TRIE_HASH;
-            } else if (root instanceof byte[]) {
-                return (byte[]) this.getRoot();
-            } else {
-                Value rootValue = new Value(this.getRoot());
-                return HashUtil.h256(rootValue.encode());
-            }
+        Object root = this.root;
+        if (root == null
+                || (root instanceof byte[] && ((byte[]) root).length == 0)
+                || (root instanceof String && "".equals(root))) {
+            return ConstantUtil.EMPTY_TRIE_HASH;
+        } else if (root instanceof byte[]) {
+            return (byte[]) root;
+        } else {
+            Value rootValue = new Value(root);
+            return HashUtil.h256(rootValue.encode());
         }
     }
 
     private Object get(Object node, byte[] key) {
-        synchronized (cache) {
-            int keypos = 0;
-            while (key.length - keypos != 0 && !isEmptyNode(node)) {
-                Value currentNode = this.getNode(node);
-                if (currentNode == null) {
-                    return null;
-                }
+        int keypos = 0;
+        while (key.length - keypos != 0 && !isEmptyNode(node)) {
+            Value currentNode = this.getNode(node);
+            if (currentNode == null) {
+                return null;
+            }
 
-                if (currentNode.length() == PAIR_SIZE) {
-                    // Decode the key
-                    byte[] k = unpackToNibbles(currentNode.get(0).asBytes());
-                    Object v = currentNode.get(1).asObj();
+            if (currentNode.length() == PAIR_SIZE) {
+                // Decode the key
+                byte[] k = unpackToNibbles(currentNode.get(0).asBytes());
+                Object v = currentNode.get(1).asObj();
 
-                    if (key.length - keypos >= k.length
-                            && Arrays.equals(k, copyOfRange(key, keypos, k.length + keypos))) {
-                        node = v;
-                        keypos += k.length;
-                    } else {
-                        return "";
-                    }
+                if (key.length - keypos >= k.length
+                        && Arrays.equals(k, copyOfRange(key, keypos, k.length + keypos))) {
+                    node = v;
+                    keypos += k.length;
                 } else {
-                    node = currentNode.get(key[keypos]).asObj();
-                    keypos++;
+                    return "";
                 }
+            } else {
+                node = currentNode.get(key[keypos]).asObj();
+                keypos++;
             }
-            return node;
         }
+        return node;
     }
 
     /**
@@ -267,6 +334,17 @@ public class TrieImpl implements Trie {
      * @return the updated node with rlp encoded
      */
     private Object insert(Object node, byte[] key, Object value) {
+        return insert(node, key, value, null);
+    }
+
+    /**
+     * Update or add the item inside a node.
+     *
+     * @param changes collects the node changes of a parallel update, {@code null} to apply them to
+     *     the cache directly
+     * @return the updated node with rlp encoded
+     */
+    private Object insert(Object node, byte[] key, Object value, NodeChanges changes) {
 
         if (key.length == 0) {
             return value;
@@ -274,10 +352,10 @@ public class TrieImpl implements Trie {
 
         if (isEmptyNode(node)) {
             Object[] newNode = new Object[] {packNibbles(key), value};
-            return this.putToCache(newNode);
+            return this.putToCache(newNode, changes);
         }
 
-        Value currentNode = this.getNode(node);
+        Value currentNode = this.getNode(node, changes);
 
         if (currentNode == null) {
             throw new RuntimeException("Invalid Trie state, missing node " + new Value(node));
@@ -292,7 +370,7 @@ public class TrieImpl implements Trie {
             // Matching key pair (ie. there's already an object with this key)
             if (Arrays.equals(k, key)) {
                 Object[] newNode = new Object[] {packNibbles(key), value};
-                return this.putToCache(newNode);
+                return this.putToCache(newNode, changes);
             }
 
             Object newHash;
@@ -300,15 +378,15 @@ public class TrieImpl implements Trie {
             if (matchingLength == k.length) {
                 // Insert the hash, creating a new node
                 byte[] remainingKeypart = copyOfRange(key, matchingLength, key.length);
-                newHash = this.insert(v, remainingKeypart, value);
+                newHash = this.insert(v, remainingKeypart, value, changes);
 
             } else {
 
                 // Expand the 2 length slice to a 17 length slice
                 // Create two nodes to putToCache into the new 17 length node
-                Object oldNode = this.insert("", copyOfRange(k, matchingLength + 1, k.length), v);
+                Object oldNode = this.insert("", copyOfRange(k, matchingLength + 1, k.length), v, changes);
                 Object newNode =
-                        this.insert("", copyOfRange(key, matchingLength + 1, key.length), value);
+                        this.insert("", copyOfRange(key, matchingLength + 1, key.length), value, changes);
 
                 // Create an expanded slice
                 Object[] scaledSlice = emptyStringSlice(17);
@@ -316,10 +394,10 @@ public class TrieImpl implements Trie {
                 // Set the copied and new node
                 scaledSlice[k[matchingLength]] = oldNode;
                 scaledSlice[key[matchingLength]] = newNode;
-                newHash = this.putToCache(scaledSlice);
+                newHash = this.putToCache(scaledSlice, changes);
             }
 
-            markRemoved(HashUtil.h256(currentNode.encode()));
+            markRemoved(HashUtil.h256(currentNode.encode()), changes);
 
             if (matchingLength == 0) {
                 // End of the chain, return
@@ -327,7 +405,7 @@ public class TrieImpl implements Trie {
             } else {
                 Object[] newNode =
                         new Object[] {packNibbles(copyOfRange(key, 0, matchingLength)), newHash};
-                return this.putToCache(newNode);
+                return this.putToCache(newNode, changes);
             }
         } else {
 
@@ -339,18 +417,19 @@ public class TrieImpl implements Trie {
                     this.insert(
                             currentNode.get(key[0]).asObj(),
                             copyOfRange(key, 1, key.length),
-                            value);
+                            value,
+                            changes);
 
             if (!Arrays.equals(
                     HashUtil.h256(getNode(newNode).encode()),
                     HashUtil.h256(currentNode.encode()))) {
-                markRemoved(HashUtil.h256(currentNode.encode()));
+                markRemoved(HashUtil.h256(currentNode.encode()), changes);
                 if (!isEmptyNode(currentNode.get(key[0]))) {
-                    markRemoved(currentNode.get(key[0]).asBytes());
+                    markRemoved(currentNode.get(key[0]).asBytes(), changes);
                 }
             }
 
-            return this.putToCache(newNode);
+            return this.putToCache(newNode, changes);
         }
     }
 
@@ -434,9 +513,165 @@ public class TrieImpl implements Trie {
         }
     }
 
+    /**
+     * Applies a batch of updates below the given node. The 17 children of a branch node are
+     * disjoint subtrees, so each child receiving updates is handled by a separate task and the
+     * branch node is encoded and hashed once all its children are complete. The tasks only read
+     * from the cache and record their node changes, which are merged once the tasks are joined.
+     */
+    private final class InsertBatch extends RecursiveTask<Object> {
+        private final Object node;
+        // each entry holds the remaining key nibbles and the value
+        private final List<byte[][]> updates;
+        private final NodeChanges changes = new NodeChanges();
+
+        InsertBatch(Object node, List<byte[][]> updates) {
+            this.node = node;
+            this.updates = updates;
+        }
+
+        @Override
+        protected Object compute() {
+            Value currentNode = isEmptyNode(node) ? null : getNode(node);
+
+            if (updates.size() < PARALLEL_UPDATE_THRESHOLD
+                    || currentNode == null
+                    || currentNode.length() != LIST_SIZE) {
+                return insertAll();
+            }
+
+            @SuppressWarnings("unchecked")
+            List<byte[][]>[] groups = new List[LIST_SIZE];
+            for (byte[][] update : updates) {
+                byte[] key = update[0];
+                if (key.length == 0) {
+                    // the value replaces the node itself
+                    return insertAll();
+                }
+                if (groups[key[0]] == null) {
+                    groups[key[0]] = new ArrayList<>();
+                }
+                groups[key[0]].add(new byte[][] {copyOfRange(key, 1, key.length), update[1]});
+            }
+
+            List<InsertBatch> tasks = new ArrayList<>();
+            List<Integer> slots = new ArrayList<>();
+            for (int i = 0; i < LIST_SIZE; i++) {
+                if (groups[i] != null) {
+                    tasks.add(new InsertBatch(currentNode.get(i).asObj(), groups[i]));
+                    slots.add(i);
+                }
+            }
+            invokeAll(tasks);
+
+            Object[] newNode = copyNode(currentNode);
+            for (int i = 0; i < tasks.size(); i++) {
+                newNode[slots.get(i)] = tasks.get(i).join();
+            }
+
+            // mirrors the bookkeeping done by insert for branch nodes
+            if (!Arrays.equals(
+                    HashUtil.h256(getNode(newNode).encode()),
+                    HashUtil.h256(currentNode.encode()))) {
+                markRemoved(HashUtil.h256(currentNode.encode()), changes);
+                for (int slot : slots) {
+                    if (!isEmptyNode(currentNode.get(slot))) {
+                        markRemoved(currentNode.get(slot).asBytes(), changes);
+                    }
+                }
+            }
+
+            // merged in slot order after the removals above to keep the nodes reused by a child
+            for (InsertBatch task : tasks) {
+                changes.merge(task.changes);
+            }
+
+            return putToCache(newNode, changes);
+        }
+
+        private Object insertAll() {
+            Object result = node;
+            for (byte[][] update : updates) {
+                result = insert(result, update[0], update[1], changes);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The nodes added and removed while building a subtree in parallel. Identical nodes may be
+     * added in one subtree and removed from another, so a node added by any of the merged subtrees
+     * is kept regardless of the order in which the tasks completed.
+     */
+    private static final class NodeChanges {
+        private final Map<ByteArrayWrapper, Value> added = new HashMap<>();
+        private final Set<ByteArrayWrapper> removed = new HashSet<>();
+
+        /** Same as {@link Cache#put(Object)}. */
+        Object put(Object node) {
+            Value value = new Value(node);
+            byte[] enc = value.encode();
+            if (enc.length >= 32) {
+                byte[] hash = HashUtil.h256(enc);
+                ByteArrayWrapper key = wrap(hash);
+                added.put(key, value);
+                removed.remove(key);
+                return hash;
+            }
+            return value;
+        }
+
+        void markRemoved(byte[] hash) {
+            ByteArrayWrapper key = wrap(hash);
+            removed.add(key);
+            added.remove(key);
+        }
+
+        Value get(byte[] hash) {
+            return added.get(wrap(hash));
+        }
+
+        /** Adds the changes of a subtree completed after the changes already recorded. */
+        void merge(NodeChanges other) {
+            for (ByteArrayWrapper key : other.removed) {
+                if (!added.containsKey(key)) {
+                    removed.add(key);
+                }
+            }
+            for (Map.Entry<ByteArrayWrapper, Value> entry : other.added.entrySet()) {
+                added.put(entry.getKey(), entry.getValue());
+                removed.remove(entry.getKey());
+            }
+        }
+
+        /** Applies the changes to the cache, removals first so that no added node is dropped. */
+        void applyTo(Cache cache) {
+            for (ByteArrayWrapper key : removed) {
+                cache.markRemoved(key.toBytes());
+            }
+            for (Map.Entry<ByteArrayWrapper, Value> entry : added.entrySet()) {
+                cache.putHashed(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /** Lazily created pool used for building subtrees in parallel. */
+    private static final class HashingPool {
+        private static final ForkJoinPool INSTANCE =
+                new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
     private void markRemoved(byte[] hash) {
+        markRemoved(hash, null);
+    }
+
+    private void markRemoved(byte[] hash, NodeChanges changes) {
         if (pruningEnabled) {
-            cache.markRemoved(hash);
+            if (changes == null) {
+                cache.markRemoved(hash);
+            } else {
+                changes.markRemoved(hash);
+            }
         }
     }
 
@@ -445,6 +680,11 @@ public class TrieImpl implements Trie {
      * get the actual node from the db.
      */
     private Value getNode(Object node) {
+        return getNode(node, null);
+    }
+
+    /** Also finds the nodes added by the given changes, which are not yet in the cache. */
+    private Value getNode(Object node, NodeChanges changes) {
 
         Value val = new Value(node);
 
@@ -460,6 +700,12 @@ public class TrieImpl implements Trie {
         } else if (keyBytes.length < 32) {
             return new Value(keyBytes);
         }
+        if (changes != null) {
+            Value added = changes.get(keyBytes);
+            if (added != null) {
+                return added;
+            }
+        }
         return this.cache.get(keyBytes);
     }
 
@@ -467,6 +713,10 @@ public class TrieImpl implements Trie {
         return this.cache.put(node);
     }
 
+    private Object putToCache(Object node, NodeChanges changes) {
+        return changes == null ? this.cache.put(node) : changes.put(node);
+    }
+
     private static boolean isEmptyNode(Object node) {
         Value n = new Value(node);
         return (node == null
@@ -522,9 +772,8 @@ public class TrieImpl implements Trie {
     public TrieImpl copy() {
         synchronized (cache) {
             TrieImpl trie = new TrieImpl(this.cache.getDb(), this.root);
-            for (ByteArrayWrapper key : this.cache.getNodes().keySet()) {
-                Node node = this.cache.getNodes().get(key);
-                trie.cache.getNodes().put(key, node.copy());
+            for (Map.Entry<ByteArrayWrapper, Node> entry : this.cache.getNodes().entrySet()) {
+                trie.cache.putNode(entry.getKey(), entry.getValue().copy());
             }
             return trie;
         }
@@ -701,7 +950,7 @@ public class TrieImpl implements Trie {
 
                 Value value = Value.fromRlpEncoded(val);
                 System.arraycopy(keysElement.getRLPData(), i * 32, key, 0, 32);
-                cache.getNodes().put(wrap(key), new Node(value));
+                cache.putNode(wrap(key), new Node(value));
             }
 
             this.deserializeRoot(root.getRLPData());
@@ -860,6 +1109,113 @@ public class TrieImpl implements Trie {
         return traceAction.getCount();
     }
 
+    /**
+     * Visits all the key-value pairs stored in the trie with the given root. The keys are the ones
+     * used when the values were inserted, i.e. for a {@link SecureTrie} the hashes of the original
+     * keys.
+     *
+     * @param stateRoot the root of the trie to traverse
+     * @param visitor receives each key and its value
+     * @throws RuntimeException when a node reachable from the root is missing
+     */
+    public void forEachEntry(byte[] stateRoot, BiConsumer<byte[], byte[]> visitor) {
+        if (stateRoot == null || Arrays.equals(stateRoot, ConstantUtil.EMPTY_TRIE_HASH)) {
+            return;
+        }
+
+        // each entry holds the nibbles of the path followed to reach the node and the node
+        Deque<Pair<byte[], Object>> nodes = new ArrayDeque<>();
+        nodes.push(Pair.of(new byte[0], stateRoot));
+
+        while (!nodes.isEmpty()) {
+            Pair<byte[], Object> entry = nodes.pop();
+            byte[] path = entry.getLeft();
+            if (isEmptyNode(entry.getRight())) {
+                continue;
+            }
+
+            Value node = this.getNode(entry.getRight());
+            if (node == null) {
+                throw new RuntimeException("Not found: " + new Value(entry.getRight()));
+            }
+
+            if (node.length() == PAIR_SIZE) {
+                byte[] packedKey = node.get(0).asBytes();
+                byte[] nodePath = concatenate(path, unpackToNibbles(packedKey));
+                if (hasTerminator(packedKey)) {
+                    // the last nibble is the terminator
+                    visitor.accept(nibblesToBytes(nodePath, nodePath.length - 1), node.get(1).asBytes());
+                } else {
+                    nodes.push(Pair.of(nodePath, node.get(1).asObj()));
+                }
+            } else {
+                for (int i = LIST_SIZE - 2; i >= 0; i--) {
+                    nodes.push(Pair.of(concatenate(path, new byte[] {(byte) i}), node.get(i).asObj()));
+                }
+                byte[] value = node.get(LIST_SIZE - 1).asBytes();
+                if (value.length != 0) {
+                    visitor.accept(nibblesToBytes(path, path.length), value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes a single trie node without reading the nodes it references, as needed when a trie is
+     * downloaded node by node.
+     *
+     * @param path the nibbles of the path followed from the root to reach the node
+     * @param encodedNode the RLP encoding of the node
+     * @param references receives the path and the hash of each node referenced by this node
+     * @param entries receives the key and the value of each entry stored in this node or in the
+     *     nodes embedded in it
+     */
+    public static void decodeNode(byte[] path, byte[] encodedNode, BiConsumer<byte[], byte[]> references, BiConsumer<byte[], byte[]> entries) {
+        decodeNode(path, Value.fromRlpEncoded(encodedNode), references, entries);
+    }
+
+    private static void decodeNode(byte[] path, Value node, BiConsumer<byte[], byte[]> references, BiConsumer<byte[], byte[]> entries) {
+        if (node == null || !node.isList()) {
+            return;
+        }
+
+        if (node.length() == PAIR_SIZE) {
+            byte[] packedKey = node.get(0).asBytes();
+            byte[] nodePath = concatenate(path, unpackToNibbles(packedKey));
+            if (hasTerminator(packedKey)) {
+                // the last nibble is the terminator
+                entries.accept(nibblesToBytes(nodePath, nodePath.length - 1), node.get(1).asBytes());
+            } else {
+                decodeChild(nodePath, node.get(1), references, entries);
+            }
+        } else if (node.length() == LIST_SIZE) {
+            for (int i = 0; i < LIST_SIZE - 1; i++) {
+                decodeChild(concatenate(path, new byte[] {(byte) i}), node.get(i), references, entries);
+            }
+            byte[] value = node.get(LIST_SIZE - 1).asBytes();
+            if (value.length != 0) {
+                entries.accept(nibblesToBytes(path, path.length), value);
+            }
+        }
+    }
+
+    private static void decodeChild(byte[] path, Value child, BiConsumer<byte[], byte[]> references, BiConsumer<byte[], byte[]> entries) {
+        if (child.isHashCode()) {
+            references.accept(path, child.asBytes());
+        } else if (child.isList()) {
+            // nodes shorter than a hash are embedded in their parent
+            decodeNode(path, child, references, entries);
+        }
+    }
+
+    private static byte[] nibblesToBytes(byte[] nibbles, int length) {
+        byte[] bytes = new byte[length / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((nibbles[2 * i] << 4) | nibbles[2 * i + 1]);
+        }
+        return bytes;
+    }
+
     private void traceTrie(byte[] stateRoot, ScanAction action) {
         synchronized (cache) {
             Value value = new Value(stateRoot);
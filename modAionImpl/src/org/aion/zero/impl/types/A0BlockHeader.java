@@ -657,6 +657,7 @@ public final class A0BlockHeader implements BlockHeader {
         return coinbase;
     }
 
+    @Override
     public byte[] getStateRoot() {
         return stateRoot.clone();
     }
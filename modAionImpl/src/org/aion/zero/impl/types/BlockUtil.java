@@ -74,6 +74,80 @@ public final class BlockUtil {
         }
     }
 
+    /**
+     * Decodes the given encoding into a new instance of a block header or returns {@code null} if
+     * the RLP encoding does not describe a valid block header.
+     *
+     * @param rlp RLP encoded block header data
+     * @return a new instance of a block header or {@code null} if the RLP encoding does not
+     *     describe a valid block header
+     * @implNote Assumes the data is from a safe (internal) source.
+     */
+    public static BlockHeader newHeaderFromRlp(byte[] rlp) {
+        // return null when given empty bytes
+        if (rlp == null || rlp.length == 0) {
+            return null;
+        }
+
+        // attempt decoding, return null if it fails
+        try {
+            RLPList header = (RLPList) RLP.decode2(rlp).get(0);
+            byte[] sealType = header.get(0).getRLPData();
+            if (sealType[0] == BlockSealType.SEAL_POW_BLOCK.getSealId()) {
+                return A0BlockHeader.Builder.newInstance().withRlpList(header).build();
+            } else if (sealType[0] == BlockSealType.SEAL_POS_BLOCK.getSealId()) {
+                return StakingBlockHeader.Builder.newInstance().withRlpList(header).build();
+            } else {
+                return null;
+            }
+        } catch (Exception e) {
+            genLog.warn("Unable to decode block header bytes " + Arrays.toString(rlp), e);
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the transactions from the given block body encoding or returns {@code null} if the
+     * RLP encoding does not describe a valid block body.
+     *
+     * @param rlp RLP encoded block body, as returned by {@link Block#getEncodedBody()}
+     * @return the transactions included in the body or {@code null} if the RLP encoding does not
+     *     describe a valid block body
+     * @implNote Assumes the data is from a safe (internal) source.
+     */
+    public static List<AionTransaction> newTransactionsFromBodyRlp(byte[] rlp) {
+        // return null when given empty bytes
+        if (rlp == null || rlp.length == 0) {
+            return null;
+        }
+
+        // attempt decoding, return null if it fails
+        try {
+            RLPList items = (RLPList) RLP.decode2(rlp).get(0);
+            return parseTransactions((RLPList) items.get(0));
+        } catch (Exception e) {
+            genLog.warn("Unable to decode block body bytes " + Arrays.toString(rlp), e);
+            return null;
+        }
+    }
+
+    /**
+     * Assembles a new block instance given its header and transactions. Returns {@code null} when
+     * the header has an unknown seal type.
+     *
+     * @implNote Assumes the data is from a safe (internal) source. The transaction trie root is not
+     *     validated.
+     */
+    public static Block newBlockWithHeader(BlockHeader header, List<AionTransaction> transactions) {
+        if (header.getSealType() == BlockSealType.SEAL_POW_BLOCK) {
+            return new AionBlock((A0BlockHeader) header, transactions);
+        } else if (header.getSealType() == BlockSealType.SEAL_POS_BLOCK) {
+            return new StakingBlock((StakingBlockHeader) header, transactions);
+        } else {
+            return null;
+        }
+    }
+
     /**
      * Decodes the given encoding into a new instance of a block or returns {@code null} if the RLP
      * encoding does not describe a valid block.
@@ -708,6 +708,7 @@ public class StakingBlockHeader  implements BlockHeader {
         return coinbase;
     }
 
+    @Override
     public byte[] getStateRoot() {
         return stateRoot.clone();
     }
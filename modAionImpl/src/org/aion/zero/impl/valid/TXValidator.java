@@ -5,8 +5,8 @@ import static org.aion.zero.impl.vm.common.TxNrgRule.isValidNrgContractCreateAft
 import static org.aion.zero.impl.vm.common.TxNrgRule.isValidNrgTx;
 import static org.aion.zero.impl.vm.common.TxNrgRule.isValidNrgTxAfterUnity;
 
-import java.util.Collections;
-import java.util.Map;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.aion.base.AionTransaction;
 import org.aion.crypto.ISignature;
 import org.aion.crypto.SignatureFac;
@@ -16,7 +16,6 @@ import org.aion.util.types.ByteArrayWrapper;
 import org.aion.util.types.Hash256;
 import org.aion.zero.impl.types.TxResponse;
 import org.aion.zero.impl.vm.common.TxNrgRule;
-import org.apache.commons.collections4.map.LRUMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,11 +23,12 @@ public class TXValidator {
 
     private static final Logger LOG = LoggerFactory.getLogger(LogEnum.TX.name());
 
-    private static final Map<ByteArrayWrapper, TxResponse> cache =
-            Collections.synchronizedMap(new LRUMap<>(16 * 1024));
+    // may be used concurrently by the validation of the network transactions
+    private static final Cache<ByteArrayWrapper, TxResponse> cache =
+            Caffeine.newBuilder().maximumSize(16 * 1024).build();
 
     public static TxResponse validateTx(AionTransaction tx, boolean unityForkEnabled) {
-        TxResponse valid = cache.get(ByteArrayWrapper.wrap(tx.getTransactionHash()));
+        TxResponse valid = cache.getIfPresent(ByteArrayWrapper.wrap(tx.getTransactionHash()));
         if (valid != null) {
             return valid;
         } else {
@@ -43,7 +43,7 @@ public class TXValidator {
     }
 
     public static boolean isInCache(ByteArrayWrapper hash) {
-        return cache.get(hash) != null;
+        return cache.getIfPresent(hash) != null;
     }
 
     private static TxResponse isValid0(AionTransaction tx) {
@@ -79,6 +79,57 @@ public final class BulkExecutor {
             boolean unityForkEnabled,
             boolean signatureSwapForkEnabled)
             throws VmFatalException {
+        return executeAllTransactionsInBlock(
+                blockDifficulty,
+                blockNumber,
+                blockTimestamp,
+                blockNrgLimit,
+                blockCoinbase,
+                transactions,
+                repository,
+                isLocalCall,
+                incrementSenderNonce,
+                fork040Enable,
+                checkBlockEnergyLimit,
+                logger,
+                postExecutionWork,
+                blockCachingContext,
+                cachedBlockNumber,
+                unityForkEnabled,
+                signatureSwapForkEnabled,
+                false);
+    }
+
+    /**
+     * Executes all of the transactions in the specified block as described by {@link
+     * #executeAllTransactionsInBlock(byte[], long, long, long, AionAddress, List, RepositoryCache,
+     * boolean, boolean, boolean, boolean, Logger, PostExecutionWork, BlockCachingContext, long,
+     * boolean, boolean)}, optionally executing the consecutive FVM transactions speculatively in
+     * parallel. The results are identical in both modes.
+     *
+     * @param speculativeExecution whether to execute batches of FVM transactions speculatively
+     * @see FvmTransactionExecutor#executeTransactionsSpeculatively
+     */
+    public static List<AionTxExecSummary> executeAllTransactionsInBlock(
+            byte[] blockDifficulty,
+            long blockNumber,
+            long blockTimestamp,
+            long blockNrgLimit,
+            AionAddress blockCoinbase,
+            List<AionTransaction> transactions,
+            RepositoryCache<AccountState> repository,
+            boolean isLocalCall,
+            boolean incrementSenderNonce,
+            boolean fork040Enable,
+            boolean checkBlockEnergyLimit,
+            Logger logger,
+            PostExecutionWork postExecutionWork,
+            BlockCachingContext blockCachingContext,
+            long cachedBlockNumber,
+            boolean unityForkEnabled,
+            boolean signatureSwapForkEnabled,
+            boolean speculativeExecution)
+            throws VmFatalException {
 
         if (blockDifficulty == null) {
             throw new NullPointerException("Cannot execute given a null block difficulty!");
@@ -116,7 +167,8 @@ public final class BulkExecutor {
                 blockCachingContext,
                 cachedBlockNumber,
                 unityForkEnabled,
-                signatureSwapForkEnabled);
+                signatureSwapForkEnabled,
+                speculativeExecution);
     }
 
     /**
@@ -190,7 +242,8 @@ public final class BulkExecutor {
                         blockCachingContext,
                         cachedBlockNumber,
                         unityforkEnabled,
-                        signatureSwapForkEnabled)
+                        signatureSwapForkEnabled,
+                        false)
                 .get(0);
     }
 
@@ -212,7 +265,8 @@ public final class BulkExecutor {
             BlockCachingContext blockCachingContext,
             long cachedBlockNumber,
             boolean unityForkEnabled,
-            boolean signatureSwapForkEnabled)
+            boolean signatureSwapForkEnabled,
+            boolean speculativeExecution)
             throws VmFatalException {
         List<AionTxExecSummary> allSummaries = new ArrayList<>();
 
@@ -263,7 +317,8 @@ public final class BulkExecutor {
                                 blockRemainingEnergy,
                                 fork040enabled,
                                 unityForkEnabled,
-                                signatureSwapForkEnabled);
+                                signatureSwapForkEnabled,
+                                speculativeExecution);
             } else if (transactionIsPrecompiledContractCall(firstTransactionInNextBatch)) {
                 currentBatchOfSummaries =
                         executeNextBatchOfPrecompiledTransactions(
@@ -375,7 +430,8 @@ public final class BulkExecutor {
             long blockRemainingEnergy,
             boolean fork040enabled,
             boolean unityForkEnabled,
-            boolean signatureSwapForkEnabled)
+            boolean signatureSwapForkEnabled,
+            boolean speculativeExecution)
             throws VmFatalException {
 
         // Grab the next batch of fvm transactions to execute.
@@ -386,6 +442,25 @@ public final class BulkExecutor {
         fvmTransactionsToExecute.toArray(fvmTransactions);
 
         // Execute the fvm transactions.
+        if (speculativeExecution) {
+            return FvmTransactionExecutor.executeTransactionsSpeculatively(
+                    repository,
+                    blockDifficulty,
+                    blockNumber,
+                    blockTimestamp,
+                    blockNrgLimit,
+                    blockCoinbase,
+                    fvmTransactions,
+                    postExecutionWork,
+                    logger,
+                    checkBlockEnergyLimit,
+                    incrementSenderNonce,
+                    isLocalCall,
+                    fork040enabled,
+                    blockRemainingEnergy,
+                    unityForkEnabled,
+                    signatureSwapForkEnabled);
+        }
         return FvmTransactionExecutor.executeTransactions(
                 repository,
                 blockDifficulty,
@@ -1,9 +1,16 @@
 package org.aion.zero.impl.vm.fvm;
 
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import org.aion.zero.impl.vm.common.PostExecutionWork;
 import org.aion.zero.impl.vm.common.VmFatalException;
 import org.aion.base.AccountState;
@@ -19,6 +26,7 @@ import org.aion.types.Transaction;
 import org.aion.types.TransactionResult;
 import org.aion.types.TransactionStatus;
 import org.aion.util.bytes.ByteUtil;
+import org.aion.zero.impl.db.AionRepositoryCache;
 import org.aion.base.AionTxExecSummary;
 import org.aion.base.AionTxReceipt;
 import org.slf4j.Logger;
@@ -100,59 +108,270 @@ public final class FvmTransactionExecutor {
             FvmWrappedTransactionResult wrappedResult =
                     FastVirtualMachine.run(externalState, new ExternalCapabilitiesForFvm(), toAionTypesTransaction(transaction), fork040enabled);
 
-            TransactionResult result = wrappedResult.result;
-            List<AionAddress> deletedAddresses = wrappedResult.deletedAddresses;
+            AionTxExecSummary summary =
+                    processResult(
+                            repository,
+                            externalState,
+                            transaction,
+                            wrappedResult,
+                            blockRemainingEnergy,
+                            blockCoinbase,
+                            postExecutionWork,
+                            logger,
+                            isLocalCall);
 
-            if (result.transactionStatus.isFatal()) {
-                throw new VmFatalException(result.toString());
+            // Update the remaining block energy.
+            if (!summary.isRejected() && decrementBlockEnergyLimit) {
+                blockRemainingEnergy -= summary.getReceipt().getEnergyUsed();
             }
 
-            // Check the block energy limit & reject if necessary.
-            if (result.energyUsed > blockRemainingEnergy) {
-                TransactionStatus status = TransactionStatus.rejection("Invalid Energy Limit");
-                result = new TransactionResult(status, result.logs, result.internalTransactions, 0, ByteUtil.EMPTY_BYTE_ARRAY);
-            }
+            transactionSummaries.add(summary);
+        }
 
-            // Build the transaction summary.
-            AionTxExecSummary summary = buildTransactionSummary(transaction, result, deletedAddresses);
+        return transactionSummaries;
+    }
 
-            // If the transaction was not rejected, then commit the state changes.
-            if (!result.transactionStatus.isRejected()) {
-                externalState.commit();
-            }
+    /**
+     * Executes the specified array of transactions using the FVM with the same results as {@link
+     * #executeTransactions}, but starts the execution of all the transactions concurrently.
+     *
+     * <p>Each transaction is first executed speculatively against the state at the start of the
+     * batch, in a separate repository cache that records the accounts it accesses. The results are
+     * then processed in order. A speculative result is used only if none of the accounts accessed
+     * by the transaction were modified by the transactions before it in the batch. Otherwise the
+     * transaction is executed again against the current state. The state changes, receipts and
+     * post-execution work are applied in the order of the transactions.
+     *
+     * <p>The execution is performed as in {@link #executeTransactions} when the given repository
+     * holds changes that are not visible to concurrent readers or for local calls.
+     */
+    public static List<AionTxExecSummary> executeTransactionsSpeculatively(
+            RepositoryCache<AccountState> repository,
+            byte[] blockDifficulty,
+            long blockNumber,
+            long blockTimestamp,
+            long blockNrgLimit,
+            AionAddress blockCoinbase,
+            AionTransaction[] transactions,
+            PostExecutionWork postExecutionWork,
+            Logger logger,
+            boolean decrementBlockEnergyLimit,
+            boolean allowNonceIncrement,
+            boolean isLocalCall,
+            boolean fork040enabled,
+            long initialBlockEnergyLimit,
+            boolean unityForkEnabled,
+            boolean signatureSwapForkEnabled)
+            throws VmFatalException {
 
-            // For non-rejected non-local transactions, make some final repository updates.
-            if (!isLocalCall && !summary.isRejected()) {
-                RepositoryCache repositoryTracker = repository.startTracking();
+        // the speculative executions read the parent concurrently, which is safe only when it is empty
+        if (isLocalCall
+                || transactions.length < 2
+                || !(repository instanceof AionRepositoryCache)
+                || !((AionRepositoryCache) repository).isEmpty()) {
+            return executeTransactions(
+                    repository,
+                    blockDifficulty,
+                    blockNumber,
+                    blockTimestamp,
+                    blockNrgLimit,
+                    blockCoinbase,
+                    transactions,
+                    postExecutionWork,
+                    logger,
+                    decrementBlockEnergyLimit,
+                    allowNonceIncrement,
+                    isLocalCall,
+                    fork040enabled,
+                    initialBlockEnergyLimit,
+                    unityForkEnabled,
+                    signatureSwapForkEnabled);
+        }
 
-                refundSender(repositoryTracker, summary, transaction, result);
-                payMiner(repositoryTracker, blockCoinbase, summary);
-                deleteAccountsMarkedForDeletion(repositoryTracker, summary.getDeletedAccounts(), result);
+        FvmDataWord difficulty = getDifficultyAsDataWord(blockDifficulty);
+        Function<RepositoryCache<AccountState>, IExternalStateForFvm> externalStateFactory =
+                track ->
+                        new ExternalStateForFvm(
+                                track,
+                                blockCoinbase,
+                                difficulty,
+                                false,
+                                allowNonceIncrement,
+                                fork040enabled,
+                                blockNumber,
+                                blockTimestamp,
+                                blockNrgLimit,
+                                unityForkEnabled,
+                                signatureSwapForkEnabled);
+
+        // Start the speculative execution of all the transactions.
+        List<Future<SpeculativeExecution>> speculativeExecutions = new ArrayList<>();
+        for (AionTransaction transaction : transactions) {
+            speculativeExecutions.add(
+                    SpeculationPool.INSTANCE.submit(
+                            () -> SpeculativeExecution.run(repository, externalStateFactory, transaction, fork040enabled)));
+        }
 
-                repositoryTracker.flush();
-            }
+        // All the executions must complete before any changes are applied to the repository.
+        List<SpeculativeExecution> results = new ArrayList<>();
+        for (Future<SpeculativeExecution> execution : speculativeExecutions) {
+            results.add(awaitSpeculativeExecution(execution, logger));
+        }
 
-            // Do any post execution work.
-            if (postExecutionWork != null) {
-                postExecutionWork.doWork(repository, summary, transaction);
+        List<AionTxExecSummary> transactionSummaries = new ArrayList<>();
+        Set<AionAddress> modifiedInBatch = new HashSet<>();
+        long blockRemainingEnergy = initialBlockEnergyLimit;
+        int speculativeResultsUsed = 0;
+
+        // Process the results in the order of the transactions.
+        for (int i = 0; i < transactions.length; i++) {
+            AionTransaction transaction = transactions[i];
+            SpeculativeExecution execution = results.get(i);
+
+            if (execution == null || execution.conflictsWith(modifiedInBatch)) {
+                // execute again against the current state
+                execution = SpeculativeExecution.run(repository, externalStateFactory, transaction, fork040enabled);
+            } else {
+                speculativeResultsUsed++;
             }
 
-            // Update the remaining block energy.
-            if (!result.transactionStatus.isRejected() && decrementBlockEnergyLimit) {
-                blockRemainingEnergy -= summary.getReceipt().getEnergyUsed();
+            if (execution.wrappedResult.result.energyUsed > blockRemainingEnergy) {
+                // The rejected transaction leaves its changes uncommitted in the shared external
+                // state of the serial execution. The rest of the batch is executed serially to
+                // reproduce those results exactly.
+                transactionSummaries.addAll(
+                        executeTransactions(
+                                repository,
+                                blockDifficulty,
+                                blockNumber,
+                                blockTimestamp,
+                                blockNrgLimit,
+                                blockCoinbase,
+                                Arrays.copyOfRange(transactions, i, transactions.length),
+                                postExecutionWork,
+                                logger,
+                                decrementBlockEnergyLimit,
+                                allowNonceIncrement,
+                                false,
+                                fork040enabled,
+                                blockRemainingEnergy,
+                                unityForkEnabled,
+                                signatureSwapForkEnabled));
+                break;
             }
 
-            if (logger.isDebugEnabled()) {
-                logger.debug("Transaction receipt: {}", summary.getReceipt());
-                logger.debug("Transaction logs: {}", summary.getLogs());
+            // the accounts modified by the execution must be determined before its changes are committed
+            modifiedInBatch.addAll(execution.track.getModifiedAddresses());
+
+            AionTxExecSummary summary =
+                    processResult(
+                            repository,
+                            execution.externalState,
+                            transaction,
+                            execution.wrappedResult,
+                            blockRemainingEnergy,
+                            blockCoinbase,
+                            postExecutionWork,
+                            logger,
+                            false);
+
+            if (!summary.isRejected()) {
+                // accounts updated by the refund, fee payment and deletions
+                modifiedInBatch.add(transaction.getSenderAddress());
+                modifiedInBatch.add(blockCoinbase);
+                modifiedInBatch.addAll(summary.getDeletedAccounts());
+
+                if (decrementBlockEnergyLimit) {
+                    blockRemainingEnergy -= summary.getReceipt().getEnergyUsed();
+                }
             }
 
             transactionSummaries.add(summary);
         }
 
+        if (logger.isDebugEnabled()) {
+            logger.debug(
+                    "Speculative execution results used for {} of {} transactions.",
+                    speculativeResultsUsed,
+                    transactions.length);
+        }
+
         return transactionSummaries;
     }
 
+    private static SpeculativeExecution awaitSpeculativeExecution(Future<SpeculativeExecution> future, Logger logger) {
+        try {
+            // an interrupt cannot abandon executions that are still reading the repository
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+            // the transaction is executed again against the current state
+            logger.debug("Speculative transaction execution failed.", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Applies the result of executing the given transaction in the given external state: commits
+     * or discards the state changes, pays the fees, runs the post-execution work and builds the
+     * transaction summary.
+     */
+    private static AionTxExecSummary processResult(
+            RepositoryCache<AccountState> repository,
+            IExternalStateForFvm externalState,
+            AionTransaction transaction,
+            FvmWrappedTransactionResult wrappedResult,
+            long blockRemainingEnergy,
+            AionAddress blockCoinbase,
+            PostExecutionWork postExecutionWork,
+            Logger logger,
+            boolean isLocalCall)
+            throws VmFatalException {
+
+        TransactionResult result = wrappedResult.result;
+        List<AionAddress> deletedAddresses = wrappedResult.deletedAddresses;
+
+        if (result.transactionStatus.isFatal()) {
+            throw new VmFatalException(result.toString());
+        }
+
+        // Check the block energy limit & reject if necessary.
+        if (result.energyUsed > blockRemainingEnergy) {
+            TransactionStatus status = TransactionStatus.rejection("Invalid Energy Limit");
+            result = new TransactionResult(status, result.logs, result.internalTransactions, 0, ByteUtil.EMPTY_BYTE_ARRAY);
+        }
+
+        // Build the transaction summary.
+        AionTxExecSummary summary = buildTransactionSummary(transaction, result, deletedAddresses);
+
+        // If the transaction was not rejected, then commit the state changes.
+        if (!result.transactionStatus.isRejected()) {
+            externalState.commit();
+        }
+
+        // For non-rejected non-local transactions, make some final repository updates.
+        if (!isLocalCall && !summary.isRejected()) {
+            RepositoryCache repositoryTracker = repository.startTracking();
+
+            refundSender(repositoryTracker, summary, transaction, result);
+            payMiner(repositoryTracker, blockCoinbase, summary);
+            deleteAccountsMarkedForDeletion(repositoryTracker, summary.getDeletedAccounts(), result);
+
+            repositoryTracker.flush();
+        }
+
+        // Do any post execution work.
+        if (postExecutionWork != null) {
+            postExecutionWork.doWork(repository, summary, transaction);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Transaction receipt: {}", summary.getReceipt());
+            logger.debug("Transaction logs: {}", summary.getLogs());
+        }
+
+        return summary;
+    }
+
     private static AionTxExecSummary buildTransactionSummary(
             AionTransaction transaction,
             TransactionResult result,
@@ -232,4 +451,53 @@ public final class FvmTransactionExecutor {
             return Transaction.contractCallTransaction(transaction.getSenderAddress(), transaction.getDestinationAddress(), transaction.getTransactionHash(), transaction.getNonceBI(), new BigInteger(1, transaction.getValue()), transaction.getData(), transaction.getEnergyLimit(), transaction.getEnergyPrice());
         }
     }
+
+    /** The result of executing a transaction in its own repository cache. */
+    private static final class SpeculativeExecution {
+        private final AionRepositoryCache track;
+        private final IExternalStateForFvm externalState;
+        private final FvmWrappedTransactionResult wrappedResult;
+
+        private SpeculativeExecution(
+                AionRepositoryCache track,
+                IExternalStateForFvm externalState,
+                FvmWrappedTransactionResult wrappedResult) {
+            this.track = track;
+            this.externalState = externalState;
+            this.wrappedResult = wrappedResult;
+        }
+
+        private static SpeculativeExecution run(
+                RepositoryCache<AccountState> repository,
+                Function<RepositoryCache<AccountState>, IExternalStateForFvm> externalStateFactory,
+                AionTransaction transaction,
+                boolean fork040enabled) {
+            AionRepositoryCache track = new AionRepositoryCache(repository, true);
+            IExternalStateForFvm externalState = externalStateFactory.apply(track);
+            FvmWrappedTransactionResult wrappedResult =
+                    FastVirtualMachine.run(externalState, new ExternalCapabilitiesForFvm(), toAionTypesTransaction(transaction), fork040enabled);
+            return new SpeculativeExecution(track, externalState, wrappedResult);
+        }
+
+        /** @return {@code true} if the execution accessed any of the given accounts */
+        private boolean conflictsWith(Set<AionAddress> modifiedAccounts) {
+            for (AionAddress address : track.getAccessedAddresses()) {
+                if (modifiedAccounts.contains(address)) {
+                    return true;
+                }
+            }
+            for (AionAddress address : track.getModifiedAddresses()) {
+                if (modifiedAccounts.contains(address)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Lazily created pool used for the speculative execution of transactions. */
+    private static final class SpeculationPool {
+        private static final ForkJoinPool INSTANCE =
+                new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
 }
@@ -13,6 +13,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.aion.avm.stub.IAvmResourceFactory;
@@ -23,6 +24,7 @@ import org.aion.base.TransactionTypeRule;
 import org.aion.base.TransactionTypes;
 import org.aion.base.TxUtil;
 import org.aion.crypto.ECKey;
+import org.aion.db.impl.DBVendor;
 import org.aion.log.AionLoggerFactory;
 import org.aion.log.LogEnum;
 import org.aion.log.LogLevel;
@@ -33,9 +35,13 @@ import org.aion.types.AionAddress;
 import org.aion.util.biginteger.BIUtil;
 import org.aion.util.bytes.ByteUtil;
 import org.aion.util.conversions.Hex;
+import org.aion.zero.impl.config.CfgDb;
 import org.aion.zero.impl.core.ImportResult;
 import org.aion.zero.impl.db.AionRepositoryImpl;
 import org.aion.zero.impl.db.ContractInformation;
+import org.aion.zero.impl.db.LogIndexStore;
+import org.aion.zero.impl.db.StateSnapshot;
+import org.aion.zero.impl.db.MockRepositoryConfig;
 import org.aion.zero.impl.types.A0BlockHeader;
 import org.aion.zero.impl.types.AionBlock;
 import org.aion.zero.impl.types.AionBlockSummary;
@@ -49,6 +55,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.slf4j.Logger;
 
 public class BlockchainForkingTest {
 
@@ -390,6 +397,173 @@ public class BlockchainForkingTest {
         assertThat(cacheContext.getRight()).isEqualTo(BlockCachingContext.MAINCHAIN);
     }
 
+    /**
+     * Imports a side chain block that changes the state differently from the main chain block at
+     * the same height, then makes the side chain the main chain and back again. The flat state
+     * must follow each re-branch without being disabled.
+     */
+    @Test
+    public void testFlatStateFollowsReBranch() {
+        List<ECKey> accounts = generateAccounts(2);
+        StandaloneBlockchain bc =
+                new StandaloneBlockchain.Builder()
+                        .withValidatorConfiguration("simple")
+                        .withDefaultAccounts(accounts)
+                        .withRepoConfig(repoConfigEnabling(CfgDb.Props.FLAT_STATE))
+                        .build()
+                        .bc;
+        AionRepositoryImpl repository = bc.getRepository();
+        assertThat(repository.isFlatStateEnabled()).isTrue();
+        Logger log = AionLoggerFactory.getLogger(LogEnum.DB.name());
+
+        long time = System.currentTimeMillis();
+        ECKey sender = accounts.get(0);
+        AionAddress mainReceiver = new AionAddress(accounts.get(1).getAddress());
+        AionAddress sideReceiver = new AionAddress(Hex.decode("a000000000000000000000000000000000000000000000000000000000000123"));
+
+        AionBlock mainBlock =
+                bc.createNewMiningBlockInternal(
+                                bc.getGenesis(), List.of(transfer(sender, 0, mainReceiver, 5)), true, time / 1000L)
+                        .block;
+        AionBlock sideBlock =
+                bc.createNewMiningBlockInternal(
+                                bc.getGenesis(), List.of(transfer(sender, 0, sideReceiver, 7)), true, time / 1000L + 100)
+                        .block;
+        assertThat(sideBlock.getStateRoot()).isNotEqualTo(mainBlock.getStateRoot());
+
+        assertThat(bc.tryToConnect(mainBlock)).isEqualTo(ImportResult.IMPORTED_BEST);
+        assertThat(bc.tryToConnect(sideBlock)).isEqualTo(ImportResult.IMPORTED_NOT_BEST);
+        // importing the side chain block leaves the flat state at the main chain head
+        assertThat(repository.checkFlatState(mainBlock.getStateRoot(), log)).isEqualTo(0);
+
+        // the side chain becomes the main chain
+        AionBlock sideChild =
+                bc.createNewMiningBlockInternal(
+                                sideBlock, List.of(transfer(sender, 1, sideReceiver, 3)), true, time / 1000L + 101)
+                        .block;
+        assertThat(bc.tryToConnect(sideChild)).isEqualTo(ImportResult.IMPORTED_BEST);
+        assertThat(bc.getBestBlock()).isEqualTo(sideChild);
+        assertThat(repository.checkFlatState(sideChild.getStateRoot(), log)).isEqualTo(0);
+        assertThat(repository.getBalance(sideReceiver)).isEqualTo(BigInteger.TEN);
+
+        // and back to the original chain
+        AionBlock mainChild =
+                bc.createNewMiningBlockInternal(mainBlock, Collections.emptyList(), true, time / 1000L + 1)
+                        .block;
+        bc.tryToConnect(mainChild);
+        AionBlock mainGrandchild =
+                bc.createNewMiningBlockInternal(mainChild, Collections.emptyList(), true, time / 1000L + 2)
+                        .block;
+        assertThat(bc.tryToConnect(mainGrandchild)).isEqualTo(ImportResult.IMPORTED_BEST);
+        assertThat(bc.getBestBlock()).isEqualTo(mainGrandchild);
+        assertThat(repository.checkFlatState(mainGrandchild.getStateRoot(), log)).isEqualTo(0);
+        assertThat(repository.getBalance(sideReceiver)).isEqualTo(BigInteger.ZERO);
+        assertThat(repository.getBalance(mainReceiver))
+                .isEqualTo(bc.getGenesis().getPremine().get(mainReceiver).getBalance().add(BigInteger.valueOf(5)));
+    }
+
+    @Test
+    public void testLogIndexFollowsReBranch() {
+        StandaloneBlockchain bc =
+                new StandaloneBlockchain.Builder()
+                        .withValidatorConfiguration("simple")
+                        .withDefaultAccounts()
+                        .withRepoConfig(repoConfigEnabling(CfgDb.Props.LOG_INDEX))
+                        .build()
+                        .bc;
+        AionRepositoryImpl repository = bc.getRepository();
+        LogIndexStore logIndex = repository.getLogIndex();
+        assertThat(logIndex).isNotNull();
+        Logger log = AionLoggerFactory.getLogger(LogEnum.DB.name());
+
+        long time = System.currentTimeMillis();
+        AionBlock mainBlock =
+                bc.createNewMiningBlockInternal(bc.getGenesis(), Collections.emptyList(), true, time / 1000L)
+                        .block;
+        AionBlock sideBlock =
+                bc.createNewMiningBlockInternal(bc.getGenesis(), Collections.emptyList(), true, time / 1000L + 100)
+                        .block;
+        assertThat(bc.tryToConnect(mainBlock)).isEqualTo(ImportResult.IMPORTED_BEST);
+        assertThat(bc.tryToConnect(sideBlock)).isEqualTo(ImportResult.IMPORTED_NOT_BEST);
+        assertThat(logIndex.getLastIndexed()).isEqualTo(1);
+
+        // the side chain blocks are imported in a snapshot of the repository and still indexed
+        AionBlock sideChild =
+                bc.createNewMiningBlockInternal(sideBlock, Collections.emptyList(), true, time / 1000L + 101)
+                        .block;
+        assertThat(bc.tryToConnect(sideChild)).isEqualTo(ImportResult.IMPORTED_BEST);
+        assertThat(bc.getBestBlock()).isEqualTo(sideChild);
+        assertThat(logIndex.getLastIndexed()).isEqualTo(2);
+        assertThat(logIndex.covers(1, 2)).isTrue();
+
+        // the indexed range follows the chain when it becomes shorter
+        assertThat(repository.revertTo(1, log)).isTrue();
+        assertThat(logIndex.getLastIndexed()).isEqualTo(1);
+        assertThat(logIndex.covers(1, 2)).isFalse();
+    }
+
+    @Test
+    public void testCommittedStateFollowsReBranch() {
+        StandaloneBlockchain bc =
+                new StandaloneBlockchain.Builder()
+                        .withValidatorConfiguration("simple")
+                        .withDefaultAccounts()
+                        .build()
+                        .bc;
+        AionRepositoryImpl repository = bc.getRepository();
+
+        long time = System.currentTimeMillis();
+        AionBlock mainBlock =
+                bc.createNewMiningBlockInternal(bc.getGenesis(), Collections.emptyList(), true, time / 1000L)
+                        .block;
+        AionBlock sideBlock =
+                bc.createNewMiningBlockInternal(bc.getGenesis(), Collections.emptyList(), true, time / 1000L + 100)
+                        .block;
+        assertThat(bc.tryToConnect(mainBlock)).isEqualTo(ImportResult.IMPORTED_BEST);
+        assertThat(bc.tryToConnect(sideBlock)).isEqualTo(ImportResult.IMPORTED_NOT_BEST);
+        assertThat(repository.getCommittedState().getRoot()).isEqualTo(mainBlock.getStateRoot());
+
+        // the side chain blocks are committed in a snapshot of the repository
+        AionBlock sideChild =
+                bc.createNewMiningBlockInternal(sideBlock, Collections.emptyList(), true, time / 1000L + 101)
+                        .block;
+        assertThat(bc.tryToConnect(sideChild)).isEqualTo(ImportResult.IMPORTED_BEST);
+        assertThat(bc.getBestBlock()).isEqualTo(sideChild);
+
+        // the lock-free reads follow the new main chain
+        StateSnapshot committed = repository.getCommittedState();
+        assertThat(committed.getRoot()).isEqualTo(sideChild.getStateRoot());
+        AionAddress coinbase = sideChild.getCoinbase();
+        assertThat(committed.getBalance(coinbase)).isEqualTo(repository.getBalance(coinbase));
+        assertThat(committed.getBalance(coinbase))
+                .isNotEqualTo(repository.getStateSnapshot(mainBlock.getStateRoot()).getBalance(coinbase));
+    }
+
+    /** @return a repository config enabling the given boolean database option */
+    private static MockRepositoryConfig repoConfigEnabling(String property) {
+        return new MockRepositoryConfig(DBVendor.MOCKDB) {
+            @Override
+            public Properties getDatabaseConfig(String db_name) {
+                Properties props = super.getDatabaseConfig(db_name);
+                props.setProperty(property, "true");
+                return props;
+            }
+        };
+    }
+
+    private static AionTransaction transfer(ECKey sender, long nonce, AionAddress receiver, long value) {
+        return AionTransaction.create(
+                sender,
+                BigInteger.valueOf(nonce).toByteArray(),
+                receiver,
+                BigInteger.valueOf(value).toByteArray(),
+                new byte[0],
+                21_000L,
+                10_123_456_789L,
+                TransactionTypes.DEFAULT,
+                null);
+    }
+
     /** Test fork with exception. */
     @Test
     public void testSecondBlockHigherDifficultyFork_wExceptionOnFasterBlockAdd() {
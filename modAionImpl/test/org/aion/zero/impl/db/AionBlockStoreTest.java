@@ -2,6 +2,8 @@ package org.aion.zero.impl.db;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -15,9 +17,11 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.aion.db.impl.ByteArrayKeyValueDatabase;
 import org.aion.db.impl.mockdb.MockDB;
 import org.aion.mcf.blockchain.Block;
+import org.aion.mcf.blockchain.BlockHeader;
 import org.aion.util.TestResources;
 import org.aion.util.types.AddressUtils;
 import org.aion.util.types.ByteArrayWrapper;
@@ -42,6 +46,7 @@ public class AionBlockStoreTest {
     // simply mocking the dbs didn't work possibly because of the use of locks
     // for some reason index.size() gets called by store.getChainBlockByNumber(X)
     ByteArrayKeyValueDatabase index = new MockDB("index", log);
+    ByteArrayKeyValueDatabase headers = new MockDB("headers", log);
     ByteArrayKeyValueDatabase blocks = new MockDB("blocks", log);
 
     // returns a list of blocks in ascending order of height
@@ -50,24 +55,26 @@ public class AionBlockStoreTest {
     @Before
     public void openDatabases() {
         index.open();
+        headers.open();
         blocks.open();
     }
 
     @After
     public void closeDatabases() {
         index.close();
+        headers.close();
         blocks.close();
     }
 
     @Test
     public void testGetBlocksByRange_withGensisFirstBlock() {
-        AionBlockStore store = spy(new AionBlockStore(index, blocks, false));
+        AionBlockStore store = spy(new AionBlockStore(index, headers, blocks, false));
         assertThat(store.getBlocksByRange(0L, 11L)).isNull();
     }
 
     @Test
     public void testGetBlocksByRange_withNullFirstBlock() {
-        AionBlockStore store = spy(new AionBlockStore(index, blocks, false));
+        AionBlockStore store = spy(new AionBlockStore(index, headers, blocks, false));
         when(store.getChainBlockByNumber(10L)).thenReturn(null);
         when(store.getBlocksByRange(10L, 11L)).thenCallRealMethod();
 
@@ -78,7 +85,7 @@ public class AionBlockStoreTest {
     public void testGetBlocksByRange_withSingleBlock() {
         Block block = consecutiveBlocks.get(0);
 
-        AionBlockStore store = spy(new AionBlockStore(index, blocks, false));
+        AionBlockStore store = spy(new AionBlockStore(index, headers, blocks, false));
         when(store.getChainBlockByNumber(10L)).thenReturn(block);
         when(store.getBlocksByRange(10L, 10L)).thenCallRealMethod();
 
@@ -93,7 +100,7 @@ public class AionBlockStoreTest {
         Block middle = consecutiveBlocks.get(1);
         Block last = consecutiveBlocks.get(0);
 
-        AionBlockStore store = spy(new AionBlockStore(index, blocks, false));
+        AionBlockStore store = spy(new AionBlockStore(index, headers, blocks, false));
         when(store.getChainBlockByNumber(first.getNumber())).thenReturn(first);
         when(store.getBlockByHashWithInfo(first.getParentHash())).thenReturn(middle);
         when(store.getBlockByHashWithInfo(middle.getParentHash())).thenReturn(last);
@@ -112,7 +119,7 @@ public class AionBlockStoreTest {
         Block middle = consecutiveBlocks.get(1);
         Block last = consecutiveBlocks.get(0);
 
-        AionBlockStore store = spy(new AionBlockStore(index, blocks, false));
+        AionBlockStore store = spy(new AionBlockStore(index, headers, blocks, false));
         when(store.getChainBlockByNumber(first.getNumber())).thenReturn(first);
         when(store.getBlockByHash(first.getParentHash())).thenReturn(middle);
         when(store.getBlockByHash(middle.getParentHash())).thenReturn(null);
@@ -128,7 +135,7 @@ public class AionBlockStoreTest {
         Block middle = consecutiveBlocks.get(1); // assumed height 1
         Block last = consecutiveBlocks.get(0); // assumed height 0
 
-        AionBlockStore store = spy(new AionBlockStore(index, blocks, false));
+        AionBlockStore store = spy(new AionBlockStore(index, headers, blocks, false));
         // returning the block at a different number than its height
         when(store.getChainBlockByNumber(2L)).thenReturn(first);
         when(store.getBlockByHashWithInfo(first.getParentHash())).thenReturn(middle);
@@ -152,7 +159,7 @@ public class AionBlockStoreTest {
         Block middle = consecutiveBlocks.get(1);
         Block last = consecutiveBlocks.get(2);
 
-        AionBlockStore store = spy(new AionBlockStore(index, blocks, false));
+        AionBlockStore store = spy(new AionBlockStore(index, headers, blocks, false));
         when(store.getChainBlockByNumber(first.getNumber())).thenReturn(first);
         when(store.getChainBlockByNumber(last.getNumber())).thenReturn(last);
         when(store.getBlockByHashWithInfo(last.getParentHash())).thenReturn(middle);
@@ -170,7 +177,7 @@ public class AionBlockStoreTest {
         Block first = consecutiveBlocks.get(0);
         Block last = consecutiveBlocks.get(2);
 
-        AionBlockStore store = spy(new AionBlockStore(index, blocks, false));
+        AionBlockStore store = spy(new AionBlockStore(index, headers, blocks, false));
         when(store.getChainBlockByNumber(first.getNumber())).thenReturn(first);
         when(store.getChainBlockByNumber(last.getNumber())).thenReturn(last);
         when(store.getBlockByHashWithInfo(last.getParentHash())).thenReturn(null);
@@ -187,7 +194,7 @@ public class AionBlockStoreTest {
         Block best = consecutiveBlocks.get(2);
         Block last = consecutiveBlocks.get(3);
 
-        AionBlockStore store = spy(new AionBlockStore(index, blocks, false));
+        AionBlockStore store = spy(new AionBlockStore(index, headers, blocks, false));
 
         when(store.getChainBlockByNumber(first.getNumber())).thenReturn(first);
         when(store.getChainBlockByNumber(last.getNumber())).thenReturn(null);
@@ -207,7 +214,7 @@ public class AionBlockStoreTest {
         Block first = consecutiveBlocks.get(0);
         Block last = consecutiveBlocks.get(3);
 
-        AionBlockStore store = spy(new AionBlockStore(index, blocks, false));
+        AionBlockStore store = spy(new AionBlockStore(index, headers, blocks, false));
         when(store.getChainBlockByNumber(first.getNumber())).thenReturn(first);
         when(store.getChainBlockByNumber(last.getNumber())).thenReturn(null);
         when(store.getBestBlock()).thenReturn(null);
@@ -223,7 +230,7 @@ public class AionBlockStoreTest {
         Block last = consecutiveBlocks.get(1);
         Block best = consecutiveBlocks.get(2);
 
-        AionBlockStore store = spy(new AionBlockStore(index, blocks, false));
+        AionBlockStore store = spy(new AionBlockStore(index, headers, blocks, false));
         when(store.getChainBlockByNumber(first.getNumber())).thenReturn(first);
         when(store.getChainBlockByNumber(last.getNumber())).thenReturn(null);
         when(store.getBestBlock()).thenReturn(best);
@@ -232,9 +239,168 @@ public class AionBlockStoreTest {
         assertThat(store.getBlocksByRange(first.getNumber(), last.getNumber())).isNull();
     }
 
+    @Test
+    public void testGetBlocksByRange_withCanonicalIndex() {
+        AionBlockStore storedBlocks = new AionBlockStore(index, headers, blocks, false);
+        BigInteger totalDifficulty = BigInteger.ZERO;
+        for (Block block : consecutiveBlocks) {
+            totalDifficulty = totalDifficulty.add(block.getDifficultyBI());
+            storedBlocks.saveBlock(block, totalDifficulty, true);
+        }
+        // saving a block reads its parent, so only the range reads are spied on
+        AionBlockStore store = spy(storedBlocks);
+        Block first = consecutiveBlocks.get(0);
+        Block last = consecutiveBlocks.get(3);
+
+        List<Block> ascending = store.getBlocksByRange(first.getNumber(), last.getNumber());
+        assertThat(ascending.size()).isEqualTo(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(ascending.get(i).getHash()).isEqualTo(consecutiveBlocks.get(i).getHash());
+            assertThat(ascending.get(i).isMainChain()).isTrue();
+        }
+        assertThat(ascending.get(3).getTotalDifficulty()).isEqualTo(totalDifficulty);
+
+        List<Block> descending = store.getBlocksByRange(last.getNumber(), first.getNumber());
+        assertThat(descending.size()).isEqualTo(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(descending.get(i).getHash()).isEqualTo(consecutiveBlocks.get(3 - i).getHash());
+        }
+        assertThat(descending.get(1).getTotalDifficulty()).isEqualTo(ascending.get(2).getTotalDifficulty());
+
+        // the blocks were read using the canonical index instead of walking the parent hashes
+        verify(store, times(0)).getBlockByHashWithInfo(any());
+    }
+
+    @Test
+    public void testGetBlocksByRange_withCanonicalIndexAfterRollback() {
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
+        BigInteger totalDifficulty = BigInteger.ZERO;
+        for (Block block : consecutiveBlocks) {
+            totalDifficulty = totalDifficulty.add(block.getDifficultyBI());
+            store.saveBlock(block, totalDifficulty, true);
+        }
+        Block first = consecutiveBlocks.get(0);
+        Block middle = consecutiveBlocks.get(1);
+        Block last = consecutiveBlocks.get(3);
+
+        store.rollback(middle.getNumber());
+
+        // the range is limited to the best block after the rollback
+        List<Block> returned = store.getBlocksByRange(first.getNumber(), last.getNumber());
+        assertThat(returned.size()).isEqualTo(2);
+        assertThat(returned.get(0).getHash()).isEqualTo(first.getHash());
+        assertThat(returned.get(1).getHash()).isEqualTo(middle.getHash());
+
+        // the entries are written again when the chain grows back
+        totalDifficulty = first.getDifficultyBI().add(middle.getDifficultyBI());
+        for (Block block : consecutiveBlocks.subList(2, 4)) {
+            totalDifficulty = totalDifficulty.add(block.getDifficultyBI());
+            store.saveBlock(block, totalDifficulty, true);
+        }
+        AionBlockStore spiedStore = spy(store);
+        returned = spiedStore.getBlocksByRange(last.getNumber(), first.getNumber());
+        assertThat(returned.size()).isEqualTo(4);
+        assertThat(returned.get(3).getHash()).isEqualTo(first.getHash());
+        verify(spiedStore, times(0)).getBlockByHashWithInfo(any());
+    }
+
+    @Test
+    public void testHeaderReads_withoutBody() {
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
+        BigInteger totalDifficulty = BigInteger.ZERO;
+        for (Block block : consecutiveBlocks) {
+            totalDifficulty = totalDifficulty.add(block.getDifficultyBI());
+            store.saveBlock(block, totalDifficulty, true);
+        }
+        Block parent = consecutiveBlocks.get(2);
+        Block last = consecutiveBlocks.get(3);
+
+        assertThat(store.getHeaderByHash(last.getHash()).getEncoded()).isEqualTo(last.getHeader().getEncoded());
+        assertThat(store.getChainHeaderByNumber(parent.getNumber()).getHash()).isEqualTo(parent.getHash());
+        assertThat(store.getChainHeaderByNumber(last.getNumber() + 1)).isNull();
+
+        BlockHeader[] family = store.getThreeGenerationHeadersByHash(last.getHash());
+        assertThat(family[0].getHash()).isEqualTo(last.getHash());
+        assertThat(family[1].getHash()).isEqualTo(parent.getHash());
+        assertThat(family[2].getHash()).isEqualTo(consecutiveBlocks.get(1).getHash());
+
+        // the headers are still available when the body is missing, but the block is not
+        blocks.delete(last.getHash());
+        assertThat(store.getHeaderByHash(last.getHash())).isNotNull();
+        assertThat(store.getListHeadersEndWith(last.getHash(), 4).size()).isEqualTo(4);
+        assertThat(store.getBlockByHash(last.getHash())).isNull();
+    }
+
+    @Test
+    public void testMigrateToSplitStorage() {
+        // blocks stored in the previous format with the full encoding
+        for (Block block : consecutiveBlocks) {
+            blocks.put(block.getHash(), block.getEncoded());
+        }
+        // an entry already migrated before an interruption
+        Block migrated = consecutiveBlocks.get(0);
+        headers.put(migrated.getHash(), migrated.getHeader().getEncoded());
+        blocks.put(migrated.getHash(), migrated.getEncodedBody());
+
+        assertThat(AionBlockStore.migrateToSplitStorage(headers, blocks)).isEqualTo(3);
+        for (Block block : consecutiveBlocks) {
+            assertThat(headers.get(block.getHash()).get()).isEqualTo(block.getHeader().getEncoded());
+            assertThat(blocks.get(block.getHash()).get()).isEqualTo(block.getEncodedBody());
+        }
+
+        // the migration is only done once
+        assertThat(AionBlockStore.migrateToSplitStorage(headers, blocks)).isEqualTo(0);
+
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
+        for (Block block : consecutiveBlocks) {
+            assertThat(store.getBlockByHash(block.getHash()).getEncoded()).isEqualTo(block.getEncoded());
+        }
+    }
+
+    @Test
+    public void testMigrateToSplitStorage_afterInterruption() {
+        // blocks stored in the previous format with the full encoding
+        for (Block block : consecutiveBlocks) {
+            blocks.put(block.getHash(), block.getEncoded());
+        }
+
+        // the migration is interrupted between the header and the body writes of the second block
+        AtomicInteger headerWrites = new AtomicInteger();
+        ByteArrayKeyValueDatabase interruptedHeaders =
+                new MockDB("interruptedHeaders", log) {
+                    @Override
+                    public void putToBatchInternal(byte[] key, byte[] value) {
+                        super.putToBatchInternal(key, value);
+                        if (headerWrites.incrementAndGet() == 2) {
+                            throw new IllegalStateException("interrupted");
+                        }
+                    }
+                };
+        interruptedHeaders.open();
+        try {
+            AionBlockStore.migrateToSplitStorage(interruptedHeaders, blocks);
+            fail("The migration was not interrupted.");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).isEqualTo("interrupted");
+        }
+
+        // the resumed migration completes the interrupted block
+        assertThat(AionBlockStore.migrateToSplitStorage(interruptedHeaders, blocks)).isEqualTo(consecutiveBlocks.size() - 1);
+        for (Block block : consecutiveBlocks) {
+            assertThat(interruptedHeaders.get(block.getHash()).get()).isEqualTo(block.getHeader().getEncoded());
+            assertThat(blocks.get(block.getHash()).get()).isEqualTo(block.getEncodedBody());
+        }
+
+        AionBlockStore store = new AionBlockStore(index, interruptedHeaders, blocks, false);
+        for (Block block : consecutiveBlocks) {
+            assertThat(store.getBlockByHash(block.getHash()).getEncoded()).isEqualTo(block.getEncoded());
+        }
+        interruptedHeaders.close();
+    }
+
     @Test
     public void testGetBlockByHashWithInfo_withNullInput() {
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         Block block = store.getBlockByHashWithInfo(null);
         assertThat(block).isNull();
     }
@@ -243,7 +409,7 @@ public class AionBlockStoreTest {
     public void testGetBlockByHashWithInfo_withMissingBlock() {
         byte[] blockHash = RandomUtils.nextBytes(32);
 
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         assertThat(index.isEmpty()).isTrue();
         assertThat(blocks.isEmpty()).isTrue();
 
@@ -256,7 +422,7 @@ public class AionBlockStoreTest {
         Block givenBlock = consecutiveBlocks.get(0);
         BigInteger totalDifficulty = BigInteger.TEN;
 
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         // does not require accurate total difficulty
         store.saveBlock(givenBlock, totalDifficulty, true);
 
@@ -277,7 +443,7 @@ public class AionBlockStoreTest {
         assertThat(givenBlock.getHash()).isNotEqualTo(sideBlock.getHash());
         assertThat(givenBlock.getEncoded()).isNotEqualTo(sideBlock.getEncoded());
 
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         // does not require accurate total difficulty
         store.saveBlock(givenBlock, totalDifficulty, false);
         store.saveBlock(sideBlock, sideTotalDifficulty, true);
@@ -325,7 +491,7 @@ public class AionBlockStoreTest {
                         new byte[1408],
                         1,
                         1);
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
 
         store.saveBlock(blk1, BigInteger.TEN, true);
         store.saveBlock(blk2, BigInteger.TEN.add(BigInteger.ONE), true);
@@ -389,7 +555,7 @@ public class AionBlockStoreTest {
         System.out.println("Note: If this test fails there may be a thread synchronization issue inside the AionBlockStore.");
 
         // set up block store with cache to replicate normal execution
-        AionBlockStore store = new AionBlockStore(index, blocks, false, 10);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false, 10, 10);
 
         List<Block> testBlocks = TestResources.consecutiveBlocks(20);
         List<Runnable> threads = new ArrayList<>();
@@ -470,7 +636,7 @@ public class AionBlockStoreTest {
 
     @Test
     public void testGetTwoGenerationBlocksByHashWithInfo_withNullInput() {
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         Block[] blocks = store.getTwoGenerationBlocksByHashWithInfo(null);
         assertThat(blocks.length).isEqualTo(2);
         assertThat(blocks[0]).isNull();
@@ -481,7 +647,7 @@ public class AionBlockStoreTest {
     public void testGetTwoGenerationBlocksByHashWithInfo_withMissingParent() {
         byte[] parentHash = RandomUtils.nextBytes(32);
 
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         assertThat(index.isEmpty()).isTrue();
         assertThat(blocks.isEmpty()).isTrue();
 
@@ -495,7 +661,7 @@ public class AionBlockStoreTest {
     public void testGetTwoGenerationBlocksByHashWithInfo_withMissingGrandParent() {
         Block parent = consecutiveBlocks.get(0);
 
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         // does not require accurate total difficulty
         store.saveBlock(parent, BigInteger.TEN, true);
 
@@ -512,7 +678,7 @@ public class AionBlockStoreTest {
         Block grandparent = consecutiveBlocks.get(0);
         Block parent = consecutiveBlocks.get(1);
 
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         // does not require accurate total difficulty
         store.saveBlock(grandparent, BigInteger.TWO, true);
         store.saveBlock(parent, BigInteger.TEN, true);
@@ -544,7 +710,7 @@ public class AionBlockStoreTest {
         when(sideParent.getHashWrapper()).thenReturn(ByteArrayWrapper.wrap(newHash));
         assertThat(parent.getHash()).isNotEqualTo(sideParent.getHash());
 
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         // does not require accurate total difficulty
         store.saveBlock(grandparent, BigInteger.TWO, false);
         store.saveBlock(sideGrandparent, sideGrandparent.getTotalDifficulty(), true);
@@ -565,7 +731,7 @@ public class AionBlockStoreTest {
 
     @Test
     public void testGetThreeGenerationBlocksByHashWithInfo_withNullInput() {
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         Block[] blocks = store.getThreeGenerationBlocksByHashWithInfo(null);
         assertThat(blocks.length).isEqualTo(3);
         assertThat(blocks[0]).isNull();
@@ -577,7 +743,7 @@ public class AionBlockStoreTest {
     public void testGetThreeGenerationBlocksByHashWithInfo_withMissingParent() {
         byte[] parentHash = RandomUtils.nextBytes(32);
 
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         assertThat(index.isEmpty()).isTrue();
         assertThat(blocks.isEmpty()).isTrue();
 
@@ -592,7 +758,7 @@ public class AionBlockStoreTest {
     public void testGetThreeGenerationBlocksByHashWithInfo_withMissingGrandparent() {
         Block parent = consecutiveBlocks.get(0);
 
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         // does not require accurate total difficulty
         store.saveBlock(parent, BigInteger.TEN, true);
 
@@ -610,7 +776,7 @@ public class AionBlockStoreTest {
         Block grandparent = consecutiveBlocks.get(0);
         Block parent = consecutiveBlocks.get(1);
 
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         // does not require accurate total difficulty
         store.saveBlock(grandparent, BigInteger.TWO, true);
         store.saveBlock(parent, BigInteger.TEN, true);
@@ -632,7 +798,7 @@ public class AionBlockStoreTest {
         Block grandparent = consecutiveBlocks.get(1);
         Block parent = consecutiveBlocks.get(2);
 
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         // does not require accurate total difficulty
         store.saveBlock(greatGrandparent, BigInteger.ONE, true);
         store.saveBlock(grandparent, BigInteger.TWO, true);
@@ -675,7 +841,7 @@ public class AionBlockStoreTest {
         when(sideParent.getHashWrapper()).thenReturn(ByteArrayWrapper.wrap(newHash));
         assertThat(parent.getHash()).isNotEqualTo(sideParent.getHash());
 
-        AionBlockStore store = new AionBlockStore(index, blocks, false);
+        AionBlockStore store = new AionBlockStore(index, headers, blocks, false);
         // does not require accurate total difficulty
         store.saveBlock(greatGrandparent, BigInteger.ONE, false);
         store.saveBlock(grandparent, BigInteger.TWO, false);
@@ -397,6 +397,67 @@ public class AionRepositoryCacheTest {
         }
     }
 
+    @Test
+    public void testAccessedAndModifiedAddresses() {
+        AionAddress read = new AionAddress(RandomUtils.nextBytes(AionAddress.LENGTH));
+        AionAddress written = new AionAddress(RandomUtils.nextBytes(AionAddress.LENGTH));
+        AionAddress untouched = new AionAddress(RandomUtils.nextBytes(AionAddress.LENGTH));
+
+        RepositoryCache<AccountState> tempCache = repository.startTracking();
+        tempCache.addBalance(read, BigInteger.TEN);
+        tempCache.flush();
+
+        AionRepositoryCache tracker = new AionRepositoryCache(cache, true);
+        assertThat(tracker.isEmpty()).isTrue();
+
+        assertThat(tracker.getBalance(read)).isEqualTo(BigInteger.TEN);
+        tracker.addBalance(written, BigInteger.ONE);
+
+        assertThat(tracker.isEmpty()).isFalse();
+        assertThat(tracker.getAccessedAddresses()).containsExactly(read, written);
+        assertThat(tracker.getModifiedAddresses()).containsExactly(written);
+        assertThat(tracker.getAccessedAddresses()).doesNotContain(untouched);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAccessedAddressesNotRecordedByDefault() {
+        cache.getAccessedAddresses();
+    }
+
+    @Test
+    public void testPrefetchedAccountIsUsedOnce() {
+        AionAddress address = new AionAddress(RandomUtils.nextBytes(AionAddress.LENGTH));
+
+        RepositoryCache<AccountState> tempCache = repository.startTracking();
+        tempCache.addBalance(address, BigInteger.TEN);
+        tempCache.flush();
+
+        cache.prefetch(address);
+        assertThat(cache.isEmpty()).isTrue();
+
+        assertThat(cache.getBalance(address)).isEqualTo(BigInteger.TEN);
+        assertThat(cache.getPrefetchHitCount()).isEqualTo(1);
+
+        // later loads are served by the repository
+        cache.rollback();
+        assertThat(cache.getBalance(address)).isEqualTo(BigInteger.TEN);
+        assertThat(cache.getPrefetchHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPrefetchedAccountIsDiscardedOnFlush() {
+        AionAddress address = new AionAddress(RandomUtils.nextBytes(AionAddress.LENGTH));
+        cache.prefetch(address);
+
+        // the account is modified without being read from the prefetched state
+        cache.createAccount(address);
+        cache.addBalance(address, BigInteger.ONE);
+        cache.flush();
+
+        assertThat(cache.getBalance(address)).isEqualTo(BigInteger.ONE);
+        assertThat(cache.getPrefetchHitCount()).isEqualTo(0);
+    }
+
     /** Returns a list of numKeys keys, every other one is single and then double. */
     private List<ByteArrayWrapper> getKeysInBulk(int numKeys) {
         List<ByteArrayWrapper> keys = new ArrayList<>(numKeys);
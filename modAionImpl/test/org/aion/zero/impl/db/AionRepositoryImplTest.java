@@ -369,6 +369,58 @@ public class AionRepositoryImplTest {
         assertThat(repository.getBalance(account3)).isLessThan(snapshot.getBalance(account3));
     }
 
+    @Test
+    public void testCommittedStateIsPinnedToCommittedRoot() {
+        AionRepositoryImpl repository = AionRepositoryImpl.createForTesting(repoConfig);
+
+        final AionAddress account = AddressUtils.wrapAddress(value1);
+        final ByteArrayWrapper key = new DataWord(HashUtil.blake128("hello".getBytes())).toWrapper();
+        final ByteArrayWrapper value = new DataWord(HashUtil.blake128("world".getBytes())).toWrapper();
+        RepositoryCache track = repository.startTracking();
+        track.addBalance(account, BigInteger.ONE);
+        track.addStorageRow(account, key, value);
+        track.saveCode(account, account.toByteArray());
+        track.saveVmType(account, InternalVmType.FVM);
+        track.flush();
+
+        byte[] committedRoot = repository.getRoot();
+        ByteArrayWrapper blockHash = ByteArrayWrapper.wrap(HashUtil.h256(committedRoot));
+        repository.commitBlock(blockHash, 1, committedRoot);
+        // indexes the contract and publishes the state as done by the blockchain after each best block
+        repository.commitCachedVMs(blockHash);
+        repository.publishCommittedState(committedRoot);
+
+        StateSnapshot snapshot = repository.getCommittedState();
+        assertThat(snapshot.getRoot()).isEqualTo(committedRoot);
+        assertThat(snapshot.getBalance(account)).isEqualTo(BigInteger.ONE);
+        assertThat(snapshot.getNonce(account)).isEqualTo(BigInteger.ZERO);
+        assertThat(snapshot.getStorageValue(account, key)).isEqualTo(value);
+        assertThat(repository.getStateSnapshot(committedRoot)).isSameAs(snapshot);
+
+        // changes that were not committed are not visible in the snapshot
+        track = repository.startTracking();
+        track.addBalance(account, BigInteger.TEN);
+        track.flush();
+
+        assertThat(repository.getBalance(account)).isEqualTo(BigInteger.valueOf(11));
+        assertThat(repository.getCommittedState().getBalance(account)).isEqualTo(BigInteger.ONE);
+
+        // the next best block publishes a new snapshot
+        byte[] newRoot = repository.getRoot();
+        repository.commitBlock(ByteArrayWrapper.wrap(HashUtil.h256(newRoot)), 2, newRoot);
+        assertThat(repository.getCommittedState().getBalance(account)).isEqualTo(BigInteger.ONE);
+        repository.publishCommittedState(newRoot);
+
+        assertThat(repository.getCommittedState().getBalance(account)).isEqualTo(BigInteger.valueOf(11));
+        assertThat(repository.getStateSnapshot(committedRoot).getBalance(account)).isEqualTo(BigInteger.ONE);
+        assertThat(snapshot.getBalance(account)).isEqualTo(BigInteger.ONE);
+
+        // moving the repository to another root, e.g. to roll back a block, does not publish it
+        repository.syncToRoot(committedRoot);
+        assertThat(repository.getBalance(account)).isEqualTo(BigInteger.ONE);
+        assertThat(repository.getCommittedState().getBalance(account)).isEqualTo(BigInteger.valueOf(11));
+    }
+
     @Test
     public void testImportTrieNode() {
         AionRepositoryImpl repository = AionRepositoryImpl.createForTesting(repoConfig);
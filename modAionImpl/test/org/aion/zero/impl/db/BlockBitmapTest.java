@@ -0,0 +1,108 @@
+package org.aion.zero.impl.db;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+
+/** Tests for the {@link BlockBitmap}. */
+public class BlockBitmapTest {
+
+    private static BlockBitmap bitmapOf(int... offsets) {
+        BlockBitmap bitmap = new BlockBitmap();
+        for (int offset : offsets) {
+            bitmap.add(offset);
+        }
+        return bitmap;
+    }
+
+    private static int[] toArray(TreeSet<Integer> set) {
+        return set.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    public void testAddSparse() {
+        BlockBitmap bitmap = bitmapOf(7, 3, 4095, 3, 0);
+
+        assertThat(bitmap.toArray()).isEqualTo(new int[] {0, 3, 7, 4095});
+        assertThat(bitmap.cardinality()).isEqualTo(4);
+        assertThat(bitmap.contains(7)).isTrue();
+        assertThat(bitmap.contains(8)).isFalse();
+        // two bytes per offset
+        assertThat(bitmap.encode().length).isEqualTo(1 + 4 * 2);
+    }
+
+    @Test
+    public void testAddDense() {
+        Random random = new Random(5);
+        TreeSet<Integer> expected = new TreeSet<>();
+        BlockBitmap bitmap = new BlockBitmap();
+        for (int i = 0; i < 1000; i++) {
+            int offset = random.nextInt(BlockBitmap.SECTION_SIZE);
+            expected.add(offset);
+            bitmap.add(offset);
+        }
+
+        assertThat(bitmap.toArray()).isEqualTo(toArray(expected));
+        // stored as a bitset once the array would be larger
+        assertThat(bitmap.encode().length).isEqualTo(1 + BlockBitmap.SECTION_SIZE / 8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddOutsideSection() {
+        new BlockBitmap().add(BlockBitmap.SECTION_SIZE);
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        BlockBitmap sparse = bitmapOf(1, 100, 2000);
+        assertThat(BlockBitmap.decode(sparse.encode()).toArray()).isEqualTo(sparse.toArray());
+
+        BlockBitmap dense = new BlockBitmap();
+        for (int offset = 0; offset < BlockBitmap.SECTION_SIZE; offset += 3) {
+            dense.add(offset);
+        }
+        assertThat(BlockBitmap.decode(dense.encode()).toArray()).isEqualTo(dense.toArray());
+
+        assertThat(BlockBitmap.decode(new BlockBitmap().encode()).isEmpty()).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeUnsorted() {
+        BlockBitmap.decode(new byte[] {0, 0, 5, 0, 2});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeInvalidType() {
+        BlockBitmap.decode(new byte[] {7, 0, 5});
+    }
+
+    @Test
+    public void testOrAndSparse() {
+        BlockBitmap union = bitmapOf(1, 5, 9);
+        union.or(bitmapOf(2, 5, 10));
+        assertThat(union.toArray()).isEqualTo(new int[] {1, 2, 5, 9, 10});
+
+        union.and(bitmapOf(2, 9, 11));
+        assertThat(union.toArray()).isEqualTo(new int[] {2, 9});
+    }
+
+    @Test
+    public void testOrAndMixed() {
+        BlockBitmap even = new BlockBitmap();
+        for (int offset = 0; offset < BlockBitmap.SECTION_SIZE; offset += 2) {
+            even.add(offset);
+        }
+
+        BlockBitmap sparse = bitmapOf(1, 2, 3, 4);
+        sparse.and(even);
+        assertThat(sparse.toArray()).isEqualTo(new int[] {2, 4});
+
+        BlockBitmap dense = bitmapOf(1);
+        dense.or(even);
+        assertThat(dense.cardinality()).isEqualTo(BlockBitmap.SECTION_SIZE / 2 + 1);
+        dense.and(bitmapOf(0, 1, 3));
+        assertThat(dense.toArray()).isEqualTo(new int[] {0, 1});
+    }
+}
@@ -0,0 +1,233 @@
+package org.aion.zero.impl.db;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.aion.crypto.HashUtil.h256;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import org.aion.base.AccountState;
+import org.aion.base.ConstantUtil;
+import org.aion.db.impl.mockdb.MockDB;
+import org.aion.rlp.RLP;
+import org.aion.types.AionAddress;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.trie.SecureTrie;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Tests for the {@link FlatStateStore}. */
+public class FlatStateStoreTest {
+
+    private static final Logger log = LoggerFactory.getLogger("DB");
+
+    private static final AionAddress ADDRESS = address(1);
+    private static final ByteArrayWrapper KEY = ByteArrayWrapper.wrap(new byte[] {1, 2, 3});
+
+    private MockDB db;
+    private FlatStateStore flatState;
+
+    @Before
+    public void setup() {
+        db = new MockDB("flat-state", log);
+        db.open();
+        flatState = new FlatStateStore(db);
+        flatState.initialize(ConstantUtil.EMPTY_TRIE_HASH);
+    }
+
+    private static AionAddress address(int i) {
+        byte[] bytes = new byte[32];
+        bytes[0] = (byte) 0xa0;
+        bytes[31] = (byte) i;
+        return new AionAddress(bytes);
+    }
+
+    private static byte[] root(int i) {
+        return h256(new byte[] {(byte) i});
+    }
+
+    private static byte[] account(long balance, byte[] storageRoot) {
+        AccountState account = new AccountState(BigInteger.ZERO, BigInteger.valueOf(balance));
+        account.setStateRoot(storageRoot);
+        return account.getEncoded();
+    }
+
+    private static byte[] storageValue(int i) {
+        return RLP.encodeElement(new byte[] {(byte) i});
+    }
+
+    @Test
+    public void testCommitMakesChangesReadable() {
+        flatState.stageAccount(ADDRESS, account(10, root(100)));
+        flatState.stageStorage(ADDRESS, KEY, storageValue(5));
+        flatState.commit(root(1));
+
+        assertThat(flatState.getRoot()).isEqualTo(root(1));
+        assertThat(flatState.getAccount(ADDRESS, root(1))).isEqualTo(account(10, root(100)));
+        assertThat(FlatStateStore.decodeStorageValue(flatState.getStorage(ADDRESS, KEY, root(1))))
+                .isEqualTo(ByteArrayWrapper.wrap(new byte[] {5}));
+
+        // missing entries are reported as empty
+        assertThat(flatState.getAccount(address(2), root(1))).isEmpty();
+        byte[] missing = flatState.getStorage(ADDRESS, ByteArrayWrapper.wrap(new byte[] {9}), root(1));
+        assertThat(FlatStateStore.decodeStorageValue(missing)).isNull();
+
+        // the flat state survives a restart
+        assertThat(new FlatStateStore(db).getRoot()).isEqualTo(root(1));
+    }
+
+    @Test
+    public void testReadsAtOtherRootsAreNotServed() {
+        flatState.stageAccount(ADDRESS, account(10, root(100)));
+        flatState.commit(root(1));
+
+        assertThat(flatState.getAccount(ADDRESS, root(2))).isNull();
+        assertThat(flatState.getStorage(ADDRESS, KEY, root(2))).isNull();
+    }
+
+    @Test
+    public void testStorageOfDeletedAccountIsNotServed() {
+        flatState.stageAccount(ADDRESS, account(10, root(100)));
+        flatState.stageStorage(ADDRESS, KEY, storageValue(5));
+        flatState.commit(root(1));
+
+        flatState.stageAccount(ADDRESS, null);
+        flatState.commit(root(2));
+
+        assertThat(flatState.getAccount(ADDRESS, root(2))).isEmpty();
+        assertThat(FlatStateStore.decodeStorageValue(flatState.getStorage(ADDRESS, KEY, root(2)))).isNull();
+    }
+
+    @Test
+    public void testMoveToSideChainAndBack() {
+        // main chain: 0 -> 1 -> 2
+        flatState.stageAccount(ADDRESS, account(1, root(100)));
+        flatState.stageStorage(ADDRESS, KEY, storageValue(1));
+        flatState.commit(root(1));
+        flatState.stageAccount(ADDRESS, account(2, root(100)));
+        flatState.stageStorage(ADDRESS, KEY, null);
+        flatState.commit(root(2));
+
+        // side chain: 1 -> 3
+        assertThat(flatState.moveTo(root(1))).isTrue();
+        assertThat(flatState.getAccount(ADDRESS, root(1))).isEqualTo(account(1, root(100)));
+        assertThat(flatState.getStorage(ADDRESS, KEY, root(1))).isEqualTo(storageValue(1));
+        flatState.stageAccount(ADDRESS, account(3, root(100)));
+        flatState.stageAccount(address(2), account(3, ConstantUtil.EMPTY_TRIE_HASH));
+        flatState.commit(root(3));
+
+        // back to the main chain
+        assertThat(flatState.moveTo(root(2))).isTrue();
+        assertThat(flatState.getAccount(ADDRESS, root(2))).isEqualTo(account(2, root(100)));
+        assertThat(flatState.getAccount(address(2), root(2))).isEmpty();
+        assertThat(FlatStateStore.decodeStorageValue(flatState.getStorage(ADDRESS, KEY, root(2)))).isNull();
+
+        // and to the side chain again
+        assertThat(flatState.moveTo(root(3))).isTrue();
+        assertThat(flatState.getAccount(ADDRESS, root(3))).isEqualTo(account(3, root(100)));
+        assertThat(flatState.getAccount(address(2), root(3))).isEqualTo(account(3, ConstantUtil.EMPTY_TRIE_HASH));
+        assertThat(flatState.getStorage(ADDRESS, KEY, root(3))).isEqualTo(storageValue(1));
+    }
+
+    @Test
+    public void testMoveToBranchStagedWithoutWriting() {
+        // main chain: 0 -> 1 -> 2
+        flatState.stageAccount(ADDRESS, account(1, root(100)));
+        flatState.stageStorage(ADDRESS, KEY, storageValue(1));
+        flatState.commit(root(1));
+        flatState.stageAccount(ADDRESS, account(2, root(100)));
+        flatState.commit(root(2));
+
+        // side chain imported on top of 1 while the head stays at 2: 1 -> 3 -> 4
+        FlatStateStore.Branch branch = flatState.newBranch(root(1));
+        branch.stageAccount(ADDRESS, account(3, root(100)));
+        branch.stageStorage(ADDRESS, KEY, storageValue(3));
+        branch.commit(root(3));
+        branch.stageAccount(address(2), account(4, ConstantUtil.EMPTY_TRIE_HASH));
+        branch.commit(root(4));
+
+        // a failed block does not leave changes behind
+        branch.stageAccount(address(3), account(5, ConstantUtil.EMPTY_TRIE_HASH));
+        branch.reset(root(4));
+
+        assertThat(flatState.getRoot()).isEqualTo(root(2));
+        assertThat(flatState.getAccount(ADDRESS, root(2))).isEqualTo(account(2, root(100)));
+        assertThat(flatState.getAccount(address(2), root(2))).isEmpty();
+
+        // the side chain becomes the main chain
+        assertThat(flatState.moveTo(root(4))).isTrue();
+        assertThat(flatState.getAccount(ADDRESS, root(4))).isEqualTo(account(3, root(100)));
+        assertThat(flatState.getStorage(ADDRESS, KEY, root(4))).isEqualTo(storageValue(3));
+        assertThat(flatState.getAccount(address(2), root(4))).isEqualTo(account(4, ConstantUtil.EMPTY_TRIE_HASH));
+        assertThat(flatState.getAccount(address(3), root(4))).isEmpty();
+
+        // the applied branch can be reverted like the main chain
+        assertThat(flatState.moveTo(root(2))).isTrue();
+        assertThat(flatState.getAccount(ADDRESS, root(2))).isEqualTo(account(2, root(100)));
+        assertThat(flatState.getStorage(ADDRESS, KEY, root(2))).isEqualTo(storageValue(1));
+        assertThat(flatState.getAccount(address(2), root(2))).isEmpty();
+        assertThat(flatState.isUsable()).isTrue();
+    }
+
+    @Test
+    public void testMoveToUnknownRootDisablesFlatState() {
+        flatState.stageAccount(ADDRESS, account(1, root(100)));
+        flatState.commit(root(1));
+
+        assertThat(flatState.moveTo(root(5))).isFalse();
+        assertThat(flatState.isUsable()).isFalse();
+        assertThat(flatState.getAccount(ADDRESS, root(1))).isNull();
+
+        // staged changes are ignored while disabled
+        flatState.stageAccount(ADDRESS, account(2, root(100)));
+        flatState.commit(root(2));
+        assertThat(flatState.isUsable()).isFalse();
+        assertThat(new FlatStateStore(db).isUsable()).isFalse();
+    }
+
+    @Test
+    public void testRevertBeyondRetainedLayersDisablesFlatState() {
+        FlatStateStore limited = new FlatStateStore(db, 2);
+        for (int i = 1; i <= 3; i++) {
+            limited.stageAccount(ADDRESS, account(i, root(100)));
+            limited.commit(root(i));
+        }
+
+        assertThat(limited.moveTo(root(1))).isTrue();
+        assertThat(limited.moveTo(ConstantUtil.EMPTY_TRIE_HASH)).isFalse();
+        assertThat(limited.isUsable()).isFalse();
+    }
+
+    @Test
+    public void testRebuildAndCheck() {
+        MockDB stateDB = new MockDB("state", log);
+        stateDB.open();
+        SecureTrie storageTrie = new SecureTrie(stateDB);
+        storageTrie.update(KEY.toBytes(), storageValue(7));
+        SecureTrie worldState = new SecureTrie(stateDB);
+        worldState.update(ADDRESS.toByteArray(), account(10, storageTrie.getRootHash()));
+        worldState.update(address(2).toByteArray(), account(20, ConstantUtil.EMPTY_TRIE_HASH));
+        worldState.sync();
+
+        List<ByteArrayWrapper> contracts = Collections.singletonList(ByteArrayWrapper.wrap(ADDRESS.toByteArray()));
+        FlatStateStore.ContractStorage storage =
+                (address, account, visitor) -> storageTrie.forEachEntry(account.getStateRoot(), visitor);
+
+        // the current content does not match the trie
+        assertThat(flatState.check(worldState, contracts.iterator(), storage, log)).isGreaterThan(0L);
+
+        assertThat(flatState.rebuild(worldState, contracts.iterator(), storage, log)).isEqualTo(3L);
+        assertThat(flatState.check(worldState, contracts.iterator(), storage, log)).isEqualTo(0L);
+
+        byte[] stateRoot = worldState.getRootHash();
+        assertThat(flatState.getAccount(address(2), stateRoot)).isEqualTo(account(20, ConstantUtil.EMPTY_TRIE_HASH));
+        assertThat(flatState.getStorage(ADDRESS, KEY, stateRoot)).isEqualTo(storageValue(7));
+
+        // entries missing from the trie are detected
+        flatState.stageAccount(address(3), account(30, ConstantUtil.EMPTY_TRIE_HASH));
+        flatState.commit(root(1));
+        assertThat(flatState.check(worldState, contracts.iterator(), storage, log)).isGreaterThan(0L);
+    }
+}
@@ -0,0 +1,137 @@
+package org.aion.zero.impl.db;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import org.aion.base.AionTxReceipt;
+import org.aion.base.Bloom;
+import org.aion.db.impl.mockdb.MockDB;
+import org.aion.types.Log;
+import org.aion.zero.impl.core.BloomFilter;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares answering a log query over a large block range by testing the bloom of every block and
+ * reading the receipts of the matching ones with reading only the receipts of the candidate
+ * blocks returned by the {@link LogIndexStore}.
+ */
+public class LogIndexBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger("DB");
+
+    private static final int BLOCKS = 200_000;
+    private static final int CONTRACTS = 500;
+    private static final int EVENTS = 50;
+    // one block in ten contains logs
+    private static final int LOG_RATE = 10;
+    private static final int QUERIES = 20;
+
+    private final Random r = new Random(25);
+
+    private static byte[] key(long number) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(number).array();
+    }
+
+    private static byte[] word(int prefix, int i) {
+        byte[] bytes = new byte[32];
+        bytes[0] = (byte) prefix;
+        bytes[30] = (byte) (i >>> 8);
+        bytes[31] = (byte) i;
+        return bytes;
+    }
+
+    /** @return the number of logs of the receipt stored for the given block matching the address */
+    private static int countMatches(MockDB receipts, long number, byte[] address) {
+        Optional<byte[]> encoding = receipts.get(key(number));
+        if (!encoding.isPresent()) {
+            return 0;
+        }
+        int count = 0;
+        for (Log logInfo : new AionTxReceipt(encoding.get()).getLogInfoList()) {
+            if (Arrays.equals(logInfo.copyOfAddress(), address)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void queryByAddress() {
+        MockDB blooms = new MockDB("blooms", log);
+        blooms.open();
+        MockDB receipts = new MockDB("receipts", log);
+        receipts.open();
+        MockDB indexDb = new MockDB("log-index", log);
+        indexDb.open();
+        LogIndexStore logIndex = new LogIndexStore(indexDb);
+        logIndex.open(-1);
+
+        for (long number = 0; number < BLOCKS; number++) {
+            List<AionTxReceipt> blockReceipts = Collections.emptyList();
+            if (number > 0 && r.nextInt(LOG_RATE) == 0) {
+                List<Log> logs = new ArrayList<>();
+                for (int i = 1 + r.nextInt(3); i > 0; i--) {
+                    logs.add(
+                            Log.topicsAndData(
+                                    word(0xa0, r.nextInt(CONTRACTS)),
+                                    List.of(word(0, r.nextInt(EVENTS))),
+                                    new byte[0]));
+                }
+                AionTxReceipt receipt = new AionTxReceipt();
+                receipt.setLogs(logs);
+                receipts.put(key(number), receipt.getEncoded());
+                blooms.put(key(number), receipt.getBloomFilter().getBloomFilterBytes());
+                blockReceipts = List.of(receipt);
+            } else {
+                blooms.put(key(number), new Bloom().getBloomFilterBytes());
+            }
+            logIndex.index(number, blockReceipts);
+        }
+
+        long bloomTime = 0, indexTime = 0;
+        int bloomReads = 0, indexReads = 0;
+        for (int query = 0; query < QUERIES; query++) {
+            byte[] address = word(0xa0, r.nextInt(CONTRACTS));
+
+            long start = System.nanoTime();
+            Bloom filterBloom = BloomFilter.create(address);
+            int bloomMatches = 0;
+            for (long number = 0; number < BLOCKS; number++) {
+                if (new Bloom(blooms.get(key(number)).get()).contains(filterBloom)) {
+                    bloomMatches += countMatches(receipts, number, address);
+                    bloomReads++;
+                }
+            }
+            bloomTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int indexMatches = 0;
+            long[] candidates = logIndex.getCandidateBlocks(0, BLOCKS - 1, List.of(address), List.of());
+            for (long number : candidates) {
+                indexMatches += countMatches(receipts, number, address);
+            }
+            indexReads += candidates.length;
+            indexTime += System.nanoTime() - start;
+
+            assertThat(indexMatches).isEqualTo(bloomMatches);
+        }
+
+        log.info(
+                String.format(
+                        "Queried one address over %d blocks %d times: bloom scan %.1f ms (%d receipts read), log index %.1f ms (%d receipts read)",
+                        BLOCKS,
+                        QUERIES,
+                        bloomTime / 1_000_000d,
+                        bloomReads,
+                        indexTime / 1_000_000d,
+                        indexReads));
+    }
+}
@@ -0,0 +1,209 @@
+package org.aion.zero.impl.db;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.aion.base.AionTxReceipt;
+import org.aion.db.impl.mockdb.MockDB;
+import org.aion.types.Log;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Tests for the {@link LogIndexStore}. */
+public class LogIndexStoreTest {
+
+    private static final Logger log = LoggerFactory.getLogger("DB");
+
+    private static final byte[] ADDRESS_1 = address(1);
+    private static final byte[] ADDRESS_2 = address(2);
+    private static final byte[] TOPIC_A = topic(0xa);
+    private static final byte[] TOPIC_B = topic(0xb);
+
+    private MockDB db;
+    private LogIndexStore logIndex;
+
+    @Before
+    public void setup() {
+        db = new MockDB("log-index", log);
+        db.open();
+        logIndex = new LogIndexStore(db);
+        logIndex.open(-1);
+    }
+
+    private static byte[] address(int i) {
+        byte[] bytes = new byte[32];
+        bytes[0] = (byte) 0xa0;
+        bytes[31] = (byte) i;
+        return bytes;
+    }
+
+    private static byte[] topic(int i) {
+        byte[] bytes = new byte[32];
+        bytes[31] = (byte) i;
+        return bytes;
+    }
+
+    private static AionTxReceipt receipt(byte[] address, byte[]... topics) {
+        AionTxReceipt receipt = new AionTxReceipt();
+        List<Log> logs = new ArrayList<>();
+        logs.add(Log.topicsAndData(address, List.of(topics), new byte[0]));
+        receipt.setLogs(logs);
+        return receipt;
+    }
+
+    private static List<byte[][]> topics(byte[][]... topics) {
+        List<byte[][]> list = new ArrayList<>();
+        Collections.addAll(list, topics);
+        return list;
+    }
+
+    /** Indexes the blocks from 0 to the given number with logs only in the given blocks. */
+    private void importBlocks(long to, Map<Long, List<AionTxReceipt>> receipts) {
+        for (long number = logIndex.getLastIndexed() + 1; number <= to; number++) {
+            logIndex.index(number, receipts.getOrDefault(number, Collections.emptyList()));
+        }
+    }
+
+    private Map<Long, List<AionTxReceipt>> sampleReceipts() {
+        Map<Long, List<AionTxReceipt>> receipts = new HashMap<>();
+        receipts.put(3L, List.of(receipt(ADDRESS_1, TOPIC_A)));
+        receipts.put(5L, List.of(receipt(ADDRESS_2, TOPIC_B, TOPIC_A)));
+        receipts.put(4100L, List.of(receipt(ADDRESS_1, TOPIC_B), receipt(ADDRESS_2, TOPIC_A)));
+        receipts.put(9000L, List.of(receipt(ADDRESS_2)));
+        return receipts;
+    }
+
+    @Test
+    public void testNewDatabase() {
+        assertThat(logIndex.covers(0, 0)).isFalse();
+
+        logIndex.index(0, Collections.emptyList());
+        assertThat(logIndex.covers(0, 0)).isTrue();
+        assertThat(logIndex.getCandidateBlocks(0, 0, List.of(), List.of())).isEmpty();
+    }
+
+    @Test
+    public void testCandidates() {
+        importBlocks(10_000, sampleReceipts());
+        assertThat(logIndex.getFirstIndexed()).isEqualTo(0);
+        assertThat(logIndex.getLastIndexed()).isEqualTo(10_000);
+
+        // any log
+        assertThat(logIndex.getCandidateBlocks(0, 10_000, List.of(), List.of()))
+                .isEqualTo(new long[] {3, 5, 4100, 9000});
+        // by address
+        assertThat(logIndex.getCandidateBlocks(0, 10_000, List.of(ADDRESS_1), List.of()))
+                .isEqualTo(new long[] {3, 4100});
+        assertThat(logIndex.getCandidateBlocks(0, 10_000, List.of(ADDRESS_1, ADDRESS_2), List.of()))
+                .isEqualTo(new long[] {3, 5, 4100, 9000});
+        // by topic position
+        assertThat(logIndex.getCandidateBlocks(0, 10_000, List.of(), topics(new byte[][] {TOPIC_A})))
+                .isEqualTo(new long[] {3, 4100});
+        assertThat(logIndex.getCandidateBlocks(0, 10_000, List.of(), topics(null, new byte[][] {TOPIC_A})))
+                .isEqualTo(new long[] {5});
+        assertThat(logIndex.getCandidateBlocks(0, 10_000, List.of(), topics(new byte[][] {TOPIC_A, TOPIC_B})))
+                .isEqualTo(new long[] {3, 5, 4100});
+        // address and topic
+        assertThat(logIndex.getCandidateBlocks(0, 10_000, List.of(ADDRESS_2), topics(new byte[][] {TOPIC_A})))
+                .isEqualTo(new long[] {4100});
+        assertThat(logIndex.getCandidateBlocks(0, 10_000, List.of(address(3)), List.of())).isEmpty();
+        // within the range
+        assertThat(logIndex.getCandidateBlocks(4, 4100, List.of(), List.of()))
+                .isEqualTo(new long[] {5, 4100});
+    }
+
+    @Test
+    public void testRangeNotIndexed() {
+        importBlocks(100, sampleReceipts());
+
+        assertThat(logIndex.getCandidateBlocks(0, 101, List.of(), List.of())).isNull();
+        assertThat(logIndex.getCandidateBlocks(0, 100, List.of(), List.of())).isNotNull();
+    }
+
+    @Test
+    public void testReopen() {
+        importBlocks(100, sampleReceipts());
+
+        LogIndexStore reopened = new LogIndexStore(db);
+        reopened.open(100);
+        assertThat(reopened.getFirstIndexed()).isEqualTo(0);
+        assertThat(reopened.getLastIndexed()).isEqualTo(100);
+        assertThat(reopened.getCandidateBlocks(0, 100, List.of(), List.of()))
+                .isEqualTo(new long[] {3, 5});
+    }
+
+    @Test
+    public void testOpenAfterRevert() {
+        importBlocks(100, sampleReceipts());
+
+        logIndex.open(50);
+        assertThat(logIndex.getLastIndexed()).isEqualTo(50);
+        assertThat(logIndex.covers(0, 51)).isFalse();
+    }
+
+    @Test
+    public void testTruncateAfterReorganization() {
+        importBlocks(100, sampleReceipts());
+
+        // the main chain moved to a shorter branch
+        logIndex.truncate(60);
+        assertThat(logIndex.getLastIndexed()).isEqualTo(60);
+        assertThat(logIndex.covers(0, 61)).isFalse();
+
+        // truncating to a higher block does not extend the range
+        logIndex.truncate(80);
+        assertThat(logIndex.getLastIndexed()).isEqualTo(60);
+
+        // the blocks of the new branch are indexed on top of the entries of the removed blocks
+        logIndex.index(61, List.of(receipt(ADDRESS_2)));
+        assertThat(logIndex.getLastIndexed()).isEqualTo(61);
+        assertThat(logIndex.getCandidateBlocks(0, 61, List.of(ADDRESS_2), List.of()))
+                .isEqualTo(new long[] {5, 61});
+    }
+
+    @Test
+    public void testOpenWithBlocksNotIndexed() {
+        importBlocks(100, sampleReceipts());
+
+        // blocks 101 to 4200 were imported while the index was disabled
+        logIndex.open(4200);
+        assertThat(logIndex.covers(0, 100)).isFalse();
+
+        logIndex.index(4201, List.of(receipt(ADDRESS_1)));
+        assertThat(logIndex.getFirstIndexed()).isEqualTo(4201);
+        assertThat(logIndex.getCandidateBlocks(4201, 4201, List.of(ADDRESS_1), List.of()))
+                .isEqualTo(new long[] {4201});
+    }
+
+    @Test
+    public void testBackfill() {
+        Map<Long, List<AionTxReceipt>> receipts = sampleReceipts();
+        LogIndexStore notIndexed = new LogIndexStore(db);
+        notIndexed.open(9500);
+        notIndexed.index(9501, Collections.emptyList());
+
+        long count = notIndexed.backfill(0, 9500, n -> receipts.getOrDefault(n, Collections.emptyList()), log);
+        assertThat(count).isEqualTo(4);
+        assertThat(notIndexed.getFirstIndexed()).isEqualTo(0);
+        assertThat(notIndexed.getLastIndexed()).isEqualTo(9501);
+        assertThat(notIndexed.getCandidateBlocks(0, 9501, List.of(ADDRESS_2), List.of()))
+                .isEqualTo(new long[] {5, 4100, 9000});
+    }
+
+    @Test
+    public void testBackfillMergesWithIndexedBlocks() {
+        importBlocks(4100, sampleReceipts());
+
+        // the same section contains indexed and backfilled blocks
+        logIndex.backfill(4101, 4105, n -> List.of(receipt(ADDRESS_1)), log);
+        assertThat(logIndex.getLastIndexed()).isEqualTo(4105);
+        assertThat(logIndex.getCandidateBlocks(0, 4105, List.of(ADDRESS_1), List.of()))
+                .isEqualTo(new long[] {3, 4100, 4101, 4102, 4103, 4104, 4105});
+    }
+}
@@ -0,0 +1,112 @@
+package org.aion.zero.impl.db;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import org.aion.base.AccountState;
+import org.aion.base.AionTransaction;
+import org.aion.base.TransactionTypes;
+import org.aion.crypto.ECKey;
+import org.aion.crypto.ECKeyFac;
+import org.aion.db.impl.DBVendor;
+import org.aion.db.impl.DatabaseFactory;
+import org.aion.mcf.db.RepositoryCache;
+import org.aion.types.AionAddress;
+import org.aion.zero.impl.config.CfgPrune;
+import org.aion.zero.impl.config.PruneConfig;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for the {@link StatePrefetcher}. */
+public class StatePrefetcherTest {
+
+    private AionRepositoryImpl repository;
+    private StatePrefetcher prefetcher;
+
+    @Before
+    public void setup() {
+        RepositoryConfig repoConfig =
+                new RepositoryConfig() {
+                    @Override
+                    public String getDbPath() {
+                        return "";
+                    }
+
+                    @Override
+                    public PruneConfig getPruneConfig() {
+                        return new CfgPrune(false);
+                    }
+
+                    @Override
+                    public Properties getDatabaseConfig(String db_name) {
+                        Properties props = new Properties();
+                        props.setProperty(DatabaseFactory.Props.DB_TYPE, DBVendor.MOCKDB.toValue());
+                        return props;
+                    }
+                };
+        repository = AionRepositoryImpl.createForTesting(repoConfig);
+        prefetcher = new StatePrefetcher(2);
+    }
+
+    @After
+    public void tearDown() {
+        prefetcher.shutdown();
+    }
+
+    private static AionTransaction transaction(ECKey sender, AionAddress destination) {
+        return AionTransaction.create(
+                sender,
+                BigInteger.ZERO.toByteArray(),
+                destination,
+                BigInteger.ONE.toByteArray(),
+                new byte[0],
+                21_000L,
+                10_000_000_000L,
+                TransactionTypes.DEFAULT,
+                null);
+    }
+
+    @Test
+    public void testCollectAddresses() {
+        ECKey sender = ECKeyFac.inst().create();
+        AionAddress senderAddress = new AionAddress(sender.getAddress());
+        AionAddress destination = new AionAddress(RandomUtils.nextBytes(AionAddress.LENGTH));
+
+        List<AionTransaction> transactions =
+                Arrays.asList(
+                        transaction(sender, destination),
+                        transaction(sender, senderAddress),
+                        transaction(sender, null));
+
+        assertThat(StatePrefetcher.collectAddresses(transactions))
+                .containsExactly(senderAddress, destination)
+                .inOrder();
+    }
+
+    @Test
+    public void testPrefetchMetrics() {
+        ECKey sender = ECKeyFac.inst().create();
+        AionAddress senderAddress = new AionAddress(sender.getAddress());
+        AionAddress destination = new AionAddress(RandomUtils.nextBytes(AionAddress.LENGTH));
+
+        RepositoryCache<AccountState> tempCache = repository.startTracking();
+        tempCache.addBalance(senderAddress, BigInteger.TEN);
+        tempCache.flush();
+
+        AionRepositoryCache track = (AionRepositoryCache) repository.startTracking();
+        prefetcher.prefetch(track, Arrays.asList(transaction(sender, destination)));
+        assertThat(prefetcher.getPrefetchedCount()).isEqualTo(2);
+
+        // only the sender is accessed
+        assertThat(track.getBalance(senderAddress)).isEqualTo(BigInteger.TEN);
+        prefetcher.recordUsage(track);
+
+        assertThat(prefetcher.getHitCount()).isEqualTo(1);
+        assertThat(prefetcher.getHitRatio()).isEqualTo(0.5);
+    }
+}
@@ -0,0 +1,135 @@
+package org.aion.zero.impl.pendingState;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.aion.base.AionTransaction;
+import org.aion.base.TransactionTypeRule;
+import org.aion.base.TransactionTypes;
+import org.aion.crypto.ECKey;
+import org.aion.types.AionAddress;
+import org.aion.zero.impl.blockchain.AionHub;
+import org.aion.zero.impl.blockchain.AionImpl;
+import org.aion.zero.impl.blockchain.AionImpl.NetworkBestBlockCallback;
+import org.aion.zero.impl.blockchain.AionImpl.PendingTxCallback;
+import org.aion.zero.impl.blockchain.AionImpl.TransactionBroadcastCallback;
+import org.aion.zero.impl.blockchain.BlockchainTestUtils;
+import org.aion.zero.impl.blockchain.StandaloneBlockchain;
+import org.aion.zero.impl.config.CfgAion;
+import org.aion.zero.impl.vm.AvmTestConfig;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Floods the pending state with gossip batches of signed transactions from several threads, the
+ * way the broadcast handlers of many peers would, and reports the sustained rate of transactions
+ * accepted into the pool. The batches are out of nonce order and repeat transactions already
+ * received.
+ */
+public class PendingStateIngestionBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger("TX");
+
+    private static final int SENDERS = 100;
+    private static final int TX_PER_SENDER = 20;
+    private static final int FLOOD_THREADS = 4;
+    private static final int BATCH = 250;
+
+    private final Random r = new Random(23);
+
+    @BeforeClass
+    public static void setup() {
+        TransactionTypeRule.allowAVMContractTransaction();
+        AvmTestConfig.supportOnlyAvmVersion1();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        AvmTestConfig.clearConfigurations();
+    }
+
+    @Test
+    public void floodFromNetwork() throws Exception {
+        List<ECKey> accounts = BlockchainTestUtils.generateAccounts(SENDERS);
+        StandaloneBlockchain blockchain =
+                new StandaloneBlockchain.Builder()
+                        .withDefaultAccounts(accounts)
+                        .withValidatorConfiguration("simple")
+                        .withAvmEnabled()
+                        .build()
+                        .bc;
+        CfgAion.inst().setGenesis(blockchain.getGenesis());
+        AionPendingStateImpl pendingState =
+                AionHub.createForTesting(
+                                CfgAion.inst(),
+                                blockchain,
+                                new PendingTxCallback(new ArrayList<>()),
+                                new NetworkBestBlockCallback(AionImpl.inst()),
+                                new TransactionBroadcastCallback(AionImpl.inst()))
+                        .getPendingState();
+
+        List<AionTransaction> transactions = new ArrayList<>();
+        for (ECKey sender : accounts) {
+            List<AionTransaction> txs = new ArrayList<>();
+            for (int nonce = 0; nonce < TX_PER_SENDER; nonce++) {
+                txs.add(
+                        AionTransaction.create(
+                                sender,
+                                BigInteger.valueOf(nonce).toByteArray(),
+                                new AionAddress(accounts.get(r.nextInt(SENDERS)).getAddress()),
+                                BigInteger.ONE.toByteArray(),
+                                new byte[0],
+                                21_000L,
+                                10_000_000_000L,
+                                TransactionTypes.DEFAULT,
+                                null));
+            }
+            // the gossip does not preserve the nonce order
+            Collections.swap(txs, 0, 1 + r.nextInt(TX_PER_SENDER - 1));
+            transactions.addAll(txs);
+        }
+
+        List<List<AionTransaction>> batches = new ArrayList<>();
+        for (int from = 0; from < transactions.size(); from += BATCH) {
+            List<AionTransaction> batch =
+                    new ArrayList<>(transactions.subList(from, Math.min(from + BATCH, transactions.size())));
+            if (from > 0) {
+                // repeated gossip from other peers
+                batch.addAll(transactions.subList(from - BATCH / 2, from));
+            }
+            batches.add(batch);
+        }
+
+        ExecutorService flood = Executors.newFixedThreadPool(FLOOD_THREADS);
+        long start = System.nanoTime();
+        List<Future<?>> submitted = new ArrayList<>();
+        for (List<AionTransaction> batch : batches) {
+            submitted.add(flood.submit(() -> pendingState.addTransactionsFromNetwork(batch)));
+        }
+        for (Future<?> future : submitted) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        flood.shutdown();
+
+        int accepted = pendingState.getPendingTxSize() + pendingState.getCachePoolSize();
+        assertEquals(transactions.size(), accepted);
+        log.info(
+                String.format(
+                        "Accepted %d network tx in %.1f ms from %d threads: %.0f tx/s",
+                        accepted,
+                        elapsed / 1_000_000d,
+                        FLOOD_THREADS,
+                        accepted * 1_000_000_000d / elapsed));
+    }
+}
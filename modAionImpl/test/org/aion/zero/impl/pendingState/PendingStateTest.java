@@ -15,15 +15,19 @@ import org.aion.base.AionTransaction;
 import org.aion.base.TransactionTypes;
 import org.aion.base.TxUtil;
 import org.aion.crypto.ECKey;
+import org.aion.crypto.ECKeyFac;
 import org.aion.db.utils.FileUtils;
 import org.aion.txpool.Constant;
+import org.aion.precompiled.ContractInfo;
 import org.aion.zero.impl.blockchain.AionHub;
 import org.aion.zero.impl.blockchain.AionImpl;
 import org.aion.zero.impl.blockchain.AionImpl.NetworkBestBlockCallback;
 import org.aion.zero.impl.blockchain.AionImpl.PendingTxCallback;
 import org.aion.zero.impl.blockchain.AionImpl.TransactionBroadcastCallback;
+import org.aion.zero.impl.blockchain.BlockchainCallbackInterface;
 import org.aion.zero.impl.blockchain.StandaloneBlockchain;
 import org.aion.zero.impl.blockchain.StandaloneBlockchain.Bundle;
+import org.aion.zero.impl.types.PendingTxDetails;
 import org.aion.zero.impl.types.TxResponse;
 import org.aion.zero.impl.core.ImportResult;
 import org.aion.base.TransactionTypeRule;
@@ -779,6 +783,64 @@ public class PendingStateTest {
         }
     }
 
+    @Test
+    public void addTransactionFromNetworkOutOfOrderTest() {
+        List<AionTransaction> mockTransactions = getMockTransaction(0, 300, 0);
+        List<AionTransaction> received = new ArrayList<>(mockTransactions);
+        Collections.reverse(received);
+        // repeated gossip of the same transactions
+        received.addAll(mockTransactions.subList(0, 10));
+
+        pendingState.addTransactionsFromNetwork(received);
+        assertEquals(300, pendingState.getPendingTxSize());
+        assertEquals(0, pendingState.getCachePoolSize());
+    }
+
+    @Test
+    public void addRejectedTransactionFromNetworkAgainTest() {
+        ECKey senderKey = ECKeyFac.inst().create();
+        AionTransaction tx =
+                AionTransaction.create(
+                        senderKey,
+                        BigInteger.ZERO.toByteArray(),
+                        new AionAddress(new byte[32]),
+                        BigInteger.ZERO.toByteArray(),
+                        new byte[0],
+                        Constant.MIN_ENERGY_CONSUME,
+                        energyPrice,
+                        TransactionTypes.DEFAULT,
+                        null);
+
+        // the sender cannot pay for the energy yet
+        pendingState.addTransactionsFromNetwork(Collections.singletonList(tx));
+        assertEquals(0, pendingState.getPendingTxSize());
+
+        AionTransaction fundingTx =
+                AionTransaction.create(
+                        deployerKey,
+                        BigInteger.ZERO.toByteArray(),
+                        new AionAddress(senderKey.getAddress()),
+                        BigInteger.TEN.pow(18).toByteArray(),
+                        new byte[0],
+                        Constant.MIN_ENERGY_CONSUME,
+                        energyPrice,
+                        TransactionTypes.DEFAULT,
+                        null);
+        assertEquals(TxResponse.SUCCESS, pendingState.addTransactionFromApiServer(fundingTx));
+
+        AionBlock block =
+                blockchain.createNewMiningBlock(
+                        blockchain.getBestBlock(), pendingState.getPendingTransactions(), false);
+        Pair<ImportResult, AionBlockSummary> connectResult = blockchain.tryToConnectAndFetchSummary(block);
+        assertThat(connectResult.getLeft()).isEqualTo(ImportResult.IMPORTED_BEST);
+        pendingState.applyBlockUpdate(block, connectResult.getRight().getReceipts());
+        assertEquals(0, pendingState.getPendingTxSize());
+
+        // the rejected transaction is not skipped as repeated gossip
+        pendingState.addTransactionsFromNetwork(Collections.singletonList(tx));
+        assertEquals(1, pendingState.getPendingTxSize());
+    }
+
     @Test
     public void addTransactionsFromCacheTest() {
         List<AionTransaction> transactionsInPool = getMockTransaction(0, 5, 0);
@@ -899,4 +961,179 @@ public class PendingStateTest {
         assertEquals(0 , pendingState.getCachePoolSize());
         assertEquals(cachedTx.get(1), pendingState.getPendingTransactions().get(0));
     }
+
+    private AionTransaction transfer(ECKey sender, int nonce, AionAddress destination, BigInteger value) {
+        return AionTransaction.create(
+            sender,
+            BigInteger.valueOf(nonce).toByteArray(),
+            destination,
+            value.toByteArray(),
+            new byte[0],
+            21000,
+            energyPrice,
+            TransactionTypes.DEFAULT, null);
+    }
+
+    @Test
+    public void keepPendingStateOfSendersNotInBlock() {
+        List<AionTransaction> sealed = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ECKey sender = bundle.privateKeys.get(i);
+            for (int nonce = 0; nonce < 2; nonce++) {
+                AionTransaction tx = transfer(sender, nonce, new AionAddress(ECKeyFac.inst().create().getAddress()), BigInteger.ONE);
+                assertEquals(TxResponse.SUCCESS, pendingState.addTransactionFromApiServer(tx));
+                if (nonce == 0 && i < 2) {
+                    sealed.add(tx);
+                }
+            }
+        }
+        assertEquals(6, pendingState.getPendingTxSize());
+
+        AionBlock block = blockchain.createNewMiningBlock(blockchain.getBestBlock(), sealed, false);
+        Pair<ImportResult, AionBlockSummary> connectResult = blockchain.tryToConnectAndFetchSummary(block);
+        assertEquals(ImportResult.IMPORTED_BEST, connectResult.getLeft());
+
+        assertEquals(4, pendingState.getPendingTxSize());
+        for (int i = 0; i < 3; i++) {
+            AionAddress sender = new AionAddress(bundle.privateKeys.get(i).getAddress());
+            assertEquals(BigInteger.TWO, pendingState.bestPendingStateNonce(sender));
+        }
+    }
+
+    @Test
+    public void rerunSendersThatRanCode() {
+        List<PendingTxDetails> updates = new ArrayList<>();
+        pendingState = AionHub.createForTesting(CfgAion.inst(), blockchain,
+            new PendingTxCallback(Collections.singletonList(new UpdateRecorder(updates))), new NetworkBestBlockCallback(AionImpl.inst()), new TransactionBroadcastCallback(AionImpl.inst())).getPendingState();
+
+        AionTransaction transfer = transfer(bundle.privateKeys.get(0), 0, new AionAddress(ECKeyFac.inst().create().getAddress()), BigInteger.ONE);
+        AionTransaction call =
+            AionTransaction.create(
+                bundle.privateKeys.get(1),
+                BigInteger.ZERO.toByteArray(),
+                ContractInfo.BLAKE_2B.contractAddress,
+                BigInteger.ZERO.toByteArray(),
+                new byte[32],
+                100_000L,
+                energyPrice,
+                TransactionTypes.DEFAULT, null);
+        assertEquals(TxResponse.SUCCESS, pendingState.addTransactionFromApiServer(transfer));
+        assertEquals(TxResponse.SUCCESS, pendingState.addTransactionFromApiServer(call));
+        AionTxReceipt transferReceipt = updates.get(0).receipt;
+        AionTxReceipt callReceipt = updates.get(1).receipt;
+        updates.clear();
+
+        AionTransaction sealed = transfer(bundle.privateKeys.get(2), 0, new AionAddress(new byte[32]), BigInteger.ONE);
+        AionBlock block =
+            blockchain.createNewMiningBlock(
+                blockchain.getBestBlock(), Collections.singletonList(sealed), false);
+        assertEquals(ImportResult.IMPORTED_BEST, blockchain.tryToConnectAndFetchSummary(block).getLeft());
+        assertEquals(2, pendingState.getPendingTxSize());
+
+        // the plain transfer is kept while the call, which can read the block context, is executed again
+        int kept = 0;
+        int rerun = 0;
+        for (PendingTxDetails update : updates) {
+            if (update.receipt.getTransaction().equals(transfer)) {
+                assertThat(update.receipt).isSameAs(transferReceipt);
+                kept++;
+            } else if (update.receipt.getTransaction().equals(call)) {
+                assertThat(update.receipt).isNotSameAs(callReceipt);
+                rerun++;
+            }
+        }
+        assertEquals(1, kept);
+        assertEquals(1, rerun);
+    }
+
+    /** Records the pending transaction updates. */
+    private static final class UpdateRecorder implements BlockchainCallbackInterface {
+        private final List<PendingTxDetails> updates;
+
+        private UpdateRecorder(List<PendingTxDetails> updates) {
+            this.updates = updates;
+        }
+
+        @Override
+        public boolean isForApiServer() {
+            return true;
+        }
+
+        @Override
+        public void pendingTxReceived(AionTransaction tx) {}
+
+        @Override
+        public void pendingTxUpdated(PendingTxDetails txDetails) {
+            updates.add(txDetails);
+        }
+    }
+
+    @Test
+    public void keepCoinbaseFeesOfKeptSenders() {
+        List<AionTransaction> firstSealed = new ArrayList<>();
+        List<AionTransaction> secondSealed = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ECKey sender = bundle.privateKeys.get(i);
+            for (int nonce = 0; nonce < 2; nonce++) {
+                AionTransaction tx = transfer(sender, nonce, new AionAddress(ECKeyFac.inst().create().getAddress()), BigInteger.ONE);
+                assertEquals(TxResponse.SUCCESS, pendingState.addTransactionFromApiServer(tx));
+                if (nonce == 0 && i == 0) {
+                    firstSealed.add(tx);
+                } else if (nonce == 0 && i == 1) {
+                    secondSealed.add(tx);
+                }
+            }
+        }
+        assertEquals(6, pendingState.getPendingTxSize());
+        BigInteger fee = BigInteger.valueOf(21000 * energyPrice);
+
+        AionBlock block = blockchain.createNewMiningBlock(blockchain.getBestBlock(), firstSealed, false);
+        assertEquals(ImportResult.IMPORTED_BEST, blockchain.tryToConnectAndFetchSummary(block).getLeft());
+        assertEquals(5, pendingState.getPendingTxSize());
+
+        // the senders not in the block are kept and their fees are still paid to the coinbase
+        AionAddress coinbase = block.getCoinbase();
+        BigInteger blockBalance = blockchain.getRepository().getBalance(coinbase);
+        assertEquals(blockBalance.add(fee.multiply(BigInteger.valueOf(5))), pendingState.getRepository().getBalance(coinbase));
+
+        block = blockchain.createNewMiningBlock(blockchain.getBestBlock(), secondSealed, false);
+        assertEquals(ImportResult.IMPORTED_BEST, blockchain.tryToConnectAndFetchSummary(block).getLeft());
+        assertEquals(4, pendingState.getPendingTxSize());
+
+        blockBalance = blockchain.getRepository().getBalance(coinbase);
+        assertEquals(blockBalance.add(fee.multiply(BigInteger.valueOf(4))), pendingState.getRepository().getBalance(coinbase));
+    }
+
+    @Test
+    public void rerunDependentSenders() {
+        ECKey payer = bundle.privateKeys.get(2);
+        ECKey spender = bundle.privateKeys.get(3);
+        AionAddress spenderAddress = new AionAddress(spender.getAddress());
+        BigInteger payment = BigInteger.valueOf(1_000_000_000_000L);
+        BigInteger spenderBalance = blockchain.getRepository().getBalance(spenderAddress);
+
+        // the spender can only afford its transaction after receiving the pending payment
+        AionTransaction pay = transfer(payer, 0, spenderAddress, payment);
+        AionTransaction spend =
+            transfer(
+                spender,
+                0,
+                new AionAddress(new byte[32]),
+                spenderBalance.add(payment).subtract(BigInteger.valueOf(21000 * energyPrice)));
+        assertEquals(TxResponse.SUCCESS, pendingState.addTransactionFromApiServer(pay));
+        assertEquals(TxResponse.SUCCESS, pendingState.addTransactionFromApiServer(spend));
+        assertEquals(2, pendingState.getPendingTxSize());
+
+        // the payer uses the same nonce for a different transaction
+        AionTransaction other = transfer(payer, 0, new AionAddress(new byte[32]), BigInteger.ONE);
+        AionBlock block =
+            blockchain.createNewMiningBlock(
+                blockchain.getBestBlock(), Collections.singletonList(other), false);
+        Pair<ImportResult, AionBlockSummary> connectResult = blockchain.tryToConnectAndFetchSummary(block);
+        assertEquals(ImportResult.IMPORTED_BEST, connectResult.getLeft());
+
+        // the spender did not receive the payment, so its transaction is dropped
+        assertEquals(0, pendingState.getPendingTxSize());
+        assertEquals(BigInteger.ZERO, pendingState.bestPendingStateNonce(spenderAddress));
+    }
 }
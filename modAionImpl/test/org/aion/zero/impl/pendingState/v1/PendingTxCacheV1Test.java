@@ -1,7 +1,5 @@
 package org.aion.zero.impl.pendingState.v1;
 
-import static org.aion.zero.impl.pendingState.v1.PendingTxCacheV1.ACCOUNT_CACHE_MAX;
-import static org.aion.zero.impl.pendingState.v1.PendingTxCacheV1.TX_PER_ACCOUNT_MAX;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -25,6 +23,7 @@ import org.junit.Test;
 public class PendingTxCacheV1Test {
     private static List<ECKey> key;
     private static int ACCOUNT_MAX = 10;
+    private static int TX_PER_ACCOUNT = 500;
 
     @Before
     public void Setup() {
@@ -69,7 +68,7 @@ public class PendingTxCacheV1Test {
     @Test
     public void addCacheTxTest() {
 
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
 
         List<AionTransaction> txn = getMockTransaction(0, 10, 0);
         for (AionTransaction tx : txn) {
@@ -82,7 +81,7 @@ public class PendingTxCacheV1Test {
     @Test
     public void addCacheTxWith2SendersTest() {
 
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
         List<AionTransaction> txn = getMockTransaction(0, 10, 0);
         txn.addAll(getMockTransaction(0, 10, 1));
 
@@ -95,48 +94,106 @@ public class PendingTxCacheV1Test {
         assertEquals(10, cache.getCacheTxBySender(new AionAddress(key.get(1).getAddress())).size());
     }
 
-    @Test
-    public void addCacheTxReachAccountCacheMaxTest() {
+    private static long sizeOf(List<AionTransaction> txs) {
+        long size = 0;
+        for (AionTransaction tx : txs) {
+            size += PendingTxCacheV1.estimateSize(tx);
+        }
+        return size;
+    }
 
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+    @Test
+    public void addCacheTxReachCacheSizeTest() {
 
         List<AionTransaction> txn = new ArrayList<>();
         for (int i = 0; i < key.size(); i++) {
             txn.add(getMockTransaction(0, 1, i).get(0));
         }
 
-        for (AionTransaction tx : txn) {
-            cache.addCacheTx(tx);
+        PendingTxCacheV1 cache = new PendingTxCacheV1(sizeOf(txn.subList(0, ACCOUNT_MAX)), false);
+        for (AionTransaction tx : txn.subList(0, ACCOUNT_MAX)) {
+            assertNotNull(cache.addCacheTx(tx));
         }
 
-        assertEquals(ACCOUNT_CACHE_MAX, cache.getCacheTxAccount().size());
+        // the new sender does not push out the senders cached earlier with the same size
+        assertNull(cache.addCacheTx(txn.get(ACCOUNT_MAX)));
+        assertEquals(ACCOUNT_MAX, cache.getCacheTxAccount().size());
+        assertEquals(sizeOf(txn.subList(0, ACCOUNT_MAX)), cache.cacheTxBytes());
     }
 
     @Test
-    public void addTxReachAccountCacheMaxTest() {
+    public void addTxReachCacheSizeTest() {
+
+        List<AionTransaction> txn = getMockTransaction(0, 101, 0);
+        PendingTxCacheV1 cache = new PendingTxCacheV1(sizeOf(txn.subList(0, 100)), false);
+        for (AionTransaction tx : txn.subList(0, 100)) {
+            assertNotNull(cache.addCacheTx(tx));
+        }
+
+        assertEquals(1, cache.getCacheTxAccount().size());
+        assertEquals(100, cache.cacheTxSize());
+
+        assertNull(cache.addCacheTx(txn.get(100)));
+        assertEquals(100, cache.cacheTxSize());
+        assertEquals(100, cache.getCacheTxBySender(new AionAddress(key.get(0).getAddress())).size());
+        assertThat(cache.isInCache(new AionAddress(key.get(0).getAddress()), BigInteger.valueOf(100))).isFalse();
+    }
 
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
-        List<AionTransaction> txn = getMockTransaction(0, 500, 0);
+    @Test
+    public void evictFromLargestSenderTest() {
+
+        List<AionTransaction> txn = getMockTransaction(0, 8, 0);
+        List<AionTransaction> txn2 = getMockTransaction(0, 3, 1);
+        PendingTxCacheV1 cache =
+                new PendingTxCacheV1(sizeOf(txn) + sizeOf(txn2.subList(0, 2)), true);
         for (AionTransaction tx : txn) {
             cache.addCacheTx(tx);
         }
+        for (AionTransaction tx : txn2) {
+            assertNotNull(cache.addCacheTx(tx));
+        }
 
-        assertEquals(1, cache.getCacheTxAccount().size());
-        assertEquals(500, cache.cacheTxSize());
-        assertEquals(500, cache.getCacheTxBySender(new AionAddress(key.get(0).getAddress())).size());
+        // the transaction with the highest nonce of the largest sender was evicted
+        assertEquals(7, cache.getCacheTxBySender(new AionAddress(key.get(0).getAddress())).size());
+        assertEquals(3, cache.getCacheTxBySender(new AionAddress(key.get(1).getAddress())).size());
+        assertThat(cache.isInCache(new AionAddress(key.get(0).getAddress()), BigInteger.valueOf(7))).isFalse();
 
-        txn = getMockTransaction(500, 1, 0);
-        assertEquals(1, txn.size());
-        cache.addCacheTx(txn.get(0));
+        List<AionTransaction> removed = cache.pollRemovedTransactionForPoolBackup();
+        assertEquals(1, removed.size());
+        assertEquals(txn.get(7), removed.get(0));
+    }
 
-        assertEquals(500, cache.cacheTxSize());
-        assertEquals(500, cache.getCacheTxBySender(new AionAddress(key.get(0).getAddress())).size());
+    @Test
+    public void addCacheTxWithLargeNonceTest() {
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
+
+        AionTransaction tx =
+            AionTransaction.create(
+                key.get(0),
+                BigInteger.ONE.shiftLeft(64).toByteArray(),
+                AddressUtils.wrapAddress(
+                        "0000000000000000000000000000000000000000000000000000000000000001"),
+                ByteUtil.hexStringToBytes("1"),
+                ByteUtil.hexStringToBytes("1"),
+                10000L,
+                1L,
+                TransactionTypes.DEFAULT,
+                null);
+
+        assertNull(cache.addCacheTx(tx));
+        assertEquals(0, cache.cacheTxSize());
+        assertThat(cache.isInCache(tx.getSenderAddress(), tx.getNonceBI())).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCacheSizeTest() {
+        new PendingTxCacheV1(0, false);
     }
 
     @Test
     public void addCacheTxWithDuplicateNonceTransactionsTest() {
 
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
         List<AionTransaction> txn = getMockTransaction(0, 10, 0);
         txn.addAll(getMockTransaction(5, 10, 0));
 
@@ -145,16 +202,18 @@ public class PendingTxCacheV1Test {
         }
 
         assertEquals(15, cache.cacheTxSize());
+        assertEquals(sizeOf(txn.subList(0, 5)) + sizeOf(txn.subList(10, 20)), cache.cacheTxBytes());
 
         List<AionTransaction> cachedTxs =
                 new ArrayList<>(cache.getCacheTxBySender(new AionAddress(key.get(0).getAddress())).values());
         assertEquals(15, cachedTxs.size());
+        assertEquals(txn.get(10), cachedTxs.get(5));
     }
 
     @Test
     public void flush2TxInOneAccountTest() {
 
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
 
         List<AionTransaction> txn = getMockTransaction(0, 10, 0);
         List<AionTransaction> newCache;
@@ -178,7 +237,7 @@ public class PendingTxCacheV1Test {
     @Test
     public void flushTxWithOtherAccountTest() {
 
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
 
         List<AionTransaction> txn = getMockTransaction(0, 10, 0);
 
@@ -201,7 +260,7 @@ public class PendingTxCacheV1Test {
     @Test
     public void flushTxWith2AccountsTest() {
 
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
 
         List<AionTransaction> txn = getMockTransaction(0, 10, 0);
         txn.addAll(getMockTransaction(0, 10, 1));
@@ -228,41 +287,41 @@ public class PendingTxCacheV1Test {
     @Test
     public void fullFlush2SendersUnderFullCachedInstanceTest() {
 
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
 
         List<AionTransaction> txn = new ArrayList<>();
-        for (int i = 0; i < ACCOUNT_CACHE_MAX; i++) {
-            List<AionTransaction> newTx = getMockTransaction(0, TX_PER_ACCOUNT_MAX, i);
+        for (int i = 0; i < ACCOUNT_MAX; i++) {
+            List<AionTransaction> newTx = getMockTransaction(0, TX_PER_ACCOUNT, i);
             txn.addAll(newTx);
         }
 
-        assertEquals(ACCOUNT_CACHE_MAX * TX_PER_ACCOUNT_MAX, txn.size());
+        assertEquals(ACCOUNT_MAX * TX_PER_ACCOUNT, txn.size());
 
         for (AionTransaction tx : txn) {
             cache.addCacheTx(tx);
         }
 
-        assertEquals(ACCOUNT_CACHE_MAX * TX_PER_ACCOUNT_MAX, cache.cacheTxSize());
+        assertEquals(ACCOUNT_MAX * TX_PER_ACCOUNT, cache.cacheTxSize());
 
         Map<AionAddress, BigInteger> map = new HashMap<>();
-        map.put(new AionAddress(key.get(0).getAddress()), BigInteger.valueOf(TX_PER_ACCOUNT_MAX));
-        map.put(new AionAddress(key.get(1).getAddress()), BigInteger.valueOf(TX_PER_ACCOUNT_MAX));
+        map.put(new AionAddress(key.get(0).getAddress()), BigInteger.valueOf(TX_PER_ACCOUNT));
+        map.put(new AionAddress(key.get(1).getAddress()), BigInteger.valueOf(TX_PER_ACCOUNT));
         List<AionTransaction> flushedTx = cache.removeSealedTransactions(map);
-        assertEquals(TX_PER_ACCOUNT_MAX * 2, flushedTx.size());
-        assertEquals(ACCOUNT_CACHE_MAX * TX_PER_ACCOUNT_MAX - TX_PER_ACCOUNT_MAX * 2, cache.cacheTxSize());
+        assertEquals(TX_PER_ACCOUNT * 2, flushedTx.size());
+        assertEquals(ACCOUNT_MAX * TX_PER_ACCOUNT - TX_PER_ACCOUNT * 2, cache.cacheTxSize());
 
-        for (int i = 0; i < ACCOUNT_CACHE_MAX; i++) {
+        for (int i = 0; i < ACCOUNT_MAX; i++) {
             if (i == 0 || i == 1) {
                 assertNull(cache.getCacheTxBySender(new AionAddress(key.get(i).getAddress())));
             } else {
-                assertEquals(TX_PER_ACCOUNT_MAX, cache.getCacheTxBySender(new AionAddress(key.get(i).getAddress())).size());
+                assertEquals(TX_PER_ACCOUNT, cache.getCacheTxBySender(new AionAddress(key.get(i).getAddress())).size());
             }
         }
     }
 
     @Test
     public void getRemovedTxHashWithoutPoolBackupTest() {
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
         assertNotNull(cache.pollRemovedTransactionForPoolBackup());
     }
 
@@ -330,16 +389,16 @@ public class PendingTxCacheV1Test {
 
     @Test
     public void benchmark() {
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
 
         System.out.println("Gen 1M txs");
         List<AionTransaction> txn = new ArrayList<>();
-        for (int i = 0; i < ACCOUNT_CACHE_MAX; i++) {
-            List<AionTransaction> newTx = getMockTransaction(0, TX_PER_ACCOUNT_MAX, i);
+        for (int i = 0; i < ACCOUNT_MAX; i++) {
+            List<AionTransaction> newTx = getMockTransaction(0, TX_PER_ACCOUNT, i);
             txn.addAll(newTx);
         }
 
-        assertEquals(ACCOUNT_CACHE_MAX * TX_PER_ACCOUNT_MAX, txn.size());
+        assertEquals(ACCOUNT_MAX * TX_PER_ACCOUNT, txn.size());
 
         System.out.println("adding 1M txs to cache");
 
@@ -349,7 +408,7 @@ public class PendingTxCacheV1Test {
         }
         long t2 = System.currentTimeMillis() - t1;
         System.out.println("add 1M txs took " + t2 + " ms cacheSize: " + cache.cacheTxSize());
-        assertEquals(ACCOUNT_CACHE_MAX * TX_PER_ACCOUNT_MAX, cache.cacheTxSize());
+        assertEquals(ACCOUNT_MAX * TX_PER_ACCOUNT, cache.cacheTxSize());
 
         System.out.println("flush starting");
         int remove = 5;
@@ -365,16 +424,16 @@ public class PendingTxCacheV1Test {
 
         List<AionTransaction> cachedTxs =
                 new ArrayList<>(cache.getCacheTxBySender(new AionAddress(key.get(0).getAddress())).values());
-        assertEquals(TX_PER_ACCOUNT_MAX - remove, cachedTxs.size());
+        assertEquals(TX_PER_ACCOUNT - remove, cachedTxs.size());
 
         cachedTxs = new ArrayList<>(cache.getCacheTxBySender(new AionAddress(key.get(1).getAddress())).values());
-        assertEquals(TX_PER_ACCOUNT_MAX - remove, cachedTxs.size());
-        assertEquals(ACCOUNT_CACHE_MAX * TX_PER_ACCOUNT_MAX - remove * 2, cache.cacheTxSize());
+        assertEquals(TX_PER_ACCOUNT - remove, cachedTxs.size());
+        assertEquals(ACCOUNT_MAX * TX_PER_ACCOUNT - remove * 2, cache.cacheTxSize());
     }
 
     @Test
     public void isInCacheTest() {
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
 
         List<AionTransaction> txn = getMockTransaction(0, 1, 0);
         for (AionTransaction tx : txn) {
@@ -389,7 +448,7 @@ public class PendingTxCacheV1Test {
 
     @Test
     public void getNewPendingTransactionTest() {
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
 
         List<AionTransaction> txn = getMockTransaction(0, 5, 0);
         List<AionTransaction> txn2 = getMockTransaction(0, 5, 1);
@@ -420,7 +479,7 @@ public class PendingTxCacheV1Test {
 
     @Test
     public void removeTransactionTest() {
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
 
         List<AionTransaction> txn = getMockTransaction(0, 2, 0);
         for (AionTransaction tx : txn) {
@@ -429,26 +488,27 @@ public class PendingTxCacheV1Test {
 
         assertEquals(2, cache.cacheTxSize());
 
-        cache.removeTransaction(new AionAddress(key.get(0).getAddress()), BigInteger.ZERO);
+        cache.removeTransaction(new AionAddress(key.get(0).getAddress()), 0);
         assertEquals(1, cache.cacheTxSize());
         assertEquals(1, cache.getCacheTxAccount().size());
 
-        cache.removeTransaction(new AionAddress(key.get(0).getAddress()), BigInteger.ZERO);
+        cache.removeTransaction(new AionAddress(key.get(0).getAddress()), 0);
         assertEquals(1, cache.cacheTxSize());
 
-        cache.removeTransaction(new AionAddress(key.get(1).getAddress()), BigInteger.ZERO);
+        cache.removeTransaction(new AionAddress(key.get(1).getAddress()), 0);
         assertEquals(1, cache.cacheTxSize());
         assertEquals(1, cache.getCacheTxAccount().size());
 
-        cache.removeTransaction(new AionAddress(key.get(0).getAddress()), BigInteger.ONE);
+        cache.removeTransaction(new AionAddress(key.get(0).getAddress()), 1);
         assertEquals(0, cache.cacheTxSize());
         assertEquals(0, cache.getCacheTxAccount().size());
+        assertEquals(0, cache.cacheTxBytes());
 
     }
 
     @Test
     public void flushTimeoutTransactionTest() {
-        PendingTxCacheV1 cache = new PendingTxCacheV1(ACCOUNT_MAX);
+        PendingTxCacheV1 cache = new PendingTxCacheV1();
 
         List<AionTransaction> txn = getMockTransaction(0, 2, 0);
         for (AionTransaction tx : txn) {
@@ -460,5 +520,7 @@ public class PendingTxCacheV1Test {
         List<AionTransaction> flushedTx = cache.flushTimeoutTxForTest();
         assertEquals(2, flushedTx.size());
         assertEquals(0, cache.cacheTxSize());
+        assertEquals(0, cache.getCacheTxAccount().size());
+        assertEquals(0, cache.cacheTxBytes());
     }
 }
@@ -0,0 +1,148 @@
+package org.aion.zero.impl.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.aion.mcf.blockchain.Block;
+import org.aion.util.TestResources;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link EncodedBlockCache}. */
+public class EncodedBlockCacheTest {
+
+    private List<Block> blocks;
+    private long first;
+    private EncodedBlockCache cache;
+
+    @Before
+    public void setup() {
+        blocks = TestResources.consecutiveBlocks(6);
+        first = blocks.get(0).getNumber();
+        cache = new EncodedBlockCache(EncodedBlockCache.DEFAULT_SIZE);
+    }
+
+    /** Imports the blocks in the given index range as the main chain. */
+    private void importMainChain(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            cache.add(blocks.get(i));
+            cache.onBestBlock(blocks.get(i));
+        }
+    }
+
+    private static List<byte[]> encodings(List<Block> blocks) {
+        List<byte[]> encoded = new ArrayList<>();
+        for (Block block : blocks) {
+            encoded.add(block.getEncoded());
+        }
+        return encoded;
+    }
+
+    @Test
+    public void testGetBody() {
+        Block block = blocks.get(0);
+        assertThat(cache.getBody(block.getHash())).isNull();
+
+        assertThat(cache.add(block)).isEqualTo(block.getEncodedBody());
+        assertThat(cache.getBody(block.getHash())).isEqualTo(block.getEncodedBody());
+        assertThat(cache.getHitRatio()).isEqualTo(0.5d);
+
+        // side chain blocks are not indexed by number
+        assertThat(cache.getMainChainNumber(block.getHash())).isNull();
+        assertThat(cache.getBlocks(first, first)).isNull();
+    }
+
+    @Test
+    public void testGetBlocks() {
+        importMainChain(0, 5);
+
+        assertThat(cache.getBlocks(first, first + 5))
+                .containsExactlyElementsIn(encodings(blocks))
+                .inOrder();
+        // limited by the best block
+        assertThat(cache.getBlocks(first + 3, first + 10))
+                .containsExactlyElementsIn(encodings(blocks.subList(3, 6)))
+                .inOrder();
+        // descending
+        List<Block> descending = new ArrayList<>(blocks.subList(1, 4));
+        Collections.reverse(descending);
+        assertThat(cache.getBlocks(first + 3, first + 1))
+                .containsExactlyElementsIn(encodings(descending))
+                .inOrder();
+
+        assertThat(cache.getMainChainNumber(blocks.get(2).getHash())).isEqualTo(first + 2);
+        assertThat(cache.getBlocks(first + 6, first + 7)).isNull();
+        assertThat(cache.getBlocks(first - 1, first + 1)).isNull();
+    }
+
+    @Test
+    public void testGetHeaders() {
+        importMainChain(0, 5);
+
+        List<byte[]> headers = cache.getHeaders(first + 2, 10);
+        assertThat(headers).hasSize(4);
+        for (int i = 0; i < headers.size(); i++) {
+            assertThat(headers.get(i)).isEqualTo(blocks.get(i + 2).getHeader().getEncoded());
+        }
+        assertThat(cache.getHeaders(first + 6, 10)).isNull();
+    }
+
+    @Test
+    public void testReBranchInvalidatesNumbers() {
+        importMainChain(0, 5);
+
+        // the new main chain diverges after the third block
+        cache.onReBranch(first + 2, blocks.get(2));
+
+        assertThat(cache.getBlocks(first, first + 2)).hasSize(3);
+        assertThat(cache.getMainChainNumber(blocks.get(4).getHash())).isNull();
+        assertThat(cache.getBlocks(first + 3, first + 4)).isNull();
+        // the blocks remain available by hash
+        assertThat(cache.getBody(blocks.get(4).getHash())).isNotNull();
+    }
+
+    @Test
+    public void testBestBlockNotExtendingChain() {
+        importMainChain(0, 2);
+        cache.add(blocks.get(4));
+
+        // the parent of the new best block is not indexed
+        cache.onBestBlock(blocks.get(4));
+
+        assertThat(cache.getBlocks(first, first + 2)).isNull();
+        assertThat(cache.getBlocks(first + 4, first + 4)).hasSize(1);
+    }
+
+    @Test
+    public void testLowerBestBlock() {
+        importMainChain(0, 5);
+
+        // e.g. a revert of the chain
+        cache.onBestBlock(blocks.get(3));
+
+        assertThat(cache.getBlocks(first, first + 3)).hasSize(4);
+        assertThat(cache.getMainChainNumber(blocks.get(5).getHash())).isNull();
+    }
+
+    @Test
+    public void testEvictionBySize() {
+        Block block = blocks.get(0);
+        long size = block.getHeader().getEncoded().length + block.getEncodedBody().length;
+        cache = new EncodedBlockCache(3 * size + 500);
+
+        importMainChain(0, 5);
+
+        assertThat(cache.getSize()).isAtMost(3 * size + 500);
+        assertThat(cache.getEntryCount()).isLessThan(blocks.size());
+        assertThat(cache.getBody(block.getHash())).isNull();
+        assertThat(cache.getMainChainNumber(block.getHash())).isNull();
+        assertThat(cache.getBody(blocks.get(5).getHash())).isNotNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new EncodedBlockCache(0);
+    }
+}
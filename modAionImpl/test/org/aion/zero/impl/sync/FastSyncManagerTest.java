@@ -0,0 +1,120 @@
+package org.aion.zero.impl.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import org.aion.base.AionTransaction;
+import org.aion.base.TransactionTypes;
+import org.aion.base.TxUtil;
+import org.aion.crypto.ECKey;
+import org.aion.mcf.blockchain.Block;
+import org.aion.p2p.INode;
+import org.aion.p2p.IP2pMgr;
+import org.aion.types.AionAddress;
+import org.aion.util.conversions.Hex;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.blockchain.BlockchainTestUtils;
+import org.aion.zero.impl.blockchain.StandaloneBlockchain;
+import org.aion.zero.impl.core.ImportResult;
+import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.sync.msg.RequestTrieData;
+import org.aion.zero.impl.sync.msg.ResponseTrieData;
+import org.junit.Test;
+
+/** Tests for the {@link FastSyncManager}. */
+public class FastSyncManagerTest {
+
+    private static final int PEER_ID = 1;
+    private static final String PEER_DISPLAY_ID = "peer";
+
+    @Test
+    public void testStateDownload() throws Exception {
+        List<ECKey> accounts = BlockchainTestUtils.generateAccounts(10);
+        StandaloneBlockchain source = new StandaloneBlockchain.Builder().withValidatorConfiguration("simple").withDefaultAccounts(accounts).build().bc;
+        StandaloneBlockchain target = new StandaloneBlockchain.Builder().withValidatorConfiguration("simple").withDefaultAccounts(accounts).build().bc;
+
+        // a chain with balance transfers and a contract with storage
+        BlockchainTestUtils.generateRandomChain(source, 10, 1, accounts, 10);
+        ECKey owner = accounts.get(0);
+        BigInteger nonce = source.getRepository().getNonce(new AionAddress(owner.getAddress()));
+        AionTransaction deploy = BlockchainTestUtils.deployFvmTickerContractTransaction(owner, nonce);
+        AionAddress contract = TxUtil.calculateContractAddress(deploy);
+        assertThat(BlockchainTestUtils.addMiningBlock(source, source.getBestBlock(), List.of(deploy)).getRight()).isEqualTo(ImportResult.IMPORTED_BEST);
+        assertThat(BlockchainTestUtils.addMiningBlock(source, source.getBestBlock(), List.of(tick(owner, nonce.add(BigInteger.ONE), contract))).getRight()).isEqualTo(ImportResult.IMPORTED_BEST);
+
+        Block pivot = source.getBestBlock();
+        target.startFastSync(pivot.getNumber());
+
+        // the blocks up to the pivot are stored without execution
+        for (long number = 1; number <= pivot.getNumber(); number++) {
+            assertThat(target.tryToConnect(source.getBlockByNumber(number))).isEqualTo(ImportResult.IMPORTED_BEST);
+        }
+        assertThat(target.getBestBlock().getHashWrapper()).isEqualTo(pivot.getHashWrapper());
+        assertThat(target.getRepository().isValidRoot(pivot.getStateRoot())).isFalse();
+
+        // the blocks above the pivot wait for the state download
+        Block next = BlockchainTestUtils.addMiningBlock(source, pivot, List.of(tick(owner, nonce.add(BigInteger.TWO), contract))).getLeft();
+        assertThat(target.tryToConnect(next)).isEqualTo(ImportResult.NO_PARENT);
+
+        FastSyncManager[] responseReceiver = new FastSyncManager[1];
+        FastSyncManager manager = new FastSyncManager(target, peerServing(source.getRepository(), pivot.getNumber(), responseReceiver));
+        responseReceiver[0] = manager;
+        for (int i = 0; i < 1_000 && !manager.isDone(); i++) {
+            manager.update(pivot.getNumber() + FastSyncManager.PIVOT_DISTANCE);
+        }
+
+        assertThat(manager.isDone()).isTrue();
+        assertThat(manager.getRequiredNodeCount()).isEqualTo(0);
+        assertThat(target.getFastSyncPivotNumber()).isEqualTo(-1L);
+        assertThat(target.getRepository().isValidRoot(pivot.getStateRoot())).isTrue();
+        assertThat(target.getRepository().getCode(contract)).isEqualTo(source.getRepository().getCode(contract));
+
+        // the regular import continues from the pivot using the downloaded state
+        assertThat(target.tryToConnect(next)).isEqualTo(ImportResult.IMPORTED_BEST);
+        assertThat(target.getBestBlock().getStateRoot()).isEqualTo(source.getBestBlock().getStateRoot());
+        for (ECKey account : accounts) {
+            AionAddress address = new AionAddress(account.getAddress());
+            assertThat(target.getRepository().getBalance(address)).isEqualTo(source.getRepository().getBalance(address));
+        }
+    }
+
+    /** @return a peer manager whose single peer answers the trie data requests from the source */
+    private static IP2pMgr peerServing(AionRepositoryImpl source, long bestBlockNumber, FastSyncManager[] responseReceiver) {
+        INode peer = mock(INode.class);
+        when(peer.getIdHash()).thenReturn(PEER_ID);
+        when(peer.getIdShort()).thenReturn(PEER_DISPLAY_ID);
+        when(peer.getBestBlockNumber()).thenReturn(bestBlockNumber);
+
+        IP2pMgr p2pMgr = mock(IP2pMgr.class);
+        when(p2pMgr.getActiveNodes()).thenReturn(Map.of(PEER_ID, peer));
+
+        doAnswer(
+                        invocation -> {
+                            RequestTrieData request = invocation.getArgument(2);
+                            byte[] value = source.getTrieNode(request.getNodeKey(), request.getDbType());
+                            if (value != null) {
+                                Map<ByteArrayWrapper, byte[]> references = source.getReferencedTrieNodes(value, request.getLimit(), request.getDbType());
+                                ResponseTrieData response = new ResponseTrieData(ByteArrayWrapper.wrap(request.getNodeKey()), value, references, request.getDbType());
+                                // the response is delivered through the network handler
+                                responseReceiver[0].getResponseQueue().add(new TrieNodeWrapper(PEER_ID, PEER_DISPLAY_ID, ResponseTrieData.decode(response.encode())));
+                            }
+                            return null;
+                        })
+                .when(p2pMgr)
+                .send(anyInt(), anyString(), any(RequestTrieData.class));
+        return p2pMgr;
+    }
+
+    private static AionTransaction tick(ECKey owner, BigInteger nonce, AionAddress contract) {
+        // calls the 'ticking' function which increments the stored counter
+        return AionTransaction.create(owner, nonce.toByteArray(), contract, new byte[0], Hex.decode("dae29f29"), 2_000_000, 10_000_000_000L, TransactionTypes.DEFAULT, null);
+    }
+}
@@ -0,0 +1,130 @@
+package org.aion.zero.impl.sync;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.aion.crypto.ECKey;
+import org.aion.mcf.blockchain.Block;
+import org.aion.mcf.blockchain.BlockHeader;
+import org.aion.p2p.Msg;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.blockchain.BlockchainTestUtils;
+import org.aion.zero.impl.blockchain.StandaloneBlockchain;
+import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.sync.msg.ResBlocksBodies;
+import org.aion.zero.impl.sync.msg.ResBlocksHeaders;
+import org.aion.zero.impl.sync.msg.ResponseBlocks;
+import org.aion.zero.impl.sync.msg.ResponseTrieData;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the bytes on the wire and the CPU cost of compressing the sync responses of a local
+ * chain, using the deflate settings of the p2p body compression. The same totals are reported at
+ * runtime by the p2p send and inbound tasks in the survey log.
+ */
+public class SyncCompressionBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger("SYNC");
+
+    private static final int BLOCKS = 200;
+    private static final int BATCH = 24;
+    private static final int TRIE_BATCH = 100;
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void measureSyncResponses() throws DataFormatException {
+        List<ECKey> accounts = BlockchainTestUtils.generateAccounts(100);
+        StandaloneBlockchain chain =
+                new StandaloneBlockchain.Builder()
+                        .withValidatorConfiguration("simple")
+                        .withDefaultAccounts(accounts)
+                        .build()
+                        .bc;
+        BlockchainTestUtils.generateRandomChain(chain, BLOCKS, 1, accounts, 50);
+
+        List<Msg> headers = new ArrayList<>();
+        List<Msg> bodies = new ArrayList<>();
+        List<Msg> blocks = new ArrayList<>();
+        List<Msg> trieData = new ArrayList<>();
+        long best = chain.getBestBlock().getNumber();
+        for (long from = 1; from <= best; from += BATCH) {
+            List<BlockHeader> headerBatch = new ArrayList<>();
+            List<byte[]> bodyBatch = new ArrayList<>();
+            List<Block> blockBatch = new ArrayList<>();
+            for (long number = from; number < from + BATCH && number <= best; number++) {
+                Block block = chain.getBlockByNumber(number);
+                headerBatch.add(block.getHeader());
+                bodyBatch.add(block.getEncodedBody());
+                blockBatch.add(block);
+            }
+            headers.add(new ResBlocksHeaders(headerBatch));
+            bodies.add(new ResBlocksBodies(bodyBatch));
+            blocks.add(new ResponseBlocks(blockBatch));
+        }
+
+        AionRepositoryImpl repository = chain.getRepository();
+        byte[] root = chain.getBestBlock().getStateRoot();
+        byte[] value = repository.getTrieNode(root, DatabaseType.STATE);
+        Map<ByteArrayWrapper, byte[]> references =
+                repository.getReferencedTrieNodes(value, TRIE_BATCH, DatabaseType.STATE);
+        trieData.add(
+                new ResponseTrieData(
+                        ByteArrayWrapper.wrap(root), value, references, DatabaseType.STATE));
+
+        log.info(String.format("Sync response compression for a chain of %d blocks:", best));
+        measure("ResBlocksHeaders", headers);
+        measure("ResBlocksBodies", bodies);
+        measure("ResponseBlocks", blocks);
+        measure("ResponseTrieData", trieData);
+    }
+
+    private static void measure(String type, List<Msg> messages) throws DataFormatException {
+        List<byte[]> encoded = new ArrayList<>();
+        for (Msg msg : messages) {
+            encoded.add(msg.encode());
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        Inflater inflater = new Inflater();
+        long raw = 0, wire = 0, compressTime = 0, decompressTime = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (byte[] body : encoded) {
+                byte[] compressed = new byte[body.length + 64];
+                long start = System.nanoTime();
+                deflater.reset();
+                deflater.setInput(body);
+                deflater.finish();
+                int size = deflater.deflate(compressed);
+                compressTime += System.nanoTime() - start;
+
+                byte[] restored = new byte[body.length];
+                start = System.nanoTime();
+                inflater.reset();
+                inflater.setInput(compressed, 0, size);
+                inflater.inflate(restored);
+                decompressTime += System.nanoTime() - start;
+                assertArrayEquals(body, restored);
+
+                raw += body.length;
+                // the compressed bodies are only sent when smaller, with the original length
+                wire += Math.min(body.length, size + 4);
+            }
+        }
+
+        log.info(
+                String.format(
+                        "\t%-17s: %6.1f KiB/msg, wire %5.1f%% of raw, compress %7.1f MiB/s, decompress %7.1f MiB/s",
+                        type,
+                        raw / 1024d / encoded.size() / ROUNDS,
+                        100d * wire / raw,
+                        raw * 1_000d / compressTime / 1.048576,
+                        raw * 1_000d / decompressTime / 1.048576));
+    }
+}
@@ -6,21 +6,30 @@ import static org.aion.base.ConstantUtil.EMPTY_TRIE_HASH;
 import static org.aion.zero.impl.sync.SyncHeaderRequestManager.CLOSE_OVERLAPPING_BLOCKS;
 import static org.aion.zero.impl.sync.SyncHeaderRequestManager.FAR_OVERLAPPING_BLOCKS;
 import static org.aion.zero.impl.sync.SyncHeaderRequestManager.MAX_REQUEST_SIZE;
+import static org.aion.zero.impl.sync.SyncHeaderRequestManager.PEAK_REQUEST_SIZE;
 import static org.aion.zero.impl.sync.SyncHeaderRequestManager.SWITCH_OVERLAPPING_BLOCKS_RANGE;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.aion.mcf.blockchain.BlockHeader;
 import org.aion.p2p.INode;
+import org.aion.p2p.IP2pMgr;
+import org.aion.zero.impl.sync.msg.ReqBlocksHeaders;
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.MockitoAnnotations;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -368,4 +377,87 @@ public class SyncHeaderRequestManagerTest {
         // attempting to drop list2 for size 10
         assertThat(srm.dropHeaders(1, list)).isTrue();
     }
+
+    @Test
+    public void test_adaptiveRequestSize_growsForFastPeer() {
+        long[] time = new long[1];
+        SyncHeaderRequestManager adaptiveSrm = new SyncHeaderRequestManager(syncLog, surveyLog, true, () -> time[0]);
+        IP2pMgr p2pMgr = mock(IP2pMgr.class);
+        when(p2pMgr.getActiveNodes()).thenReturn(generateMockPeersWithDifficulty(1, 1));
+        SyncStats syncStats = new SyncStats(0L, false);
+
+        int largest = 0;
+        for (int i = 0; i < 20; i++) {
+            adaptiveSrm.sendHeadersRequests(0L, BigInteger.ZERO, p2pMgr, syncStats);
+            ArgumentCaptor<ReqBlocksHeaders> request = ArgumentCaptor.forClass(ReqBlocksHeaders.class);
+            verify(p2pMgr, times(i + 1)).send(eq(1), anyString(), request.capture());
+            ReqBlocksHeaders sent = request.getValue();
+            assertThat(sent.getTake() % 2).isEqualTo(0);
+            largest = Math.max(largest, sent.getTake());
+
+            // complete response within 100 ms
+            time[0] += 100_000_000L;
+            adaptiveSrm.recordHeadersResponse(1, sent.getFromBlock(), sent.getTake());
+            time[0] += 500_000_000L;
+        }
+
+        assertThat(largest).isEqualTo(PEAK_REQUEST_SIZE);
+    }
+
+    @Test
+    public void test_fixedRequestSize_ignoresMeasurements() {
+        long[] time = new long[1];
+        SyncHeaderRequestManager fixedSrm = new SyncHeaderRequestManager(syncLog, surveyLog, false, () -> time[0]);
+        IP2pMgr p2pMgr = mock(IP2pMgr.class);
+        when(p2pMgr.getActiveNodes()).thenReturn(generateMockPeersWithDifficulty(1, 1));
+        SyncStats syncStats = new SyncStats(0L, false);
+
+        for (int i = 0; i < 20; i++) {
+            fixedSrm.sendHeadersRequests(0L, BigInteger.ZERO, p2pMgr, syncStats);
+            ArgumentCaptor<ReqBlocksHeaders> request = ArgumentCaptor.forClass(ReqBlocksHeaders.class);
+            verify(p2pMgr, times(i + 1)).send(eq(1), anyString(), request.capture());
+            assertThat(request.getValue().getTake()).isAtMost(MAX_REQUEST_SIZE);
+
+            time[0] += 100_000_000L;
+            fixedSrm.recordHeadersResponse(1, request.getValue().getFromBlock(), request.getValue().getTake());
+            time[0] += 500_000_000L;
+        }
+    }
+
+    @Test
+    public void test_stalledRequest_reassignedToResponsivePeer() {
+        long[] time = new long[1];
+        SyncHeaderRequestManager adaptiveSrm = new SyncHeaderRequestManager(syncLog, surveyLog, true, () -> time[0]);
+        IP2pMgr p2pMgr = mock(IP2pMgr.class);
+        when(p2pMgr.getActiveNodes()).thenReturn(generateMockPeersWithDifficulty(1, 2));
+        SyncStats syncStats = new SyncStats(0L, false);
+
+        // one request to each peer
+        adaptiveSrm.sendHeadersRequests(0L, BigInteger.ZERO, p2pMgr, syncStats);
+        ArgumentCaptor<ReqBlocksHeaders> request = ArgumentCaptor.forClass(ReqBlocksHeaders.class);
+        verify(p2pMgr).send(eq(1), anyString(), request.capture());
+        ReqBlocksHeaders answered = request.getValue();
+        verify(p2pMgr).send(eq(2), anyString(), request.capture());
+        ReqBlocksHeaders stalled = request.getValue();
+
+        // peer 1 answers while peer 2 stalls past the timeout
+        time[0] += 100_000_000L;
+        adaptiveSrm.recordHeadersResponse(1, answered.getFromBlock(), answered.getTake());
+        time[0] += 3_000_000_000L;
+
+        adaptiveSrm.sendHeadersRequests(answered.getFromBlock() + answered.getTake() - 1, BigInteger.ZERO, p2pMgr, syncStats);
+        verify(p2pMgr, times(2)).send(eq(1), anyString(), request.capture());
+        assertThat(request.getValue().getFromBlock()).isEqualTo(stalled.getFromBlock());
+        assertThat(request.getValue().getTake()).isEqualTo(stalled.getTake());
+    }
+
+    /** Generates mock peers that have a higher total difficulty than the local chain. */
+    private Map<Integer, INode> generateMockPeersWithDifficulty(int start, int count) {
+        Map<Integer, INode> peers = generateMockPeers(start, count);
+        for (INode peer : peers.values()) {
+            when(peer.getTotalDifficulty()).thenReturn(BigInteger.TEN);
+            when(peer.getBestBlockNumber()).thenReturn(10_000L);
+        }
+        return peers;
+    }
 }
@@ -55,7 +55,8 @@ public class SyncMgrTest {
         MockitoAnnotations.initMocks(this);
         when(chain.getBestBlock()).thenReturn(bestBlock);
         when(bestBlock.getNumber()).thenReturn(bestBlockNumber);
-        syncMgr = new SyncMgr(chain, p2pMgr, evtMgr, false, Collections.emptySet(), 10);
+        when(chain.getFastSyncPivotNumber()).thenReturn(-1L);
+        syncMgr = new SyncMgr(chain, p2pMgr, evtMgr, false, Collections.emptySet(), 10, false);
     }
 
     @Test
@@ -0,0 +1,205 @@
+package org.aion.zero.impl.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import org.aion.p2p.INode;
+import org.aion.p2p.IP2pMgr;
+import org.aion.zero.impl.sync.msg.ReqBlocksHeaders;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simulates a node syncing from a set of local peers with different response times, bandwidth and
+ * reliability, comparing the blocks per second imported with the fixed request policy and the
+ * adaptive scheduling of the {@link SyncHeaderRequestManager}. The fixed policy run also leaves out
+ * the header requests made after each response, matching the earlier sync manager. The simulation
+ * runs on a virtual clock so the results are deterministic.
+ */
+public class SyncSchedulingSimulation {
+
+    private static final Logger log = LoggerFactory.getLogger("SYNC");
+
+    private static final long MILLIS = 1_000_000L;
+    private static final long CHAIN_HEIGHT = 20_000L;
+    private static final long MAX_SIMULATED_TIME = 600_000 * MILLIS;
+    private static final long STATUS_INTERVAL = 2_000 * MILLIS;
+    private static final long IMPORT_TICK = 10 * MILLIS;
+    private static final int IMPORTED_PER_SECOND = 1_000;
+    private static final int MAX_HEADERS_PER_RESPONSE = 96;
+
+    /** Peer profiles: response latency in ms, blocks sent per second, share of dropped requests. */
+    private static final List<PeerProfile> PEERS =
+            List.of(
+                    new PeerProfile(50, 2_000, 0.0),
+                    new PeerProfile(50, 2_000, 0.0),
+                    new PeerProfile(200, 500, 0.0),
+                    new PeerProfile(200, 500, 0.0),
+                    new PeerProfile(800, 100, 0.0),
+                    new PeerProfile(800, 100, 0.0),
+                    new PeerProfile(300, 800, 0.3),
+                    new PeerProfile(300, 800, 0.3));
+
+    @Test
+    public void compareFixedAndAdaptiveScheduling() {
+        double fixed = simulate(false);
+        double adaptive = simulate(true);
+
+        log.info(String.format("Sync simulation with %d peers up to block %d:", PEERS.size(), CHAIN_HEIGHT));
+        log.info(String.format("\tfixed policy    : %8.1f blocks/sec", fixed));
+        log.info(String.format("\tadaptive policy : %8.1f blocks/sec", adaptive));
+
+        assertThat(adaptive).isGreaterThan(fixed);
+    }
+
+    /** @return the imported blocks per second of simulated time */
+    private double simulate(boolean adaptive) {
+        Simulation simulation = new Simulation(adaptive);
+        simulation.run();
+        return (double) simulation.best * 1_000_000_000L / simulation.now;
+    }
+
+    private static final class Simulation {
+        private final boolean adaptive;
+        private final SyncHeaderRequestManager manager;
+        private final IP2pMgr p2pMgr;
+        private final SyncStats syncStats = new SyncStats(0L, false);
+        private final Random random = new Random(42);
+        private final PriorityQueue<Event> events = new PriorityQueue<>();
+        private final BitSet received = new BitSet();
+        private final long[] busyUntil = new long[PEERS.size()];
+
+        private long now, best, sequence;
+
+        Simulation(boolean adaptive) {
+            this.adaptive = adaptive;
+            this.manager = new SyncHeaderRequestManager(log, log, adaptive, () -> now);
+            this.manager.random = new Random(42);
+
+            Map<Integer, INode> peers = new HashMap<>();
+            for (int id = 0; id < PEERS.size(); id++) {
+                peers.put(id, mockPeer(id));
+            }
+            p2pMgr = mock(IP2pMgr.class);
+            when(p2pMgr.getActiveNodes()).thenReturn(peers);
+            doAnswer(
+                            invocation -> {
+                                ReqBlocksHeaders request = invocation.getArgument(2);
+                                serve(invocation.getArgument(0), request.getFromBlock(), request.getTake());
+                                return null;
+                            })
+                    .when(p2pMgr)
+                    .send(anyInt(), anyString(), any(ReqBlocksHeaders.class));
+        }
+
+        void run() {
+            // the status responses trigger header requests as in the sync manager
+            for (int id = 0; id < PEERS.size(); id++) {
+                schedule(id * STATUS_INTERVAL / PEERS.size(), this::statusUpdate);
+            }
+            schedule(IMPORT_TICK, this::importBlocks);
+
+            while (best < CHAIN_HEIGHT && now < MAX_SIMULATED_TIME && !events.isEmpty()) {
+                Event event = events.poll();
+                now = event.time;
+                event.action.run();
+            }
+        }
+
+        private void statusUpdate() {
+            requestHeaders();
+            schedule(now + STATUS_INTERVAL, this::statusUpdate);
+        }
+
+        private void requestHeaders() {
+            manager.sendHeadersRequests(best, BigInteger.ZERO, p2pMgr, syncStats);
+        }
+
+        /** Schedules the response of a peer, which handles its requests one at a time. */
+        private void serve(int peerId, long from, int take) {
+            PeerProfile profile = PEERS.get(peerId);
+            int count = (int) Math.min(Math.min(take, MAX_HEADERS_PER_RESPONSE), CHAIN_HEIGHT - from + 1);
+            if (count <= 0) {
+                return;
+            }
+            long sent = Math.max(now, busyUntil[peerId]) + count * 1_000L * MILLIS / profile.blocksPerSecond;
+            busyUntil[peerId] = sent;
+            if (random.nextDouble() >= profile.dropRate) {
+                schedule(sent + profile.latency * MILLIS, () -> receive(peerId, from, count));
+            }
+        }
+
+        private void receive(int peerId, long from, int count) {
+            received.set((int) from, (int) from + count);
+            manager.recordHeadersResponse(peerId, from, count);
+            if (adaptive) {
+                // the sync manager refills the request pipeline after each response
+                requestHeaders();
+            }
+        }
+
+        private void importBlocks() {
+            int budget = (int) (IMPORTED_PER_SECOND * IMPORT_TICK / 1_000_000_000L);
+            while (budget > 0 && received.get((int) best + 1)) {
+                best++;
+                budget--;
+            }
+            schedule(now + IMPORT_TICK, this::importBlocks);
+        }
+
+        private void schedule(long time, Runnable action) {
+            events.add(new Event(time, sequence++, action));
+        }
+    }
+
+    private static INode mockPeer(int id) {
+        INode peer = mock(INode.class);
+        when(peer.getIdHash()).thenReturn(id);
+        when(peer.getIdShort()).thenReturn("peer" + id);
+        when(peer.getBestBlockNumber()).thenReturn(CHAIN_HEIGHT);
+        when(peer.getTotalDifficulty()).thenReturn(BigInteger.TEN);
+        return peer;
+    }
+
+    private static final class PeerProfile {
+        private final long latency;
+        private final int blocksPerSecond;
+        private final double dropRate;
+
+        PeerProfile(long latency, int blocksPerSecond, double dropRate) {
+            this.latency = latency;
+            this.blocksPerSecond = blocksPerSecond;
+            this.dropRate = dropRate;
+        }
+    }
+
+    private static final class Event implements Comparable<Event> {
+        private final long time, sequence;
+        private final Runnable action;
+
+        Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -8,6 +8,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import org.aion.zero.impl.sync.statistics.BlockType;
+import org.aion.zero.impl.sync.statistics.ImportStage;
+import org.aion.zero.impl.sync.statistics.LatencyHistogram;
 import org.aion.zero.impl.sync.statistics.RequestType;
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.BeforeClass;
@@ -889,4 +891,41 @@ public class SyncStatsTest {
         // ensures still empty
         assertThat(stats.getResponseStats()).isNull();
     }
+
+    @Test
+    public void testImportStageStats() {
+        SyncStats stats = new SyncStats(0L, true);
+
+        // ensures correct behaviour on empty stats
+        assertThat(stats.dumpImportStats()).isEmpty();
+
+        for (long duration = 1; duration <= 100; duration++) {
+            stats.updateImportStageTime(ImportStage.IMPORT, duration * 1_000);
+        }
+
+        LatencyHistogram histogram = stats.getImportStats().getHistogram(ImportStage.IMPORT);
+        assertThat(histogram.getCount()).isEqualTo(100);
+        assertThat(histogram.getMax()).isEqualTo(100_000);
+        assertThat(histogram.getMean()).isEqualTo(50_500d);
+        // the percentiles are within a factor of two of the real values
+        assertThat(histogram.getPercentile(0.5)).isAtLeast(50_000);
+        assertThat(histogram.getPercentile(0.5)).isLessThan(100_000);
+        assertThat(histogram.getPercentile(1)).isEqualTo(100_000);
+
+        assertThat(stats.getImportStats().getHistogram(ImportStage.FILTER).getCount()).isEqualTo(0);
+        assertThat(stats.dumpImportStats()).contains("import");
+        assertThat(stats.dumpImportStats()).doesNotContain("filter");
+    }
+
+    @Test
+    public void testImportStageStatsDisabled() {
+        // disables the stats
+        SyncStats stats = new SyncStats(0L, false);
+
+        stats.updateImportStageTime(ImportStage.IMPORT, 1_000);
+
+        // ensures still empty
+        assertThat(stats.getImportStats()).isNull();
+        assertThat(stats.dumpImportStats()).isEmpty();
+    }
 }
@@ -9,10 +9,13 @@ import static org.aion.zero.impl.core.ImportResult.IMPORTED_NOT_BEST;
 import static org.aion.zero.impl.sync.TaskImportBlocks.filterBatch;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.function.Predicate;
 import junitparams.JUnitParamsRunner;
 import org.aion.crypto.ECKey;
 import org.aion.db.impl.DBVendor;
@@ -23,7 +26,9 @@ import org.aion.zero.impl.db.RepositoryConfig;
 import org.aion.zero.impl.config.PruneConfig;
 import org.aion.util.types.ByteArrayWrapper;
 import org.aion.zero.impl.blockchain.StandaloneBlockchain;
+import org.aion.zero.impl.sync.statistics.ImportStage;
 import org.aion.zero.impl.vm.AvmTestConfig;
+import org.apache.commons.lang3.tuple.Triple;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -78,6 +83,37 @@ public class TaskImportBlocksTest {
         assertThat(chain.isBlockStored(current.getHash(), current.getNumber())).isTrue();
     }
 
+    @Test
+    public void testImportWithPrevalidation() {
+        StandaloneBlockchain.Bundle bundle =
+                builder.withValidatorConfiguration("simple").withDefaultAccounts(accounts).build();
+
+        StandaloneBlockchain chain = bundle.bc;
+        generateRandomChain(chain, 2, 1, accounts, 10);
+
+        SyncStats stats = new SyncStats(chain.getBestBlock().getNumber(), true);
+        BlockPrevalidator prevalidator = new BlockPrevalidator(chain, stats, 2, 1);
+
+        // blocks failing the stateless checks are rejected before execution
+        Block block = generateNextBlock(chain, accounts, 10);
+        List<Block> batch = Collections.singletonList(block);
+        Triple<Long, Set<ByteArrayWrapper>, ImportResult> result = chain.tryToConnect(batch, "test", b -> false);
+        assertThat(result.getRight()).isEqualTo(ImportResult.INVALID_BLOCK);
+        assertThat(result.getMiddle()).isEmpty();
+        assertThat(chain.isBlockStored(block.getHash(), block.getNumber())).isFalse();
+
+        // the same block is imported once its stateless checks pass on the worker pool
+        Predicate<Block> statelessChecks = prevalidator.submit(batch);
+        result = chain.tryToConnect(batch, "test", statelessChecks);
+        assertThat(result.getRight()).isEqualTo(ImportResult.IMPORTED_BEST);
+        assertThat(result.getLeft()).isEqualTo(block.getNumber());
+        assertThat(result.getMiddle()).containsExactly(block.getHashWrapper());
+        assertThat(stats.getImportStats().getHistogram(ImportStage.PREVALIDATION).getCount()).isEqualTo(1);
+        assertThat(stats.getImportStats().getHistogram(ImportStage.PREVALIDATION_WAIT).getCount()).isEqualTo(1);
+
+        prevalidator.getExecutor().shutdownNow();
+    }
+
     @Test
     public void testFilterBatch_woPruningRestrictions() {
         StandaloneBlockchain.Bundle bundle =
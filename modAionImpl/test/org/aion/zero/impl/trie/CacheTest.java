@@ -0,0 +1,127 @@
+package org.aion.zero.impl.trie;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.aion.crypto.HashUtil;
+import org.aion.db.impl.ByteArrayKeyValueStore;
+import org.aion.db.impl.mockdb.MockDB;
+import org.aion.rlp.Value;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Tests for the bounded trie node {@link Cache}. */
+public class CacheTest {
+
+    private static final Logger log = LoggerFactory.getLogger("DB");
+
+    private MockDB db;
+
+    @Before
+    public void setup() {
+        db = new MockDB("cache-test", log);
+        db.open();
+    }
+
+    private static Object[] node(int i) {
+        return new Object[] {
+            ("key-0123456789-" + i).getBytes(), ("value-0123456789-" + i).getBytes()
+        };
+    }
+
+    @Test
+    public void testDirtyNodesAreNotEvicted() {
+        // no space for clean nodes
+        Cache cache = new Cache(db, 0);
+
+        byte[][] hashes = new byte[100][];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = (byte[]) cache.put(node(i));
+        }
+
+        for (byte[] hash : hashes) {
+            assertThat(cache.get(hash)).isNotNull();
+        }
+        assertThat(db.isEmpty()).isTrue();
+        assertThat(cache.getHitCount()).isEqualTo(hashes.length);
+        assertThat(cache.getMissCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testCommitKeepsNodesRetrievable() {
+        Cache cache = new Cache(db);
+        byte[] hash = (byte[]) cache.put(node(1));
+        assertThat(cache.isDirty()).isTrue();
+
+        cache.commit(false);
+
+        assertThat(cache.isDirty()).isFalse();
+        assertThat(db.get(hash).isPresent()).isTrue();
+        assertThat(cache.get(hash).encode()).isEqualTo(new Value(node(1)).encode());
+        assertThat(cache.getMissCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFlushedNodesAreReloadedFromDatabase() {
+        Cache cache = new Cache(db);
+        byte[] hash = (byte[]) cache.put(node(1));
+        cache.commit(true);
+
+        assertThat(cache.getSize()).isEqualTo(0);
+        assertThat(cache.get(hash)).isNotNull();
+        assertThat(cache.getMissCount()).isEqualTo(1);
+
+        // second lookup is served from memory
+        assertThat(cache.get(hash)).isNotNull();
+        assertThat(cache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testMarkRemovedDeletesOnCommit() {
+        Cache cache = new Cache(db);
+        byte[] hash = (byte[]) cache.put(node(1));
+        cache.commit(false);
+
+        cache.markRemoved(hash);
+        cache.put(node(2));
+        cache.commit(false);
+
+        assertThat(db.get(hash).isPresent()).isFalse();
+        assertThat(db.get(HashUtil.h256(new Value(node(2)).encode())).isPresent()).isTrue();
+    }
+
+    @Test
+    public void testCopyRetainsDirtyNodes() {
+        Cache cache = new Cache(db);
+        byte[] hash = (byte[]) cache.put(node(1));
+
+        Cache copy = cache.copy();
+        copy.commit(true);
+
+        assertThat(db.get(hash).isPresent()).isTrue();
+        assertThat(cache.isDirty()).isTrue();
+    }
+
+    @Test
+    public void testCommitUsesSingleWriteBatch() {
+        ByteArrayKeyValueStore store = mock(ByteArrayKeyValueStore.class);
+        Cache cache = new Cache(store);
+
+        cache.put(node(1));
+        cache.put(node(2));
+        cache.markRemoved(HashUtil.h256(new Value(node(3)).encode()));
+        cache.commit(false);
+
+        verify(store, times(2)).putToBatch(any(byte[].class), any(byte[].class));
+        verify(store, times(1)).deleteInBatch(any(byte[].class));
+        verify(store, times(1)).commit();
+        verify(store, never()).putBatch(any());
+        verify(store, never()).deleteBatch(any());
+    }
+}
@@ -0,0 +1,100 @@
+package org.aion.zero.impl.trie;
+
+import static org.aion.util.bytes.ByteUtil.intToBytes;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.aion.db.impl.mockdb.MockDB;
+import org.aion.util.types.ByteArrayWrapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the time needed to apply a block worth of account updates to a populated state trie
+ * using the serial path and the parallel hashing mode.
+ */
+@RunWith(Parameterized.class)
+public class TrieHashingBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger("DB");
+
+    private static final int EXISTING_ACCOUNTS = 200_000;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private final int updateCount;
+
+    public TrieHashingBenchmark(int updateCount) {
+        this.updateCount = updateCount;
+    }
+
+    @Parameterized.Parameters(name = "updates={0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {{100}, {1_000}, {10_000}});
+    }
+
+    @Test
+    public void compareSerialAndParallelHashing() {
+        Random random = new Random(updateCount);
+
+        MockDB db = new MockDB("benchmark", log);
+        db.open();
+        SecureTrie base = new SecureTrie(db);
+        for (int i = 0; i < EXISTING_ACCOUNTS; i++) {
+            base.update(intToBytes(i), randomValue(random));
+        }
+        base.sync(false);
+        byte[] root = base.getRootHash();
+
+        long serialTime = 0, parallelTime = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            Map<ByteArrayWrapper, byte[]> updates = new LinkedHashMap<>();
+            for (int i = 0; i < updateCount; i++) {
+                byte[] key = intToBytes(random.nextInt(2 * EXISTING_ACCOUNTS));
+                updates.put(ByteArrayWrapper.wrap(key), randomValue(random));
+            }
+
+            SecureTrie serial = new SecureTrie(db, root);
+            long start = System.nanoTime();
+            for (Map.Entry<ByteArrayWrapper, byte[]> e : updates.entrySet()) {
+                serial.update(e.getKey().toBytes(), e.getValue());
+            }
+            byte[] serialRoot = serial.getRootHash();
+            long serialDuration = System.nanoTime() - start;
+
+            SecureTrie parallel = new SecureTrie(db, root);
+            parallel.setParallelHashingEnabled(true);
+            start = System.nanoTime();
+            parallel.updateAll(updates);
+            byte[] parallelRoot = parallel.getRootHash();
+            long parallelDuration = System.nanoTime() - start;
+
+            assertArrayEquals(serialRoot, parallelRoot);
+
+            if (round >= WARMUP_ROUNDS) {
+                serialTime += serialDuration;
+                parallelTime += parallelDuration;
+            }
+        }
+
+        System.out.format(
+                "updates: %d, serial: %d us, parallel: %d us, speedup: %.2f%n",
+                updateCount,
+                serialTime / MEASURED_ROUNDS / 1_000,
+                parallelTime / MEASURED_ROUNDS / 1_000,
+                (double) serialTime / parallelTime);
+    }
+
+    private static byte[] randomValue(Random random) {
+        byte[] value = new byte[40 + random.nextInt(40)];
+        random.nextBytes(value);
+        return value;
+    }
+}
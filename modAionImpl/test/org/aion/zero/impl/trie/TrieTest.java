@@ -11,6 +11,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -1122,4 +1123,181 @@ public class TrieTest {
             }
         }
     }
+
+    @Test
+    public void testUpdateAllWithParallelHashing() {
+        Random random = new Random(42);
+        Map<ByteArrayWrapper, byte[]> updates = new HashMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            byte[] value = new byte[1 + random.nextInt(64)];
+            random.nextBytes(value);
+            updates.put(ByteArrayWrapper.wrap(HashUtil.h256(intToBytes(i))), value);
+        }
+
+        MockDB serialDB = new MockDB("serial", log);
+        serialDB.open();
+        MockDB parallelDB = new MockDB("parallel", log);
+        parallelDB.open();
+        TrieImpl serial = new TrieImpl(serialDB);
+        TrieImpl parallel = new TrieImpl(parallelDB).withParallelHashingEnabled(true);
+
+        // start from a non-empty trie to exercise existing branch nodes
+        for (int i = 0; i < 100; i++) {
+            byte[] key = HashUtil.h256(intToBytes(-i));
+            serial.update(key, key);
+            parallel.update(key, key);
+        }
+        assertArrayEquals(serial.getRootHash(), parallel.getRootHash());
+
+        for (Map.Entry<ByteArrayWrapper, byte[]> e : updates.entrySet()) {
+            serial.update(e.getKey().toBytes(), e.getValue());
+        }
+        parallel.updateAll(updates);
+
+        assertArrayEquals(serial.getRootHash(), parallel.getRootHash());
+        for (Map.Entry<ByteArrayWrapper, byte[]> e : updates.entrySet()) {
+            assertArrayEquals(e.getValue(), parallel.get(e.getKey().toBytes()));
+        }
+    }
+
+    @Test
+    public void testSecureTrieUpdateAllMatchesSingleUpdates() {
+        Random random = new Random(2);
+        Map<ByteArrayWrapper, byte[]> updates = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            byte[] value = new byte[1 + random.nextInt(64)];
+            random.nextBytes(value);
+            updates.put(ByteArrayWrapper.wrap(intToBytes(i)), value);
+        }
+
+        MockDB db = new MockDB("secure", log);
+        db.open();
+        SecureTrie expected = new SecureTrie(db);
+        for (Map.Entry<ByteArrayWrapper, byte[]> e : updates.entrySet()) {
+            expected.update(e.getKey().toBytes(), e.getValue());
+        }
+
+        // the keys must be hashed exactly once on both the serial and the parallel path
+        for (boolean parallelHashing : new boolean[] {false, true}) {
+            SecureTrie trie = new SecureTrie(db);
+            trie.setParallelHashingEnabled(parallelHashing);
+            trie.updateAll(updates);
+
+            assertArrayEquals(expected.getRootHash(), trie.getRootHash());
+            for (Map.Entry<ByteArrayWrapper, byte[]> e : updates.entrySet()) {
+                assertArrayEquals(e.getValue(), trie.get(e.getKey().toBytes()));
+            }
+        }
+    }
+
+    @Test
+    public void testParallelUpdateAllWithPruningKeepsReusedNodes() {
+        Random random = new Random(3);
+        byte[][] suffixes = new byte[64][];
+        for (int i = 0; i < suffixes.length; i++) {
+            suffixes[i] = new byte[32];
+            random.nextBytes(suffixes[i]);
+        }
+        byte[] value = new byte[40];
+        random.nextBytes(value);
+
+        // the subtrees under the nibbles 0 and 1 differ only by the first suffix
+        Map<ByteArrayWrapper, byte[]> initial = new LinkedHashMap<>();
+        for (int i = 0; i < suffixes.length; i++) {
+            initial.put(ByteArrayWrapper.wrap(keyWithFirstNibble(0, suffixes[i])), value);
+            if (i > 0) {
+                initial.put(ByteArrayWrapper.wrap(keyWithFirstNibble(1, suffixes[i])), value);
+            }
+        }
+
+        // the nodes removed under the nibble 0 are the ones added under the nibble 1
+        byte[] changed = new byte[40];
+        random.nextBytes(changed);
+        Map<ByteArrayWrapper, byte[]> updates = new LinkedHashMap<>();
+        updates.put(ByteArrayWrapper.wrap(keyWithFirstNibble(0, suffixes[0])), changed);
+        updates.put(ByteArrayWrapper.wrap(keyWithFirstNibble(1, suffixes[0])), value);
+        for (int nibble = 2; nibble < 16; nibble++) {
+            // distinct values since pruning does not track nodes shared by several subtrees
+            byte[] other = new byte[40];
+            random.nextBytes(other);
+            for (int i = 0; i < 3; i++) {
+                updates.put(ByteArrayWrapper.wrap(keyWithFirstNibble(nibble, suffixes[i])), other);
+            }
+        }
+
+        MockDB serialDB = new MockDB("serial", log);
+        serialDB.open();
+        MockDB parallelDB = new MockDB("parallel", log);
+        parallelDB.open();
+        TrieImpl serial = new TrieImpl(serialDB);
+        TrieImpl parallel = new TrieImpl(parallelDB).withParallelHashingEnabled(true);
+        for (Map.Entry<ByteArrayWrapper, byte[]> e : initial.entrySet()) {
+            serial.update(e.getKey().toBytes(), e.getValue());
+            parallel.update(e.getKey().toBytes(), e.getValue());
+        }
+        serial.sync();
+        parallel.sync();
+        serial.setPruningEnabled(true);
+        parallel.setPruningEnabled(true);
+
+        for (Map.Entry<ByteArrayWrapper, byte[]> e : updates.entrySet()) {
+            serial.update(e.getKey().toBytes(), e.getValue());
+        }
+        parallel.updateAll(updates);
+        serial.sync();
+        parallel.sync();
+
+        assertArrayEquals(serial.getRootHash(), parallel.getRootHash());
+        assertThat(storedKeys(parallelDB)).isEqualTo(storedKeys(serialDB));
+
+        initial.putAll(updates);
+        TrieImpl reloaded = new TrieImpl(parallelDB, parallel.getRootHash());
+        for (Map.Entry<ByteArrayWrapper, byte[]> e : initial.entrySet()) {
+            assertArrayEquals(e.getValue(), reloaded.get(e.getKey().toBytes()));
+        }
+    }
+
+    private static byte[] keyWithFirstNibble(int nibble, byte[] suffix) {
+        byte[] key = Arrays.copyOf(suffix, suffix.length);
+        key[0] = (byte) ((nibble << 4) | (key[0] & 0x0f));
+        return key;
+    }
+
+    private static Set<ByteArrayWrapper> storedKeys(MockDB db) {
+        Set<ByteArrayWrapper> keys = new HashSet<>();
+        Iterator<byte[]> iterator = db.keys();
+        while (iterator.hasNext()) {
+            keys.add(ByteArrayWrapper.wrap(iterator.next()));
+        }
+        return keys;
+    }
+
+    @Test
+    public void testForEachEntry() {
+        MockDB db = new MockDB("for-each", log);
+        db.open();
+        TrieImpl trie = new TrieImpl(db);
+
+        Map<ByteArrayWrapper, ByteArrayWrapper> expected = new HashMap<>();
+        for (String key : testKeys) {
+            for (String value : testValues) {
+                trie.update(key.getBytes(), (key + value).getBytes());
+                expected.put(ByteArrayWrapper.wrap(key.getBytes()), ByteArrayWrapper.wrap((key + value).getBytes()));
+            }
+        }
+        for (int i = 0; i < 1_000; i++) {
+            byte[] key = HashUtil.h256(intToBytes(i));
+            trie.update(key, intToBytes(i));
+            expected.put(ByteArrayWrapper.wrap(key), ByteArrayWrapper.wrap(intToBytes(i)));
+        }
+        trie.sync();
+
+        Map<ByteArrayWrapper, ByteArrayWrapper> visited = new HashMap<>();
+        TrieImpl reloaded = new TrieImpl(db, trie.getRootHash());
+        reloaded.forEachEntry(
+                trie.getRootHash(),
+                (key, value) -> visited.put(ByteArrayWrapper.wrap(key), ByteArrayWrapper.wrap(value)));
+
+        assertThat(visited).isEqualTo(expected);
+    }
 }
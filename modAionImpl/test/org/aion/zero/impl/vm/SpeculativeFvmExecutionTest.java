@@ -0,0 +1,224 @@
+package org.aion.zero.impl.vm;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.aion.base.AionTransaction;
+import org.aion.base.AionTxReceipt;
+import org.aion.base.TransactionTypes;
+import org.aion.base.TxUtil;
+import org.aion.crypto.ECKey;
+import org.aion.crypto.ECKeyFac;
+import org.aion.mcf.blockchain.Block;
+import org.aion.types.AionAddress;
+import org.aion.util.conversions.Hex;
+import org.aion.zero.impl.blockchain.StandaloneBlockchain;
+import org.aion.zero.impl.core.ImportResult;
+import org.aion.zero.impl.types.AionBlock;
+import org.aion.zero.impl.types.AionBlockSummary;
+import org.aion.zero.impl.vm.contracts.ContractUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Differential tests for the speculative execution of FVM transactions: the blocks produced and
+ * imported by a chain executing transactions serially must be reproduced exactly by a chain
+ * executing them speculatively.
+ */
+public class SpeculativeFvmExecutionTest {
+    private static final long ENERGY_PRICE = 10_000_000_000L;
+    private static final byte[] TICKING = Hex.decode("dae29f29");
+
+    private List<ECKey> keys;
+    private StandaloneBlockchain serial;
+    private StandaloneBlockchain speculative;
+    private BigInteger[] nonces;
+
+    @Before
+    public void setup() {
+        keys = new ArrayList<>();
+        for (int i = 0; i < StandaloneBlockchain.Builder.INITIAL_ACC_LEN; i++) {
+            keys.add(ECKeyFac.inst().create());
+        }
+        nonces = new BigInteger[keys.size()];
+        for (int i = 0; i < nonces.length; i++) {
+            nonces[i] = BigInteger.ZERO;
+        }
+
+        serial = newBlockchain();
+        speculative = newBlockchain();
+        speculative.setSpeculativeExecution(true);
+    }
+
+    private StandaloneBlockchain newBlockchain() {
+        return (new StandaloneBlockchain.Builder())
+                        .withValidatorConfiguration("simple")
+                        .withDefaultAccounts(keys)
+                        .build()
+                .bc;
+    }
+
+    @Test
+    public void testIndependentAndConflictingCalls() throws IOException {
+        List<AionTransaction> deployments = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            deployments.add(deploy(0));
+        }
+        importOnBoth(deployments);
+        AionAddress tickerA = TxUtil.calculateContractAddress(deployments.get(0));
+        AionAddress tickerB = TxUtil.calculateContractAddress(deployments.get(1));
+        AionAddress tickerC = TxUtil.calculateContractAddress(deployments.get(2));
+
+        List<AionTransaction> transactions = new ArrayList<>();
+        // independent senders and contracts
+        transactions.add(tick(1, tickerA));
+        transactions.add(tick(2, tickerB));
+        transactions.add(tick(3, tickerC));
+        // same contract as an earlier transaction
+        transactions.add(tick(4, tickerA));
+        // same sender as an earlier transaction
+        transactions.add(tick(1, tickerB));
+        // creation in the middle of the batch
+        transactions.add(deploy(5));
+        transactions.add(tick(6, tickerC));
+        transactions.add(tick(7, tickerA));
+
+        importOnBoth(transactions);
+    }
+
+    @Test
+    public void testBlockTemplatesMatch() throws IOException {
+        List<AionTransaction> deployments = new ArrayList<>();
+        deployments.add(deploy(0));
+        deployments.add(deploy(1));
+        importOnBoth(deployments);
+        AionAddress tickerA = TxUtil.calculateContractAddress(deployments.get(0));
+        AionAddress tickerB = TxUtil.calculateContractAddress(deployments.get(1));
+
+        List<AionTransaction> transactions = new ArrayList<>();
+        for (int i = 2; i < keys.size(); i++) {
+            transactions.add(tick(i, (i % 2 == 0) ? tickerA : tickerB));
+        }
+
+        Block serialParent = serial.getBestBlock();
+        AionBlock serialBlock =
+                serial.createBlock(serialParent, transactions, false, serialParent.getTimestamp());
+        Block speculativeParent = speculative.getBestBlock();
+        AionBlock speculativeBlock =
+                speculative.createBlock(
+                        speculativeParent, transactions, false, speculativeParent.getTimestamp());
+
+        assertThat(speculativeBlock.getTransactionsList()).hasSize(transactions.size());
+        assertThat(speculativeBlock.getStateRoot()).isEqualTo(serialBlock.getStateRoot());
+        assertThat(speculativeBlock.getReceiptsRoot()).isEqualTo(serialBlock.getReceiptsRoot());
+        assertThat(speculativeBlock.getNrgConsumed()).isEqualTo(serialBlock.getNrgConsumed());
+    }
+
+    @Test
+    public void testFallbackWhenBlockEnergyIsExceeded() throws IOException {
+        List<AionTransaction> deployments = new ArrayList<>();
+        deployments.add(deploy(0));
+        importOnBoth(deployments);
+        AionAddress ticker = TxUtil.calculateContractAddress(deployments.get(0));
+
+        // each call pays for close to 2M energy of data, so the batch exceeds the block energy limit
+        byte[] data = new byte[29_000];
+        Arrays.fill(data, (byte) 1);
+        System.arraycopy(TICKING, 0, data, 0, TICKING.length);
+
+        List<AionTransaction> transactions = new ArrayList<>();
+        for (int i = 1; i < 9; i++) {
+            transactions.add(call(i, ticker, data));
+        }
+        // a small transaction that still fits in the block after the rejected ones
+        transactions.add(tick(9, ticker));
+
+        Block serialParent = serial.getBestBlock();
+        AionBlock serialBlock =
+                serial.createBlock(serialParent, transactions, false, serialParent.getTimestamp());
+        Block speculativeParent = speculative.getBestBlock();
+        AionBlock speculativeBlock =
+                speculative.createBlock(
+                        speculativeParent, transactions, false, speculativeParent.getTimestamp());
+
+        assertThat(serialBlock.getTransactionsList().size()).isLessThan(transactions.size());
+        assertThat(speculativeBlock.getTransactionsList())
+                .containsExactlyElementsIn(serialBlock.getTransactionsList())
+                .inOrder();
+        assertThat(speculativeBlock.getStateRoot()).isEqualTo(serialBlock.getStateRoot());
+        assertThat(speculativeBlock.getReceiptsRoot()).isEqualTo(serialBlock.getReceiptsRoot());
+        assertThat(speculativeBlock.getNrgConsumed()).isEqualTo(serialBlock.getNrgConsumed());
+
+        // importing the block executes the transactions that fit again on both chains
+        importOnBoth(serialBlock.getTransactionsList());
+    }
+
+    /**
+     * Creates a block with the given transactions on the serial chain, imports it on both chains
+     * and compares the results of the execution.
+     */
+    private void importOnBoth(List<AionTransaction> transactions) {
+        Block parent = serial.getBestBlock();
+        AionBlock block = serial.createBlock(parent, transactions, false, parent.getTimestamp());
+        assertThat(block.getTransactionsList()).hasSize(transactions.size());
+
+        Pair<ImportResult, AionBlockSummary> serialResult = serial.tryToConnectAndFetchSummary(block);
+        Pair<ImportResult, AionBlockSummary> speculativeResult =
+                speculative.tryToConnectAndFetchSummary(block);
+        assertThat(serialResult.getLeft()).isEqualTo(ImportResult.IMPORTED_BEST);
+        assertThat(speculativeResult.getLeft()).isEqualTo(ImportResult.IMPORTED_BEST);
+
+        List<AionTxReceipt> expected = serialResult.getRight().getReceipts();
+        List<AionTxReceipt> actual = speculativeResult.getRight().getReceipts();
+        assertThat(actual).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).isSuccessful()).isTrue();
+            assertThat(actual.get(i).getEnergyUsed()).isEqualTo(expected.get(i).getEnergyUsed());
+            assertThat(actual.get(i).getPostTxState()).isEqualTo(expected.get(i).getPostTxState());
+            assertThat(actual.get(i).getReceiptTrieEncoded())
+                    .isEqualTo(expected.get(i).getReceiptTrieEncoded());
+        }
+        assertThat(speculative.getRepository().getRoot()).isEqualTo(serial.getRepository().getRoot());
+    }
+
+    private AionTransaction deploy(int sender) throws IOException {
+        return AionTransaction.create(
+                keys.get(sender),
+                nextNonce(sender),
+                null,
+                new byte[0],
+                ContractUtils.getContractDeployer("Ticker.sol", "Ticker"),
+                5_000_000,
+                ENERGY_PRICE,
+                TransactionTypes.DEFAULT,
+                null);
+    }
+
+    private AionTransaction tick(int sender, AionAddress contract) {
+        return call(sender, contract, TICKING);
+    }
+
+    private AionTransaction call(int sender, AionAddress contract, byte[] data) {
+        return AionTransaction.create(
+                keys.get(sender),
+                nextNonce(sender),
+                contract,
+                new byte[0],
+                data,
+                2_000_000,
+                ENERGY_PRICE,
+                TransactionTypes.DEFAULT,
+                null);
+    }
+
+    private byte[] nextNonce(int sender) {
+        byte[] nonce = nonces[sender].toByteArray();
+        nonces[sender] = nonces[sender].add(BigInteger.ONE);
+        return nonce;
+    }
+}
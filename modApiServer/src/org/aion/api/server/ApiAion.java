@@ -347,7 +347,7 @@ public abstract class ApiAion extends Api {
     }
 
     public byte[] getCode(AionAddress addr) {
-        return this.ac.getRepository().getCode(addr);
+        return this.ac.getCommittedState().getCode(addr);
     }
 
     /* NOTE: only use this if you need receipts for one or small number transactions in a block.
@@ -503,19 +503,19 @@ public abstract class ApiAion extends Api {
 
     // Transaction Level
     public BigInteger getBalance(String _address) {
-        return this.ac.getRepository().getBalance(AddressUtils.wrapAddress(_address));
+        return this.ac.getCommittedState().getBalance(AddressUtils.wrapAddress(_address));
     }
 
     public BigInteger getBalance(AionAddress _address) {
-        return this.ac.getRepository().getBalance(_address);
+        return this.ac.getCommittedState().getBalance(_address);
     }
 
     public BigInteger getNonce(String _address) {
-        return this.ac.getRepository().getNonce(AddressUtils.wrapAddress(_address));
+        return this.ac.getCommittedState().getNonce(AddressUtils.wrapAddress(_address));
     }
 
     public BigInteger getNonce(AionAddress _address) {
-        return this.ac.getRepository().getNonce(_address);
+        return this.ac.getCommittedState().getNonce(_address);
     }
 
     protected ApiTxResponse sendTransaction(ArgTxCall _params) {
@@ -2,6 +2,7 @@ package org.aion.api.server.rpc;
 
 import static java.util.stream.Collectors.toList;
 import static org.aion.api.server.types.FltrLg.BLOCKS_QUERY_MAX;
+import static org.aion.api.server.types.FltrLg.INDEXED_BLOCKS_QUERY_MAX;
 import static org.aion.util.bytes.ByteUtil.EMPTY_BYTE_ARRAY;
 import static org.aion.util.conversions.Hex.toHexString;
 import static org.aion.util.types.HexConvert.hexStringToBytes;
@@ -82,6 +83,7 @@ import org.aion.zero.impl.config.CfgAion;
 import org.aion.zero.impl.config.CfgConsensusUnity;
 import org.aion.zero.impl.config.CfgEnergyStrategy;
 import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.db.LogIndexStore;
 import org.aion.zero.impl.sync.NodeWrapper;
 import org.aion.zero.impl.types.AionBlock;
 import org.aion.zero.impl.types.AionBlockSummary;
@@ -1185,8 +1187,15 @@ public class ApiWeb3Aion extends ApiAion {
             return filter;
         }
 
-        if (bnTo >= (bnFrom + BLOCKS_QUERY_MAX)) {
-            String errLog = "jsonrpc - eth_newFilter(): can't query more than " + BLOCKS_QUERY_MAX + " blocks";
+        // the log index allows larger ranges by skipping the blocks without matching logs
+        LogIndexStore logIndex = ((AionRepositoryImpl) this.ac.getRepository()).getLogIndex();
+        int queryMax =
+                logIndex != null && logIndex.covers(bnFrom, bnTo)
+                        ? INDEXED_BLOCKS_QUERY_MAX
+                        : BLOCKS_QUERY_MAX;
+
+        if (bnTo >= (bnFrom + queryMax)) {
+            String errLog = "jsonrpc - eth_newFilter(): can't query more than " + queryMax + " blocks";
             LOG.debug(errLog);
             filter.setFilterError(errLog);
             return filter;
@@ -1207,13 +1216,36 @@ public class ApiWeb3Aion extends ApiAion {
             // installation.
 
             toBlock = toBlock == null ? getBestBlock() : toBlock;
-            for (long i = fromBlock.getNumber(); i <= toBlock.getNumber(); i++) {
-                if (filter.isFull()) {
-                    break;
+            long[] candidates =
+                    logIndex == null
+                            ? null
+                            : logIndex.getCandidateBlocks(
+                                    fromBlock.getNumber(), toBlock.getNumber(), rf.address, rf.topics);
+            if (candidates != null) {
+                for (long i : candidates) {
+                    if (filter.isFull()) {
+                        break;
+                    }
+                    Block block = this.ac.getBlockchain().getBlockByNumber(i);
+                    // the chain may have become shorter since the candidates were read
+                    if (block != null) {
+                        filter.onBlock(block, this.ac.getAionHub().getBlockchain());
+                    }
+                }
+            } else if (toBlock.getNumber() >= fromBlock.getNumber() + BLOCKS_QUERY_MAX) {
+                // the indexed range changed since the check above
+                String errLog = "jsonrpc - eth_newFilter(): can't query more than " + BLOCKS_QUERY_MAX + " blocks";
+                LOG.debug(errLog);
+                filter.setFilterError(errLog);
+            } else {
+                for (long i = fromBlock.getNumber(); i <= toBlock.getNumber(); i++) {
+                    if (filter.isFull()) {
+                        break;
+                    }
+                    filter.onBlock(
+                            this.ac.getBlockchain().getBlockByNumber(i),
+                            this.ac.getAionHub().getBlockchain());
                 }
-                filter.onBlock(
-                        this.ac.getBlockchain().getBlockByNumber(i),
-                        this.ac.getAionHub().getBlockchain());
             }
         }
 
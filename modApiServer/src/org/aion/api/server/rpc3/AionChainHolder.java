@@ -24,7 +24,6 @@ import org.aion.zero.impl.blockchain.AionBlockchainImpl;
 import org.aion.zero.impl.blockchain.AionImpl;
 import org.aion.zero.impl.blockchain.IAionChain;
 import org.aion.zero.impl.core.ImportResult;
-import org.aion.zero.impl.db.AionRepositoryImpl;
 import org.aion.zero.impl.keystore.Keystore;
 import org.aion.zero.impl.types.AionBlock;
 import org.aion.zero.impl.types.AionTxInfo;
@@ -230,18 +229,17 @@ public class AionChainHolder implements ChainHolder {
 
     @Override
     public BigInteger getAccountBalance(AionAddress aionAddress) {
-        return this.chain.getRepository().getBalance(aionAddress);
+        return this.chain.getCommittedState().getBalance(aionAddress);
     }
 
     @Override
     public BigInteger getAccountNonce(AionAddress aionAddress) {
-        return this.chain.getRepository().getNonce(aionAddress);
+        return this.chain.getCommittedState().getNonce(aionAddress);
     }
 
     @Override
     public AccountState getAccountState(AionAddress aionAddress) {
-        final AccountState accountState = ((AionRepositoryImpl) this.chain.getRepository())
-            .getAccountState(aionAddress);
+        final AccountState accountState = this.chain.getCommittedState().getAccountState(aionAddress);
         if (accountState == null) {
             return new AccountState();//
         }else {
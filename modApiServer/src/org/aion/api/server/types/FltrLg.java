@@ -21,6 +21,8 @@ import org.aion.base.AionTxReceipt;
 public final class FltrLg extends Fltr {
 
     public static int BLOCKS_QUERY_MAX = 1000;
+    // limit when the range is covered by the log index
+    public static int INDEXED_BLOCKS_QUERY_MAX = 1_000_000;
 
     private List<byte[][]> topics = new ArrayList<>(); //  [[addr1, addr2], null, [A, B], [C]]
     private byte[][] contractAddresses = new byte[0][];
@@ -2,6 +2,7 @@ package org.aion.db.generic;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -190,6 +191,21 @@ public class LockedDatabase implements ByteArrayKeyValueDatabase {
         }
     }
 
+    @Override
+    public List<Map.Entry<byte[], byte[]>> getRange(byte[] startKey, byte[] endKey, int limit) {
+        // acquire read lock
+        lock.readLock().lock();
+
+        try {
+            return database.getRange(startKey, endKey, limit);
+        } catch (Exception e) {
+            throw e;
+        } finally {
+            // releasing read lock
+            lock.readLock().unlock();
+        }
+    }
+
     @Override
     public Optional<byte[]> get(byte[] key) {
         // acquire read lock
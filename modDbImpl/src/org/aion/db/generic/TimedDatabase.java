@@ -2,6 +2,7 @@ package org.aion.db.generic;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.aion.db.impl.ByteArrayKeyValueDatabase;
@@ -143,6 +144,26 @@ public class TimedDatabase implements ByteArrayKeyValueDatabase {
         return result;
     }
 
+    @Override
+    public List<Map.Entry<byte[], byte[]>> getRange(byte[] startKey, byte[] endKey, int limit) {
+        long t1 = System.nanoTime();
+        List<Map.Entry<byte[], byte[]>> result = database.getRange(startKey, endKey, limit);
+        long t2 = System.nanoTime();
+
+        LOG.debug(
+                database.toString()
+                        + " getRange("
+                        + result.size()
+                        + ") in "
+                        + (t2 - t1)
+                        + " ns."
+                        + "\n\t\t\t\t\tstart key = "
+                        + (startKey != null ? Hex.toHexString(startKey) : "null")
+                        + "\n\t\t\t\t\tend key = "
+                        + (endKey != null ? Hex.toHexString(endKey) : "null"));
+        return result;
+    }
+
     @Override
     public Optional<byte[]> get(byte[] key) {
         long t1 = System.nanoTime();
@@ -1,3 +1,44 @@
 package org.aion.db.impl;
 
-public interface ByteArrayKeyValueDatabase extends ByteArrayKeyValueStore, Database {}
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface ByteArrayKeyValueDatabase extends ByteArrayKeyValueStore, Database {
+
+    /**
+     * Retrieves the entries with keys from {@code startKey} (inclusive) to {@code endKey}
+     * (exclusive), ordered by the unsigned lexicographic order of their keys. At most {@code limit}
+     * entries are returned.
+     *
+     * @implNote The default implementation scans all the keys of the database. Implementations
+     *     that store their keys in order read the range directly.
+     */
+    default List<Map.Entry<byte[], byte[]>> getRange(byte[] startKey, byte[] endKey, int limit) {
+        check();
+
+        List<byte[]> keys = new ArrayList<>();
+        Iterator<byte[]> iterator = keys();
+        while (iterator.hasNext()) {
+            byte[] key = iterator.next();
+            if (Arrays.compareUnsigned(key, startKey) >= 0 && Arrays.compareUnsigned(key, endKey) < 0) {
+                keys.add(key);
+            }
+        }
+        keys.sort(Arrays::compareUnsigned);
+
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>();
+        for (byte[] key : keys) {
+            if (entries.size() >= limit) {
+                break;
+            }
+            Optional<byte[]> value = get(key);
+            value.ifPresent(v -> entries.add(new AbstractMap.SimpleImmutableEntry<>(key, v)));
+        }
+        return entries;
+    }
+}
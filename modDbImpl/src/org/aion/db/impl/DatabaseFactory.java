@@ -11,6 +11,7 @@ import org.aion.db.impl.mockdb.MockDB;
 import org.aion.db.impl.mockdb.PersistentMockDB;
 import org.aion.db.impl.mongodb.MongoDB;
 import org.aion.db.impl.rocksdb.RocksDBConstants;
+import org.aion.db.impl.rocksdb.RocksDBProfile;
 import org.aion.db.impl.rocksdb.RocksDBWrapper;
 import org.slf4j.Logger;
 
@@ -37,6 +38,8 @@ public abstract class DatabaseFactory {
 
         public static final String ENABLE_LOCKING = "enable_locking";
 
+        public static final String ROCKSDB_PROFILE = "rocksdb_profile";
+        public static final String COMPACTION_RATE_LIMIT = "compaction_rate_limit";
     }
 
     public static ByteArrayKeyValueDatabase connect(Properties info, Logger log) {
@@ -150,7 +153,9 @@ public abstract class DatabaseFactory {
                             RocksDBConstants.BLOCK_SIZE,
                             RocksDBConstants.WRITE_BUFFER_SIZE,
                             RocksDBConstants.READ_BUFFER_SIZE,
-                            RocksDBConstants.CACHE_SIZE);
+                            RocksDBConstants.CACHE_SIZE,
+                            RocksDBProfile.fromValue(info.getProperty(Props.ROCKSDB_PROFILE)),
+                            getInt(info, Props.COMPACTION_RATE_LIMIT, 0));
                 }
             case H2:
                 {
@@ -2,9 +2,13 @@ package org.aion.db.impl.leveldb;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import org.aion.db.impl.AbstractDB;
 import org.aion.db.impl.SystemExitCodes;
@@ -278,6 +282,27 @@ public class LevelDB extends AbstractDB {
         return Collections.emptyIterator();
     }
 
+    @Override
+    public List<Map.Entry<byte[], byte[]>> getRange(byte[] startKey, byte[] endKey, int limit) {
+        check();
+
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>();
+        try (DBIterator itr = db.iterator()) {
+            itr.seek(startKey);
+            while (itr.hasNext() && entries.size() < limit) {
+                Map.Entry<byte[], byte[]> entry = itr.next();
+                if (Arrays.compareUnsigned(entry.getKey(), endKey) >= 0) {
+                    break;
+                }
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+            }
+        } catch (Exception e) {
+            LOG.error("Unable to read a range of entries from database " + this.toString() + ".", e);
+        }
+
+        return entries;
+    }
+
     /**
      * A wrapper for the {@link DBIterator} conforming to the {@link Iterator} interface.
      *
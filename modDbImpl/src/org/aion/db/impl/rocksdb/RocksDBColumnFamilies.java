@@ -0,0 +1,458 @@
+package org.aion.db.impl.rocksdb;
+
+import static java.lang.Math.max;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.aion.db.impl.rocksdb.RocksDBConstants.BYTES_PER_SYNC;
+import static org.aion.db.impl.rocksdb.RocksDBConstants.LEVEL0_SLOWDOWN_WRITES_TRIGGER;
+import static org.aion.db.impl.rocksdb.RocksDBConstants.LEVEL0_STOP_WRITES_TRIGGER;
+import static org.aion.db.impl.rocksdb.RocksDBConstants.MAX_BACKGROUND_COMPACTIONS;
+import static org.aion.db.impl.rocksdb.RocksDBConstants.MAX_BACKGROUND_FLUSHES;
+import static org.aion.db.impl.rocksdb.RocksDBConstants.MIN_WRITE_BUFFER_NUMBER_TOMERGE;
+import static org.aion.db.impl.rocksdb.RocksDBConstants.OPTIMIZE_LEVEL_STYLE_COMPACTION;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.aion.db.impl.ByteArrayKeyValueDatabase;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompactionPriority;
+import org.rocksdb.CompressionType;
+import org.rocksdb.DBOptions;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+import org.rocksdb.RateLimiter;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatchWithIndex;
+import org.rocksdb.WriteBufferManager;
+import org.rocksdb.WriteOptions;
+import org.slf4j.Logger;
+
+/**
+ * A single RocksDB instance storing each logical database in its own column family.
+ *
+ * <p>All the column families share one LRU block cache and one write buffer manager, which bounds
+ * the memory used by the memtables of all the stores together. The databases returned by {@link
+ * #getDatabase(String)} implement the same {@link ByteArrayKeyValueDatabase} interface as the
+ * other vendors. The instance is opened with the first of its databases and closed with the last.
+ *
+ * <p>A thread can group its writes to any of the column families into one atomic batch between
+ * {@link #startAtomicWrite()} and {@link #commitAtomicWrite()}, or drop them with {@link
+ * #abortAtomicWrite()}. While the batch is open, the reads of that thread include its pending
+ * writes. Key iteration does not.
+ */
+public class RocksDBColumnFamilies {
+
+    private final String path;
+    private final Logger LOG;
+    private final boolean enableDbCompression;
+    private final int maxOpenFiles;
+    private final int writeBufferSize;
+    private final int readBufferSize;
+    private final long cacheSize;
+    private final long sharedWriteBufferSize;
+    private final int compactionRateLimit;
+
+    // column family name => database, in creation order
+    private final Map<String, RocksDBColumnFamily> families = new LinkedHashMap<>();
+    private int openFamilies = 0;
+
+    private RocksDB db;
+    private DBOptions dbOptions;
+    private final Map<RocksDBProfile, ColumnFamilyOptions> cfOptions = new EnumMap<>(RocksDBProfile.class);
+    private LRUCache cache;
+    private RateLimiter rateLimiter;
+    private WriteBufferManager writeBufferManager;
+    private ColumnFamilyHandle defaultHandle;
+    private WriteOptions writeOptions;
+
+    // the atomic batch and the thread writing to it
+    private volatile Thread atomicWriter = null;
+    private WriteBatchWithIndex atomicBatch = null;
+
+    /**
+     * @param path the directory of the database
+     * @param log the logger
+     * @param enableDbCompression whether the data is compressed
+     * @param maxOpenFiles the maximum number of files opened by the database
+     * @param writeBufferSize the size of the memtable of each column family
+     * @param readBufferSize the buffer size for random access reads
+     * @param cacheSize the size of the block cache shared by all the column families
+     * @param sharedWriteBufferSize the total size of the memtables of all the column families
+     * @param compactionRateLimit the maximum rate of compaction and flush writes in MB per second,
+     *     with {@code 0} meaning unlimited
+     */
+    public RocksDBColumnFamilies(
+            String path,
+            Logger log,
+            boolean enableDbCompression,
+            int maxOpenFiles,
+            int writeBufferSize,
+            int readBufferSize,
+            long cacheSize,
+            long sharedWriteBufferSize,
+            int compactionRateLimit) {
+        this.path = new File(path).getAbsolutePath();
+        this.LOG = log;
+        this.enableDbCompression = enableDbCompression;
+        this.maxOpenFiles = maxOpenFiles;
+        this.writeBufferSize = writeBufferSize;
+        this.readBufferSize = readBufferSize;
+        this.cacheSize = cacheSize;
+        this.sharedWriteBufferSize = sharedWriteBufferSize;
+        this.compactionRateLimit = compactionRateLimit;
+
+        LOG.info("RocksDb column families Options: EnableCompression:{} MaxOpenFiles:{} WriteBuffer:{} ReadBuffer:{} SharedCache:{} SharedWriteBuffer:{} CompactionRateLimit:{}"
+            , enableDbCompression, maxOpenFiles, writeBufferSize, readBufferSize, cacheSize, sharedWriteBufferSize, compactionRateLimit);
+
+        RocksDB.loadLibrary();
+    }
+
+    /** Creates a new instance at the given path with the default settings. */
+    public static RocksDBColumnFamilies withDefaults(String path, Logger log, boolean enableDbCompression) {
+        return withDefaults(path, log, enableDbCompression, 0);
+    }
+
+    /** Creates a new instance at the given path with the default settings and a compaction rate limit. */
+    public static RocksDBColumnFamilies withDefaults(
+            String path, Logger log, boolean enableDbCompression, int compactionRateLimit) {
+        return new RocksDBColumnFamilies(
+                path,
+                log,
+                enableDbCompression,
+                RocksDBConstants.MAX_OPEN_FILES,
+                RocksDBConstants.WRITE_BUFFER_SIZE,
+                RocksDBConstants.READ_BUFFER_SIZE,
+                RocksDBConstants.SHARED_CACHE_SIZE,
+                RocksDBConstants.SHARED_WRITE_BUFFER_SIZE,
+                compactionRateLimit);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the database stored in the column family with the given name. The column family is
+     * created when the database is first opened.
+     */
+    public ByteArrayKeyValueDatabase getDatabase(String name) {
+        return getDatabase(name, RocksDBProfile.DEFAULT);
+    }
+
+    /**
+     * Returns the database stored in the column family with the given name, using the table
+     * settings of the given profile. The profile is ignored if the database was already requested.
+     */
+    public synchronized ByteArrayKeyValueDatabase getDatabase(String name, RocksDBProfile profile) {
+        return families.computeIfAbsent(name, n -> new RocksDBColumnFamily(n, profile, this, LOG));
+    }
+
+    /** @return the names of the column families stored at the given path */
+    public static List<String> listColumnFamilies(String path) throws RocksDBException {
+        RocksDB.loadLibrary();
+        List<String> names = new ArrayList<>();
+        try (Options options = new Options()) {
+            for (byte[] name : RocksDB.listColumnFamilies(options, new File(path).getAbsolutePath())) {
+                if (!Arrays.equals(name, RocksDB.DEFAULT_COLUMN_FAMILY)) {
+                    names.add(new String(name, UTF_8));
+                }
+            }
+        }
+        return names;
+    }
+
+    private DBOptions setupDbOptions() {
+        DBOptions options = new DBOptions();
+
+        options.setCreateIfMissing(true);
+        options.setCreateMissingColumnFamilies(true);
+        options.setUseFsync(false);
+        options.setAtomicFlush(true);
+        options.setRandomAccessMaxBufferSize(this.readBufferSize);
+        options.setParanoidChecks(true);
+        options.setMaxOpenFiles(this.maxOpenFiles);
+        options.setIncreaseParallelism(max(1, Runtime.getRuntime().availableProcessors() / 2));
+        options.setMaxBackgroundCompactions(MAX_BACKGROUND_COMPACTIONS);
+        options.setMaxBackgroundFlushes(MAX_BACKGROUND_FLUSHES);
+        options.setBytesPerSync(BYTES_PER_SYNC);
+        options.setWriteBufferManager(writeBufferManager);
+        if (rateLimiter != null) {
+            options.setRateLimiter(rateLimiter);
+        }
+
+        return options;
+    }
+
+    /** @return the column family options for the given profile, created on first use */
+    private ColumnFamilyOptions columnFamilyOptions(RocksDBProfile profile) {
+        return cfOptions.computeIfAbsent(profile, this::setupColumnFamilyOptions);
+    }
+
+    private ColumnFamilyOptions setupColumnFamilyOptions(RocksDBProfile profile) {
+        ColumnFamilyOptions options = new ColumnFamilyOptions();
+
+        options.optimizeLevelStyleCompaction(OPTIMIZE_LEVEL_STYLE_COMPACTION);
+        options.setCompressionType(
+                enableDbCompression
+                        ? CompressionType.LZ4_COMPRESSION
+                        : CompressionType.NO_COMPRESSION);
+        options.setBottommostCompressionType(CompressionType.ZLIB_COMPRESSION);
+        options.setMinWriteBufferNumberToMerge(MIN_WRITE_BUFFER_NUMBER_TOMERGE);
+        options.setLevel0StopWritesTrigger(LEVEL0_STOP_WRITES_TRIGGER);
+        options.setLevel0SlowdownWritesTrigger(LEVEL0_SLOWDOWN_WRITES_TRIGGER);
+        options.setWriteBufferSize(this.writeBufferSize);
+        options.setTableFormatConfig(profile.createTableConfig(cache));
+        options.setDisableAutoCompactions(false);
+        options.setLevelCompactionDynamicLevelBytes(true);
+        options.setCompactionPriority(CompactionPriority.MinOverlappingRatio);
+
+        return options;
+    }
+
+    /** Opens the instance with all the column families found on disk or requested so far. */
+    private boolean openInstance() {
+        File f = new File(path);
+        if (!f.exists() && !f.mkdirs()) {
+            LOG.error("Failed to initialize the database storage at " + path + ".");
+            return false;
+        }
+
+        cache = new LRUCache(cacheSize);
+        writeBufferManager = new WriteBufferManager(sharedWriteBufferSize, cache);
+        if (compactionRateLimit > 0) {
+            rateLimiter = new RateLimiter(compactionRateLimit * 1024L * 1024L);
+        }
+        dbOptions = setupDbOptions();
+        writeOptions = new WriteOptions();
+        writeOptions.setLowPri(true);
+
+        List<String> names = new ArrayList<>();
+        try {
+            if (new File(path, "CURRENT").exists()) {
+                names.addAll(listColumnFamilies(path));
+            }
+        } catch (RocksDBException e) {
+            LOG.error("Failed to read the column families at " + path + " due to: ", e);
+            closeInstance();
+            return false;
+        }
+        for (String name : families.keySet()) {
+            if (!names.contains(name)) {
+                names.add(name);
+            }
+        }
+
+        List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+        descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, columnFamilyOptions(RocksDBProfile.DEFAULT)));
+        for (String name : names) {
+            RocksDBColumnFamily family = families.get(name);
+            RocksDBProfile profile = family == null ? RocksDBProfile.DEFAULT : family.getProfile();
+            descriptors.add(new ColumnFamilyDescriptor(name.getBytes(UTF_8), columnFamilyOptions(profile)));
+        }
+
+        List<ColumnFamilyHandle> handles = new ArrayList<>();
+        try {
+            db = RocksDB.open(dbOptions, path, descriptors, handles);
+        } catch (RocksDBException e) {
+            if (e.getMessage() != null && e.getMessage().contains("lock")) {
+                LOG.error(
+                        "Failed to open the database at "
+                                + path
+                                + "\nCheck if you have two instances running on the same database."
+                                + "\nFailure due to: ",
+                        e);
+            } else {
+                LOG.error("Failed to open the database at " + path + " due to: ", e);
+            }
+            closeInstance();
+            return false;
+        }
+
+        defaultHandle = handles.get(0);
+        for (int i = 0; i < names.size(); i++) {
+            RocksDBColumnFamily family = families.get(names.get(i));
+            if (family == null) {
+                // column families that are not used are closed right away
+                handles.get(i + 1).close();
+            } else {
+                family.setHandle(handles.get(i + 1));
+            }
+        }
+        return true;
+    }
+
+    private void closeInstance() {
+        for (RocksDBColumnFamily family : families.values()) {
+            ColumnFamilyHandle handle = family.getHandle();
+            if (handle != null) {
+                handle.close();
+                family.setHandle(null);
+            }
+        }
+        if (defaultHandle != null) {
+            defaultHandle.close();
+            defaultHandle = null;
+        }
+        if (db != null) {
+            db.close();
+            db = null;
+        }
+        List<AutoCloseable> resources = new ArrayList<>(cfOptions.values());
+        resources.addAll(Arrays.asList(writeOptions, dbOptions, writeBufferManager, rateLimiter, cache));
+        for (AutoCloseable resource : resources) {
+            if (resource != null) {
+                try {
+                    resource.close();
+                } catch (Exception e) {
+                    LOG.error("Unable to release database resources.", e);
+                }
+            }
+        }
+        writeOptions = null;
+        cfOptions.clear();
+        dbOptions = null;
+        rateLimiter = null;
+        writeBufferManager = null;
+        cache = null;
+    }
+
+    /** Opens the given column family, opening the database instance if needed. */
+    synchronized boolean open(RocksDBColumnFamily family) {
+        if (db == null) {
+            LOG.info("Opening the RocksDB column families at {}.", path);
+            if (!openInstance()) {
+                return false;
+            }
+        }
+
+        if (family.getHandle() == null) {
+            try {
+                family.setHandle(db.createColumnFamily(new ColumnFamilyDescriptor(family.getNameBytes(), columnFamilyOptions(family.getProfile()))));
+            } catch (RocksDBException e) {
+                LOG.error("Failed to create the column family " + family + " due to: ", e);
+                return false;
+            }
+        }
+
+        openFamilies++;
+        return true;
+    }
+
+    /** Closes the given column family and closes the instance when no column family is open. */
+    synchronized void close(RocksDBColumnFamily family) {
+        if (family.getHandle() == null) {
+            return;
+        }
+
+        openFamilies--;
+        if (openFamilies == 0) {
+            if (atomicBatch != null) {
+                LOG.warn("Discarding the uncommitted atomic batch of " + atomicWriter.getName() + " on close.");
+                atomicBatch.close();
+                atomicBatch = null;
+                atomicWriter = null;
+            }
+            LOG.info("Closing the RocksDB column families at {}.", path);
+            closeInstance();
+        }
+    }
+
+    /** Drops all the data of the given column family. */
+    synchronized void drop(RocksDBColumnFamily family) throws RocksDBException {
+        ColumnFamilyHandle handle = family.getHandle();
+        db.dropColumnFamily(handle);
+        handle.close();
+        family.setHandle(db.createColumnFamily(new ColumnFamilyDescriptor(family.getNameBytes(), columnFamilyOptions(family.getProfile()))));
+    }
+
+    RocksDB getDb() {
+        return db;
+    }
+
+    WriteOptions getWriteOptions() {
+        return writeOptions;
+    }
+
+    /**
+     * Starts an atomic batch for the calling thread. Until {@link #commitAtomicWrite()}, all the
+     * writes of this thread to any column family are added to the batch.
+     *
+     * @throws IllegalStateException if another thread has an open atomic batch
+     */
+    public synchronized void startAtomicWrite() {
+        Thread current = Thread.currentThread();
+        if (atomicWriter == current) {
+            return;
+        }
+        if (atomicWriter != null) {
+            throw new IllegalStateException("The atomic batch is already used by " + atomicWriter.getName() + ".");
+        }
+        atomicBatch = new WriteBatchWithIndex(true);
+        atomicWriter = current;
+    }
+
+    /**
+     * Writes the atomic batch of the calling thread, if any. The batch is closed even when the
+     * write fails.
+     *
+     * @throws RuntimeException if the batch could not be written to the database
+     */
+    public synchronized void commitAtomicWrite() {
+        if (atomicWriter != Thread.currentThread()) {
+            return;
+        }
+
+        try {
+            if (db != null) {
+                db.write(writeOptions, atomicBatch);
+            }
+        } catch (RocksDBException e) {
+            throw new RuntimeException("Unable to execute the atomic batch on the database at " + path + ": " + e.getMessage(), e);
+        } finally {
+            atomicBatch.close();
+            atomicBatch = null;
+            atomicWriter = null;
+        }
+    }
+
+    /** Discards the atomic batch of the calling thread, if any, without writing it. */
+    public synchronized void abortAtomicWrite() {
+        if (atomicWriter != Thread.currentThread()) {
+            return;
+        }
+
+        atomicBatch.close();
+        atomicBatch = null;
+        atomicWriter = null;
+    }
+
+    /** @return {@code true} if the calling thread has an open atomic batch */
+    public boolean isAtomicWriteOpen() {
+        return atomicWriter == Thread.currentThread();
+    }
+
+    /** @return the atomic batch of the calling thread or {@code null} if it has none */
+    WriteBatchWithIndex getAtomicBatch() {
+        return atomicWriter == Thread.currentThread() ? atomicBatch : null;
+    }
+
+    /** Reads the given key including the pending writes of the calling thread. */
+    byte[] get(ColumnFamilyHandle handle, byte[] key) throws RocksDBException {
+        WriteBatchWithIndex batch = getAtomicBatch();
+        if (batch == null) {
+            return db.get(handle, key);
+        } else {
+            try (ReadOptions readOptions = new ReadOptions()) {
+                return batch.getFromBatchAndDB(db, handle, readOptions, key);
+            }
+        }
+    }
+}
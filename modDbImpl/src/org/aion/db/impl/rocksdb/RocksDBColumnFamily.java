@@ -0,0 +1,341 @@
+package org.aion.db.impl.rocksdb;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.aion.db.impl.rocksdb.RocksDBConstants.RANGE_READAHEAD_SIZE;
+
+import java.io.File;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.aion.db.impl.AbstractDB;
+import org.aion.db.impl.rocksdb.RocksDBWrapper.RocksDBIteratorWrapper;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteBatchWithIndex;
+import org.slf4j.Logger;
+
+/**
+ * A database stored in a column family of a {@link RocksDBColumnFamilies} instance.
+ *
+ * <p>The writes of a thread with an open atomic batch are added to that batch instead of being
+ * applied directly; {@link #commit()} leaves them in the atomic batch.
+ */
+class RocksDBColumnFamily extends AbstractDB {
+
+    private final RocksDBColumnFamilies instance;
+    private final RocksDBProfile profile;
+    private volatile ColumnFamilyHandle handle;
+    private WriteBatch batch = null;
+
+    RocksDBColumnFamily(String name, RocksDBProfile profile, RocksDBColumnFamilies instance, Logger log) {
+        super(name, log);
+        this.profile = profile;
+        this.instance = instance;
+        this.path = instance.getPath();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + ":<name=" + name + ",path=" + path + ">";
+    }
+
+    byte[] getNameBytes() {
+        return name.getBytes(UTF_8);
+    }
+
+    RocksDBProfile getProfile() {
+        return profile;
+    }
+
+    ColumnFamilyHandle getHandle() {
+        return handle;
+    }
+
+    void setHandle(ColumnFamilyHandle handle) {
+        this.handle = handle;
+    }
+
+    // IDatabase Functionality
+    @Override
+    public boolean open() {
+        if (isOpen()) {
+            return true;
+        }
+
+        LOG.debug("Initialising RocksDB column family {}", this.toString());
+        return instance.open(this);
+    }
+
+    @Override
+    public void close() {
+        // do nothing if already closed
+        if (handle == null) {
+            return;
+        }
+
+        LOG.info("Closing database " + this.toString());
+        if (batch != null) {
+            batch.close();
+            batch = null;
+        }
+        instance.close(this);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return handle != null;
+    }
+
+    @Override
+    public boolean isCreatedOnDisk() {
+        return new File(path, "CURRENT").exists();
+    }
+
+    @Override
+    public void compact() {
+        LOG.info("Compacting " + this.toString() + ".");
+        try {
+            instance.getDb().compactRange(handle);
+        } catch (RocksDBException e) {
+            LOG.error("Cannot compact data.", e);
+        }
+    }
+
+    @Override
+    public void drop() {
+        check();
+        try {
+            instance.drop(this);
+        } catch (RocksDBException e) {
+            LOG.error("Unable to drop " + this.toString() + " due to: ", e);
+        }
+    }
+
+    @Override
+    public long approximateSize() {
+        check();
+
+        try {
+            return instance.getDb().getLongProperty(handle, "rocksdb.total-sst-files-size")
+                    + instance.getDb().getLongProperty(handle, "rocksdb.cur-size-all-mem-tables");
+        } catch (RocksDBException e) {
+            LOG.error("Unable to get the size of " + this.toString() + ".", e);
+            return -1L;
+        }
+    }
+
+    // IKetValueStore functionality
+
+    @Override
+    public boolean isEmpty() {
+        check();
+
+        try (RocksIterator itr = instance.getDb().newIterator(handle)) {
+            itr.seekToFirst();
+
+            // check if there is at least one valid item
+            return !itr.isValid();
+        } catch (Exception e) {
+            LOG.error("Unable to extract information from database " + this.toString() + ".", e);
+        }
+
+        return true;
+    }
+
+    @Override
+    public Iterator<byte[]> keys() {
+        check();
+
+        try {
+            ReadOptions readOptions = new ReadOptions();
+            readOptions.setSnapshot(instance.getDb().getSnapshot());
+            return new RocksDBIteratorWrapper(readOptions, instance.getDb().newIterator(handle, readOptions));
+        } catch (Exception e) {
+            LOG.error("Unable to extract keys from database " + this.toString() + ".", e);
+        }
+
+        // empty when retrieval failed
+        return Collections.emptyIterator();
+    }
+
+    /**
+     * @implNote Only reads the committed data. The writes of an open atomic batch are not visible
+     *     to range reads until the batch is committed.
+     */
+    @Override
+    public List<Map.Entry<byte[], byte[]>> getRange(byte[] startKey, byte[] endKey, int limit) {
+        check();
+
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>();
+        try (ReadOptions readOptions = new ReadOptions().setReadaheadSize(RANGE_READAHEAD_SIZE);
+                RocksIterator itr = instance.getDb().newIterator(handle, readOptions)) {
+            for (itr.seek(startKey); itr.isValid() && entries.size() < limit; itr.next()) {
+                byte[] key = itr.key();
+                if (Arrays.compareUnsigned(key, endKey) >= 0) {
+                    break;
+                }
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(key, itr.value()));
+            }
+        } catch (Exception e) {
+            LOG.error("Unable to read a range of entries from database " + this.toString() + ".", e);
+        }
+
+        return entries;
+    }
+
+    @Override
+    protected byte[] getInternal(byte[] key) {
+        try {
+            return instance.get(handle, key);
+        } catch (RocksDBException e) {
+            LOG.error("Unable to get key " + Arrays.toString(key) + ". " + e);
+        }
+
+        return null;
+    }
+
+    @Override
+    public void putInternal(byte[] key, byte[] value) {
+        try {
+            WriteBatchWithIndex atomic = instance.getAtomicBatch();
+            if (atomic != null) {
+                atomic.put(handle, key, value);
+            } else {
+                instance.getDb().put(handle, instance.getWriteOptions(), key, value);
+            }
+        } catch (RocksDBException e) {
+            LOG.error("Unable to put / update key " + Arrays.toString(key) + ". " + e);
+        }
+    }
+
+    @Override
+    public void deleteInternal(byte[] key) {
+        try {
+            WriteBatchWithIndex atomic = instance.getAtomicBatch();
+            if (atomic != null) {
+                atomic.delete(handle, key);
+            } else {
+                instance.getDb().delete(handle, instance.getWriteOptions(), key);
+            }
+        } catch (RocksDBException e) {
+            LOG.error("Unable to delete key " + Arrays.toString(key) + ". " + e);
+        }
+    }
+
+    @Override
+    public void putToBatchInternal(byte[] key, byte[] value) {
+        WriteBatchWithIndex atomic = instance.getAtomicBatch();
+        if (atomic != null) {
+            putInternal(key, value);
+            return;
+        }
+
+        if (batch == null) {
+            batch = new WriteBatch();
+        }
+
+        try {
+            batch.put(handle, key, value);
+        } catch (RocksDBException e) {
+            LOG.error("Unable to perform put to batch operation on " + this.toString() + ".", e);
+
+            // attempting to write directly since batch operation didn't work
+            putInternal(key, value);
+        }
+    }
+
+    @Override
+    public void deleteInBatchInternal(byte[] key) {
+        WriteBatchWithIndex atomic = instance.getAtomicBatch();
+        if (atomic != null) {
+            deleteInternal(key);
+            return;
+        }
+
+        if (batch == null) {
+            batch = new WriteBatch();
+        }
+
+        try {
+            batch.delete(handle, key);
+        } catch (RocksDBException e) {
+            LOG.error("Unable to perform delete in batch operation on " + this.toString() + ".", e);
+
+            // attempting to write directly since batch operation didn't work
+            deleteInternal(key);
+        }
+    }
+
+    @Override
+    public void commit() {
+        check();
+
+        if (batch != null) {
+            try {
+                instance.getDb().write(instance.getWriteOptions(), batch);
+            } catch (RocksDBException e) {
+                LOG.error(
+                        "Unable to execute batch put/update/delete operation on "
+                                + this.toString()
+                                + ".",
+                        e);
+            }
+            batch.close();
+            batch = null;
+        }
+    }
+
+    @Override
+    public void putBatchInternal(Map<byte[], byte[]> input) {
+        WriteBatchWithIndex atomic = instance.getAtomicBatch();
+        if (atomic != null) {
+            for (Map.Entry<byte[], byte[]> e : input.entrySet()) {
+                putInternal(e.getKey(), e.getValue());
+            }
+            return;
+        }
+
+        // try-with-resources will automatically close the batch object
+        try (WriteBatch batch = new WriteBatch()) {
+            for (Map.Entry<byte[], byte[]> e : input.entrySet()) {
+                batch.put(handle, e.getKey(), e.getValue());
+            }
+
+            // bulk atomic update
+            instance.getDb().write(instance.getWriteOptions(), batch);
+        } catch (RocksDBException e) {
+            LOG.error(
+                    "Unable to execute batch put/update operation on " + this.toString() + ".", e);
+        }
+    }
+
+    @Override
+    public void deleteBatchInternal(Collection<byte[]> keys) {
+        WriteBatchWithIndex atomic = instance.getAtomicBatch();
+        if (atomic != null) {
+            for (byte[] key : keys) {
+                deleteInternal(key);
+            }
+            return;
+        }
+
+        try (WriteBatch batch = new WriteBatch()) {
+            for (byte[] key : keys) {
+                batch.delete(handle, key);
+            }
+
+            // bulk atomic update
+            instance.getDb().write(instance.getWriteOptions(), batch);
+        } catch (RocksDBException e) {
+            LOG.error("Unable to execute batch delete operation on " + this.toString() + ".", e);
+        }
+    }
+}
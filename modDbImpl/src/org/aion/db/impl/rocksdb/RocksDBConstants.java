@@ -7,11 +7,18 @@ public class RocksDBConstants {
     public static int READ_BUFFER_SIZE = 8 * 1024 * 1024;
     public static int CACHE_SIZE = 16 * 1024 * 1024;
 
+    // shared by all the column families of a single database instance
+    public static long SHARED_CACHE_SIZE = 256 * 1024 * 1024L;
+    public static long SHARED_WRITE_BUFFER_SIZE = 128 * 1024 * 1024L;
+
     static int BYTES_PER_SYNC = 1024 * 1024;
     static int OPTIMIZE_LEVEL_STYLE_COMPACTION = 128 * 1024 * 1024;
     static int MAX_BACKGROUND_COMPACTIONS = Math.min(Runtime.getRuntime().availableProcessors(), 8);
     static int MAX_BACKGROUND_FLUSHES = 2;
     static int BLOOMFILTER_BITS_PER_KEY = 10;
+    static int LARGE_BLOCK_SIZE = 16 * 1024;
+    static int METADATA_BLOCK_SIZE = 4 * 1024;
+    static long RANGE_READAHEAD_SIZE = 256 * 1024;
     static int MIN_WRITE_BUFFER_NUMBER_TOMERGE = 4;
     static int LEVEL0_STOP_WRITES_TRIGGER = 16;
     static int LEVEL0_SLOWDOWN_WRITES_TRIGGER = 8;
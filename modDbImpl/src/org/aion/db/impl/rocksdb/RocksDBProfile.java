@@ -0,0 +1,109 @@
+package org.aion.db.impl.rocksdb;
+
+import static org.aion.db.impl.rocksdb.RocksDBConstants.BLOCK_SIZE;
+import static org.aion.db.impl.rocksdb.RocksDBConstants.BLOOMFILTER_BITS_PER_KEY;
+import static org.aion.db.impl.rocksdb.RocksDBConstants.LARGE_BLOCK_SIZE;
+import static org.aion.db.impl.rocksdb.RocksDBConstants.METADATA_BLOCK_SIZE;
+
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.DataBlockIndexType;
+import org.rocksdb.IndexType;
+
+/**
+ * Table settings for the different access patterns of the stores kept in RocksDB.
+ *
+ * @implNote The profiles only change the layout of newly written SST files, so the profile of an
+ *     existing database can be changed at any time. Files written with the previous profile are
+ *     rewritten gradually by compaction.
+ */
+public enum RocksDBProfile {
+    /** The settings used for all the stores before profiles were introduced. */
+    DEFAULT("default", BLOCK_SIZE, true, false, false),
+
+    /**
+     * Random reads of small values by hash, e.g. the state and storage tries. Uses a hash index
+     * inside data blocks to avoid the binary search, and partitioned index and filter blocks so
+     * that only the top level index has to stay in memory for large stores.
+     */
+    POINT_LOOKUP("point_lookup", BLOCK_SIZE, true, true, true),
+
+    /**
+     * Dense keys that are read in order, e.g. the block number index. Bloom filters are skipped
+     * since lookups of missing keys are rare and iteration does not use them.
+     */
+    RANGE_SCAN("range_scan", LARGE_BLOCK_SIZE, false, false, false),
+
+    /** Lookups by hash of large values, e.g. the block bodies. */
+    LARGE_VALUES("large_values", LARGE_BLOCK_SIZE, true, false, true);
+
+    private final String value;
+    private final int blockSize;
+    private final boolean bloomFilter;
+    private final boolean dataBlockHashIndex;
+    private final boolean partitionedIndex;
+
+    RocksDBProfile(
+            String value,
+            int blockSize,
+            boolean bloomFilter,
+            boolean dataBlockHashIndex,
+            boolean partitionedIndex) {
+        this.value = value;
+        this.blockSize = blockSize;
+        this.bloomFilter = bloomFilter;
+        this.dataBlockHashIndex = dataBlockHashIndex;
+        this.partitionedIndex = partitionedIndex;
+    }
+
+    public String toValue() {
+        return value;
+    }
+
+    /** @return the profile with the given value or {@link #DEFAULT} for unknown values */
+    public static RocksDBProfile fromValue(String value) {
+        if (value != null) {
+            for (RocksDBProfile profile : values()) {
+                if (profile.value.equalsIgnoreCase(value.trim())) {
+                    return profile;
+                }
+            }
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * Creates the table configuration for this profile.
+     *
+     * @param cache the block cache shared with other stores or {@code null} to use a cache owned
+     *     by the table
+     */
+    BlockBasedTableConfig createTableConfig(Cache cache) {
+        BlockBasedTableConfig bbtc = new BlockBasedTableConfig();
+        bbtc.setBlockSize(blockSize);
+        if (cache != null) {
+            bbtc.setBlockCache(cache);
+        }
+        bbtc.setCacheIndexAndFilterBlocks(true);
+        bbtc.setPinL0FilterAndIndexBlocksInCache(true);
+
+        if (bloomFilter) {
+            // full (not block based) filters on the whole key
+            bbtc.setFilterPolicy(new BloomFilter(BLOOMFILTER_BITS_PER_KEY, false));
+            bbtc.setWholeKeyFiltering(true);
+        }
+        if (dataBlockHashIndex) {
+            bbtc.setDataBlockIndexType(DataBlockIndexType.kDataBlockBinaryAndHash);
+            bbtc.setDataBlockHashTableUtilRatio(0.75);
+        }
+        if (partitionedIndex) {
+            bbtc.setIndexType(IndexType.kTwoLevelIndexSearch);
+            bbtc.setPartitionFilters(bloomFilter);
+            bbtc.setMetadataBlockSize(METADATA_BLOCK_SIZE);
+            bbtc.setCacheIndexAndFilterBlocksWithHighPriority(true);
+            bbtc.setPinTopLevelIndexAndFilter(true);
+        }
+        return bbtc;
+    }
+}
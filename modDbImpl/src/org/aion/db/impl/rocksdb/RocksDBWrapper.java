@@ -1,8 +1,6 @@
 package org.aion.db.impl.rocksdb;
 
 import static java.lang.Math.max;
-import static org.aion.db.impl.rocksdb.RocksDBConstants.BLOCK_SIZE;
-import static org.aion.db.impl.rocksdb.RocksDBConstants.BLOOMFILTER_BITS_PER_KEY;
 import static org.aion.db.impl.rocksdb.RocksDBConstants.BYTES_PER_SYNC;
 import static org.aion.db.impl.rocksdb.RocksDBConstants.LEVEL0_SLOWDOWN_WRITES_TRIGGER;
 import static org.aion.db.impl.rocksdb.RocksDBConstants.LEVEL0_STOP_WRITES_TRIGGER;
@@ -10,20 +8,23 @@ import static org.aion.db.impl.rocksdb.RocksDBConstants.MAX_BACKGROUND_COMPACTIO
 import static org.aion.db.impl.rocksdb.RocksDBConstants.MAX_BACKGROUND_FLUSHES;
 import static org.aion.db.impl.rocksdb.RocksDBConstants.MIN_WRITE_BUFFER_NUMBER_TOMERGE;
 import static org.aion.db.impl.rocksdb.RocksDBConstants.OPTIMIZE_LEVEL_STYLE_COMPACTION;
+import static org.aion.db.impl.rocksdb.RocksDBConstants.RANGE_READAHEAD_SIZE;
 
 import java.io.File;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import org.aion.db.impl.AbstractDB;
 import org.aion.util.types.ByteArrayWrapper;
-import org.rocksdb.BlockBasedTableConfig;
-import org.rocksdb.BloomFilter;
 import org.rocksdb.CompactionPriority;
 import org.rocksdb.CompressionType;
 import org.rocksdb.Options;
+import org.rocksdb.RateLimiter;
 import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
@@ -40,7 +41,10 @@ public class RocksDBWrapper extends AbstractDB {
     private final int writeBufferSize;
     private final int readBufferSize;
     private final int cacheSize;
+    private final RocksDBProfile profile;
+    private final int compactionRateLimit;
     private WriteOptions writeOptions;
+    private RateLimiter rateLimiter;
 
     public RocksDBWrapper(
             String name,
@@ -53,6 +57,39 @@ public class RocksDBWrapper extends AbstractDB {
             int writeBufferSize,
             int readBufferSize,
             int cacheSize) {
+        this(
+                name,
+                path,
+                log,
+                enableDbCache,
+                enableDbCompression,
+                maxOpenFiles,
+                blockSize,
+                writeBufferSize,
+                readBufferSize,
+                cacheSize,
+                RocksDBProfile.DEFAULT,
+                0);
+    }
+
+    /**
+     * @param profile the table settings matching the access pattern of the stored data
+     * @param compactionRateLimit the maximum rate of compaction and flush writes in MB per second,
+     *     with {@code 0} meaning unlimited
+     */
+    public RocksDBWrapper(
+            String name,
+            String path,
+            Logger log,
+            boolean enableDbCache,
+            boolean enableDbCompression,
+            int maxOpenFiles,
+            int blockSize,
+            int writeBufferSize,
+            int readBufferSize,
+            int cacheSize,
+            RocksDBProfile profile,
+            int compactionRateLimit) {
         super(name, path, log, enableDbCache, enableDbCompression);
 
         this.maxOpenFiles = maxOpenFiles;
@@ -60,9 +97,11 @@ public class RocksDBWrapper extends AbstractDB {
         this.writeBufferSize = writeBufferSize;
         this.readBufferSize = readBufferSize;
         this.cacheSize = cacheSize;
+        this.profile = profile;
+        this.compactionRateLimit = compactionRateLimit;
 
-        LOG.info("RocksDb Options: EnableCompression:{} XaxOpenFiles:{} BlockSize:{} WriteBuffer:{} ReadBuffer:{} EnableCache:{} CacheSize:{}"
-            , enableDbCompression, maxOpenFiles, blockSize, writeBufferSize, readBufferSize, enableDbCache, cacheSize);
+        LOG.info("RocksDb Options: EnableCompression:{} XaxOpenFiles:{} BlockSize:{} WriteBuffer:{} ReadBuffer:{} EnableCache:{} CacheSize:{} Profile:{} CompactionRateLimit:{}"
+            , enableDbCompression, maxOpenFiles, blockSize, writeBufferSize, readBufferSize, enableDbCache, cacheSize, profile.toValue(), compactionRateLimit);
 
         RocksDB.loadLibrary();
     }
@@ -91,7 +130,7 @@ public class RocksDBWrapper extends AbstractDB {
         options.setRandomAccessMaxBufferSize(this.readBufferSize);
         options.setParanoidChecks(true);
         options.setMaxOpenFiles(this.maxOpenFiles);
-        options.setTableFormatConfig(setupBlockBasedTableConfig());
+        options.setTableFormatConfig(profile.createTableConfig(null));
         options.setDisableAutoCompactions(false);
         options.setIncreaseParallelism(max(1, Runtime.getRuntime().availableProcessors() / 2));
 
@@ -102,16 +141,13 @@ public class RocksDBWrapper extends AbstractDB {
         options.setCompactionPriority(CompactionPriority.MinOverlappingRatio);
         options.optimizeLevelStyleCompaction(OPTIMIZE_LEVEL_STYLE_COMPACTION);
 
-        return options;
-    }
+        if (compactionRateLimit > 0) {
+            // smooths out the background writes that compete with block import for disk IO
+            rateLimiter = new RateLimiter(compactionRateLimit * 1024L * 1024L);
+            options.setRateLimiter(rateLimiter);
+        }
 
-    private BlockBasedTableConfig setupBlockBasedTableConfig() {
-        BlockBasedTableConfig bbtc = new BlockBasedTableConfig();
-        bbtc.setBlockSize(BLOCK_SIZE);
-        bbtc.setCacheIndexAndFilterBlocks(true);
-        bbtc.setPinL0FilterAndIndexBlocksInCache(true);
-        bbtc.setFilterPolicy(new BloomFilter(BLOOMFILTER_BITS_PER_KEY, false));
-        return bbtc;
+        return options;
     }
 
     // IDatabase Functionality
@@ -167,6 +203,11 @@ public class RocksDBWrapper extends AbstractDB {
 
     @Override
     public void close() {
+        if (rateLimiter != null) {
+            rateLimiter.close();
+            rateLimiter = null;
+        }
+
         // do nothing if already closed
         if (db == null) {
             return;
@@ -257,12 +298,33 @@ public class RocksDBWrapper extends AbstractDB {
         return Collections.emptyIterator();
     }
 
+    @Override
+    public List<Map.Entry<byte[], byte[]>> getRange(byte[] startKey, byte[] endKey, int limit) {
+        check();
+
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>();
+        try (ReadOptions readOptions = new ReadOptions().setReadaheadSize(RANGE_READAHEAD_SIZE);
+                RocksIterator itr = db.newIterator(readOptions)) {
+            for (itr.seek(startKey); itr.isValid() && entries.size() < limit; itr.next()) {
+                byte[] key = itr.key();
+                if (Arrays.compareUnsigned(key, endKey) >= 0) {
+                    break;
+                }
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(key, itr.value()));
+            }
+        } catch (Exception e) {
+            LOG.error("Unable to read a range of entries from database " + this.toString() + ".", e);
+        }
+
+        return entries;
+    }
+
     /**
      * A wrapper for the {@link RocksIterator} conforming to the {@link Iterator} interface.
      *
      * @author Alexandra Roatis
      */
-    private static class RocksDBIteratorWrapper implements Iterator<byte[]> {
+    static class RocksDBIteratorWrapper implements Iterator<byte[]> {
         private final RocksIterator iterator;
         private final ReadOptions readOptions;
         private boolean closed;
@@ -344,14 +406,9 @@ public class RocksDBWrapper extends AbstractDB {
             batch.put(key, value);
         } catch (RocksDBException e) {
             LOG.error("Unable to perform put to batch operation on " + this.toString() + ".", e);
-        } finally {
+
             // attempting to write directly since batch operation didn't work
             putInternal(key, value);
-            try {
-                batch.close();
-            } finally {
-                batch = null;
-            }
         }
     }
 
@@ -365,14 +422,9 @@ public class RocksDBWrapper extends AbstractDB {
             batch.delete(key);
         } catch (RocksDBException e) {
             LOG.error("Unable to perform delete in batch operation on " + this.toString() + ".", e);
-        } finally {
+
             // attempting to write directly since batch operation didn't work
             deleteInternal(key);
-            try {
-                batch.close();
-            } finally {
-                batch = null;
-            }
         }
     }
 
@@ -1,18 +1,28 @@
 package org.aion.db.store;
 
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import org.aion.db.impl.ByteArrayKeyValueDatabase;
 import org.aion.db.impl.ByteArrayKeyValueStore;
 import org.aion.util.types.ByteArrayWrapper;
@@ -24,51 +34,68 @@ import org.slf4j.Logger;
  * [storeBlockChanges] call). When the [prune] is called for a block the deletes for this block are
  * submitted to the underlying DataSource with respect to following inserts. E.g. if the key was
  * deleted at block N and then inserted at block N + 10 this delete is not passed.
+ *
+ * <p>When a journal database is given, the inserted and deleted keys of each block are written to
+ * it when the block changes are stored and are read back only when the block is pruned. Otherwise
+ * the changes are kept in memory. The reference counts of the keys are kept in a compact {@link
+ * RefCountTable} and are rebuilt from the journal database on startup.
+ * When background pruning is enabled, the blocks are pruned in order by a dedicated thread in
+ * batches of at most {@link #PRUNE_BATCH_SIZE} keys, releasing the lock between batches.
  */
 public class JournalPruneDataSource implements ByteArrayKeyValueStore {
 
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
-    private final Logger LOG;
-
-    private class Updates {
-        ByteArrayWrapper blockHeader;
-        long blockNumber;
-        Set<ByteArrayWrapper> insertedKeys = new HashSet<>();
-        Set<ByteArrayWrapper> deletedKeys = new HashSet<>();
-    }
-
-    private static class Ref {
+    /** Maximum number of keys processed while holding the lock when pruning a block. */
+    static final int PRUNE_BATCH_SIZE = 10_000;
+    /** Maximum number of blocks waiting to be pruned before {@link #prune} blocks the caller. */
+    private static final int MAX_PENDING_PRUNES = 64;
 
-        boolean dbRef;
-        int journalRefs;
+    // flags stored in the journal with each inserted key
+    private static final byte REF_EXISTED = 0;
+    private static final byte REF_CREATED = 1;
+    private static final byte REF_CREATED_IN_DB = 2;
 
-        public Ref(boolean dbRef) {
-            this.dbRef = dbRef;
-        }
-
-        public int getTotRefs() {
-            return journalRefs + (dbRef ? 1 : 0);
-        }
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // blocks are pruned one at a time since the lock is released between batches
+    private final Object pruneLock = new Object();
+    private final Logger LOG;
 
-        @Override
-        public String toString() {
-            return "refs: " + String.valueOf(journalRefs) + " db: " + String.valueOf(dbRef);
-        }
+    private static class Updates {
+        // inserted key => journal flag
+        Map<ByteArrayWrapper, Byte> insertedKeys = new LinkedHashMap<>();
+        Set<ByteArrayWrapper> deletedKeys = new LinkedHashSet<>();
     }
 
-    Map<ByteArrayWrapper, Ref> refCount = new HashMap<>();
+    // key => journal references << 1 | database reference
+    private final RefCountTable refCount = new RefCountTable();
 
     private ByteArrayKeyValueStore src;
-    // block hash => updates
-    private LinkedHashMap<ByteArrayWrapper, Updates> blockUpdates = new LinkedHashMap<>();
+    // block record => encoded updates, or null when the updates are kept in memory
+    private final ByteArrayKeyValueStore journal;
+    // block hash => updates, when there is no journal database
+    private final Map<ByteArrayWrapper, Updates> memoryJournal = new HashMap<>();
+    // block hash => block number, for the blocks with updates in the journal
+    private LinkedHashMap<ByteArrayWrapper, Long> blockUpdates = new LinkedHashMap<>();
     private Updates currentUpdates = new Updates();
     private AtomicBoolean enabled = new AtomicBoolean(false);
     private final boolean hasArchive;
+    private volatile ThreadPoolExecutor pruneExecutor = null;
 
     public JournalPruneDataSource(ByteArrayKeyValueStore src, Logger log) {
+        this(src, null, log);
+    }
+
+    /**
+     * @param src the data source being pruned
+     * @param journal the database storing the changes of the blocks that were not pruned yet, from
+     *     which the journal is recovered, or {@code null} to keep the changes in memory
+     * @param log the logger
+     */
+    public JournalPruneDataSource(ByteArrayKeyValueStore src, ByteArrayKeyValueStore journal, Logger log) {
         this.src = src;
+        this.journal = journal;
         this.hasArchive = src instanceof ArchivedDataSource;
         this.LOG = log;
+        recoverJournal();
     }
 
     public void setPruneEnabled(boolean _enabled) {
@@ -79,6 +106,99 @@ public class JournalPruneDataSource implements ByteArrayKeyValueStore {
         return hasArchive;
     }
 
+    /**
+     * Enables or disables pruning on a background thread. When disabled, the blocks already
+     * scheduled are pruned before this method returns.
+     */
+    public synchronized void setBackgroundPruning(boolean background) {
+        if (background && pruneExecutor == null) {
+            ThreadPoolExecutor executor =
+                    new ThreadPoolExecutor(
+                            1,
+                            1,
+                            0L,
+                            TimeUnit.MILLISECONDS,
+                            new ArrayBlockingQueue<>(MAX_PENDING_PRUNES),
+                            r -> {
+                                Thread thread = new Thread(r, "state-prune");
+                                thread.setDaemon(true);
+                                return thread;
+                            },
+                            (r, e) -> {
+                                if (e.isShutdown()) {
+                                    throw new RejectedExecutionException("Pruning was stopped.");
+                                }
+                                // wait for space to keep the blocks in order
+                                Uninterruptibles.putUninterruptibly(e.getQueue(), r);
+                            });
+            pruneExecutor = executor;
+        } else if (!background && pruneExecutor != null) {
+            ThreadPoolExecutor executor = pruneExecutor;
+            pruneExecutor = null;
+            executor.shutdown();
+            boolean terminated = false;
+            while (!terminated) {
+                try {
+                    terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Waits until all the blocks scheduled for pruning on the background thread are pruned. */
+    public void awaitPruning() {
+        ThreadPoolExecutor executor = pruneExecutor;
+        if (executor != null) {
+            try {
+                Uninterruptibles.getUninterruptibly(executor.submit(() -> {}));
+            } catch (ExecutionException | RejectedExecutionException e) {
+                LOG.error("Could not wait for pruning due to ", e);
+            }
+        }
+    }
+
+    /** Rebuilds the reference counts from the block changes stored in the journal. */
+    private void recoverJournal() {
+        if (journal == null) {
+            return;
+        }
+
+        List<byte[]> records = new ArrayList<>();
+        Iterator<byte[]> iterator = journal.keys();
+        while (iterator.hasNext()) {
+            records.add(iterator.next());
+        }
+        if (records.isEmpty()) {
+            return;
+        }
+
+        // replay the blocks in order
+        records.sort(Comparator.comparingLong(JournalPruneDataSource::recordBlockNumber));
+        for (byte[] record : records) {
+            Optional<byte[]> encoded = journal.get(record);
+            if (!encoded.isPresent()) {
+                continue;
+            }
+            Updates updates = decode(encoded.get());
+            for (Map.Entry<ByteArrayWrapper, Byte> entry : updates.insertedKeys.entrySet()) {
+                byte[] key = entry.getKey().toBytes();
+                int ref = refCount.get(key);
+                if (ref == RefCountTable.ABSENT) {
+                    // a reference held by an already pruned block is assumed to be in the database
+                    refCount.put(key, pack(1, entry.getValue() != REF_CREATED));
+                } else {
+                    refCount.put(key, ref + 2);
+                }
+            }
+            blockUpdates.put(recordBlockHash(record), recordBlockNumber(record));
+        }
+
+        LOG.info("Recovered the pruning journal with {} blocks and {} referenced keys.", blockUpdates.size(), refCount.size());
+    }
+
     @Override
     public void putToBatch(byte[] key, byte[] value) {
         checkNotNull(key);
@@ -94,8 +214,7 @@ public class JournalPruneDataSource implements ByteArrayKeyValueStore {
                 // Check to see the value exists.
                 if (value != null) {
                     // If it exists and pruning is enabled.
-                    currentUpdates.insertedKeys.add(keyW);
-                    incRef(keyW);
+                    addInsertedKey(keyW);
 
                     // put to source database.
                     src.putToBatch(key, value);
@@ -164,8 +283,7 @@ public class JournalPruneDataSource implements ByteArrayKeyValueStore {
                 for (Map.Entry<byte[], byte[]> entry : inputMap.entrySet()) {
                     ByteArrayWrapper keyW = ByteArrayWrapper.wrap(entry.getKey());
                     if (entry.getValue() != null) {
-                        currentUpdates.insertedKeys.add(keyW);
-                        incRef(keyW);
+                        addInsertedKey(keyW);
                         insertsOnly.put(entry.getKey(), entry.getValue());
                     } else {
                         currentUpdates.deletedKeys.add(keyW);
@@ -190,22 +308,52 @@ public class JournalPruneDataSource implements ByteArrayKeyValueStore {
         }
     }
 
-    private void incRef(ByteArrayWrapper keyW) {
-        Ref cnt = refCount.get(keyW);
-        if (cnt == null) {
-            cnt = new Ref(src.get(keyW.toBytes()).isPresent());
-            refCount.put(keyW, cnt);
+    private static int pack(int journalRefs, boolean dbRef) {
+        return (journalRefs << 1) | (dbRef ? 1 : 0);
+    }
+
+    private static int journalRefs(int ref) {
+        return ref >>> 1;
+    }
+
+    /** Adds a journal reference for a key inserted by the current block (once per block). */
+    private void addInsertedKey(ByteArrayWrapper keyW) {
+        if (currentUpdates.insertedKeys.containsKey(keyW)) {
+            return;
         }
-        cnt.journalRefs++;
+
+        byte[] key = keyW.toBytes();
+        int ref = refCount.get(key);
+        byte flag;
+        if (ref == RefCountTable.ABSENT) {
+            boolean dbRef = src.get(key).isPresent();
+            refCount.put(key, pack(1, dbRef));
+            flag = dbRef ? REF_CREATED_IN_DB : REF_CREATED;
+        } else {
+            refCount.put(key, ref + 2);
+            flag = REF_EXISTED;
+        }
+        currentUpdates.insertedKeys.put(keyW, flag);
     }
 
-    private Ref decRef(ByteArrayWrapper keyW) {
-        Ref cnt = refCount.get(keyW);
-        cnt.journalRefs -= 1;
-        if (cnt.journalRefs == 0) {
-            refCount.remove(keyW);
+    /**
+     * Removes a journal reference for the given key.
+     *
+     * @return the reference after the update or {@link RefCountTable#ABSENT} if the key was not
+     *     referenced
+     */
+    private int decRef(byte[] key) {
+        int ref = refCount.get(key);
+        if (ref == RefCountTable.ABSENT) {
+            return ref;
+        }
+        ref -= 2;
+        if (journalRefs(ref) == 0) {
+            refCount.remove(key);
+        } else {
+            refCount.put(key, ref);
         }
-        return cnt;
+        return ref;
     }
 
     public void storeBlockChanges(ByteArrayWrapper blockHash, long blockNumber) {
@@ -216,73 +364,333 @@ public class JournalPruneDataSource implements ByteArrayKeyValueStore {
         lock.writeLock().lock();
 
         try {
-            currentUpdates.blockHeader = blockHash;
-            currentUpdates.blockNumber = blockNumber;
-            blockUpdates.put(blockHash, currentUpdates);
+            if (journal == null) {
+                memoryJournal.put(blockHash, currentUpdates);
+            } else {
+                journal.put(recordKey(blockHash, blockNumber), encode(currentUpdates));
+            }
+            blockUpdates.put(blockHash, blockNumber);
             currentUpdates = new Updates();
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    /**
+     * Applies the deletes of the given block and discards the changes of the other blocks with the
+     * same number. Runs on the background thread when background pruning is enabled.
+     */
     public void prune(ByteArrayWrapper blockHash, long blockNumber) {
         if (!enabled.get()) {
             return;
         }
 
-        lock.writeLock().lock();
+        ThreadPoolExecutor executor = pruneExecutor;
+        if (executor == null) {
+            pruneBlock(blockHash, blockNumber);
+        } else {
+            executor.execute(
+                    () -> {
+                        try {
+                            pruneBlock(blockHash, blockNumber);
+                        } catch (Exception e) {
+                            LOG.error("Could not prune block " + blockNumber + " due to ", e);
+                        }
+                    });
+        }
+    }
+
+    private void pruneBlock(ByteArrayWrapper blockHash, long blockNumber) {
+        synchronized (pruneLock) {
+            Updates updates = removeBlockUpdates(blockHash);
+            if (updates == null) {
+                return;
+            }
+
+            // the inserted keys are now referenced by the database
+            inBatches(
+                    updates.insertedKeys.keySet(),
+                    keys -> {
+                        for (byte[] key : keys) {
+                            int ref = decRef(key);
+                            if (ref != RefCountTable.ABSENT && journalRefs(ref) > 0) {
+                                refCount.put(key, ref | 1);
+                            }
+                        }
+                    });
+
+            // apply the deletes that were not followed by inserts
+            inBatches(
+                    updates.deletedKeys,
+                    keys -> {
+                        List<byte[]> batchRemove = new ArrayList<>();
+                        for (byte[] key : keys) {
+                            int ref = refCount.get(key);
+                            if (ref == RefCountTable.ABSENT || journalRefs(ref) == 0) {
+                                batchRemove.add(key);
+                            } else {
+                                refCount.put(key, ref & ~1);
+                            }
+                        }
+                        src.deleteBatch(batchRemove);
+                    });
+
+            rollbackForkBlocks(blockNumber);
+            deleteRecord(blockHash, blockNumber);
+        }
+    }
 
+    private void rollbackForkBlocks(long blockNum) {
+        List<ByteArrayWrapper> forks = new ArrayList<>();
+        lock.readLock().lock();
         try {
-            Updates updates = blockUpdates.remove(blockHash);
-            if (updates != null) {
-                for (ByteArrayWrapper insertedKey : updates.insertedKeys) {
-                    decRef(insertedKey).dbRef = true;
+            for (Map.Entry<ByteArrayWrapper, Long> entry : blockUpdates.entrySet()) {
+                if (entry.getValue() == blockNum) {
+                    forks.add(entry.getKey());
                 }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        for (ByteArrayWrapper fork : forks) {
+            rollback(fork, blockNum);
+        }
+    }
 
-                List<byte[]> batchRemove = new ArrayList<>();
-                for (ByteArrayWrapper key : updates.deletedKeys) {
-                    Ref ref = refCount.get(key);
-                    if (ref == null || ref.journalRefs == 0) {
-                        batchRemove.add(key.toBytes());
-                    } else if (ref != null) {
-                        ref.dbRef = false;
+    private void rollback(ByteArrayWrapper blockHashW, long blockNum) {
+        Updates updates = removeBlockUpdates(blockHashW);
+        if (updates == null) {
+            return;
+        }
+
+        inBatches(
+                updates.insertedKeys.keySet(),
+                keys -> {
+                    List<byte[]> batchRemove = new ArrayList<>();
+                    for (byte[] key : keys) {
+                        // delete the keys no longer referenced by the journal or the database
+                        if (decRef(key) == 0) {
+                            batchRemove.add(key);
+                        }
                     }
-                }
-                src.deleteBatch(batchRemove);
+                    src.deleteBatch(batchRemove);
+                });
 
-                rollbackForkBlocks(blockNumber);
+        deleteRecord(blockHashW, blockNum);
+    }
+
+    /** Removes the block from the journaled blocks and reads its changes from the journal. */
+    private Updates removeBlockUpdates(ByteArrayWrapper blockHash) {
+        lock.writeLock().lock();
+        try {
+            Long number = blockUpdates.remove(blockHash);
+            if (number == null) {
+                return null;
+            }
+            if (journal == null) {
+                return memoryJournal.remove(blockHash);
+            }
+            Optional<byte[]> encoded = journal.get(recordKey(blockHash, number));
+            if (!encoded.isPresent()) {
+                LOG.error("The pruning journal is missing the changes for block {}.", number);
+                return null;
             }
+            return decode(encoded.get());
         } finally {
             lock.writeLock().unlock();
         }
     }
 
-    private void rollbackForkBlocks(long blockNum) {
-        for (Updates updates : new ArrayList<>(blockUpdates.values())) {
-            if (updates.blockNumber == blockNum) {
-                rollback(updates.blockHeader);
+    private void deleteRecord(ByteArrayWrapper blockHash, long blockNumber) {
+        if (journal == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            journal.delete(recordKey(blockHash, blockNumber));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Applies the action to the given keys in batches, holding the write lock for each batch. */
+    private void inBatches(Collection<ByteArrayWrapper> keys, Consumer<List<byte[]>> action) {
+        Iterator<ByteArrayWrapper> iterator = keys.iterator();
+        while (iterator.hasNext()) {
+            List<byte[]> batch = new ArrayList<>(Math.min(keys.size(), PRUNE_BATCH_SIZE));
+            while (iterator.hasNext() && batch.size() < PRUNE_BATCH_SIZE) {
+                batch.add(iterator.next().toBytes());
+            }
+
+            lock.writeLock().lock();
+            try {
+                action.accept(batch);
+            } finally {
+                lock.writeLock().unlock();
             }
         }
     }
 
-    private void rollback(ByteArrayWrapper blockHashW) {
-        Updates updates = blockUpdates.remove(blockHashW);
-        List<byte[]> batchRemove = new ArrayList<>();
-        for (ByteArrayWrapper insertedKey : updates.insertedKeys) {
-            Ref ref = decRef(insertedKey);
-            if (ref.getTotRefs() == 0) {
-                batchRemove.add(insertedKey.toBytes());
+    private static byte[] recordKey(ByteArrayWrapper blockHash, long blockNumber) {
+        return ByteBuffer.allocate(Long.BYTES + blockHash.length())
+                .putLong(blockNumber)
+                .put(blockHash.toBytes())
+                .array();
+    }
+
+    private static long recordBlockNumber(byte[] record) {
+        return ByteBuffer.wrap(record).getLong();
+    }
+
+    private static ByteArrayWrapper recordBlockHash(byte[] record) {
+        byte[] hash = new byte[record.length - Long.BYTES];
+        System.arraycopy(record, Long.BYTES, hash, 0, hash.length);
+        return ByteArrayWrapper.wrap(hash);
+    }
+
+    /**
+     * Encodes the block changes as the number of inserted keys followed by the flag and key of
+     * each inserted key, then the number of deleted keys followed by each deleted key. Lengths and
+     * counts are written as unsigned variable-length integers.
+     */
+    private static byte[] encode(Updates updates) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarInt(out, updates.insertedKeys.size());
+        for (Map.Entry<ByteArrayWrapper, Byte> entry : updates.insertedKeys.entrySet()) {
+            out.write(entry.getValue());
+            writeKey(out, entry.getKey());
+        }
+        writeVarInt(out, updates.deletedKeys.size());
+        for (ByteArrayWrapper key : updates.deletedKeys) {
+            writeKey(out, key);
+        }
+        return out.toByteArray();
+    }
+
+    private static Updates decode(byte[] encoded) {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        Updates updates = new Updates();
+        int inserted = readVarInt(in);
+        for (int i = 0; i < inserted; i++) {
+            byte flag = in.get();
+            updates.insertedKeys.put(readKey(in), flag);
+        }
+        int deleted = readVarInt(in);
+        for (int i = 0; i < deleted; i++) {
+            updates.deletedKeys.add(readKey(in));
+        }
+        return updates;
+    }
+
+    private static void writeKey(ByteArrayOutputStream out, ByteArrayWrapper key) {
+        byte[] bytes = key.toBytes();
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static ByteArrayWrapper readKey(ByteBuffer in) {
+        byte[] key = new byte[readVarInt(in)];
+        in.get(key);
+        return ByteArrayWrapper.wrap(key);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
             }
         }
-        src.deleteBatch(batchRemove);
     }
 
-    public Map<ByteArrayWrapper, Ref> getRefCount() {
-        return refCount;
+    /** @return the number of keys currently referenced by the journal */
+    public int getRefCountSize() {
+        lock.readLock().lock();
+        try {
+            return refCount.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return the blocks with changes in the journal mapped to their numbers */
+    public Map<ByteArrayWrapper, Long> getBlockUpdates() {
+        lock.readLock().lock();
+        try {
+            return new LinkedHashMap<>(blockUpdates);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
-    public LinkedHashMap<ByteArrayWrapper, Updates> getBlockUpdates() {
-        return blockUpdates;
+    /** @return the highest block number with changes in the journal or -1 if there are none */
+    public long getNewestBlockNumber() {
+        lock.readLock().lock();
+        try {
+            long newest = -1;
+            for (long number : blockUpdates.values()) {
+                newest = Math.max(newest, number);
+            }
+            return newest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the lowest block number with changes in the journal or {@link Long#MAX_VALUE} if
+     *     there are none
+     */
+    public long getOldestBlockNumber() {
+        lock.readLock().lock();
+        try {
+            long oldest = Long.MAX_VALUE;
+            for (long number : blockUpdates.values()) {
+                oldest = Math.min(oldest, number);
+            }
+            return oldest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Discards the journal without applying any of its deletes. Used when the journal does not
+     * cover all the changes made since its oldest block, in which case applying the deletes could
+     * remove keys that were inserted again without being tracked.
+     */
+    public void clearJournal() {
+        synchronized (pruneLock) {
+            lock.writeLock().lock();
+            try {
+                if (journal == null) {
+                    memoryJournal.clear();
+                } else {
+                    List<byte[]> records = new ArrayList<>();
+                    for (Map.Entry<ByteArrayWrapper, Long> entry : blockUpdates.entrySet()) {
+                        records.add(recordKey(entry.getKey(), entry.getValue()));
+                    }
+                    journal.deleteBatch(records);
+                }
+                blockUpdates.clear();
+                currentUpdates = new Updates();
+                refCount.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
     }
 
     public int getDeletedKeysCount() {
@@ -331,6 +739,9 @@ public class JournalPruneDataSource implements ByteArrayKeyValueStore {
 
     @Override
     public void close() {
+        // finish the scheduled pruning before closing the source
+        setBackgroundPruning(false);
+
         lock.writeLock().lock();
 
         try {
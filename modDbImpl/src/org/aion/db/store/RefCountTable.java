@@ -0,0 +1,219 @@
+package org.aion.db.store;
+
+import java.util.Arrays;
+
+/**
+ * Map from byte array keys to non-negative {@code int} values stored in primitive arrays, used by
+ * the {@link JournalPruneDataSource} for its reference counts.
+ *
+ * <p>The keys are copied into a single byte arena and indexed by an open addressing hash table
+ * with linear probing. An entry uses the length of its key plus about 24 bytes, compared to well
+ * over 100 bytes for a {@link java.util.HashMap} entry with wrapped keys and boxed values. The
+ * space of removed keys is reclaimed by compacting the arena once it holds mostly garbage.
+ *
+ * <p>This class is not thread safe.
+ */
+final class RefCountTable {
+
+    /** Value returned for keys that are not in the table. */
+    static final int ABSENT = -1;
+
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MIN_COMPACTION_SIZE = 1 << 20;
+    private static final int MAX_ARENA_SIZE = Integer.MAX_VALUE - 8;
+
+    // slot arrays, EMPTY offsets mark free slots
+    private int[] offsets;
+    private int[] lengths;
+    private int[] hashes;
+    private int[] values;
+    private int size;
+
+    // key storage
+    private byte[] arena;
+    private int arenaEnd;
+    private int garbage;
+
+    RefCountTable() {
+        this(1024);
+    }
+
+    RefCountTable(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocateSlots(capacity);
+        this.arena = new byte[capacity * 32];
+    }
+
+    private void allocateSlots(int capacity) {
+        offsets = new int[capacity];
+        Arrays.fill(offsets, EMPTY);
+        lengths = new int[capacity];
+        hashes = new int[capacity];
+        values = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** @return the value associated with the key or {@link #ABSENT} if the key is not present */
+    int get(byte[] key) {
+        int slot = find(key, hash(key));
+        return slot == EMPTY ? ABSENT : values[slot];
+    }
+
+    /**
+     * Associates the given non-negative value with the key.
+     *
+     * @throws IllegalArgumentException if the value is negative
+     */
+    void put(byte[] key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("The table does not accept negative values.");
+        }
+
+        int hash = hash(key);
+        int slot = find(key, hash);
+        if (slot != EMPTY) {
+            values[slot] = value;
+            return;
+        }
+
+        if ((size + 1) * 4L > offsets.length * 3L) {
+            resize(offsets.length << 1);
+        }
+        int offset = append(key);
+
+        int mask = offsets.length - 1;
+        int i = hash & mask;
+        while (offsets[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        offsets[i] = offset;
+        lengths[i] = key.length;
+        hashes[i] = hash;
+        values[i] = value;
+        size++;
+    }
+
+    void remove(byte[] key) {
+        int slot = find(key, hash(key));
+        if (slot == EMPTY) {
+            return;
+        }
+
+        garbage += lengths[slot];
+        deleteSlot(slot);
+        size--;
+
+        if (garbage > MIN_COMPACTION_SIZE && garbage > arenaEnd / 2) {
+            compact();
+        }
+    }
+
+    void clear() {
+        Arrays.fill(offsets, EMPTY);
+        size = 0;
+        arenaEnd = 0;
+        garbage = 0;
+    }
+
+    private static int hash(byte[] key) {
+        int h = Arrays.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    private int find(byte[] key, int hash) {
+        int mask = offsets.length - 1;
+        for (int i = hash & mask; offsets[i] != EMPTY; i = (i + 1) & mask) {
+            if (hashes[i] == hash
+                    && lengths[i] == key.length
+                    && Arrays.equals(
+                            arena, offsets[i], offsets[i] + lengths[i], key, 0, key.length)) {
+                return i;
+            }
+        }
+        return EMPTY;
+    }
+
+    /** Removes the entry by shifting back the following entries of its probe sequence. */
+    private void deleteSlot(int slot) {
+        int mask = offsets.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; offsets[i] != EMPTY; i = (i + 1) & mask) {
+            int ideal = hashes[i] & mask;
+            // the entry can fill the hole if the hole is between its ideal slot and its position
+            if (((i - ideal) & mask) >= ((i - hole) & mask)) {
+                offsets[hole] = offsets[i];
+                lengths[hole] = lengths[i];
+                hashes[hole] = hashes[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        offsets[hole] = EMPTY;
+    }
+
+    private int append(byte[] key) {
+        if (arenaEnd + key.length > arena.length) {
+            if (garbage > 0 && garbage >= key.length) {
+                compact();
+            }
+            if (arenaEnd + key.length > arena.length) {
+                long required = (long) arenaEnd + key.length;
+                if (required > MAX_ARENA_SIZE) {
+                    throw new IllegalStateException("The reference count table is full.");
+                }
+                arena = Arrays.copyOf(arena, (int) Math.min(MAX_ARENA_SIZE, Math.max(required, arena.length * 2L)));
+            }
+        }
+
+        int offset = arenaEnd;
+        System.arraycopy(key, 0, arena, offset, key.length);
+        arenaEnd += key.length;
+        return offset;
+    }
+
+    private void resize(int capacity) {
+        int[] oldOffsets = offsets;
+        int[] oldLengths = lengths;
+        int[] oldHashes = hashes;
+        int[] oldValues = values;
+
+        allocateSlots(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldOffsets.length; j++) {
+            if (oldOffsets[j] != EMPTY) {
+                int i = oldHashes[j] & mask;
+                while (offsets[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                offsets[i] = oldOffsets[j];
+                lengths[i] = oldLengths[j];
+                hashes[i] = oldHashes[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /** Copies the keys that are still present to a new arena. */
+    private void compact() {
+        int liveSize = arenaEnd - garbage;
+        byte[] compacted = new byte[Math.max(liveSize + liveSize / 2, MIN_CAPACITY * 32)];
+        int end = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i] != EMPTY) {
+                System.arraycopy(arena, offsets[i], compacted, end, lengths[i]);
+                offsets[i] = end;
+                end += lengths[i];
+            }
+        }
+        arena = compacted;
+        arenaEnd = end;
+        garbage = 0;
+    }
+}
@@ -753,6 +753,44 @@ public class DriverBaseTest {
         assertThat(keys.hasNext()).isFalse();
     }
 
+    @Test
+    public void testGetRange() {
+        // the range should be empty but not null for an empty database
+        assertThat(db.getRange(k1, k3, 10)).isEmpty();
+        assertThat(db.isLocked()).isFalse();
+
+        Map<byte[], byte[]> ops = new HashMap<>();
+        ops.put(k3, v3);
+        ops.put(k1, v1);
+        ops.put(k2, v2);
+        db.putBatch(ops);
+
+        // the end key is excluded
+        List<Map.Entry<byte[], byte[]>> range = db.getRange(k1, k3, 10);
+        assertThat(db.isLocked()).isFalse();
+        assertThat(range.size()).isEqualTo(2);
+        assertThat(range.get(0).getKey()).isEqualTo(k1);
+        assertThat(range.get(0).getValue()).isEqualTo(v1);
+        assertThat(range.get(1).getKey()).isEqualTo(k2);
+        assertThat(range.get(1).getValue()).isEqualTo(v2);
+
+        // the start key does not need to exist
+        range = db.getRange("key".getBytes(), "key9".getBytes(), 10);
+        assertThat(range.size()).isEqualTo(3);
+        assertThat(range.get(2).getKey()).isEqualTo(k3);
+
+        // the number of entries is limited
+        range = db.getRange(k2, "key9".getBytes(), 1);
+        assertThat(range.size()).isEqualTo(1);
+        assertThat(range.get(0).getKey()).isEqualTo(k2);
+
+        // checking after delete
+        db.delete(k2);
+        range = db.getRange(k1, "key9".getBytes(), 10);
+        assertThat(range.size()).isEqualTo(2);
+        assertThat(range.get(1).getKey()).isEqualTo(k3);
+    }
+
     @Test
     public void testIsEmpty() {
         assertThat(db.isEmpty()).isTrue();
@@ -0,0 +1,125 @@
+package org.aion.db.impl.rocksdb;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import org.aion.db.impl.ByteArrayKeyValueDatabase;
+import org.aion.db.utils.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Tests for the {@link RocksDBColumnFamilies}. */
+public class RocksDBColumnFamiliesTest {
+
+    private static final Logger log = LoggerFactory.getLogger("DB");
+    private static final File testDir = new File(System.getProperty("user.dir"), "tmp");
+    private static final String dbPath = new File(testDir, "columnFamilies").getAbsolutePath();
+
+    private static final byte[] k1 = "key1".getBytes();
+    private static final byte[] k2 = "key2".getBytes();
+    private static final byte[] v1 = "value1".getBytes();
+    private static final byte[] v2 = "value2".getBytes();
+
+    private RocksDBColumnFamilies instance;
+
+    @Before
+    public void setup() {
+        FileUtils.deleteRecursively(testDir);
+        instance = RocksDBColumnFamilies.withDefaults(dbPath, log, false);
+    }
+
+    @After
+    public void tearDown() {
+        assertThat(FileUtils.deleteRecursively(testDir)).isTrue();
+    }
+
+    @Test
+    public void testSeparateColumnFamilies() throws Exception {
+        ByteArrayKeyValueDatabase first = instance.getDatabase("first");
+        ByteArrayKeyValueDatabase second = instance.getDatabase("second");
+        assertThat(first.open()).isTrue();
+        assertThat(second.open()).isTrue();
+
+        first.put(k1, v1);
+        second.put(k1, v2);
+        assertThat(first.get(k1).get()).isEqualTo(v1);
+        assertThat(second.get(k1).get()).isEqualTo(v2);
+        assertThat(first.get(k2).isPresent()).isFalse();
+
+        first.close();
+        second.close();
+        assertThat(RocksDBColumnFamilies.listColumnFamilies(dbPath)).containsExactly("first", "second");
+
+        // the data is persisted in each column family
+        instance = RocksDBColumnFamilies.withDefaults(dbPath, log, false);
+        second = instance.getDatabase("second");
+        assertThat(second.open()).isTrue();
+        assertThat(second.get(k1).get()).isEqualTo(v2);
+        second.close();
+    }
+
+    @Test
+    public void testAtomicWrite() {
+        ByteArrayKeyValueDatabase first = instance.getDatabase("first");
+        ByteArrayKeyValueDatabase second = instance.getDatabase("second");
+        first.open();
+        second.open();
+
+        instance.startAtomicWrite();
+        first.put(k1, v1);
+        second.putToBatch(k2, v2);
+        second.commit();
+
+        // the writes are visible to the writing thread before the batch is committed
+        assertThat(first.get(k1).get()).isEqualTo(v1);
+        assertThat(second.get(k2).get()).isEqualTo(v2);
+        instance.commitAtomicWrite();
+
+        assertThat(first.get(k1).get()).isEqualTo(v1);
+        assertThat(second.get(k2).get()).isEqualTo(v2);
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testAbortAtomicWrite() {
+        ByteArrayKeyValueDatabase first = instance.getDatabase("first");
+        first.open();
+        first.put(k1, v1);
+
+        instance.startAtomicWrite();
+        assertThat(instance.isAtomicWriteOpen()).isTrue();
+        first.put(k2, v2);
+        first.delete(k1);
+        instance.abortAtomicWrite();
+        assertThat(instance.isAtomicWriteOpen()).isFalse();
+
+        // none of the writes of the batch reach the database
+        assertThat(first.get(k1).get()).isEqualTo(v1);
+        assertThat(first.get(k2).isPresent()).isFalse();
+
+        // a new batch can be started after the abort
+        instance.startAtomicWrite();
+        first.put(k2, v2);
+        instance.commitAtomicWrite();
+        assertThat(first.get(k2).get()).isEqualTo(v2);
+
+        first.close();
+    }
+
+    @Test
+    public void testDrop() {
+        ByteArrayKeyValueDatabase first = instance.getDatabase("first");
+        first.open();
+        first.put(k1, v1);
+        first.drop();
+
+        assertThat(first.isOpen()).isTrue();
+        assertThat(first.isEmpty()).isTrue();
+        first.close();
+    }
+}
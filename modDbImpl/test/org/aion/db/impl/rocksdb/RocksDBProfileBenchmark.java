@@ -0,0 +1,132 @@
+package org.aion.db.impl.rocksdb;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.aion.db.utils.FileUtils;
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the random read performance of the {@link RocksDBProfile}s on a store shaped like the
+ * state database: 32-byte hash keys with small values. The database is reopened before the reads
+ * so that the block cache starts cold.
+ */
+@Ignore
+@RunWith(Parameterized.class)
+public class RocksDBProfileBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger("DB");
+    private static final File testDir = new File(System.getProperty("user.dir"), "tmp");
+
+    private static final int KEY_COUNT = 2_000_000;
+    private static final int BATCH_SIZE = 10_000;
+    private static final int WARMUP_READS = 100_000;
+    private static final int MEASURED_READS = 500_000;
+
+    private final RocksDBProfile profile;
+
+    public RocksDBProfileBenchmark(RocksDBProfile profile) {
+        this.profile = profile;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(
+                new Object[][] {
+                    {RocksDBProfile.DEFAULT},
+                    {RocksDBProfile.POINT_LOOKUP},
+                    {RocksDBProfile.RANGE_SCAN},
+                    {RocksDBProfile.LARGE_VALUES}
+                });
+    }
+
+    @After
+    public void tearDown() {
+        assertTrue(FileUtils.deleteRecursively(testDir));
+    }
+
+    private RocksDBWrapper newDatabase() {
+        return new RocksDBWrapper(
+                "profile",
+                testDir.getAbsolutePath(),
+                log,
+                false,
+                true,
+                RocksDBConstants.MAX_OPEN_FILES,
+                RocksDBConstants.BLOCK_SIZE,
+                RocksDBConstants.WRITE_BUFFER_SIZE,
+                RocksDBConstants.READ_BUFFER_SIZE,
+                RocksDBConstants.CACHE_SIZE,
+                profile,
+                0);
+    }
+
+    @Test
+    public void randomReads() {
+        Random random = new Random(KEY_COUNT);
+
+        RocksDBWrapper db = newDatabase();
+        assertTrue(db.open());
+        Map<byte[], byte[]> batch = new HashMap<>();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            batch.put(key(i), randomValue(random));
+            if (batch.size() == BATCH_SIZE) {
+                db.putBatch(batch);
+                batch.clear();
+            }
+        }
+        db.putBatch(batch);
+        db.compact();
+        db.close();
+
+        db = newDatabase();
+        assertTrue(db.open());
+        for (int i = 0; i < WARMUP_READS; i++) {
+            db.get(key(random.nextInt(KEY_COUNT)));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_READS; i++) {
+            db.get(key(random.nextInt(KEY_COUNT)));
+        }
+        long hitTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_READS; i++) {
+            db.get(key(KEY_COUNT + random.nextInt(KEY_COUNT)));
+        }
+        long missTime = System.nanoTime() - start;
+
+        System.out.format(
+                "profile: %s, size: %d MB, existing keys: %d ns/read, missing keys: %d ns/read%n",
+                profile.toValue(),
+                db.approximateSize() / 1024 / 1024,
+                hitTime / MEASURED_READS,
+                missTime / MEASURED_READS);
+        db.close();
+    }
+
+    /** @return a key spread over the key space like a hash, deterministic for each index */
+    private static byte[] key(int index) {
+        byte[] key = new byte[32];
+        new Random(index).nextBytes(key);
+        return key;
+    }
+
+    private static byte[] randomValue(Random random) {
+        byte[] value = new byte[40 + random.nextInt(80)];
+        random.nextBytes(value);
+        return value;
+    }
+}
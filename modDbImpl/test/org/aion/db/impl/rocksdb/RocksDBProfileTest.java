@@ -0,0 +1,78 @@
+package org.aion.db.impl.rocksdb;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import org.aion.db.utils.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Tests for the {@link RocksDBProfile}s. */
+public class RocksDBProfileTest {
+
+    private static final Logger log = LoggerFactory.getLogger("DB");
+    private static final File testDir = new File(System.getProperty("user.dir"), "tmp");
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursively(testDir);
+    }
+
+    @Test
+    public void testFromValue() {
+        for (RocksDBProfile profile : RocksDBProfile.values()) {
+            assertThat(RocksDBProfile.fromValue(profile.toValue())).isEqualTo(profile);
+            assertThat(RocksDBProfile.fromValue(profile.toValue().toUpperCase())).isEqualTo(profile);
+        }
+        assertThat(RocksDBProfile.fromValue(null)).isEqualTo(RocksDBProfile.DEFAULT);
+        assertThat(RocksDBProfile.fromValue("unknown")).isEqualTo(RocksDBProfile.DEFAULT);
+    }
+
+    @Test
+    public void testReadWriteWithEachProfile() {
+        byte[] key = "key".getBytes();
+        byte[] value = "value".getBytes();
+
+        for (RocksDBProfile profile : RocksDBProfile.values()) {
+            RocksDBWrapper db =
+                    new RocksDBWrapper(
+                            profile.toValue(),
+                            testDir.getAbsolutePath(),
+                            log,
+                            false,
+                            true,
+                            RocksDBConstants.MAX_OPEN_FILES,
+                            RocksDBConstants.BLOCK_SIZE,
+                            RocksDBConstants.WRITE_BUFFER_SIZE,
+                            RocksDBConstants.READ_BUFFER_SIZE,
+                            RocksDBConstants.CACHE_SIZE,
+                            profile,
+                            16);
+            assertThat(db.open()).isTrue();
+            db.put(key, value);
+            db.compact();
+            assertThat(db.get(key).get()).isEqualTo(value);
+            assertThat(db.get(value).isPresent()).isFalse();
+            db.close();
+
+            // the data written with one profile can be read with another
+            db =
+                    new RocksDBWrapper(
+                            profile.toValue(),
+                            testDir.getAbsolutePath(),
+                            log,
+                            false,
+                            true,
+                            RocksDBConstants.MAX_OPEN_FILES,
+                            RocksDBConstants.BLOCK_SIZE,
+                            RocksDBConstants.WRITE_BUFFER_SIZE,
+                            RocksDBConstants.READ_BUFFER_SIZE,
+                            RocksDBConstants.CACHE_SIZE);
+            assertThat(db.open()).isTrue();
+            assertThat(db.get(key).get()).isEqualTo(value);
+            db.close();
+        }
+    }
+}
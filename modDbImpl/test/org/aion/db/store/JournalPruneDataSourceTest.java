@@ -16,6 +16,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import org.aion.db.impl.ByteArrayKeyValueDatabase;
 import org.aion.db.impl.DatabaseFactory;
+import org.aion.db.impl.mockdb.MockDB;
 import org.aion.log.AionLoggerFactory;
 import org.aion.util.types.ByteArrayWrapper;
 import org.junit.After;
@@ -1584,4 +1585,146 @@ public class JournalPruneDataSourceTest {
         assertThat(source_db.get(k5).get()).isEqualTo(v5);
         assertThat(source_db.get(k6).get()).isEqualTo(v6);
     }
+
+    @Test
+    public void pruningTest_wRepeatedInsert() {
+        db.setPruneEnabled(true);
+
+        // block b0 : the same key is inserted twice
+        db.put(k1, v1);
+        db.put(k1, v2);
+        assertThat(db.getInsertedKeysCount()).isEqualTo(1);
+        db.storeBlockChanges(b0, 0);
+
+        // block b1
+        db.delete(k1);
+        db.storeBlockChanges(b1, 1);
+
+        db.prune(b0, 0);
+        db.prune(b1, 1);
+        assertThat(source_db.get(k1).isPresent()).isFalse();
+        assertThat(db.getRefCountSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void pruningTest_wJournalRecovery() {
+        MockDB journal = new MockDB("journal", log);
+        journal.open();
+        db = new JournalPruneDataSource(source_db, journal, log);
+        db.setPruneEnabled(true);
+
+        // block b0
+        db.put(k1, v1);
+        db.put(k2, v2);
+        db.storeBlockChanges(b0, 0);
+
+        // block b1
+        db.put(k3, v3);
+        db.delete(k1);
+        db.delete(k2);
+        db.storeBlockChanges(b1, 1);
+
+        // block b2
+        db.put(k2, v3);
+        db.storeBlockChanges(b2, 2);
+
+        // restart from the journal
+        db = new JournalPruneDataSource(source_db, journal, log);
+        db.setPruneEnabled(true);
+        assertThat(db.getBlockUpdates().size()).isEqualTo(3);
+        assertThat(db.getRefCountSize()).isEqualTo(3);
+        assertThat(db.getOldestBlockNumber()).isEqualTo(0);
+        assertThat(db.getNewestBlockNumber()).isEqualTo(2);
+
+        db.prune(b0, 0);
+        db.prune(b1, 1);
+        assertThat(source_db.get(k1).isPresent()).isFalse();
+        // not deleted due to block 2 insert
+        assertThat(source_db.get(k2).get()).isEqualTo(v3);
+        assertThat(source_db.get(k3).get()).isEqualTo(v3);
+
+        db.prune(b2, 2);
+        assertThat(db.getBlockUpdates().size()).isEqualTo(0);
+        assertThat(db.getRefCountSize()).isEqualTo(0);
+        assertThat(journal.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void pruningTest_wClearedJournal() {
+        MockDB journal = new MockDB("journal", log);
+        journal.open();
+        db = new JournalPruneDataSource(source_db, journal, log);
+        db.setPruneEnabled(true);
+
+        db.put(k1, v1);
+        db.storeBlockChanges(b0, 0);
+        db.delete(k1);
+        db.storeBlockChanges(b1, 1);
+
+        db.clearJournal();
+        assertThat(db.getBlockUpdates().size()).isEqualTo(0);
+        assertThat(db.getNewestBlockNumber()).isEqualTo(-1);
+        assertThat(journal.isEmpty()).isTrue();
+
+        // the discarded deletes are not applied
+        db.prune(b1, 1);
+        assertThat(source_db.get(k1).get()).isEqualTo(v1);
+    }
+
+    @Test
+    public void pruningTest_wBackgroundPruning() {
+        db.setPruneEnabled(true);
+        db.setBackgroundPruning(true);
+
+        // block b0
+        db.put(k1, v1);
+        db.put(k2, v2);
+        db.storeBlockChanges(b0, 0);
+
+        // block b1
+        db.delete(k1);
+        db.storeBlockChanges(b1, 1);
+
+        // block b2
+        db.delete(k2);
+        db.put(k3, v3);
+        db.storeBlockChanges(b2, 2);
+
+        db.prune(b0, 0);
+        db.prune(b1, 1);
+        db.awaitPruning();
+        assertThat(source_db.get(k1).isPresent()).isFalse();
+        assertThat(source_db.get(k2).get()).isEqualTo(v2);
+        assertThat(db.getBlockUpdates().size()).isEqualTo(1);
+
+        db.prune(b2, 2);
+        // stopping the background pruning completes the scheduled blocks
+        db.setBackgroundPruning(false);
+        assertThat(source_db.get(k2).isPresent()).isFalse();
+        assertThat(source_db.get(k3).get()).isEqualTo(v3);
+        assertThat(db.getBlockUpdates().size()).isEqualTo(0);
+    }
+
+    @Test
+    public void pruningTest_wMultipleBatches() {
+        db.setPruneEnabled(true);
+
+        List<byte[]> keys = new ArrayList<>();
+        Map<byte[], byte[]> inserts = new HashMap<>();
+        for (int i = 0; i < JournalPruneDataSource.PRUNE_BATCH_SIZE + 10; i++) {
+            byte[] key = randomBytes(32);
+            keys.add(key);
+            inserts.put(key, randomBytes(32));
+        }
+        db.putBatch(inserts);
+        db.storeBlockChanges(b0, 0);
+
+        db.deleteBatch(keys);
+        db.storeBlockChanges(b1, 1);
+
+        db.prune(b0, 0);
+        db.prune(b1, 1);
+        assertThat(source_db.isEmpty()).isTrue();
+        assertThat(db.getRefCountSize()).isEqualTo(0);
+    }
 }
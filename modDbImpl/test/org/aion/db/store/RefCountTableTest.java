@@ -0,0 +1,92 @@
+package org.aion.db.store;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.aion.util.types.ByteArrayWrapper;
+import org.junit.Test;
+
+/** Tests for the {@link RefCountTable}. */
+public class RefCountTableTest {
+
+    @Test
+    public void testPutGetRemove() {
+        RefCountTable table = new RefCountTable();
+        byte[] key = "key1".getBytes();
+
+        assertThat(table.get(key)).isEqualTo(RefCountTable.ABSENT);
+
+        table.put(key, 3);
+        assertThat(table.get(key)).isEqualTo(3);
+        // copies of the key are equal
+        assertThat(table.get("key1".getBytes())).isEqualTo(3);
+        assertThat(table.size()).isEqualTo(1);
+
+        table.put(key, 0);
+        assertThat(table.get(key)).isEqualTo(0);
+        assertThat(table.size()).isEqualTo(1);
+
+        table.remove(key);
+        assertThat(table.get(key)).isEqualTo(RefCountTable.ABSENT);
+        assertThat(table.size()).isEqualTo(0);
+
+        // removing a missing key has no effect
+        table.remove(key);
+        assertThat(table.size()).isEqualTo(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutNegativeValue() {
+        new RefCountTable().put("key1".getBytes(), -1);
+    }
+
+    @Test
+    public void testClear() {
+        RefCountTable table = new RefCountTable(4);
+        for (int i = 0; i < 100; i++) {
+            table.put(new byte[] {(byte) i}, i);
+        }
+
+        table.clear();
+        assertThat(table.size()).isEqualTo(0);
+        assertThat(table.get(new byte[] {5})).isEqualTo(RefCountTable.ABSENT);
+
+        table.put(new byte[] {5}, 1);
+        assertThat(table.get(new byte[] {5})).isEqualTo(1);
+    }
+
+    /** Compares the table against a map through random updates that trigger resizing and compaction. */
+    @Test
+    public void testRandomUpdates() {
+        Random random = new Random(42);
+        RefCountTable table = new RefCountTable(4);
+        Map<ByteArrayWrapper, Integer> expected = new HashMap<>();
+        ByteArrayWrapper[] keys = new ByteArrayWrapper[20_000];
+        for (int i = 0; i < keys.length; i++) {
+            // keys of different lengths, including empty keys
+            byte[] key = new byte[random.nextInt(64)];
+            random.nextBytes(key);
+            keys[i] = ByteArrayWrapper.wrap(key);
+        }
+
+        for (int i = 0; i < 500_000; i++) {
+            ByteArrayWrapper key = keys[random.nextInt(keys.length)];
+            if (random.nextInt(3) == 0) {
+                table.remove(key.toBytes());
+                expected.remove(key);
+            } else {
+                int value = random.nextInt(Integer.MAX_VALUE);
+                table.put(key.toBytes(), value);
+                expected.put(key, value);
+            }
+        }
+
+        assertThat(table.size()).isEqualTo(expected.size());
+        for (ByteArrayWrapper key : keys) {
+            Integer value = expected.get(key);
+            assertThat(table.get(key.toBytes())).isEqualTo(value == null ? RefCountTable.ABSENT : value);
+        }
+    }
+}
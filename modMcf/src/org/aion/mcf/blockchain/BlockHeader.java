@@ -67,4 +67,6 @@ public interface BlockHeader {
     BlockSealType getSealType();
 
     byte[] getTxTrieRoot();
+
+    byte[] getStateRoot();
 }
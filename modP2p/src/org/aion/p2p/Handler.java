@@ -20,6 +20,9 @@ public abstract class Handler {
     }
 
     /**
+     * Handles a received message. The message array is reused for other messages once this method
+     * returns, so implementations must decode or copy what they need instead of keeping it.
+     *
      * @param _id int
      * @param _displayId String
      * @param _msg byte[]
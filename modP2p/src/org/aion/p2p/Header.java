@@ -8,10 +8,17 @@ public class Header {
     public static final int LEN = 8;
 
     private static final int MAX_BODY_LEN_BYTES = P2pConstant.MAX_BODY_SIZE;
+
+    /**
+     * Set in the encoded length of compressed bodies. Compressed bodies are only sent to peers that
+     * announced support for them in the handshake.
+     */
+    private static final int COMPRESSED_FLAG = 1 << 31;
     private final short ver;
     private final byte ctrl;
     private final byte action;
     private int len;
+    private boolean compressed;
 
     /**
      * @param _ver short
@@ -55,9 +62,21 @@ public class Header {
         this.len = _len;
     }
 
+    /** @return boolean whether the body is compressed */
+    public boolean isCompressed() {
+        return this.compressed;
+    }
+
+    public void setCompressed(boolean _compressed) {
+        this.compressed = _compressed;
+    }
+
     /** @return byte[] */
     public byte[] encode() {
-        return ByteBuffer.allocate(LEN).putInt(this.getRoute()).putInt(len).array();
+        return ByteBuffer.allocate(LEN)
+                .putInt(this.getRoute())
+                .putInt(compressed ? len | COMPRESSED_FLAG : len)
+                .array();
     }
 
     /**
@@ -73,10 +92,14 @@ public class Header {
             byte ctrl = bb1.get();
             byte action = bb1.get();
             int len = bb1.getInt();
+            boolean compressed = (len & COMPRESSED_FLAG) != 0;
+            len &= ~COMPRESSED_FLAG;
             if (len > MAX_BODY_LEN_BYTES) {
                 throw new IndexOutOfBoundsException("exceed-max-body-size");
             }
-            return new Header(ver, ctrl, action, len);
+            Header header = new Header(ver, ctrl, action, len);
+            header.compressed = compressed;
+            return header;
         }
     }
 }
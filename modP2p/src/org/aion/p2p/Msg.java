@@ -21,6 +21,16 @@ public abstract class Msg {
         return this.header;
     }
 
+    /**
+     * Indicates whether the encoded body is worth compressing for the peers that support it. Large
+     * responses with repetitive content, such as blocks and state, should return {@code true}.
+     *
+     * @return {@code false} by default
+     */
+    public boolean isCompressible() {
+        return false;
+    }
+
     /**
      * Returns byte array encoding of message.
      *
@@ -1,6 +1,8 @@
 package org.aion.p2p;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.concurrent.ThreadLocalRandom;
 import org.junit.Before;
@@ -64,6 +66,18 @@ public class HeaderTest {
         assertEquals(route, hd.getRoute());
     }
 
+    @Test
+    public void encodeDecodeCompressed() {
+        assertFalse(Header.decode(hd.encode()).isCompressed());
+
+        hd.setLen(P2pConstant.MAX_BODY_SIZE);
+        hd.setCompressed(true);
+        Header hdr = Header.decode(hd.encode());
+        assertTrue(hdr.isCompressed());
+        assertEquals(P2pConstant.MAX_BODY_SIZE, hdr.getLen());
+        assertEquals(route, hdr.getRoute());
+    }
+
     @Test(expected = IndexOutOfBoundsException.class)
     public void encodeDecode3() {
         hd.setLen(P2pConstant.MAX_BODY_SIZE + 1);
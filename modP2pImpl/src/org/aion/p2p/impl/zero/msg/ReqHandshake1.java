@@ -15,6 +15,12 @@ public final class ReqHandshake1 extends ReqHandshake {
 
     private List<Short> versions;
 
+    /** Feature flag announcing that compressed message bodies can be received. */
+    public static final byte FEATURE_COMPRESSION = 0x01;
+
+    // optional trailing byte ignored by the peers that do not know it
+    private final byte features;
+
     // one version byte[2] - short
     private static final byte MAX_VERSIONS_LEN = 63;
 
@@ -36,15 +42,32 @@ public final class ReqHandshake1 extends ReqHandshake {
             int _port,
             final byte[] _revision,
             final List<Short> _versions) {
+        this(_nodeId, _netId, _ip, _port, _revision, _versions, (byte) 0);
+    }
+
+    /** @param _features byte flags of the optional features supported by this node */
+    public ReqHandshake1(
+            final byte[] _nodeId,
+            int _netId,
+            final byte[] _ip,
+            int _port,
+            final byte[] _revision,
+            final List<Short> _versions,
+            byte _features) {
         super(_nodeId, _netId, _ip, _port);
         this.revision = _revision;
         this.versions = _versions.subList(0, Math.min(MAX_VERSIONS_LEN, _versions.size()));
+        this.features = _features;
     }
 
     public byte[] getRevision() {
         return this.revision;
     }
 
+    public byte getFeatures() {
+        return this.features;
+    }
+
     /**
      * @param _bytes byte[]
      * @return ReqHandshake decode body
@@ -82,7 +105,10 @@ public final class ReqHandshake1 extends ReqHandshake {
                     versions.add(version);
                 }
 
-                return new ReqHandshake1(nodeId, netId, ip, port, revision, versions);
+                // decode features, which are missing in the messages of older peers
+                byte features = buf.hasRemaining() ? buf.get() : 0;
+
+                return new ReqHandshake1(nodeId, netId, ip, port, revision, versions, features);
             } catch (Exception e) {
                 if (p2pLOG.isDebugEnabled()) {
                     p2pLOG.debug("req-handshake-decode error.", e);
@@ -100,8 +126,10 @@ public final class ReqHandshake1 extends ReqHandshake {
             if (superBytes == null) return null;
             byte revisionLen = (byte) this.revision.length;
             byte versionsLen = (byte) this.versions.size();
+            int featuresLen = this.features == 0 ? 0 : 1;
             ByteBuffer buf =
-                    ByteBuffer.allocate(superBytes.length + 1 + revisionLen + 1 + versionsLen * 2);
+                    ByteBuffer.allocate(
+                            superBytes.length + 1 + revisionLen + 1 + versionsLen * 2 + featuresLen);
             buf.put(superBytes);
             buf.put(revisionLen);
             buf.put(this.revision);
@@ -109,6 +137,9 @@ public final class ReqHandshake1 extends ReqHandshake {
             for (Short version : versions) {
                 buf.putShort(version);
             }
+            if (featuresLen > 0) {
+                buf.put(this.features);
+            }
             return buf.array();
         }
     }
@@ -15,10 +15,26 @@ public final class ResHandshake1 extends ResHandshake {
     private final Logger p2pLOG;
     private String binaryVersion;
 
+    // optional trailing byte ignored by the peers that do not know it
+    private final byte features;
+
     public ResHandshake1(final Logger p2pLOG, boolean _success, @Nonnull final String _binaryVersion) {
+        this(p2pLOG, _success, _binaryVersion, (byte) 0);
+    }
+
+    /**
+     * @param _features byte flags of the optional features supported by this node, see {@link
+     *     ReqHandshake1#FEATURE_COMPRESSION}
+     */
+    public ResHandshake1(
+            final Logger p2pLOG,
+            boolean _success,
+            @Nonnull final String _binaryVersion,
+            byte _features) {
         super(_success);
 
         this.p2pLOG = p2pLOG;
+        this.features = _features;
 
         // truncate string when byte length large then 127
         if (_binaryVersion.getBytes().length > Byte.MAX_VALUE) {
@@ -50,7 +66,9 @@ public final class ResHandshake1 extends ResHandshake {
                         }
                         return null;
                     }
-                    return new ResHandshake1(p2pLOG, _bytes[0] == 0x01, binaryVersion);
+                    // decode features, which are missing in the messages of older peers
+                    byte features = _bytes.length > MIN_LEN + len ? _bytes[MIN_LEN + len] : 0;
+                    return new ResHandshake1(p2pLOG, _bytes[0] == 0x01, binaryVersion, features);
                 } else {
                     if (p2pLOG.isDebugEnabled()) {
                         p2pLOG.debug(
@@ -73,6 +91,10 @@ public final class ResHandshake1 extends ResHandshake {
         return this.binaryVersion;
     }
 
+    public byte getFeatures() {
+        return this.features;
+    }
+
     @Override
     public byte[] encode() {
         byte[] superBytes = super.encode();
@@ -100,10 +122,14 @@ public final class ResHandshake1 extends ResHandshake {
                 return null;
             }
         }
-        ByteBuffer buf = ByteBuffer.allocate(superBytes.length + 1 + len);
+        int featuresLen = this.features == 0 ? 0 : 1;
+        ByteBuffer buf = ByteBuffer.allocate(superBytes.length + 1 + len + featuresLen);
         buf.put(superBytes);
         buf.put((byte) len);
         buf.put(binaryVersionBytes);
+        if (featuresLen > 0) {
+            buf.put(this.features);
+        }
         return buf.array();
     }
 }
@@ -37,8 +37,10 @@ import org.aion.p2p.impl.comm.Node;
 import org.aion.p2p.impl.comm.NodeMgr;
 import org.aion.p2p.impl.zero.msg.ReqHandshake1;
 import org.aion.p2p.impl.zero.msg.ResHandshake1;
+import org.aion.p2p.impl1.tasks.InboundBodyPool;
 import org.aion.p2p.impl1.tasks.MsgIn;
 import org.aion.p2p.impl1.tasks.MsgOut;
+import org.aion.p2p.impl1.tasks.SelectorGroup;
 import org.aion.p2p.impl1.tasks.TaskClear;
 import org.aion.p2p.impl1.tasks.TaskConnectPeers;
 import org.aion.p2p.impl1.tasks.TaskInbound;
@@ -65,6 +67,8 @@ public final class P2pMgr implements IP2pMgr {
     private final int SOCKET_BACKLOG = 1024;
 
     private final int maxTempNodes, maxActiveNodes, selfNodeIdHash, selfPort;
+    private final int ioThreads;
+    private final boolean compression;
     private final int selfChainId;
     private boolean syncSeedsOnly, upnpEnable;
     private String selfRevision, selfShortId;
@@ -77,6 +81,7 @@ public final class P2pMgr implements IP2pMgr {
 
     private ServerSocketChannel tcpServer;
     private Selector selector;
+    private SelectorGroup selectors;
     private ScheduledExecutorService scheduledWorkers;
     private int errTolerance;
     /*
@@ -94,6 +99,9 @@ public final class P2pMgr implements IP2pMgr {
      */
     private BlockingQueue<MsgIn> receiveMsgQue = new LinkedBlockingQueue<>(50_000);
 
+    // the bodies of the received messages are recycled between the inbound and receive tasks
+    private final InboundBodyPool bodyPool = new InboundBodyPool();
+
     private static ReqHandshake1 cachedReqHandshake1;
     private static ResHandshake1 cachedResHandshake1;
 
@@ -128,6 +136,47 @@ public final class P2pMgr implements IP2pMgr {
             final int _maxActiveNodes,
             final boolean _bootlistSyncOnly,
             final int _errorTolerance) {
+        this(
+                _p2pLog,
+                surveyLog,
+                chainId,
+                _revision,
+                _nodeId,
+                _ip,
+                _port,
+                _bootNodes,
+                _upnpEnable,
+                _maxTempNodes,
+                _maxActiveNodes,
+                _bootlistSyncOnly,
+                _errorTolerance,
+                0,
+                false);
+    }
+
+    /**
+     * @param _ioThreads the number of IO threads, each running its own selector for the reads and
+     *     writes of a share of the peers; with {@code 0} the reads of all peers are done by a single
+     *     inbound thread and the writes by a single outbound thread
+     * @param _compression whether compressed message bodies are announced in the handshake and
+     *     sent to the peers that announce them too
+     */
+    public P2pMgr(
+            final Logger _p2pLog,
+            final Logger surveyLog,
+            final int chainId,
+            final String _revision,
+            final String _nodeId,
+            final String _ip,
+            final int _port,
+            final String[] _bootNodes,
+            final boolean _upnpEnable,
+            final int _maxTempNodes,
+            final int _maxActiveNodes,
+            final boolean _bootlistSyncOnly,
+            final int _errorTolerance,
+            final int _ioThreads,
+            final boolean _compression) {
 
         if (_p2pLog == null) {
             throw new NullPointerException("A non-null logger must be provided in the constructor.");
@@ -146,6 +195,8 @@ public final class P2pMgr implements IP2pMgr {
         this.maxActiveNodes = _maxActiveNodes;
         this.syncSeedsOnly = _bootlistSyncOnly;
         this.errTolerance = _errorTolerance;
+        this.ioThreads = Math.max(_ioThreads, 0);
+        this.compression = _compression;
 
         INode myNode = new Node(false, selfNodeId, selfIp, selfPort);
         myNode.setBinaryVersion(selfRevision);
@@ -163,13 +214,20 @@ public final class P2pMgr implements IP2pMgr {
 
         // rem out for bug:
         // nodeMgr.loadPersistedNodes();
-        cachedResHandshake1 = new ResHandshake1(p2pLOG, true, this.selfRevision);
+        cachedResHandshake1 = new ResHandshake1(p2pLOG, true, this.selfRevision, getFeatures());
     }
 
     @Override
     public void run() {
         try {
-            selector = Selector.open();
+            if (ioThreads > 0) {
+                selectors = SelectorGroup.open(ioThreads);
+                // the first selector also accepts the inbound connections
+                selector = selectors.get(0);
+            } else {
+                selector = Selector.open();
+                selectors = new SelectorGroup(selector);
+            }
 
             scheduledWorkers = new ScheduledThreadPoolExecutor(2);
 
@@ -199,9 +257,17 @@ public final class P2pMgr implements IP2pMgr {
 
             tcpServer.register(selector, SelectionKey.OP_ACCEPT);
 
-            Thread thrdIn = new Thread(getInboundInstance(), "p2p-in");
-            thrdIn.setPriority(Thread.NORM_PRIORITY);
-            thrdIn.start();
+            if (ioThreads > 0) {
+                for (int i = 0; i < ioThreads; i++) {
+                    Thread thrdIo = new Thread(getInboundInstance(selectors.get(i)), "p2p-io-" + i);
+                    thrdIo.setPriority(Thread.NORM_PRIORITY);
+                    thrdIo.start();
+                }
+            } else {
+                Thread thrdIn = new Thread(getInboundInstance(selector), "p2p-in");
+                thrdIn.setPriority(Thread.NORM_PRIORITY);
+                thrdIn.start();
+            }
 
             if (p2pLOG.isDebugEnabled()) {
                 this.handlers.forEach(
@@ -218,7 +284,7 @@ public final class P2pMgr implements IP2pMgr {
                         });
             }
 
-            Thread thrdOut = new Thread(new TaskSend(p2pLOG, surveyLog, this, sendMsgQue, start, nodeMgr, selector), "p2p-out");
+            Thread thrdOut = new Thread(new TaskSend(p2pLOG, surveyLog, this, sendMsgQue, start, nodeMgr, selectors, ioThreads > 0, compression), "p2p-out");
             thrdOut.setPriority(Thread.MAX_PRIORITY);
             thrdOut.start();
 
@@ -354,7 +420,7 @@ public final class P2pMgr implements IP2pMgr {
         }
 
         if (_sc != null) {
-            SelectionKey sk = _sc.keyFor(selector);
+            SelectionKey sk = selectors == null ? null : selectors.keyFor(_sc);
             if (sk != null) {
                 sk.cancel();
                 sk.attach(null);
@@ -469,18 +535,20 @@ public final class P2pMgr implements IP2pMgr {
         nodeMgr.updateChainInfo(blockNumber, blockHash, blockTD);
     }
 
-    private TaskInbound getInboundInstance() {
+    private TaskInbound getInboundInstance(Selector _selector) {
         return new TaskInbound(
                 p2pLOG,
                 surveyLog,
                 this,
-                this.selector,
+                _selector,
+                this.selectors,
                 this.start,
                 this.nodeMgr,
                 this.handlers,
                 this.sendMsgQue,
                 cachedResHandshake1,
-                this.receiveMsgQue);
+                this.receiveMsgQue,
+                this.bodyPool);
     }
 
     private TaskReceive getReceiveInstance() {
@@ -502,7 +570,7 @@ public final class P2pMgr implements IP2pMgr {
                 this.start,
                 this.nodeMgr,
                 this.maxActiveNodes,
-                this.selector,
+                this.selectors,
                 this.sendMsgQue,
                 cachedReqHandshake1);
     }
@@ -514,6 +582,12 @@ public final class P2pMgr implements IP2pMgr {
                 this.selfIp,
                 this.selfPort,
                 this.selfRevision.getBytes(),
-                versions);
+                versions,
+                getFeatures());
+    }
+
+    /** @return the optional features announced in the handshake */
+    private byte getFeatures() {
+        return compression ? ReqHandshake1.FEATURE_COMPRESSION : 0;
     }
 }
@@ -0,0 +1,89 @@
+package org.aion.p2p.impl1.tasks;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.aion.p2p.P2pConstant;
+
+/**
+ * Compresses message bodies with deflate for the peers that announced support for it in the
+ * handshake. A compressed body starts with the length of the original body so it can be restored
+ * into an array of the exact size. Instances are not thread safe; each IO thread uses its own.
+ */
+final class BodyCompression {
+
+    /** Bodies smaller than this are always sent as they are. */
+    static final int MIN_COMPRESSED_SIZE = 1024;
+
+    private static final int LENGTH_BYTES = 4;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private final byte[] overflow = new byte[1];
+    private byte[] buffer = new byte[0];
+
+    /**
+     * @param body the encoded message body
+     * @return the compressed body, or {@code null} when compression does not reduce its size
+     */
+    byte[] compress(final byte[] body) {
+        if (buffer.length < body.length) {
+            buffer = new byte[body.length];
+        }
+        int length = body.length;
+        buffer[0] = (byte) (length >>> 24);
+        buffer[1] = (byte) (length >>> 16);
+        buffer[2] = (byte) (length >>> 8);
+        buffer[3] = (byte) length;
+
+        deflater.reset();
+        deflater.setInput(body);
+        deflater.finish();
+        int size = LENGTH_BYTES;
+        while (!deflater.finished() && size < length) {
+            size += deflater.deflate(buffer, size, length - size);
+        }
+        return deflater.finished() && size < length ? Arrays.copyOf(buffer, size) : null;
+    }
+
+    /**
+     * @param compressed a body produced by {@link #compress(byte[])}
+     * @param pool provides the array for the original body
+     * @return the original body
+     * @throws DataFormatException when the compressed body is invalid or does not match the
+     *     declared length, which is limited to {@link P2pConstant#MAX_BODY_SIZE}
+     */
+    byte[] decompress(final byte[] compressed, final InboundBodyPool pool)
+            throws DataFormatException {
+        if (compressed.length < LENGTH_BYTES) {
+            throw new DataFormatException("missing-body-length");
+        }
+        int length =
+                (compressed[0] & 0xFF) << 24
+                        | (compressed[1] & 0xFF) << 16
+                        | (compressed[2] & 0xFF) << 8
+                        | (compressed[3] & 0xFF);
+        if (length < 0 || length > P2pConstant.MAX_BODY_SIZE) {
+            throw new DataFormatException("exceed-max-body-size");
+        }
+
+        byte[] body = pool.acquire(length);
+        inflater.reset();
+        inflater.setInput(compressed, LENGTH_BYTES, compressed.length - LENGTH_BYTES);
+        int size = 0;
+        while (size < length) {
+            int count = inflater.inflate(body, size, length - size);
+            if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+            size += count;
+        }
+        // the stream must end exactly at the declared length
+        if (size != length || inflater.inflate(overflow) != 0 || !inflater.finished()) {
+            pool.release(body);
+            throw new DataFormatException("invalid-compressed-body");
+        }
+        return body;
+    }
+}
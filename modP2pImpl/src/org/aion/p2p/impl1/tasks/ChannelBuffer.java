@@ -1,28 +1,57 @@
 package org.aion.p2p.impl1.tasks;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.aion.p2p.Header;
+import org.aion.p2p.P2pConstant;
 import org.slf4j.Logger;
 
 /** @author chris */
 class ChannelBuffer {
 
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    /** Limits the bytes queued for one peer; new messages are dropped while it is exceeded. */
+    static final int MAX_OUTBOUND_BYTES = 4 * P2pConstant.SEND_BUFFER_SIZE;
+
+    /** Time without write progress after which a peer with queued messages is considered stuck. */
+    static final long WRITE_STALL_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(P2pConstant.WRITE_MSG_TIMEOUT);
+
+    /** Limits the number of messages given to a single gathering write. */
+    private static final int MAX_GATHERED_MESSAGES = 16;
+
     byte[] body = null;
     Lock lock = new ReentrantLock();
     private Header header = null;
-    // buffer for buffer remaining after NIO select read.
-    private byte[] remainBuffer;
-    private int buffRemain = 0;
     private int nodeIdHash;
     private String displayId;
-    private byte[] bsHead = new byte[Header.LEN];
+
+    // the message in progress is accumulated here across reads: the header bytes first, then the
+    // body which is taken from the pool with its final size and handed over to the handlers
+    private final byte[] bsHead = new byte[Header.LEN];
+    private int headPos = 0;
+    private int bodyPos = 0;
     private AtomicBoolean closed = new AtomicBoolean(false);
 
+    // set when the peer announced in the handshake that it can receive compressed bodies
+    private volatile boolean acceptsCompression = false;
+
+    // the messages waiting for the channel to become writable, guarded by the lock
+    private final ArrayDeque<OutboundMsg> outbound = new ArrayDeque<>();
+    private final ByteBuffer[] gathered = new ByteBuffer[2 * MAX_GATHERED_MESSAGES];
+    private long outboundBytes = 0;
+    private long lastWriteProgress = 0;
+
     private Map<Integer, RouteStatus> routes = new HashMap<>();
 
     private final Logger p2pLOG;
@@ -56,12 +85,13 @@ class ChannelBuffer {
         this.closed.set(true);
     }
 
-    int getBuffRemain() {
-        return buffRemain;
+    /** Indicates whether compressed message bodies can be sent to the peer. */
+    boolean acceptsCompression() {
+        return acceptsCompression;
     }
 
-    void setBuffRemain(int buffRemain) {
-        this.buffRemain = buffRemain;
+    void setAcceptsCompression(boolean acceptsCompression) {
+        this.acceptsCompression = acceptsCompression;
     }
 
     /**
@@ -101,49 +131,45 @@ class ChannelBuffer {
         return routes.get(_route);
     }
 
-    void readHead(ByteBuffer buf) {
-        if (buf.array().length < bsHead.length) {
-            if (p2pLOG.isDebugEnabled()) {
-                p2pLOG.debug("ChannelBuffer readHead short buffer size");
-            }
-            return;
-        }
-
-        buf.get(bsHead);
-        try {
-            header = Header.decode(bsHead);
-        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
-            if (p2pLOG.isDebugEnabled()) {
-                p2pLOG.debug("ChannelBuffer readHead exception.", e);
-            }
-        }
-    }
-
-    void readBody(ByteBuffer buf) {
+    /**
+     * Copies the bytes of the message in progress from the given buffer. Reading stops at the end
+     * of the current message, so the remaining bytes in the buffer belong to the next message.
+     *
+     * @param buf buffer in read mode containing bytes received from the channel
+     * @param pool provides the array for the body of a new message
+     * @return {@code true} when the header and body of the current message are complete
+     * @throws IllegalArgumentException when the received header cannot be decoded
+     * @throws IndexOutOfBoundsException when the received header exceeds the maximum body size
+     */
+    boolean readMessage(ByteBuffer buf, InboundBodyPool pool) {
         if (isHeaderNotCompleted()) {
-            if (p2pLOG.isDebugEnabled()) {
-                p2pLOG.debug("ChannelBuffer readBody no header.");
+            int count = Math.min(buf.remaining(), Header.LEN - headPos);
+            buf.get(bsHead, headPos, count);
+            headPos += count;
+            if (headPos < Header.LEN) {
+                return false;
             }
-            return;
-        }
 
-        if (buf.array().length < header.getLen()) {
-            if (p2pLOG.isDebugEnabled()) {
-                p2pLOG.debug("ChannelBuffer readBody short buffer size.");
-            }
-            return;
+            headPos = 0;
+            header = Header.decode(bsHead);
+            body = header.getLen() == 0 ? EMPTY_BODY : pool.acquire(header.getLen());
+            bodyPos = 0;
         }
 
-        body = new byte[header.getLen()];
-        buf.get(body);
+        int count = Math.min(buf.remaining(), body.length - bodyPos);
+        buf.get(body, bodyPos, count);
+        bodyPos += count;
+        return bodyPos == body.length;
     }
 
     void refreshHeader() {
         header = null;
+        headPos = 0;
     }
 
     void refreshBody() {
         body = null;
+        bodyPos = 0;
     }
 
     /** @return boolean */
@@ -153,15 +179,7 @@ class ChannelBuffer {
 
     /** @return boolean */
     boolean isBodyNotCompleted() {
-        return header == null || body == null || body.length != header.getLen();
-    }
-
-    byte[] getRemainBuffer() {
-        return remainBuffer;
-    }
-
-    void setRemainBuffer(byte[] remainBuffer) {
-        this.remainBuffer = remainBuffer;
+        return header == null || body == null || body.length != header.getLen() || bodyPos != body.length;
     }
 
     public Header getHeader() {
@@ -172,6 +190,130 @@ class ChannelBuffer {
         header = _header;
     }
 
+    /**
+     * Queues an encoded message to be written to this channel. A message is always accepted when
+     * nothing else is queued, so a message larger than the limit can still be sent.
+     *
+     * @param header the encoded header
+     * @param body the encoded body
+     * @param timestamp the time in milliseconds when the message was submitted
+     * @return {@code false} when the message was dropped because the peer is not keeping up
+     */
+    boolean enqueue(byte[] header, byte[] body, long timestamp) {
+        int size = header.length + body.length;
+        if (outbound.isEmpty()) {
+            lastWriteProgress = System.nanoTime();
+        } else if (outboundBytes + size > MAX_OUTBOUND_BYTES) {
+            return false;
+        }
+        outbound.add(new OutboundMsg(ByteBuffer.wrap(header), ByteBuffer.wrap(body), timestamp, size));
+        outboundBytes += size;
+        return true;
+    }
+
+    /**
+     * Writes the queued messages using gathering writes until the channel stops accepting bytes.
+     * Interest in {@link SelectionKey#OP_WRITE} is kept on the key while messages remain queued, so
+     * the selector resumes writing once the peer reads and the calling thread never waits on it.
+     * Queued messages that have not been started are dropped after the write timeout.
+     *
+     * @param key the key of this channel
+     * @throws IOException when the write fails or when no bytes could be written to the peer for
+     *     longer than the stall timeout
+     */
+    void flush(SelectionKey key) throws IOException {
+        long now = System.currentTimeMillis();
+        OutboundMsg head;
+        while ((head = outbound.peek()) != null
+                && head.header.position() == 0
+                && now - head.timestamp > P2pConstant.WRITE_MSG_TIMEOUT) {
+            p2pLOG.debug("timeout-msg to-node={} timestamp={}", displayId, now);
+            outbound.poll();
+            outboundBytes -= head.size;
+        }
+
+        SocketChannel sc = (SocketChannel) key.channel();
+        while (!outbound.isEmpty()) {
+            int count = 0;
+            for (OutboundMsg msg : outbound) {
+                gathered[count++] = msg.header;
+                gathered[count++] = msg.body;
+                if (count == gathered.length) {
+                    break;
+                }
+            }
+            long wrote = sc.write(gathered, 0, count);
+            Arrays.fill(gathered, 0, count, null);
+
+            while ((head = outbound.peek()) != null && !head.header.hasRemaining() && !head.body.hasRemaining()) {
+                outbound.poll();
+                outboundBytes -= head.size;
+            }
+
+            if (wrote > 0) {
+                lastWriteProgress = System.nanoTime();
+            } else {
+                // the socket buffer is full
+                break;
+            }
+        }
+
+        if (outbound.isEmpty()) {
+            int ops = key.interestOps();
+            if ((ops & SelectionKey.OP_WRITE) != 0) {
+                key.interestOps(ops & ~SelectionKey.OP_WRITE);
+            }
+        } else {
+            scheduleFlush(key);
+        }
+    }
+
+    /**
+     * Leaves the writing of the queued messages to the thread of the selector of the key, which
+     * calls {@link #flush(SelectionKey)} once the channel is writable.
+     *
+     * @param key the key of this channel
+     * @throws IOException when no bytes could be written to the peer for longer than the stall
+     *     timeout
+     */
+    void scheduleFlush(SelectionKey key) throws IOException {
+        if (outbound.isEmpty()) {
+            return;
+        }
+        if (System.nanoTime() - lastWriteProgress > WRITE_STALL_TIMEOUT) {
+            throw new IOException("outbound stalled with " + outboundBytes + " bytes queued");
+        }
+        int ops = key.interestOps();
+        if ((ops & SelectionKey.OP_WRITE) == 0) {
+            key.interestOps(ops | SelectionKey.OP_WRITE);
+            key.selector().wakeup();
+        }
+    }
+
+    /** Discards the messages queued for this channel. */
+    void clearOutbound() {
+        outbound.clear();
+        outboundBytes = 0;
+    }
+
+    /** @return the number of bytes queued for this channel */
+    long getOutboundBytes() {
+        return outboundBytes;
+    }
+
+    private static final class OutboundMsg {
+        final ByteBuffer header, body;
+        final long timestamp;
+        final int size;
+
+        OutboundMsg(ByteBuffer header, ByteBuffer body, long timestamp, int size) {
+            this.header = header;
+            this.body = body;
+            this.timestamp = timestamp;
+            this.size = size;
+        }
+    }
+
     class RouteStatus {
 
         long timestamp;
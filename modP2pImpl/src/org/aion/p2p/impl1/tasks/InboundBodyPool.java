@@ -0,0 +1,96 @@
+package org.aion.p2p.impl1.tasks;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recycles the arrays holding the bodies of received messages. The handlers receive bodies of the
+ * exact message length, so the arrays are kept per length and reused for the next message of the
+ * same size. A body is acquired by the inbound task and released once every consumer is done with
+ * it: after the network messages are handled, after a dropped message, or after the handlers of a
+ * queued message return. Bodies that are never released are simply collected.
+ *
+ * <p>The pool is thread safe since bodies are acquired by the inbound threads and released by the
+ * receive threads.
+ */
+public final class InboundBodyPool {
+
+    /** Larger bodies are rare and allocated for each message. */
+    static final int MAX_POOLED_LENGTH = 2 * 1024 * 1024;
+
+    /** Limits the bytes held by the pool across all lengths. */
+    static final long MAX_POOLED_BYTES = 32L * 1024 * 1024;
+
+    /** Limits the number of distinct lengths tracked by the pool. */
+    static final int MAX_POOLED_LENGTHS = 1024;
+
+    private final Map<Integer, Queue<byte[]>> free = new ConcurrentHashMap<>();
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    // for runtime survey information
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+
+    public InboundBodyPool() {}
+
+    /**
+     * @param length the exact length of the body
+     * @return an array of the given length, with undefined content when it is reused
+     */
+    byte[] acquire(int length) {
+        Queue<byte[]> queue = free.get(length);
+        if (queue != null) {
+            byte[] body = queue.poll();
+            if (body != null) {
+                pooledBytes.addAndGet(-length);
+                reused.incrementAndGet();
+                return body;
+            }
+        }
+        allocated.incrementAndGet();
+        return new byte[length];
+    }
+
+    /**
+     * Returns a body to the pool. The caller must not use the array afterwards.
+     *
+     * @param body a body obtained from {@link #acquire(int)}
+     */
+    void release(byte[] body) {
+        int length = body.length;
+        if (length == 0 || length > MAX_POOLED_LENGTH) {
+            return;
+        }
+        if (pooledBytes.addAndGet(length) > MAX_POOLED_BYTES) {
+            pooledBytes.addAndGet(-length);
+            return;
+        }
+        Queue<byte[]> queue = free.get(length);
+        if (queue == null) {
+            if (free.size() >= MAX_POOLED_LENGTHS) {
+                pooledBytes.addAndGet(-length);
+                return;
+            }
+            queue = free.computeIfAbsent(length, k -> new ConcurrentLinkedQueue<>());
+        }
+        queue.offer(body);
+    }
+
+    /** @return the bytes currently held by the pool */
+    long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /** @return the number of bodies served from the pool */
+    long getReused() {
+        return reused.get();
+    }
+
+    /** @return the number of bodies that had to be allocated */
+    long getAllocated() {
+        return allocated.get();
+    }
+}
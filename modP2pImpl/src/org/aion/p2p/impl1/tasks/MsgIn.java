@@ -6,6 +6,7 @@ public class MsgIn {
     private final String displayId;
     private final int route;
     private final byte[] msg;
+    private final InboundBodyPool pool;
 
     /**
      * Constructs an incoming message.
@@ -16,10 +17,30 @@ public class MsgIn {
      * @param msg The message.
      */
     MsgIn(final int nodeId, final String displayId, final int route, final byte[] msg) {
+        this(nodeId, displayId, route, msg, null);
+    }
+
+    /**
+     * Constructs an incoming message whose body is returned to the given pool on {@link
+     * #release()}.
+     *
+     * @param nodeId The node id.
+     * @param displayId The display id.
+     * @param route The route.
+     * @param msg The message.
+     * @param pool The pool the message was taken from, or {@code null}.
+     */
+    MsgIn(
+            final int nodeId,
+            final String displayId,
+            final int route,
+            final byte[] msg,
+            final InboundBodyPool pool) {
         this.nodeId = nodeId;
         this.displayId = displayId;
         this.route = route;
         this.msg = msg;
+        this.pool = pool;
     }
 
     public int getNodeId() {
@@ -37,4 +58,11 @@ public class MsgIn {
     public byte[] getMsg() {
         return this.msg;
     }
+
+    /** Returns the message body to its pool once all the handlers are done with it. */
+    void release() {
+        if (this.pool != null) {
+            this.pool.release(this.msg);
+        }
+    }
 }
@@ -0,0 +1,77 @@
+package org.aion.p2p.impl1.tasks;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The selectors of the p2p IO threads. Each peer channel is registered with a single selector and
+ * is read and written only by the thread running that selector.
+ */
+public final class SelectorGroup {
+
+    private final Selector[] selectors;
+    private final AtomicInteger next = new AtomicInteger(0);
+
+    public SelectorGroup(final Selector... _selectors) {
+        if (_selectors.length == 0) {
+            throw new IllegalArgumentException("At least one selector is required.");
+        }
+        this.selectors = _selectors;
+    }
+
+    /**
+     * @param size the number of selectors
+     * @return a group of newly opened selectors
+     */
+    public static SelectorGroup open(int size) throws IOException {
+        Selector[] selectors = new Selector[size];
+        for (int i = 0; i < size; i++) {
+            selectors[i] = Selector.open();
+        }
+        return new SelectorGroup(selectors);
+    }
+
+    public int size() {
+        return selectors.length;
+    }
+
+    public Selector get(int index) {
+        return selectors[index];
+    }
+
+    /**
+     * Registers the channel for reads with the selectors in turn, spreading the peers over the IO
+     * threads.
+     *
+     * @param channel a connected channel in non-blocking mode
+     * @param attachment the channel buffer of the peer
+     * @return the key of the registration
+     */
+    SelectionKey register(final SelectableChannel channel, final ChannelBuffer attachment)
+            throws ClosedChannelException {
+        Selector selector = selectors[Math.floorMod(next.getAndIncrement(), selectors.length)];
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ, attachment);
+        // the selector thread may be waiting in a select that does not include the new channel
+        selector.wakeup();
+        return key;
+    }
+
+    /**
+     * @param channel a peer channel
+     * @return the key of the channel with the selector it is registered with, or {@code null} if
+     *     it is not registered
+     */
+    public SelectionKey keyFor(final SelectableChannel channel) {
+        for (Selector selector : selectors) {
+            SelectionKey key = channel.keyFor(selector);
+            if (key != null) {
+                return key;
+            }
+        }
+        return null;
+    }
+}
@@ -2,7 +2,6 @@ package org.aion.p2p.impl1.tasks;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.concurrent.BlockingQueue;
@@ -25,7 +24,7 @@ public class TaskConnectPeers implements Runnable {
     private final IP2pMgr mgr;
     private final AtomicBoolean start;
     private final BlockingQueue<MsgOut> sendMsgQue;
-    private final Selector selector;
+    private final SelectorGroup selectors;
     private final ReqHandshake1 cachedReqHS;
 
     public TaskConnectPeers(
@@ -37,13 +36,26 @@ public class TaskConnectPeers implements Runnable {
             final Selector _selector,
             final BlockingQueue<MsgOut> _sendMsgQue,
             final ReqHandshake1 _cachedReqHS) {
+        this(p2pLOG, _mgr, _start, _nodeMgr, _maxActiveNodes, new SelectorGroup(_selector), _sendMsgQue, _cachedReqHS);
+    }
+
+    /** Spreads the outbound connections over the selectors of the group. */
+    public TaskConnectPeers(
+            final Logger p2pLOG,
+            final IP2pMgr _mgr,
+            final AtomicBoolean _start,
+            final INodeMgr _nodeMgr,
+            final int _maxActiveNodes,
+            final SelectorGroup _selectors,
+            final BlockingQueue<MsgOut> _sendMsgQue,
+            final ReqHandshake1 _cachedReqHS) {
 
         this.p2pLOG = p2pLOG;
         this.start = _start;
         this.nodeMgr = _nodeMgr;
         this.maxActiveNodes = _maxActiveNodes;
         this.mgr = _mgr;
-        this.selector = _selector;
+        this.selectors = _selectors;
         this.sendMsgQue = _sendMsgQue;
         this.cachedReqHS = _cachedReqHS;
     }
@@ -98,11 +110,10 @@ public class TaskConnectPeers implements Runnable {
                         }
 
                         channel.configureBlocking(false);
-                        SelectionKey sk = channel.register(this.selector, SelectionKey.OP_READ);
                         ChannelBuffer rb = new ChannelBuffer(p2pLOG);
                         rb.setDisplayId(node.getIdShort());
                         rb.setNodeIdHash(nodeIdHash);
-                        sk.attach(rb);
+                        this.selectors.register(channel, rb);
 
                         node.refreshTimestamp();
                         node.setChannel(channel);
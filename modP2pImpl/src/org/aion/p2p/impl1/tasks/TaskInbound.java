@@ -15,6 +15,7 @@ import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Handler;
 import org.aion.p2p.Header;
@@ -29,7 +30,6 @@ import org.aion.p2p.impl.zero.msg.ReqHandshake1;
 import org.aion.p2p.impl.zero.msg.ResActiveNodes;
 import org.aion.p2p.impl.zero.msg.ResHandshake;
 import org.aion.p2p.impl.zero.msg.ResHandshake1;
-import org.aion.p2p.impl1.P2pException;
 import org.aion.p2p.impl1.P2pMgr.Dest;
 import org.slf4j.Logger;
 
@@ -38,12 +38,14 @@ public class TaskInbound implements Runnable {
     private final Logger p2pLOG, surveyLog;
     private final IP2pMgr mgr;
     private final Selector selector;
+    private final SelectorGroup selectors;
     private final INodeMgr nodeMgr;
     private final Map<Integer, List<Handler>> handlers;
     private final AtomicBoolean start;
     private final BlockingQueue<MsgOut> sendMsgQue;
     private final ResHandshake1 cachedResHandshake1;
     private final BlockingQueue<MsgIn> receiveMsgQue;
+    private final InboundBodyPool bodyPool;
 
     // used to impose a low limit to this type of messages
     private static final int ACT_BROADCAST_BLOCK = 7;
@@ -51,9 +53,22 @@ public class TaskInbound implements Runnable {
 
     private static final int OFFER_TIMEOUT = 100; // in milliseconds
 
+    /**
+     * Size of the direct buffer reused for all the reads of this task. The messages are assembled
+     * in their channel buffers so it does not need to fit a whole message.
+     */
+    static final int READ_BUFFER_SIZE = 256 * 1024;
+
+    /** Limits the reads from one channel per selection to keep the reads fair. */
+    private static final int MAX_READS_PER_SELECT = 16;
+
     // used when survey logging
     private static final long MIN_DURATION = 60_000_000_000L; // 60 seconds
-    private long waitTime = 0, processTime = 0;
+    private long waitTime = 0, processTime = 0, decompressTime = 0;
+    // the compressed body bytes received and their size after decompression
+    private long decompressIn = 0, decompressOut = 0;
+
+    private final BodyCompression bodyCompression = new BodyCompression();
 
     public TaskInbound(
             final Logger p2pLOG,
@@ -66,17 +81,52 @@ public class TaskInbound implements Runnable {
             final BlockingQueue<MsgOut> _sendMsgQue,
             final ResHandshake1 _cachedResHandshake1,
             final BlockingQueue<MsgIn> _receiveMsgQue) {
+        this(
+                p2pLOG,
+                surveyLog,
+                _mgr,
+                _selector,
+                new SelectorGroup(_selector),
+                _start,
+                _nodeMgr,
+                _handlers,
+                _sendMsgQue,
+                _cachedResHandshake1,
+                _receiveMsgQue,
+                new InboundBodyPool());
+    }
+
+    /**
+     * Handles the reads and writes of the channels registered with the given selector. The
+     * accepted channels are spread over the selectors of the group. The bodies of the received
+     * messages are taken from the given pool and returned to it once they are handled.
+     */
+    public TaskInbound(
+            final Logger p2pLOG,
+            final Logger surveyLog,
+            final IP2pMgr _mgr,
+            final Selector _selector,
+            final SelectorGroup _selectors,
+            final AtomicBoolean _start,
+            final INodeMgr _nodeMgr,
+            final Map<Integer, List<Handler>> _handlers,
+            final BlockingQueue<MsgOut> _sendMsgQue,
+            final ResHandshake1 _cachedResHandshake1,
+            final BlockingQueue<MsgIn> _receiveMsgQue,
+            final InboundBodyPool _bodyPool) {
 
         this.p2pLOG = p2pLOG;
         this.surveyLog = surveyLog;
         this.mgr = _mgr;
         this.selector = _selector;
+        this.selectors = _selectors;
         this.start = _start;
         this.nodeMgr = _nodeMgr;
         this.handlers = _handlers;
         this.sendMsgQue = _sendMsgQue;
         this.cachedResHandshake1 = _cachedResHandshake1;
         this.receiveMsgQue = _receiveMsgQue;
+        this.bodyPool = _bodyPool;
     }
 
     @Override
@@ -84,8 +134,8 @@ public class TaskInbound implements Runnable {
         // for runtime survey information
         long startTime, duration;
 
-        // readBuffer buffer pre-alloc. @ max_body_size
-        ByteBuffer readBuf = ByteBuffer.allocate(P2pConstant.MAX_BODY_SIZE);
+        // a direct buffer avoids the temporary copy made by the channel when reading into heap buffers
+        ByteBuffer readBuf = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
 
         while (start.get()) {
 
@@ -132,6 +182,13 @@ public class TaskInbound implements Runnable {
                             }
                             readBuffer(key, cb, readBuf);
                         }
+
+                        if (key.isValid() && key.isWritable()) {
+                            cb = (ChannelBuffer) key.attachment();
+                            if (cb != null) {
+                                writeBuffer(key, cb);
+                            }
+                        }
                     } catch (Exception e) {
                         this.mgr.closeSocket(
                                 key != null ? (SocketChannel) key.channel() : null,
@@ -158,6 +215,7 @@ public class TaskInbound implements Runnable {
         // print remaining total times
         surveyLog.debug("TaskInbound: find selectors, duration = {} ns.", waitTime);
         surveyLog.debug("TaskInbound: process incoming msg, duration = {} ns.", processTime);
+        surveyLog.debug("TaskInbound: decompression, duration = {} ns, bytes = {} -> {}.", decompressTime, decompressIn, decompressOut);
 
         p2pLOG.info("p2p-pi shutdown");
     }
@@ -192,8 +250,7 @@ public class TaskInbound implements Runnable {
             }
 
             node.setChannel(channel);
-            SelectionKey sk = channel.register(this.selector, SelectionKey.OP_READ);
-            sk.attach(new ChannelBuffer(p2pLOG));
+            this.selectors.register(channel, new ChannelBuffer(p2pLOG));
             this.nodeMgr.addInboundNode(node);
 
             if (p2pLOG.isDebugEnabled()) {
@@ -202,122 +259,54 @@ public class TaskInbound implements Runnable {
         }
     }
 
-    private int readHeader(final ChannelBuffer _cb, final ByteBuffer _readBuf, int cnt) {
-
-        if (cnt < Header.LEN) {
-            return cnt;
-        }
-
-        int origPos = _readBuf.position();
-
-        int startP = origPos - cnt;
-
-        _readBuf.position(startP);
-
-        _cb.readHead(_readBuf);
-
-        _readBuf.position(origPos);
-
-        return cnt - Header.LEN;
-    }
-
-    private int readBody(final ChannelBuffer _cb, ByteBuffer _readBuf, int _cnt) {
-
-        int bodyLen = _cb.getHeader().getLen();
-
-        // some msg have nobody.
-        if (bodyLen == 0) {
-            _cb.body = new byte[0];
-            return _cnt;
-        }
-
-        if (_cnt < bodyLen) {
-            return _cnt;
-        }
-
-        int origPos = _readBuf.position();
-        int startP = origPos - _cnt;
-        _readBuf.position(startP);
-        _cb.readBody(_readBuf);
-        _readBuf.position(origPos);
-        return _cnt - bodyLen;
-    }
-
+    /**
+     * Reads the available bytes from the channel and passes each completed message to {@link
+     * #handleMsg(SelectionKey, ChannelBuffer)}. Incomplete messages stay in the channel buffer until
+     * the rest of their bytes arrive.
+     */
     private void readBuffer(
             final SelectionKey _sk, final ChannelBuffer _cb, final ByteBuffer _readBuf)
             throws Exception {
 
-        _readBuf.rewind();
-
         SocketChannel sc = (SocketChannel) _sk.channel();
 
         int r;
-        int cnt = 0;
+        int reads = 0;
         do {
+            _readBuf.clear();
             r = sc.read(_readBuf);
-            cnt += r;
-        } while (r > 0);
-
-        if (cnt < 1) {
-            return;
-        }
-
-        int remainBufAll = _cb.getBuffRemain() + cnt;
-        ByteBuffer bufferAll = calBuffer(_cb, _readBuf, cnt);
-
-        do {
-            r = readMsg(_sk, bufferAll, remainBufAll);
-            if (remainBufAll == r) {
+            if (r < 1) {
                 break;
-            } else {
-                remainBufAll = r;
             }
-        } while (r > 0);
-
-        _cb.setBuffRemain(r);
-
-        if (r != 0) {
-            // there are no perfect cycling buffer in jdk
-            // yet.
-            // simply just buff move for now.
-            // @TODO: looking for more efficient way.
 
-            int currPos = bufferAll.position();
-            _cb.setRemainBuffer(new byte[r]);
-            bufferAll.position(currPos - r);
-            bufferAll.get(_cb.getRemainBuffer());
-        }
-
-        _readBuf.rewind();
+            _readBuf.flip();
+            while (_readBuf.hasRemaining() && _cb.readMessage(_readBuf, bodyPool)) {
+                handleMsg(_sk, _cb);
+            }
+            reads++;
+            // a partially filled buffer means the socket was drained
+        } while (r == _readBuf.capacity() && reads < MAX_READS_PER_SELECT);
     }
 
-    private int readMsg(SelectionKey _sk, ByteBuffer _readBuf, int _cnt) throws IOException {
-        ChannelBuffer cb = (ChannelBuffer) _sk.attachment();
-        if (cb == null) {
-            throw new P2pException("attachment is null");
-        }
-
-        int readCnt;
-        if (cb.isHeaderNotCompleted()) {
-            readCnt = readHeader(cb, _readBuf, _cnt);
-        } else {
-            readCnt = _cnt;
-        }
-
-        if (cb.isBodyNotCompleted()) {
-            readCnt = readBody(cb, _readBuf, readCnt);
-        }
-
-        if (cb.isBodyNotCompleted()) {
-            return readCnt;
+    /** Continues writing the messages queued by the send task once the channel is writable. */
+    private void writeBuffer(final SelectionKey sk, final ChannelBuffer cb) throws IOException {
+        cb.lock.lock();
+        try {
+            cb.flush(sk);
+        } catch (IOException e) {
+            cb.clearOutbound();
+            throw e;
+        } finally {
+            cb.lock.unlock();
         }
-
-        handleMsg(_sk, cb);
-
-        return readCnt;
     }
 
-    private void handleMsg(SelectionKey _sk, ChannelBuffer _cb) {
+    /**
+     * Handles a completed message. The network messages are handled on this thread and the sync
+     * messages are queued for the handlers. The body goes back to the pool unless it was queued, in
+     * which case the receive task releases it after the handlers.
+     */
+    private void handleMsg(SelectionKey _sk, ChannelBuffer _cb) throws DataFormatException {
 
         Header h = _cb.getHeader();
         byte[] bodyBytes = _cb.body;
@@ -325,92 +314,101 @@ public class TaskInbound implements Runnable {
         _cb.refreshHeader();
         _cb.refreshBody();
 
-        int maxRequestsPerSecond = 0;
+        boolean queued = false;
+        try {
+            int maxRequestsPerSecond = 0;
 
-        // TODO: refactor to remove knowledge of sync message types
-        if (h.getCtrl() == CTRL_SYNC && h.getAction() == ACT_BROADCAST_BLOCK) {
-            maxRequestsPerSecond = P2pConstant.READ_MAX_RATE;
-        } else {
-            maxRequestsPerSecond = P2pConstant.READ_MAX_RATE_TXBC;
-        }
+            // TODO: refactor to remove knowledge of sync message types
+            if (h.getCtrl() == CTRL_SYNC && h.getAction() == ACT_BROADCAST_BLOCK) {
+                maxRequestsPerSecond = P2pConstant.READ_MAX_RATE;
+            } else {
+                maxRequestsPerSecond = P2pConstant.READ_MAX_RATE_TXBC;
+            }
 
-        boolean underRC = _cb.shouldRoute(h.getRoute(), maxRequestsPerSecond);
+            boolean underRC = _cb.shouldRoute(h.getRoute(), maxRequestsPerSecond);
 
-        if (!underRC) {
-            if (p2pLOG.isDebugEnabled()) {
-                p2pLOG.debug(
-                        "over-called-route={}-{}-{} calls={} node={}",
-                        h.getVer(),
-                        h.getCtrl(),
-                        h.getAction(),
-                        _cb.getRouteCount(h.getRoute()).count,
-                        _cb.getDisplayId());
+            if (!underRC) {
+                if (p2pLOG.isDebugEnabled()) {
+                    p2pLOG.debug(
+                            "over-called-route={}-{}-{} calls={} node={}",
+                            h.getVer(),
+                            h.getCtrl(),
+                            h.getAction(),
+                            _cb.getRouteCount(h.getRoute()).count,
+                            _cb.getDisplayId());
+                }
+                return;
             }
-            return;
-        }
 
-        switch (h.getVer()) {
-            case Ver.V0:
-                switch (h.getCtrl()) {
-                    case Ctrl.NET:
-                        try {
-                            handleP2pMsg(_sk, h.getAction(), bodyBytes);
-                        } catch (Exception ex) {
-                            if (p2pLOG.isDebugEnabled()) {
-                                p2pLOG.debug("handle-p2p-msg error.", ex);
+            if (h.isCompressed()) {
+                // an invalid body closes the channel
+                long startTime = System.nanoTime();
+                byte[] compressed = bodyBytes;
+                decompressIn += compressed.length;
+                bodyBytes = bodyCompression.decompress(compressed, bodyPool);
+                bodyPool.release(compressed);
+                decompressOut += bodyBytes.length;
+                decompressTime += System.nanoTime() - startTime;
+                if (decompressTime > MIN_DURATION) { // print and reset total time so far
+                    surveyLog.debug("TaskInbound: decompression, duration = {} ns, bytes = {} -> {}.", decompressTime, decompressIn, decompressOut);
+                    decompressTime = 0;
+                    decompressIn = 0;
+                    decompressOut = 0;
+                }
+            }
+
+            switch (h.getVer()) {
+                case Ver.V0:
+                case Ver.V1:
+                    switch (h.getCtrl()) {
+                        case Ctrl.NET:
+                            try {
+                                handleP2pMsg(_sk, h.getAction(), bodyBytes);
+                            } catch (Exception ex) {
+                                if (p2pLOG.isDebugEnabled()) {
+                                    p2pLOG.debug("handle-p2p-msg error.", ex);
+                                }
                             }
-                        }
-                        break;
-                    case Ctrl.SYNC:
-                        if (!handlers.containsKey(h.getRoute())) {
+                            break;
+                        case Ctrl.SYNC:
+                            if (!handlers.containsKey(h.getRoute())) {
+                                if (p2pLOG.isDebugEnabled()) {
+                                    p2pLOG.debug(
+                                            "unregistered-route={}-{}-{} node={}",
+                                            h.getVer(),
+                                            h.getCtrl(),
+                                            h.getAction(),
+                                            _cb.getDisplayId());
+                                }
+                                return;
+                            }
+
+                            queued = handleKernelMsg(_cb.getNodeIdHash(), h.getRoute(), bodyBytes);
+                            break;
+                        default:
                             if (p2pLOG.isDebugEnabled()) {
                                 p2pLOG.debug(
-                                        "unregistered-route={}-{}-{} node={}",
+                                        "invalid-route={}-{}-{} node={}",
                                         h.getVer(),
                                         h.getCtrl(),
                                         h.getAction(),
                                         _cb.getDisplayId());
                             }
-                            return;
-                        }
-
-                        handleKernelMsg(_cb.getNodeIdHash(), h.getRoute(), bodyBytes);
-                        break;
-                    default:
-                        if (p2pLOG.isDebugEnabled()) {
-                            p2pLOG.debug(
-                                    "invalid-route={}-{}-{} node={}",
-                                    h.getVer(),
-                                    h.getCtrl(),
-                                    h.getAction(),
-                                    _cb.getDisplayId());
-                        }
-                        break;
-                }
-                break;
-            default:
-                if (p2pLOG.isDebugEnabled()) {
-                    p2pLOG.debug("unhandled-ver={} node={}", h.getVer(), _cb.getDisplayId());
-                }
-
-                break;
-        }
-    }
+                            break;
+                    }
+                    break;
+                default:
+                    if (p2pLOG.isDebugEnabled()) {
+                        p2pLOG.debug("unhandled-ver={} node={}", h.getVer(), _cb.getDisplayId());
+                    }
 
-    private ByteBuffer calBuffer(ChannelBuffer _cb, ByteBuffer _readBuf, int _cnt) {
-        ByteBuffer r;
-        if (_cb.getBuffRemain() != 0) {
-            byte[] alreadyRead = new byte[_cnt];
-            _readBuf.position(0);
-            _readBuf.get(alreadyRead);
-            r = ByteBuffer.allocate(_cb.getBuffRemain() + _cnt);
-            r.put(_cb.getRemainBuffer());
-            r.put(alreadyRead);
-        } else {
-            r = _readBuf;
+                    break;
+            }
+        } finally {
+            if (!queued) {
+                bodyPool.release(bodyBytes);
+            }
         }
-
-        return r;
     }
 
     /**
@@ -428,6 +426,7 @@ public class TaskInbound implements Runnable {
                 if (_msgBytes.length > ReqHandshake.LEN) {
                     ReqHandshake1 reqHandshake1 = ReqHandshake1.decode(_msgBytes, p2pLOG);
                     if (reqHandshake1 != null) {
+                        rb.setAcceptsCompression((reqHandshake1.getFeatures() & ReqHandshake1.FEATURE_COMPRESSION) != 0);
                         handleReqHandshake(
                                 rb,
                                 _sk.channel().hashCode(),
@@ -444,6 +443,7 @@ public class TaskInbound implements Runnable {
                     if (_msgBytes.length > ResHandshake.LEN) {
                         ResHandshake1 resHandshake1 = ResHandshake1.decode(_msgBytes, p2pLOG);
                         if (resHandshake1 != null && resHandshake1.getSuccess()) {
+                            rb.setAcceptsCompression((resHandshake1.getFeatures() & ReqHandshake1.FEATURE_COMPRESSION) != 0);
                             handleResHandshake(
                                     rb.getNodeIdHash(), resHandshake1.getBinaryVersion());
                         }
@@ -565,23 +565,26 @@ public class TaskInbound implements Runnable {
      * @param _route int
      * @param _msgBytes byte[]
      */
-    private void handleKernelMsg(int _nodeIdHash, int _route, final byte[] _msgBytes) {
+    /** @return {@code true} when the message was queued for the handlers */
+    private boolean handleKernelMsg(int _nodeIdHash, int _route, final byte[] _msgBytes) {
         INode node = nodeMgr.getActiveNode(_nodeIdHash);
         if (node != null) {
             int nodeIdHash = node.getIdHash();
             String nodeDisplayId = node.getIdShort();
             node.refreshTimestamp();
             try {
-                boolean added = receiveMsgQue.offer(new MsgIn(nodeIdHash, nodeDisplayId, _route, _msgBytes), OFFER_TIMEOUT, TimeUnit.MILLISECONDS);
+                boolean added = receiveMsgQue.offer(new MsgIn(nodeIdHash, nodeDisplayId, _route, _msgBytes, bodyPool), OFFER_TIMEOUT, TimeUnit.MILLISECONDS);
                 if (!added) {
                     p2pLOG.warn("Message not added to the receive queue due to exceeded capacity: msg={} from node={}", _msgBytes, node.getIdShort());
                 }
+                return added;
             } catch (InterruptedException e) {
                 p2pLOG.error("Interrupted while attempting to add the received message to the processing queue:", e);
             }
         } else {
             p2pLOG.debug("handleKernelMsg can't find hash{}", _nodeIdHash);
         }
+        return false;
     }
 
     //    private String getReadOverflowMsg(int prevCnt, int cnt) {
@@ -42,22 +42,28 @@ public class TaskReceive implements Runnable {
                 startTime = System.nanoTime();
                 List<Handler> hs = this.handlers.get(mi.getRoute());
                 if (hs == null) {
+                    mi.release();
                     duration = System.nanoTime() - startTime;
                     surveyLog.debug("TaskReceive: process message, duration = {} ns.", duration);
                     continue;
                 }
-                for (Handler hlr : hs) {
-                    if (hlr == null) {
-                        continue;
-                    }
+                try {
+                    for (Handler hlr : hs) {
+                        if (hlr == null) {
+                            continue;
+                        }
 
-                    try {
-                        hlr.receive(mi.getNodeId(), mi.getDisplayId(), mi.getMsg());
-                    } catch (Exception e) {
-                        if (p2pLOG.isDebugEnabled()) {
-                            p2pLOG.debug("TaskReceive exception.", e);
+                        try {
+                            hlr.receive(mi.getNodeId(), mi.getDisplayId(), mi.getMsg());
+                        } catch (Exception e) {
+                            if (p2pLOG.isDebugEnabled()) {
+                                p2pLOG.debug("TaskReceive exception.", e);
+                            }
                         }
                     }
+                } finally {
+                    // the handlers do not keep the body after receive returns
+                    mi.release();
                 }
                 duration = System.nanoTime() - startTime;
                 surveyLog.debug("TaskReceive: process message, duration = {} ns.", duration);
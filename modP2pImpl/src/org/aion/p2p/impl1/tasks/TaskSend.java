@@ -1,8 +1,6 @@
 package org.aion.p2p.impl1.tasks;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
@@ -24,7 +22,12 @@ public class TaskSend implements Runnable {
     private final AtomicBoolean start;
     private final BlockingQueue<MsgOut> sendMsgQue;
     private final INodeMgr nodeMgr;
-    private final Selector selector;
+    private final SelectorGroup selectors;
+    private final boolean writeOnSelector;
+    private final boolean compression;
+    private final BodyCompression bodyCompression = new BodyCompression();
+
+    private static final byte[] EMPTY_BODY = new byte[0];
 
     // used when survey logging
     private static final long MIN_DURATION = 60_000_000_000L; // 60 seconds
@@ -35,7 +38,10 @@ public class TaskSend implements Runnable {
             closedCheckTime = 0,
             setupWriteTime = 0,
             writeTime = 0,
-            tryTime = 0;
+            tryTime = 0,
+            compressTime = 0;
+    // the body bytes given to compression and the bytes sent for them
+    private long compressIn = 0, compressOut = 0;
 
     public TaskSend(
             final Logger p2pLOG,
@@ -45,6 +51,26 @@ public class TaskSend implements Runnable {
             final AtomicBoolean _start,
             final INodeMgr _nodeMgr,
             final Selector _selector) {
+        this(p2pLOG, surveyLog, _mgr, _sendMsgQue, _start, _nodeMgr, new SelectorGroup(_selector), false, false);
+    }
+
+    /**
+     * @param _writeOnSelector when {@code true} the messages are only queued on their channels and
+     *     all the writes are left to the threads of the selectors, otherwise this task writes as much
+     *     of each message as the socket accepts before leaving the rest to the selector
+     * @param _compression when {@code true} the compressible messages are compressed for the peers
+     *     that support it
+     */
+    public TaskSend(
+            final Logger p2pLOG,
+            final Logger surveyLog,
+            final IP2pMgr _mgr,
+            final BlockingQueue<MsgOut> _sendMsgQue,
+            final AtomicBoolean _start,
+            final INodeMgr _nodeMgr,
+            final SelectorGroup _selectors,
+            final boolean _writeOnSelector,
+            final boolean _compression) {
 
         this.p2pLOG = p2pLOG;
         this.surveyLog = surveyLog;
@@ -52,7 +78,9 @@ public class TaskSend implements Runnable {
         this.sendMsgQue = _sendMsgQue;
         this.start = _start;
         this.nodeMgr = _nodeMgr;
-        this.selector = _selector;
+        this.selectors = _selectors;
+        this.writeOnSelector = _writeOnSelector;
+        this.compression = _compression;
     }
 
     @Override
@@ -98,6 +126,7 @@ public class TaskSend implements Runnable {
         surveyLog.debug("TaskSend: setup for write, duration = {} ns.", setupWriteTime);
         surveyLog.debug("TaskSend: write message, duration = {} ns.", writeTime);
         surveyLog.debug("TaskSend: start to end of write try, duration = {} ns.", tryTime);
+        surveyLog.debug("TaskSend: compression, duration = {} ns, bytes = {} -> {}.", compressTime, compressIn, compressOut);
     }
 
     /**
@@ -140,10 +169,10 @@ public class TaskSend implements Runnable {
         }
 
         if (node != null) {
-            SelectionKey sk = node.getChannel().keyFor(selector);
+            SelectionKey sk = selectors.keyFor(node.getChannel());
             if (sk != null && sk.attachment() != null) {
                 ChannelBuffer attachment = (ChannelBuffer) sk.attachment();
-                write(node.getIdShort(), node.getChannel(), mo.getMsg(), attachment);
+                write(node.getIdShort(), sk, mo, attachment);
             }
         } else {
             p2pLOG.debug("msg-{} ->{} node-not-exist", mo.getDest().name(), mo.getDisplayId());
@@ -157,13 +186,16 @@ public class TaskSend implements Runnable {
         return true;
     }
 
-    private static final long MAX_BUFFER_WRITE_TIME = 1_000_000_000L;
-    private static final long MIN_TRACE_BUFFER_WRITE_TIME = 10_000_000L;
-
+    /**
+     * Queues the message on its channel and, unless the writes are left to the selector threads,
+     * writes as much as the socket accepts without waiting. The rest is written by the thread of the
+     * channel's selector once it is writable, so a peer that is not reading only delays its own
+     * messages.
+     */
     private void write(
             final String nodeShortId,
-            final SocketChannel sc,
-            final Msg msg,
+            final SelectionKey sk,
+            final MsgOut mo,
             final ChannelBuffer channelBuffer) {
         // for runtime survey information
         long startTime, duration;
@@ -188,83 +220,88 @@ public class TaskSend implements Runnable {
         long startTime2 = System.nanoTime();
         try {
             startTime = System.nanoTime();
-            channelBuffer.lock.lock();
 
+            // encoded and compressed before taking the lock, so that the selector thread can keep
+            // writing the messages already queued for this channel meanwhile
             /*
              * @warning header set len (body len) before header encode
              */
+            Msg msg = mo.getMsg();
             byte[] bodyBytes = msg.encode();
-            int bodyLen = bodyBytes == null ? 0 : bodyBytes.length;
+            if (bodyBytes == null) {
+                bodyBytes = EMPTY_BODY;
+            }
+            boolean compressed = false;
+            if (compression
+                    && channelBuffer.acceptsCompression()
+                    && msg.isCompressible()
+                    && bodyBytes.length >= BodyCompression.MIN_COMPRESSED_SIZE) {
+                long compressStart = System.nanoTime();
+                byte[] compressedBytes = bodyCompression.compress(bodyBytes);
+                compressIn += bodyBytes.length;
+                if (compressedBytes != null) {
+                    bodyBytes = compressedBytes;
+                    compressed = true;
+                }
+                compressOut += bodyBytes.length;
+                compressTime += System.nanoTime() - compressStart;
+                if (compressTime > MIN_DURATION) { // print and reset total time so far
+                    surveyLog.debug("TaskSend: compression, duration = {} ns, bytes = {} -> {}.", compressTime, compressIn, compressOut);
+                    compressTime = 0;
+                    compressIn = 0;
+                    compressOut = 0;
+                }
+            }
             Header h = msg.getHeader();
-            h.setLen(bodyLen);
+            h.setLen(bodyBytes.length);
+            h.setCompressed(compressed);
             byte[] headerBytes = h.encode();
 
             p2pLOG.trace("write id:{} {}-{}-{}", nodeShortId, h.getVer(), h.getCtrl(), h.getAction());
 
-            ByteBuffer buf = ByteBuffer.allocate(headerBytes.length + bodyLen);
-            buf.put(headerBytes);
-            if (bodyBytes != null) {
-                buf.put(bodyBytes);
-            }
-            buf.flip();
-            duration = System.nanoTime() - startTime;
-            setupWriteTime += duration;
-            if (setupWriteTime > MIN_DURATION) { // print and reset total time so far
-                surveyLog.debug("TaskSend: setup for write, duration = {} ns.", setupWriteTime);
-                setupWriteTime = 0;
-            }
-
-            long t1 = System.nanoTime(), t2;
-            int wrote = 0;
+            // the queue is shared with the selector thread, so it is only used under the lock
+            channelBuffer.lock.lock();
             try {
-                startTime = System.nanoTime();
-                do {
-                    int result = sc.write(buf);
-                    wrote += result;
-
-                    if (result == 0) {
-                        // @Attention:  very important sleep , otherwise when NIO write buffer full,
-                        // without sleep will hangup this thread.
-                        Thread.sleep(0, 1);
-                    }
-
-                    t2 = System.nanoTime() - t1;
-                } while (buf.hasRemaining() && (t2 < MAX_BUFFER_WRITE_TIME));
+                // the header and body are written with a gathering write instead of being concatenated
+                boolean queued = channelBuffer.enqueue(headerBytes, bodyBytes, mo.getTimestamp());
                 duration = System.nanoTime() - startTime;
-                writeTime += duration;
-                if (writeTime > MIN_DURATION) { // print and reset total time so far
-                    surveyLog.debug("TaskSend: write message, duration = {} ns.", writeTime);
-                    writeTime = 0;
+                setupWriteTime += duration;
+                if (setupWriteTime > MIN_DURATION) { // print and reset total time so far
+                    surveyLog.debug("TaskSend: setup for write, duration = {} ns.", setupWriteTime);
+                    setupWriteTime = 0;
                 }
 
-                if (t2 > MIN_TRACE_BUFFER_WRITE_TIME) {
-                    p2pLOG.trace(
-                        "msg write: id {} size {} time {} ms length {}",
-                        nodeShortId,
-                        wrote,
-                        t2,
-                        buf.array().length);
+                if (!queued && p2pLOG.isDebugEnabled()) {
+                    p2pLOG.debug(
+                            "outbound-queue-full node={} queued={} dropped={}-{}-{}",
+                            nodeShortId,
+                            channelBuffer.getOutboundBytes(),
+                            h.getVer(),
+                            h.getCtrl(),
+                            h.getAction());
                 }
 
-            } catch (ClosedChannelException ex1) {
-                p2pLOG.debug("closed-channel-exception node=" + nodeShortId, ex1);
-                channelBuffer.setClosed();
-            } catch (IOException ex2) {
-                p2pLOG.debug(
-                        "write-msg-io-exception node="
-                            + nodeShortId
-                            + " headerBytes="
-                            + headerBytes.length
-                            + " bodyLen="
-                            + bodyLen
-                            + " time="
-                            + (System.nanoTime() - t1)
-                            + "ns",
-                        ex2);
-
-                if (ex2.getMessage().equals("Broken pipe")) {
+                try {
+                    startTime = System.nanoTime();
+                    if (writeOnSelector) {
+                        channelBuffer.scheduleFlush(sk);
+                    } else {
+                        channelBuffer.flush(sk);
+                    }
+                    duration = System.nanoTime() - startTime;
+                    writeTime += duration;
+                    if (writeTime > MIN_DURATION) { // print and reset total time so far
+                        surveyLog.debug("TaskSend: write message, duration = {} ns.", writeTime);
+                        writeTime = 0;
+                    }
+                } catch (IOException ex) {
+                    p2pLOG.debug("write-msg-io-exception node=" + nodeShortId, ex);
                     channelBuffer.setClosed();
+                    channelBuffer.clearOutbound();
+                    mgr.closeSocket((SocketChannel) sk.channel(), nodeShortId + "-write-msg-exception");
                 }
+            } finally {
+                channelBuffer.lock.unlock();
             }
         } catch (Exception e) {
             p2pLOG.error("TaskSend exception.", e);
@@ -275,7 +312,6 @@ public class TaskSend implements Runnable {
                 surveyLog.debug("TaskSend: start to end of write try, duration = {} ns.", tryTime);
                 tryTime = 0;
             }
-            channelBuffer.lock.unlock();
         }
     }
 }
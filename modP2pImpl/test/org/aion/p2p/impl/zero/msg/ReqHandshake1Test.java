@@ -96,6 +96,35 @@ public class ReqHandshake1Test {
         assertArrayEquals(req1.getRevision(), req2.getRevision());
     }
 
+    @Test
+    public void testFeaturesEncodeDecode() {
+        ReqHandshake1 req1 =
+                new ReqHandshake1(
+                        validNodeId,
+                        netId,
+                        Node.ipStrToBytes(randomIp),
+                        port,
+                        randomRevision,
+                        randomVersions,
+                        ReqHandshake1.FEATURE_COMPRESSION);
+        byte[] bytes = req1.encode();
+        ReqHandshake1 req2 = ReqHandshake1.decode(bytes, p2pLOG);
+        assertEquals(ReqHandshake1.FEATURE_COMPRESSION, req2.getFeatures());
+        assertArrayEquals(req1.getRevision(), req2.getRevision());
+
+        // the messages of older peers end with the versions
+        ReqHandshake1 old =
+                new ReqHandshake1(
+                        validNodeId,
+                        netId,
+                        Node.ipStrToBytes(randomIp),
+                        port,
+                        randomRevision,
+                        randomVersions);
+        assertArrayEquals(Arrays.copyOf(bytes, bytes.length - 1), old.encode());
+        assertEquals(0, ReqHandshake1.decode(old.encode(), p2pLOG).getFeatures());
+    }
+
     @Test
     public void testInvalidEncodeDecode() {
 
@@ -52,6 +52,20 @@ public class ResHandshake1Test {
         assertEquals(rh1.getBinaryVersion(), rh2.getBinaryVersion());
     }
 
+    @Test
+    public void testFeatures() {
+        ResHandshake1 rh1 = new ResHandshake1(p2pLOG, true, "0.4.0", ReqHandshake1.FEATURE_COMPRESSION);
+        byte[] bytes = rh1.encode();
+        ResHandshake1 rh2 = ResHandshake1.decode(bytes, p2pLOG);
+        assertEquals(ReqHandshake1.FEATURE_COMPRESSION, rh2.getFeatures());
+        assertEquals(rh1.getBinaryVersion(), rh2.getBinaryVersion());
+
+        // the messages of older peers end with the binary version
+        byte[] old = new ResHandshake1(p2pLOG, true, "0.4.0").encode();
+        assertArrayEquals(Arrays.copyOf(bytes, bytes.length - 1), old);
+        assertEquals(0, ResHandshake1.decode(old, p2pLOG).getFeatures());
+    }
+
     @Test
     public void testMultiple() {
         // Repeat the test multiple times to ensure validity
@@ -0,0 +1,82 @@
+package org.aion.p2p.impl1.tasks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import org.aion.p2p.P2pConstant;
+import org.junit.Test;
+
+public class BodyCompressionTest {
+
+    private final BodyCompression compression = new BodyCompression();
+    private final InboundBodyPool pool = new InboundBodyPool();
+    private final Random r = new Random(7);
+
+    /** @return a body with repeated content, like the lists of blocks sent during sync */
+    private byte[] repetitiveBody(int size) {
+        byte[] pattern = new byte[200];
+        r.nextBytes(pattern);
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = i % 16 == 0 ? (byte) r.nextInt() : pattern[i % pattern.length];
+        }
+        return body;
+    }
+
+    @Test
+    public void testCompressDecompress() throws DataFormatException {
+        // the buffers are reused between calls of different sizes
+        for (int size : new int[] {BodyCompression.MIN_COMPRESSED_SIZE, 1_000_000, 5_000}) {
+            byte[] body = repetitiveBody(size);
+            byte[] compressed = compression.compress(body);
+            assertNotNull(compressed);
+            assertTrue(compressed.length < body.length);
+            assertArrayEquals(body, compression.decompress(compressed, pool));
+        }
+    }
+
+    @Test
+    public void testIncompressibleBody() {
+        byte[] body = new byte[10_000];
+        r.nextBytes(body);
+        assertNull(compression.compress(body));
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void testMissingLength() throws DataFormatException {
+        compression.decompress(new byte[3], pool);
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void testLengthAboveMaxBodySize() throws DataFormatException {
+        byte[] compressed = compression.compress(repetitiveBody(10_000));
+        ByteBuffer.wrap(compressed).putInt(P2pConstant.MAX_BODY_SIZE + 1);
+        compression.decompress(compressed, pool);
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void testLengthLargerThanContent() throws DataFormatException {
+        byte[] compressed = compression.compress(repetitiveBody(10_000));
+        ByteBuffer.wrap(compressed).putInt(10_001);
+        compression.decompress(compressed, pool);
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void testLengthSmallerThanContent() throws DataFormatException {
+        byte[] compressed = compression.compress(repetitiveBody(10_000));
+        ByteBuffer.wrap(compressed).putInt(9_999);
+        compression.decompress(compressed, pool);
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void testTruncatedBody() throws DataFormatException {
+        byte[] compressed = compression.compress(repetitiveBody(10_000));
+        compression.decompress(Arrays.copyOf(compressed, compressed.length - 10), pool);
+    }
+}
@@ -6,13 +6,21 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.Random;
 import java.util.UUID;
 import org.aion.p2p.Header;
+import org.aion.p2p.P2pConstant;
 import org.aion.p2p.impl1.tasks.ChannelBuffer.RouteStatus;
 import org.junit.Before;
 import org.junit.Test;
@@ -25,6 +33,7 @@ public class ChannelBufferTest {
     @Mock private Logger p2pLOG;
 
     private ChannelBuffer cb;
+    private InboundBodyPool pool;
     private Random r;
 
     @Mock private Header header;
@@ -36,6 +45,7 @@ public class ChannelBufferTest {
         MockitoAnnotations.initMocks(this);
 
         cb = new ChannelBuffer(p2pLOG);
+        pool = new InboundBodyPool();
         r = new Random();
     }
 
@@ -91,9 +101,10 @@ public class ChannelBufferTest {
     public void testReadHead() {
         for (int i = 0; i < 100; i++) {
             cb.refreshHeader();
+            cb.refreshBody();
             ByteBuffer bb = genBuffer();
-            cb.readHead(bb);
-            if (bb.array().length >= LEN) {
+            cb.readMessage(bb, pool);
+            if (bb.limit() >= LEN) {
                 assertArrayEquals(expectHeader.encode(), cb.getHeader().encode());
             } else {
                 assertNull(cb.getHeader());
@@ -110,11 +121,14 @@ public class ChannelBufferTest {
 
     @Test
     public void TestBodyNotCompleted() {
-        when(header.getLen()).thenReturn(UUID.randomUUID().toString().getBytes().length);
         assertTrue(cb.isBodyNotCompleted());
-        cb.setHeader(header);
+        byte[] body = UUID.randomUUID().toString().getBytes();
+        ByteBuffer bb = ByteBuffer.allocate(LEN + body.length);
+        bb.put(genHeader(body.length)).put(body, 0, body.length - 1).flip();
+        assertFalse(cb.readMessage(bb, pool));
+        assertFalse(cb.isHeaderNotCompleted());
         assertTrue(cb.isBodyNotCompleted());
-        cb.body = UUID.randomUUID().toString().getBytes();
+        assertTrue(cb.readMessage(ByteBuffer.wrap(body, body.length - 1, 1), pool));
         assertFalse(cb.isBodyNotCompleted());
     }
 
@@ -124,23 +138,132 @@ public class ChannelBufferTest {
             cb.refreshHeader();
             cb.refreshBody();
             ByteBuffer bb = genBuffer();
-            cb.readHead(bb);
-            if (bb.array().length >= LEN) {
+            boolean completed = cb.readMessage(bb, pool);
+            if (bb.limit() >= LEN) {
                 assertArrayEquals(expectHeader.encode(), cb.getHeader().encode());
-                cb.readBody(bb);
                 assertNotNull(cb.body);
                 assertEquals(cb.getHeader().getLen(), cb.body.length);
+                assertTrue(completed);
             } else {
                 assertNull(cb.getHeader());
+                assertFalse(completed);
             }
         }
     }
 
     @Test
-    public void testReadBodyNotCompleted() {
-        ByteBuffer bb = genBuffer();
-        cb.readBody(bb);
-        assertNull(cb.body);
+    public void testReadMessage_splitAcrossReads() {
+        byte[] body = new byte[1_000];
+        r.nextBytes(body);
+        ByteBuffer message = ByteBuffer.allocate(2 * (LEN + body.length));
+        message.put(genHeader(body.length)).put(body).put(genHeader(body.length)).put(body).flip();
+
+        // deliver the two messages in small chunks
+        int completed = 0;
+        while (message.hasRemaining()) {
+            ByteBuffer chunk = message.slice();
+            chunk.limit(Math.min(chunk.remaining(), 7));
+            while (chunk.hasRemaining() && cb.readMessage(chunk, pool)) {
+                assertArrayEquals(body, cb.body);
+                cb.refreshHeader();
+                cb.refreshBody();
+                completed++;
+            }
+            message.position(message.position() + chunk.position());
+        }
+        assertEquals(2, completed);
+        assertTrue(cb.isHeaderNotCompleted());
+    }
+
+    @Test
+    public void testReadMessage_reusesReleasedBody() {
+        byte[] body = new byte[1_000];
+        r.nextBytes(body);
+        ByteBuffer message = ByteBuffer.allocate(LEN + body.length);
+        message.put(genHeader(body.length)).put(body).flip();
+
+        assertTrue(cb.readMessage(message, pool));
+        byte[] first = cb.body;
+        cb.refreshHeader();
+        cb.refreshBody();
+        pool.release(first);
+
+        // the next message of the same length overwrites the released array
+        r.nextBytes(body);
+        message.clear();
+        message.put(genHeader(body.length)).put(body).flip();
+        assertTrue(cb.readMessage(message, pool));
+        assertSame(first, cb.body);
+        assertArrayEquals(body, cb.body);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testReadMessage_bodyTooLarge() {
+        cb.readMessage(ByteBuffer.wrap(genHeader(P2pConstant.MAX_BODY_SIZE + 1)), pool);
+    }
+
+    @Test
+    public void testFlush_writesHeaderAndBody() throws IOException {
+        try (ServerSocketChannel server = ServerSocketChannel.open();
+                Selector selector = Selector.open()) {
+            server.bind(new InetSocketAddress("127.0.0.1", 0));
+            SocketChannel sender = SocketChannel.open(server.getLocalAddress());
+            SocketChannel receiver = server.accept();
+            sender.configureBlocking(false);
+            SelectionKey key = sender.register(selector, SelectionKey.OP_READ, cb);
+
+            byte[] body = new byte[1_000];
+            r.nextBytes(body);
+            byte[] header = genHeader(body.length);
+            long now = System.currentTimeMillis();
+            assertTrue(cb.enqueue(header, body, now));
+            assertTrue(cb.enqueue(header, new byte[0], now));
+            cb.flush(key);
+
+            assertEquals(0, cb.getOutboundBytes());
+            assertEquals(0, key.interestOps() & SelectionKey.OP_WRITE);
+
+            ByteBuffer received = ByteBuffer.allocate(2 * LEN + body.length);
+            while (received.hasRemaining()) {
+                receiver.read(received);
+            }
+            ByteBuffer expected = ByteBuffer.allocate(2 * LEN + body.length);
+            expected.put(header).put(body).put(header);
+            assertArrayEquals(expected.array(), received.array());
+
+            sender.close();
+            receiver.close();
+        }
+    }
+
+    @Test
+    public void testFlush_peerNotReading() throws IOException {
+        try (ServerSocketChannel server = ServerSocketChannel.open();
+                Selector selector = Selector.open()) {
+            server.bind(new InetSocketAddress("127.0.0.1", 0));
+            SocketChannel sender = SocketChannel.open(server.getLocalAddress());
+            SocketChannel receiver = server.accept();
+            sender.configureBlocking(false);
+            SelectionKey key = sender.register(selector, SelectionKey.OP_READ, cb);
+
+            // the messages are queued without blocking until the limit for the peer is reached
+            byte[] body = new byte[1024 * 1024];
+            int queued = 0;
+            while (cb.enqueue(genHeader(body.length), body, System.currentTimeMillis())) {
+                cb.flush(key);
+                queued++;
+            }
+            assertTrue(queued > ChannelBuffer.MAX_OUTBOUND_BYTES / body.length);
+            assertTrue(cb.getOutboundBytes() > 0);
+            assertTrue(cb.getOutboundBytes() <= ChannelBuffer.MAX_OUTBOUND_BYTES);
+            assertEquals(SelectionKey.OP_WRITE, key.interestOps() & SelectionKey.OP_WRITE);
+
+            cb.clearOutbound();
+            assertEquals(0, cb.getOutboundBytes());
+
+            sender.close();
+            receiver.close();
+        }
     }
 
     @Test
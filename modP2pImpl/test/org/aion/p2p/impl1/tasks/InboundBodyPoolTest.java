@@ -0,0 +1,62 @@
+package org.aion.p2p.impl1.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class InboundBodyPoolTest {
+
+    private final InboundBodyPool pool = new InboundBodyPool();
+
+    @Test
+    public void testAcquireReusesReleasedBody() {
+        byte[] body = pool.acquire(100);
+        assertEquals(100, body.length);
+        pool.release(body);
+        assertEquals(100, pool.getPooledBytes());
+
+        assertSame(body, pool.acquire(100));
+        assertEquals(0, pool.getPooledBytes());
+        assertEquals(1, pool.getReused());
+        assertEquals(1, pool.getAllocated());
+    }
+
+    @Test
+    public void testAcquireMatchesExactLength() {
+        byte[] body = pool.acquire(100);
+        pool.release(body);
+
+        byte[] other = pool.acquire(101);
+        assertEquals(101, other.length);
+        assertNotSame(body, other);
+        assertSame(body, pool.acquire(100));
+    }
+
+    @Test
+    public void testReleaseIgnoresLargeBodies() {
+        pool.release(new byte[InboundBodyPool.MAX_POOLED_LENGTH + 1]);
+        pool.release(new byte[0]);
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testReleaseLimitsPooledBytes() {
+        int length = InboundBodyPool.MAX_POOLED_LENGTH;
+        long fits = InboundBodyPool.MAX_POOLED_BYTES / length;
+        for (int i = 0; i <= fits; i++) {
+            pool.release(new byte[length]);
+        }
+        assertEquals(fits * length, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testReleaseLimitsPooledLengths() {
+        for (int length = 1; length <= InboundBodyPool.MAX_POOLED_LENGTHS + 10; length++) {
+            pool.release(new byte[length]);
+        }
+        long expected = (long) InboundBodyPool.MAX_POOLED_LENGTHS * (InboundBodyPool.MAX_POOLED_LENGTHS + 1) / 2;
+        assertEquals(expected, pool.getPooledBytes());
+    }
+}
@@ -0,0 +1,181 @@
+package org.aion.p2p.impl1.tasks;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.aion.p2p.Handler;
+import org.aion.p2p.Header;
+import org.aion.p2p.INode;
+import org.aion.p2p.INodeMgr;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.impl.zero.msg.ResHandshake1;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Floods a loopback connection with messages on the blocks bodies response route and measures the
+ * throughput of the {@link TaskInbound} reader and the bytes it allocates per message while the
+ * {@link TaskReceive} handlers return the bodies to the pool.
+ */
+@RunWith(Parameterized.class)
+public class InboundReadBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger("P2P");
+
+    // the route of the sync blocks bodies response: version 0, control 1, action 5
+    private static final short VER = 0;
+    private static final byte CTRL_SYNC = 1;
+    private static final byte ACT_RES_BLOCKS_BODIES = 5;
+    // a different route marks the end of the flood since each route is rate limited
+    private static final byte ACT_END = 6;
+
+    private static final int NODE_ID = 1;
+    private static final long TOTAL_BYTES = 256L * 1024 * 1024;
+
+    private final int bodySize;
+
+    public InboundReadBenchmark(int bodySize) {
+        this.bodySize = bodySize;
+    }
+
+    @Parameterized.Parameters(name = "body={0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {{2 * 1024}, {256 * 1024}, {2 * 1024 * 1024}});
+    }
+
+    @Test
+    public void floodLoopbackPeer() throws Exception {
+        int messages = (int) (TOTAL_BYTES / bodySize);
+        byte[] body = new byte[bodySize];
+        new Random(bodySize).nextBytes(body);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open();
+                Selector selector = Selector.open()) {
+            server.bind(new InetSocketAddress("127.0.0.1", 0));
+            SocketChannel writer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel reader = server.accept();
+            reader.configureBlocking(false);
+
+            ChannelBuffer cb = new ChannelBuffer(log);
+            cb.setNodeIdHash(NODE_ID);
+            cb.setDisplayId("bench");
+            reader.register(selector, SelectionKey.OP_READ, cb);
+
+            INode node = mock(INode.class);
+            when(node.getIdHash()).thenReturn(NODE_ID);
+            when(node.getIdShort()).thenReturn("bench");
+            INodeMgr nodeMgr = mock(INodeMgr.class);
+            when(nodeMgr.getActiveNode(anyInt())).thenReturn(node);
+            CountDownLatch end = new CountDownLatch(1);
+            Handler endHandler =
+                    new Handler(VER, CTRL_SYNC, ACT_END) {
+                        @Override
+                        public void receive(int _id, String _displayId, byte[] _msg) {
+                            end.countDown();
+                        }
+                    };
+            Map<Integer, List<Handler>> handlers =
+                    Map.of(route(ACT_RES_BLOCKS_BODIES), List.of(mock(Handler.class)), route(ACT_END), List.of(endHandler));
+            BlockingQueue<MsgIn> received = new LinkedBlockingQueue<>();
+            InboundBodyPool pool = new InboundBodyPool();
+
+            AtomicBoolean start = new AtomicBoolean(true);
+            TaskInbound task =
+                    new TaskInbound(
+                            log,
+                            log,
+                            mock(IP2pMgr.class),
+                            selector,
+                            new SelectorGroup(selector),
+                            start,
+                            nodeMgr,
+                            handlers,
+                            new LinkedBlockingQueue<>(),
+                            mock(ResHandshake1.class),
+                            received,
+                            pool);
+            Thread inbound = new Thread(task, "p2p-in");
+            inbound.start();
+            // the handlers release the bodies back to the pool as the inbound task reads
+            Thread receive = new Thread(new TaskReceive(log, log, start, received, handlers), "p2p-worker");
+            receive.start();
+
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long allocatedBefore = threads.getThreadAllocatedBytes(inbound.getId());
+            long startTime = System.nanoTime();
+
+            ByteBuffer message = ByteBuffer.allocateDirect(Header.LEN + bodySize);
+            message.put(header(ACT_RES_BLOCKS_BODIES, bodySize)).put(body);
+            for (int i = 0; i < messages; i++) {
+                message.flip();
+                while (message.hasRemaining()) {
+                    writer.write(message);
+                }
+                message.limit(message.capacity());
+            }
+            writer.write(ByteBuffer.wrap(header(ACT_END, 0)));
+
+            // the rate limited bodies responses are also queued, the end marker comes last
+            boolean ended = end.await(30, TimeUnit.SECONDS);
+            long duration = System.nanoTime() - startTime;
+            long allocated = threads.getThreadAllocatedBytes(inbound.getId()) - allocatedBefore;
+
+            start.set(false);
+            inbound.join();
+            receive.interrupt();
+            receive.join();
+            writer.close();
+            reader.close();
+
+            assertTrue("the end of the flood was not received", ended);
+
+            double seconds = duration / 1_000_000_000d;
+            log.info(
+                    String.format(
+                            "body=%9d messages=%6d throughput=%8.1f MiB/s %9.0f msg/s allocated/msg=%10.0f bytes (body=%d) pooled bodies reused=%d allocated=%d",
+                            bodySize,
+                            messages,
+                            TOTAL_BYTES / seconds / 1024 / 1024,
+                            messages / seconds,
+                            (double) allocated / messages,
+                            bodySize,
+                            pool.getReused(),
+                            pool.getAllocated()));
+
+            // the bodies are recycled, so most messages are read without allocating a new body
+            assertTrue(pool.getReused() > messages / 2);
+            assertTrue((double) allocated / messages < bodySize / 2 + 4 * 1024);
+        }
+    }
+
+    private static int route(byte act) {
+        return (VER << 16) | (CTRL_SYNC << 8) | act;
+    }
+
+    private static byte[] header(byte act, int len) {
+        return ByteBuffer.allocate(Header.LEN).putShort(VER).put(CTRL_SYNC).put(act).putInt(len).array();
+    }
+}
@@ -0,0 +1,93 @@
+package org.aion.p2p.impl1.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SelectorGroupTest {
+
+    private static final Logger p2pLOG = LoggerFactory.getLogger("P2P");
+
+    private SelectorGroup selectors;
+    private ServerSocketChannel server;
+    private final List<SocketChannel> channels = new ArrayList<>();
+
+    @Before
+    public void setup() throws IOException {
+        selectors = SelectorGroup.open(3);
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    @After
+    public void teardown() throws IOException {
+        for (SocketChannel channel : channels) {
+            channel.close();
+        }
+        server.close();
+        for (int i = 0; i < selectors.size(); i++) {
+            selectors.get(i).close();
+        }
+    }
+
+    private SocketChannel connect() throws IOException {
+        SocketChannel channel = SocketChannel.open(server.getLocalAddress());
+        channel.configureBlocking(false);
+        channels.add(channel);
+        channels.add(server.accept());
+        return channel;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyGroup() {
+        new SelectorGroup();
+    }
+
+    @Test
+    public void testRegisterSpreadsChannels() throws IOException {
+        int[] registered = new int[selectors.size()];
+        for (int i = 0; i < 2 * selectors.size(); i++) {
+            SocketChannel channel = connect();
+            ChannelBuffer cb = new ChannelBuffer(p2pLOG);
+            SelectionKey key = selectors.register(channel, cb);
+
+            assertSame(cb, key.attachment());
+            assertEquals(SelectionKey.OP_READ, key.interestOps());
+            assertSame(key, selectors.keyFor(channel));
+            for (int s = 0; s < selectors.size(); s++) {
+                if (key.selector() == selectors.get(s)) {
+                    registered[s]++;
+                }
+            }
+        }
+
+        for (int count : registered) {
+            assertEquals(2, count);
+        }
+    }
+
+    @Test
+    public void testKeyForUnregisteredChannel() throws IOException {
+        assertNull(selectors.keyFor(connect()));
+
+        Selector other = Selector.open();
+        SocketChannel channel = connect();
+        channel.register(other, SelectionKey.OP_READ);
+        assertNull(selectors.keyFor(channel));
+        other.close();
+    }
+}
@@ -1,5 +1,7 @@
 package org.aion.p2p.impl1.tasks;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -12,6 +14,7 @@ import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedSelectorException;
@@ -20,18 +23,25 @@ import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import org.aion.p2p.Ctrl;
 import org.aion.p2p.Handler;
 import org.aion.p2p.Header;
 import org.aion.p2p.INode;
 import org.aion.p2p.INodeMgr;
 import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.Msg;
+import org.aion.p2p.Ver;
 import org.aion.p2p.impl.zero.msg.ResHandshake1;
 import org.junit.Before;
 import org.junit.Test;
@@ -126,6 +136,34 @@ public class TaskInboundTest {
         public void close() {}
     }
 
+    // the fast sync trie data messages
+    private static final byte ACT_REQUEST_TRIE_DATA = 8;
+    private static final byte ACT_RESPONSE_TRIE_DATA = 9;
+
+    private static class RawMsg extends Msg {
+        private final byte[] body;
+
+        RawMsg(short ver, byte act, byte[] body) {
+            super(ver, Ctrl.SYNC, act);
+            this.body = body;
+        }
+
+        @Override
+        public byte[] encode() {
+            return body;
+        }
+    }
+
+    /** @return the header and body of the message as written on the channel */
+    private static byte[] frame(Msg msg) {
+        byte[] body = msg.encode();
+        msg.getHeader().setLen(body.length);
+        return ByteBuffer.allocate(Header.LEN + body.length)
+                .put(msg.getHeader().encode())
+                .put(body)
+                .array();
+    }
+
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
@@ -320,7 +358,7 @@ public class TaskInboundTest {
         when(s.getPort()).thenReturn(0);
         when(nodeMgr.allocNode(anyString(), anyInt())).thenReturn(node);
 
-        when(sc.register(any(), anyInt())).thenReturn(sk);
+        when(sc.register(any(), anyInt(), any())).thenReturn(sk);
 
         when(selector.selectNow()).thenReturn(1);
 
@@ -416,18 +454,10 @@ public class TaskInboundTest {
         // settings for readBuffer
         when(sk.channel()).thenReturn(sc);
         int read = r.nextInt(10000);
-        int remain = r.nextInt(10000);
         when(sc.read(any(ByteBuffer.class))).thenReturn(read).thenReturn(0);
 
-        // settings for calBuffer
-        when(cb.getBuffRemain()).thenReturn(remain);
-        when(cb.getRemainBuffer()).thenReturn(new byte[remain]);
-
-        // settings for readMsg
-        when(cb.isHeaderNotCompleted()).thenReturn(true);
-        when(cb.isBodyNotCompleted()).thenReturn(true);
-
-        // settings for readBody
+        // settings for readMessage
+        when(cb.readMessage(any(ByteBuffer.class), any(InboundBodyPool.class))).thenReturn(false);
         when(cb.getHeader()).thenReturn(hdr);
         // when(hdr.getLen()).thenReturn(Header.LEN);
 
@@ -452,4 +482,59 @@ public class TaskInboundTest {
             Thread.sleep(10);
         }
     }
+
+    @Test(timeout = 10_000)
+    public void testRouteTrieDataMessages() throws Exception {
+        int nodeIdHash = 1;
+        when(nodeMgr.getActiveNode(nodeIdHash)).thenReturn(node);
+        when(node.getIdHash()).thenReturn(nodeIdHash);
+        when(node.getIdShort()).thenReturn("node");
+
+        Msg request = new RawMsg(Ver.V1, ACT_REQUEST_TRIE_DATA, new byte[] {1, 2, 3});
+        Msg response = new RawMsg(Ver.V1, ACT_RESPONSE_TRIE_DATA, new byte[] {4, 5});
+        Msg unknownVersion = new RawMsg((short) 2, ACT_REQUEST_TRIE_DATA, new byte[] {6});
+
+        Map<Integer, List<Handler>> handlers = new HashMap<>();
+        handlers.put(request.getHeader().getRoute(), new ArrayList<>());
+        handlers.put(response.getHeader().getRoute(), new ArrayList<>());
+        handlers.put(unknownVersion.getHeader().getRoute(), new ArrayList<>());
+        BlockingQueue<MsgIn> received = new LinkedBlockingQueue<>();
+
+        try (Selector realSelector = Selector.open();
+                ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                    SocketChannel channel = server.accept()) {
+                ChannelBuffer buffer = new ChannelBuffer(p2pLOG);
+                buffer.setNodeIdHash(nodeIdHash);
+                channel.configureBlocking(false);
+                channel.register(realSelector, SelectionKey.OP_READ, buffer);
+
+                AtomicBoolean atb = new AtomicBoolean(true);
+                TaskInbound ti =
+                        new TaskInbound(p2pLOG, surveyLog, p2pMgr, realSelector, atb, nodeMgr, handlers, msgOutQue, rhs1, received);
+                Thread t = new Thread(ti);
+                t.start();
+
+                client.write(ByteBuffer.wrap(frame(unknownVersion)));
+                client.write(ByteBuffer.wrap(frame(request)));
+                client.write(ByteBuffer.wrap(frame(response)));
+
+                MsgIn first = received.poll(5, TimeUnit.SECONDS);
+                MsgIn second = received.poll(5, TimeUnit.SECONDS);
+                atb.set(false);
+                t.join();
+
+                // only the V0 and V1 messages are routed to the kernel
+                assertNotNull(first);
+                assertEquals(request.getHeader().getRoute(), first.getRoute());
+                assertArrayEquals(request.encode(), first.getMsg());
+                assertNotNull(second);
+                assertEquals(response.getHeader().getRoute(), second.getRoute());
+                assertArrayEquals(response.encode(), second.getMsg());
+                assertEquals(nodeIdHash, second.getNodeId());
+                assertTrue(received.isEmpty());
+            }
+        }
+    }
 }
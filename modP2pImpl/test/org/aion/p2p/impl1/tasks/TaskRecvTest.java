@@ -1,6 +1,8 @@
 package org.aion.p2p.impl1.tasks;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -14,6 +16,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.aion.p2p.Handler;
 import org.junit.Before;
@@ -114,4 +118,39 @@ public class TaskRecvTest {
             Thread.sleep(10);
         }
     }
+
+    @Test(timeout = 10_000)
+    public void testRunReleasesBodyAfterHandlers() throws InterruptedException {
+        AtomicBoolean atb = new AtomicBoolean(true);
+        BlockingQueue<MsgIn> queue = new LinkedBlockingQueue<>();
+        InboundBodyPool pool = new InboundBodyPool();
+        CountDownLatch handled = new CountDownLatch(1);
+        Handler handler =
+                new Handler((short) 0, (byte) 1, (byte) 2) {
+                    @Override
+                    public void receive(int _id, String _displayId, byte[] _msg) {
+                        // the body is still owned by the message while the handlers run
+                        assertEquals(0, pool.getPooledBytes());
+                        handled.countDown();
+                    }
+                };
+        int route = handler.getHeader().getRoute();
+        TaskReceive ts = new TaskReceive(p2pLOG, surveyLog, atb, queue, Map.of(route, List.of(handler)));
+
+        byte[] body = pool.acquire(64);
+        queue.add(new MsgIn(1, "1", route, body, pool));
+
+        Thread t = new Thread(ts);
+        t.start();
+        handled.await();
+        while (pool.getPooledBytes() == 0) {
+            Thread.sleep(10);
+        }
+        assertSame(body, pool.acquire(64));
+
+        atb.set(false);
+        // wakes up the task waiting for the next message
+        t.interrupt();
+        t.join();
+    }
 }
@@ -4,13 +4,16 @@ import com.google.common.annotations.VisibleForTesting;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Properties;
 import java.util.Set;
 import java.util.SortedMap;
@@ -57,6 +60,14 @@ public final class TxPoolV1 {
      *     @ByteArrayWrapper TransactionHash
      */
     private final Map<AionAddress, SortedMap<BigInteger, ByteArrayWrapper>> accountView = new HashMap<>();
+    /**
+     * arrivalView : Map<ByteArrayWrapper, Long>
+     *     @ByteArrayWrapper transaction hash
+     *     @Long the order the transaction has been added into the pool, which orders the
+     *     transactions with the same energy price as the feeView hash sets do
+     */
+    private final Map<ByteArrayWrapper, Long> arrivalView = new HashMap<>();
+    private long arrivalCount = 0;
 
     private final Lock lock = new ReentrantLock();
     private final Logger LOG_TXPOOL;
@@ -159,6 +170,8 @@ public final class TxPoolV1 {
         accountView.putIfAbsent(poolTx.tx.getSenderAddress(), accountInfo);
         accountInfo.put(poolTx.tx.getNonceBI(), txHash);
 
+        arrivalView.put(txHash, arrivalCount++);
+
         LOG_TXPOOL.debug("Added tx[{}]", poolTx.tx);
     }
 
@@ -192,6 +205,8 @@ public final class TxPoolV1 {
             accountView.remove(removedTx.tx.getSenderAddress());
         }
 
+        arrivalView.remove(txHash);
+
         LOG_TXPOOL.debug("Removed tx[{}]", removedTx.tx);
         return removedTx;
     }
@@ -332,11 +347,121 @@ public final class TxPoolV1 {
     }
 
     /**
-     * @implNote snapshot the transactions for creating new block template.
+     * @implNote snapshot the transactions for creating new block template. The transactions are
+     *     picked in a single pass from a priority queue holding the next transaction in nonce order
+     *     of every account. The queue is ordered by energy price and then by the order the
+     *     transactions were added into the pool. The picking stops at the first transaction
+     *     exceeding the block size or energy limit.
      * @return the transactions ready to be seal into the new blocks.
      */
     public List<AionTransaction> snapshot() {
 
+        lock.lock();
+        try {
+            if (poolTransactions.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            PriorityQueue<AccountCandidate> candidates =
+                    new PriorityQueue<>(accountView.size(), AccountCandidate.PICKING_ORDER);
+            for (SortedMap<BigInteger, ByteArrayWrapper> accountInfo : accountView.values()) {
+                AccountCandidate candidate = new AccountCandidate(accountInfo.entrySet().iterator());
+                if (nextCandidate(candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+
+            List<AionTransaction> pickedTransactions = new ArrayList<>();
+            long cumulatedTxEncodedSize = 0;
+            long cumulatedTxEnergyConsumed = 0;
+            LOG_TXPOOL.info("Start to pick transaction");
+            while (!candidates.isEmpty()) {
+                AccountCandidate candidate = candidates.poll();
+                PooledTransaction pendingTx = candidate.pooledTx;
+
+                long txEncodedSize = pendingTx.tx.getEncoded().length;
+                long txEnergyConsumed = Math.max(pendingTx.energyConsumed, (Constant.MIN_ENERGY_CONSUME / 2));
+
+                // the energy limit is checked against the encoded size like the previous picking did
+                if ((cumulatedTxEncodedSize + txEncodedSize) > Constant.MAX_BLK_SIZE
+                        || (cumulatedTxEnergyConsumed + txEncodedSize) > blockEnergyLimit) {
+                    break;
+                }
+
+                LOG_TXPOOL.trace("Transaction picked: [{}]", pendingTx.tx);
+                pickedTransactions.add(pendingTx.tx);
+                cumulatedTxEncodedSize += txEncodedSize;
+                cumulatedTxEnergyConsumed += txEnergyConsumed;
+
+                if (nextCandidate(candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+
+            LOG_TXPOOL.info(
+                    "snapshot {} tx, totalEncodedSize: {}, totalEnergyConsumed: {}",
+                    pickedTransactions.size(),
+                    cumulatedTxEncodedSize,
+                    cumulatedTxEnergyConsumed);
+            return pickedTransactions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The next transaction of an account that can be picked for the block template. */
+    private static final class AccountCandidate {
+
+        /** Higher energy price first, then the transaction added first into the pool. */
+        static final Comparator<AccountCandidate> PICKING_ORDER =
+                (c1, c2) -> {
+                    int byPrice = Long.compare(c2.energyPrice, c1.energyPrice);
+                    return byPrice != 0 ? byPrice : Long.compare(c1.arrival, c2.arrival);
+                };
+
+        final Iterator<Map.Entry<BigInteger, ByteArrayWrapper>> accountTransactions;
+        BigInteger nonce;
+        PooledTransaction pooledTx;
+        long energyPrice;
+        long arrival;
+
+        AccountCandidate(Iterator<Map.Entry<BigInteger, ByteArrayWrapper>> accountTransactions) {
+            this.accountTransactions = accountTransactions;
+        }
+    }
+
+    /**
+     * Moves the candidate to the next transaction of its account.
+     *
+     * @return false if the account has no more transactions or the nonce of the next one is not
+     *     consecutive
+     */
+    private boolean nextCandidate(AccountCandidate candidate) {
+        if (!candidate.accountTransactions.hasNext()) {
+            return false;
+        }
+
+        Map.Entry<BigInteger, ByteArrayWrapper> next = candidate.accountTransactions.next();
+        if (candidate.nonce != null && !next.getKey().equals(candidate.nonce.add(BigInteger.ONE))) {
+            return false;
+        }
+
+        candidate.nonce = next.getKey();
+        candidate.pooledTx = poolTransactions.get(next.getValue());
+        candidate.energyPrice = candidate.pooledTx.tx.getEnergyPrice();
+        candidate.arrival = arrivalView.get(next.getValue());
+        return true;
+    }
+
+    /**
+     * @implNote the multi rounds picking used by {@link #snapshot()} before the single pass
+     *     picking. Each round iterates all the transactions by the energy price. It is kept for
+     *     comparing the two in the benchmark.
+     * @return the transactions ready to be seal into the new blocks.
+     */
+    @VisibleForTesting
+    List<AionTransaction> snapshotByRounds() {
+
         lock.lock();
         try {
             if (poolTransactions.isEmpty()) {
@@ -351,7 +476,6 @@ public final class TxPoolV1 {
             int totalPicked;
             long cumulatedTxEncodedSize = 0;
             long cumulatedTxEnergyConsumed = 0;
-            LOG_TXPOOL.info("Start to pick transaction");
             do {
                 totalPicked = pickedTransactions.size();
 
@@ -363,20 +487,10 @@ public final class TxPoolV1 {
                                 cumulatedTxEnergyConsumed);
                 cumulatedTxEncodedSize += newPicked.getMiddle();
                 cumulatedTxEnergyConsumed += newPicked.getRight();
-                LOG_TXPOOL.debug(
-                        "transaction picked: {}, newPickedEncodedSize: {}, newPickedEnergyConsumed: {}",
-                        newPicked.getLeft().size(),
-                        newPicked.getMiddle(),
-                        newPicked.getRight());
                 pickedTransactions.addAll(newPicked.getLeft());
 
             } while (totalPicked < pickedTransactions.size());
 
-            LOG_TXPOOL.info(
-                    "snapshot {} tx, totalEncodedSize: {}, totalEnergyConsumed: {}",
-                    pickedTransactions.size(),
-                    cumulatedTxEncodedSize,
-                    cumulatedTxEnergyConsumed);
             return pickedTransactions;
         } finally {
             lock.unlock();
@@ -477,6 +591,8 @@ public final class TxPoolV1 {
                     accountView.remove(removedTx.tx.getSenderAddress());
                 }
 
+                arrivalView.remove(txHash);
+
                 clearedTransactions.add(removedTx);
                 LOG_TXPOOL.debug("Removed tx[{}]", removedTx.tx);
             }
@@ -0,0 +1,102 @@
+package org.aion.txpool.v1;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import org.aion.base.AionTransaction;
+import org.aion.base.PooledTransaction;
+import org.aion.base.TransactionTypes;
+import org.aion.crypto.ECKey;
+import org.aion.crypto.ECKeyFac;
+import org.aion.log.AionLoggerFactory;
+import org.aion.log.LogEnum;
+import org.aion.txpool.Constant;
+import org.aion.txpool.Constant.TXPOOL_PROPERTY;
+import org.aion.util.types.AddressUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.spongycastle.pqc.math.linearalgebra.ByteUtils;
+
+/**
+ * Compares the single pass block template picking of {@link TxPoolV1#snapshot()} with the
+ * previous multi rounds picking for pools of 10k, 50k and 100k transactions from many senders.
+ * The block energy limit is raised so that the picking is bounded only by the block size.
+ */
+public class TxPoolV1SnapshotBenchmark {
+
+    private static final Logger LOG = AionLoggerFactory.getLogger(LogEnum.TXPOOL.toString());
+
+    private static final int SENDERS = 1000;
+    private static final int ROUNDS = 5;
+
+    private final List<ECKey> keys = new ArrayList<>();
+    private final Random r = new Random(11);
+
+    @Before
+    public void setup() {
+        ECKeyFac.setType(ECKeyFac.ECKeyType.ED25519);
+        for (int i = 0; i < SENDERS; i++) {
+            keys.add(ECKeyFac.inst().create());
+        }
+    }
+
+    @Test
+    public void benchmarkSnapshot() {
+        for (int poolSize : new int[] {10_000, 50_000, 100_000}) {
+            Properties config = new Properties();
+            config.put(TXPOOL_PROPERTY.PROP_TX_TIMEOUT, "1000");
+            config.put(TXPOOL_PROPERTY.PROP_POOL_SIZE_MAX, String.valueOf(poolSize));
+            config.put(TXPOOL_PROPERTY.PROP_BLOCK_NRG_LIMIT, String.valueOf(Long.MAX_VALUE / 2));
+            TxPoolV1 tp = new TxPoolV1(config);
+
+            List<PooledTransaction> txnl = new ArrayList<>(poolSize);
+            int perSender = poolSize / SENDERS;
+            for (ECKey key : keys) {
+                for (int nonce = 0; nonce < perSender; nonce++) {
+                    AionTransaction txn =
+                            AionTransaction.create(
+                                    key,
+                                    BigInteger.valueOf(nonce).toByteArray(),
+                                    AddressUtils.wrapAddress(
+                                            "0000000000000000000000000000000000000000000000000000000000000001"),
+                                    ByteUtils.fromHexString("1"),
+                                    ByteUtils.fromHexString("1"),
+                                    Constant.MIN_ENERGY_CONSUME,
+                                    1 + r.nextInt(100),
+                                    TransactionTypes.DEFAULT,
+                                    null);
+                    txnl.add(new PooledTransaction(txn, Constant.MIN_ENERGY_CONSUME));
+                }
+            }
+            tp.add(txnl);
+            Assert.assertEquals(poolSize, tp.size());
+
+            long singlePass = 0;
+            long byRounds = 0;
+            int picked = 0;
+            int pickedByRounds = 0;
+            for (int i = 0; i < ROUNDS; i++) {
+                long start = System.nanoTime();
+                picked = tp.snapshot().size();
+                singlePass += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                pickedByRounds = tp.snapshotByRounds().size();
+                byRounds += System.nanoTime() - start;
+            }
+
+            LOG.info(
+                    String.format(
+                            "pool %6d tx: single pass %8.2f ms (%d tx), multi rounds %8.2f ms (%d tx)",
+                            poolSize,
+                            singlePass / 1_000_000d / ROUNDS,
+                            picked,
+                            byRounds / 1_000_000d / ROUNDS,
+                            pickedByRounds));
+        }
+    }
+}
@@ -601,6 +601,79 @@ public class TxPoolV1Test {
         }
     }
 
+    @Test
+    public void snapshotOrderByEnergyPrice() {
+        Properties config = new Properties();
+        config.put(TXPOOL_PROPERTY.PROP_TX_TIMEOUT, "100");
+
+        TxPoolV1 tp = new TxPoolV1(config);
+
+        // one transaction per account, the last two accounts with the same energy price
+        long[] prices = {5L, 30L, 1L, 12L, 7L, 20L, 3L, 9L, 15L, 15L};
+        List<PooledTransaction> txnl = new ArrayList<>();
+        for (int i = 0; i < key.size(); i++) {
+            AionTransaction tx =
+                    AionTransaction.create(
+                            key.get(i),
+                            BigInteger.ZERO.toByteArray(),
+                            AddressUtils.wrapAddress(
+                                    "0000000000000000000000000000000000000000000000000000000000000001"),
+                            ByteUtils.fromHexString("1"),
+                            ByteUtils.fromHexString("1"),
+                            Constant.MIN_ENERGY_CONSUME,
+                            prices[i],
+                            TransactionTypes.DEFAULT,
+                            null);
+            txnl.add(new PooledTransaction(tx, Constant.MIN_ENERGY_CONSUME));
+        }
+        tp.add(txnl);
+
+        List<AionTransaction> snapshot = tp.snapshot();
+        Assert.assertEquals(key.size(), snapshot.size());
+        for (int i = 1; i < snapshot.size(); i++) {
+            assertTrue(snapshot.get(i - 1).getEnergyPrice() >= snapshot.get(i).getEnergyPrice());
+        }
+        // the same energy price is ordered by the arrival into the pool
+        int first = snapshot.indexOf(txnl.get(8).tx);
+        Assert.assertEquals(txnl.get(9).tx, snapshot.get(first + 1));
+    }
+
+    @Test
+    public void snapshotPicksSameTransactionsAsRounds() {
+        Properties config = new Properties();
+        config.put(TXPOOL_PROPERTY.PROP_TX_TIMEOUT, "100");
+
+        TxPoolV1 tp = new TxPoolV1(config);
+
+        List<PooledTransaction> txnl = new ArrayList<>();
+        int cnt = 30;
+        for (ECKey k : key) {
+            for (int i = 0; i < cnt; i++) {
+                // the nonce gap of the first account stops its picking
+                if (k == key.get(0) && i == cnt / 2) {
+                    continue;
+                }
+                byte[] nonce = new byte[Long.BYTES];
+                nonce[Long.BYTES - 1] = (byte) i;
+                txnl.add(genTransactionRandomPrice(nonce, k, Constant.MIN_ENERGY_CONSUME));
+            }
+        }
+        tp.add(txnl);
+
+        List<AionTransaction> snapshot = tp.snapshot();
+        List<AionTransaction> byRounds = tp.snapshotByRounds();
+        assertThat(snapshot).containsExactlyElementsIn(byRounds);
+        Assert.assertEquals(cnt * key.size() - cnt / 2, snapshot.size());
+
+        // the transactions of every account are picked by the nonce order
+        Map<AionAddress, Long> nextNonce = new HashMap<>();
+        for (AionTransaction tx : snapshot) {
+            long nonce = nextNonce.getOrDefault(tx.getSenderAddress(), 0L);
+            Assert.assertEquals(nonce, tx.getNonceBI().longValue());
+            nextNonce.put(tx.getSenderAddress(), nonce + 1);
+        }
+    }
+
     @Test
     public void snapshotWithSameTransactionTimestamp() {
         Properties config = new Properties();